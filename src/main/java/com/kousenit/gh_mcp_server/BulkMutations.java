@@ -0,0 +1,388 @@
+package com.kousenit.gh_mcp_server;
+
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.function.IntFunction;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tools that apply one mutation to many issues through a write pipeline that stays clear of
+ * GitHub's secondary rate limits.
+ *
+ * <p>Mutation starts are spaced {@code pacingMillis} apart, across every bulk call of the server
+ * since the limits apply to the account, with at most {@code concurrency} in flight. When GitHub
+ * throttles a mutation, the pipeline waits out its {@code Retry-After}, or a minute when none is
+ * given, doubles the spacing and retries the item; the spacing eases back with every success. A
+ * call returns after {@code maxSeconds} or when interrupted, and the items it did not get to can
+ * be finished with {@code resumeBulkMutation}. Every call reports the outcome of each item.
+ */
+@Component
+public class BulkMutations {
+
+  /** Longest spacing the pipeline slows down to. */
+  static final long MAX_PACING_MILLIS = 60_000;
+
+  /** Wait after a throttled mutation when GitHub does not say how long. */
+  static final long DEFAULT_RETRY_AFTER_MILLIS = 60_000;
+
+  /**
+   * How gh reports throttling: the REST statuses and headers, and the GraphQL errors of the
+   * mutations behind {@code gh issue comment}, {@code close} and {@code edit}, which say "was
+   * submitted too quickly" for content-creation limits and name the secondary or primary limit.
+   */
+  private static final Pattern THROTTLED =
+      Pattern.compile(
+          "(?i)secondary rate limit|abuse detection|retry[- ]after|HTTP 429|too many requests"
+              + "|submitted too quickly|rate limit exceeded|RATE_LIMITED");
+
+  private static final Pattern RETRY_AFTER =
+      Pattern.compile("(?i)retry[- ]after\\D{0,10}(\\d{1,6})");
+
+  private static final SecureRandom RANDOM = new SecureRandom();
+
+  /** Waits out the pacing; swapped for a fake clock in tests. */
+  @FunctionalInterface
+  interface Sleeper {
+    void sleep(long millis) throws InterruptedException;
+  }
+
+  /**
+   * The outcome of one item.
+   *
+   * @param target the issue the mutation is for
+   * @param status {@code done}, {@code failed} or {@code pending}
+   * @param message the first line gh printed, or the error
+   */
+  public record ItemResult(String target, String status, String message) {}
+
+  /**
+   * Where a bulk job stands after a call.
+   *
+   * @param jobId handle for {@code resumeBulkMutation}; null once nothing is pending
+   * @param pacingMillis the spacing the pipeline ended at, above the configured one after
+   *     throttling
+   */
+  public record Progress(
+      String jobId,
+      String operation,
+      int done,
+      int failed,
+      int pending,
+      long pacingMillis,
+      List<ItemResult> items) {}
+
+  /** A bulk job; item results are null while pending, and only one call runs it at a time. */
+  private static final class Job {
+    final String id;
+    final String operation;
+    final List<String> targets;
+    final IntFunction<String> mutation;
+    final CallContext context;
+    final ItemResult[] results;
+    boolean running;
+
+    Job(
+        String id,
+        String operation,
+        List<String> targets,
+        IntFunction<String> mutation,
+        CallContext context) {
+      this.id = id;
+      this.operation = operation;
+      this.targets = targets;
+      this.mutation = mutation;
+      this.context = context;
+      this.results = new ItemResult[targets.size()];
+    }
+  }
+
+  private final GitHubProperties.Bulk settings;
+  private final GithubService service;
+  private final LongSupplier clock;
+  private final Sleeper sleeper;
+  private final Map<String, Job> jobs;
+  private long pacingMillis;
+  private long nextStartMillis;
+
+  @Autowired
+  public BulkMutations(GitHubProperties gitHubProperties, GithubService service) {
+    this(gitHubProperties.bulk(), service, System::currentTimeMillis, Thread::sleep);
+  }
+
+  BulkMutations(
+      GitHubProperties.Bulk settings, GithubService service, LongSupplier clock, Sleeper sleeper) {
+    this.settings = settings;
+    this.service = service;
+    this.clock = clock;
+    this.sleeper = sleeper;
+    this.pacingMillis = settings.pacingMillis();
+    // Access-ordered, so the least recently used job is the one dropped
+    this.jobs =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Job> eldest) {
+            return size() > settings.maxJobs();
+          }
+        };
+  }
+
+  @Tool(
+      description =
+          "Close many issues, paced to stay within GitHub's secondary rate limits. Reports each"
+              + " issue's outcome; a jobId in the result means some are left for"
+              + " resumeBulkMutation")
+  public String bulkCloseIssues(String owner, String repo, List<Integer> issueNumbers) {
+    return start("close", issueNumbers, number -> service.closeIssue(owner, repo, number));
+  }
+
+  @Tool(
+      description =
+          "Add the same comment to many issues or pull requests, paced to stay within GitHub's"
+              + " secondary rate limits. Reports each one's outcome; a jobId in the result means"
+              + " some are left for resumeBulkMutation")
+  public String bulkCommentOnIssues(
+      String owner, String repo, List<Integer> issueNumbers, String body) {
+    if (body == null || body.isBlank()) {
+      return "Error: No comment body given";
+    }
+    return start(
+        "comment", issueNumbers, number -> service.commentOnIssue(owner, repo, number, body));
+  }
+
+  @Tool(
+      description =
+          "Add labels to and remove labels from many issues, paced to stay within GitHub's"
+              + " secondary rate limits; several labels are separated by commas. Reports each"
+              + " issue's outcome; a jobId in the result means some are left for"
+              + " resumeBulkMutation")
+  public String bulkLabelIssues(
+      String owner,
+      String repo,
+      List<Integer> issueNumbers,
+      String addLabels,
+      String removeLabels) {
+    if ((addLabels == null || addLabels.isBlank())
+        && (removeLabels == null || removeLabels.isBlank())) {
+      return "Error: No labels to add or remove";
+    }
+    return start(
+        "label",
+        issueNumbers,
+        number -> service.editIssueLabels(owner, repo, number, addLabels, removeLabels));
+  }
+
+  @Tool(
+      description =
+          "Continue a bulk mutation that stopped early, using the jobId of its last result;"
+              + " only the pending items are run")
+  public String resumeBulkMutation(String jobId) {
+    Job job;
+    synchronized (jobs) {
+      job = jobId == null ? null : jobs.get(jobId.strip());
+    }
+    if (job == null) {
+      return "Error: Unknown or finished bulk job; nothing to resume";
+    }
+    return run(job);
+  }
+
+  private String start(
+      String operation, List<Integer> issueNumbers, IntFunction<String> mutation) {
+    if (issueNumbers == null || issueNumbers.isEmpty()) {
+      return "Error: No issue numbers given";
+    }
+    var numbers = new ArrayList<>(new LinkedHashSet<>(issueNumbers));
+    if (numbers.stream().anyMatch(number -> number == null || number <= 0)) {
+      return "Error: Issue numbers must be positive";
+    }
+    var job =
+        new Job(
+            HexFormat.of().formatHex(jobIdBytes()),
+            operation,
+            numbers.stream().map(number -> "#" + number).toList(),
+            index -> mutation.apply(numbers.get(index)),
+            CallContext.current());
+    synchronized (jobs) {
+      jobs.put(job.id, job);
+    }
+    return run(job);
+  }
+
+  /** Runs the pending items of a job until they are done, time runs out or the call is cut off. */
+  private String run(Job job) {
+    Deque<Integer> pending = new ArrayDeque<>();
+    synchronized (job) {
+      if (job.running) {
+        return "Error: Bulk job " + job.id + " is still running";
+      }
+      job.running = true;
+      for (int i = 0; i < job.results.length; i++) {
+        if (job.results[i] == null) {
+          pending.add(i);
+        }
+      }
+    }
+    long deadline = clock.getAsLong() + settings.maxSeconds() * 1000L;
+    int workers = Math.min(settings.concurrency(), pending.size());
+    if (workers <= 1) {
+      work(job, pending, deadline);
+    } else {
+      try (var executor =
+          Executors.newFixedThreadPool(
+              workers, Thread.ofVirtual().name("bulk-mutation-", 0).factory())) {
+        for (int i = 0; i < workers; i++) {
+          executor.execute(() -> work(job, pending, deadline));
+        }
+      }
+    }
+    synchronized (job) {
+      job.running = false;
+    }
+    return JsonProjection.write(progress(job));
+  }
+
+  /** Takes items off the queue until it is empty, the deadline passes or the thread is stopped. */
+  private void work(Job job, Deque<Integer> pending, long deadline) {
+    var context =
+        new CallContext(job.context.clientId(), CallPriority.BULK, false, job.context.tool());
+    while (!Thread.currentThread().isInterrupted()) {
+      Integer index;
+      synchronized (pending) {
+        index = pending.pollFirst();
+      }
+      if (index == null) {
+        return;
+      }
+      for (int attempt = 0; ; attempt++) {
+        long start = reserveStart(deadline);
+        if (start < 0) {
+          return;
+        }
+        try {
+          long wait = start - clock.getAsLong();
+          if (wait > 0) {
+            sleeper.sleep(wait);
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+        String output = CallContext.callAs(context, () -> job.mutation.apply(index));
+        boolean failed = output == null || output.startsWith("Error:");
+        if (failed && THROTTLED.matcher(output == null ? "" : output).find()) {
+          if (attempt < settings.maxRetries()) {
+            slowDown(retryAfterMillis(output));
+            continue;
+          }
+        } else if (!failed) {
+          easeUp();
+        }
+        synchronized (job) {
+          job.results[index] =
+              new ItemResult(job.targets.get(index), failed ? "failed" : "done", firstLine(output));
+        }
+        break;
+      }
+    }
+  }
+
+  /** Takes the next start slot of the shared pacing, or returns -1 if it is past the deadline. */
+  private synchronized long reserveStart(long deadline) {
+    long start = Math.max(clock.getAsLong(), nextStartMillis);
+    if (start >= deadline) {
+      return -1;
+    }
+    nextStartMillis = start + pacingMillis;
+    return start;
+  }
+
+  /** Holds every start back until the wait is over and doubles the spacing. */
+  private synchronized void slowDown(long retryAfterMillis) {
+    pacingMillis = Math.min(Math.max(pacingMillis * 2, 1000), MAX_PACING_MILLIS);
+    nextStartMillis = Math.max(nextStartMillis, clock.getAsLong() + retryAfterMillis);
+  }
+
+  /** Brings the spacing a tenth of the way back towards the configured one. */
+  private synchronized void easeUp() {
+    pacingMillis = Math.max(settings.pacingMillis(), pacingMillis - pacingMillis / 10);
+  }
+
+  /** The spacing between mutation starts right now. */
+  synchronized long pacingMillis() {
+    return pacingMillis;
+  }
+
+  private Progress progress(Job job) {
+    var items = new ArrayList<ItemResult>();
+    int done = 0;
+    int failed = 0;
+    synchronized (job) {
+      for (int i = 0; i < job.results.length; i++) {
+        var result = job.results[i];
+        if (result == null) {
+          items.add(new ItemResult(job.targets.get(i), "pending", null));
+        } else {
+          items.add(result);
+          if (result.status().equals("done")) {
+            done++;
+          } else {
+            failed++;
+          }
+        }
+      }
+    }
+    int pending = items.size() - done - failed;
+    if (pending == 0) {
+      synchronized (jobs) {
+        jobs.remove(job.id);
+      }
+    }
+    return new Progress(
+        pending == 0 ? null : job.id,
+        job.operation,
+        done,
+        failed,
+        pending,
+        pacingMillis(),
+        items);
+  }
+
+  /** Jobs with items left, for tests. */
+  int unfinishedJobs() {
+    synchronized (jobs) {
+      return jobs.size();
+    }
+  }
+
+  static long retryAfterMillis(String output) {
+    var matcher = RETRY_AFTER.matcher(output);
+    return matcher.find()
+        ? Math.min(Long.parseLong(matcher.group(1)), 3600) * 1000
+        : DEFAULT_RETRY_AFTER_MILLIS;
+  }
+
+  private static String firstLine(String output) {
+    if (output == null || output.isBlank()) {
+      return null;
+    }
+    return output.strip().lines().findFirst().orElse(null);
+  }
+
+  private static byte[] jobIdBytes() {
+    byte[] bytes = new byte[12];
+    RANDOM.nextBytes(bytes);
+    return bytes;
+  }
+}
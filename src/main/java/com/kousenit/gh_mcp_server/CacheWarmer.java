@@ -0,0 +1,227 @@
+package com.kousenit.gh_mcp_server;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the first reads of a session warm for the configured hot repositories by refreshing their
+ * repository details, branches, workflows and open pull requests in the background.
+ *
+ * <p>The warmer calls the tool methods themselves, so it fills exactly the cache entries the tools
+ * read, at {@link CallPriority#PREFETCH} and with {@link CallContext#refresh()} set so entries that
+ * are about to expire are renewed rather than skipped. It spends at most {@code maxCallsPerHour}
+ * calls in any hour, stops for the cycle when the rate limit drops below {@code reserveRemaining},
+ * and pauses while interactive calls are waiting for a slot, giving up the cycle if they keep
+ * coming.
+ */
+@Component
+public class CacheWarmer {
+
+  private static final Logger logger = LoggerFactory.getLogger(CacheWarmer.class);
+
+  /** Client id the warming calls are scheduled under. */
+  static final String WARM_CLIENT = "cache-warmer";
+
+  private static final long HOUR_MILLIS = Duration.ofHours(1).toMillis();
+
+  /** Pauses for interactive traffic before the rest of a cycle is given up. */
+  private static final int MAX_PAUSES = 30;
+
+  /** Sentinel for an unknown remaining rate limit. */
+  static final int UNKNOWN = -1;
+
+  private final GitHubProperties.Prefetch settings;
+  private final List<BiConsumer<String, String>> resources;
+  private final IntSupplier queuedInteractive;
+  private final IntSupplier remainingRequests;
+  private final LongSupplier clock;
+  private final Duration pause;
+  private final long refreshSeconds;
+  private final Deque<Long> calls = new ArrayDeque<>();
+  private ScheduledExecutorService warmer;
+  private long warmed;
+  private long abandonedCycles;
+
+  @Autowired
+  public CacheWarmer(
+      GitHubProperties gitHubProperties,
+      GithubService service,
+      GhCommandExecutor executor,
+      GhCallScheduler scheduler) {
+    this(
+        gitHubProperties.prefetch(),
+        gitHubProperties.cache().ttlSeconds(),
+        service,
+        scheduler::queuedInteractive,
+        () -> remainingRequests(executor),
+        System::currentTimeMillis,
+        Duration.ofSeconds(1));
+  }
+
+  CacheWarmer(
+      GitHubProperties.Prefetch settings,
+      int cacheTtlSeconds,
+      GithubService service,
+      IntSupplier queuedInteractive,
+      IntSupplier remainingRequests,
+      LongSupplier clock,
+      Duration pause) {
+    this.settings = settings;
+    this.resources =
+        List.of(
+            service::getRepository,
+            service::listBranches,
+            service::listWorkflows,
+            (owner, repo) -> service.listPullRequests(owner, repo, "open"));
+    this.queuedInteractive = queuedInteractive;
+    this.remainingRequests = remainingRequests;
+    this.clock = clock;
+    this.pause = pause;
+    this.refreshSeconds = refreshSeconds(settings, cacheTtlSeconds, resources.size());
+  }
+
+  /**
+   * The configured interval, or else as often as the cache expires while the budget lasts for
+   * every resource of every repository.
+   */
+  static long refreshSeconds(
+      GitHubProperties.Prefetch settings, int cacheTtlSeconds, int resourcesPerRepository) {
+    if (settings.refreshSeconds() > 0) {
+      return settings.refreshSeconds();
+    }
+    long callsPerCycle = (long) settings.repositories().size() * resourcesPerRepository;
+    long budget = settings.maxCallsPerHour();
+    long budgeted = (3600 * callsPerCycle + budget - 1) / budget;
+    return Math.max(Math.max(cacheTtlSeconds, budgeted), 1);
+  }
+
+  @PostConstruct
+  void start() {
+    if (settings.repositories().isEmpty()) {
+      return;
+    }
+    warmer =
+        Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("cache-warmer").daemon().factory());
+    warmer.scheduleWithFixedDelay(this::warmSafely, 0, refreshSeconds, TimeUnit.SECONDS);
+    logger.info(
+        "Warming {} repositories every {} seconds", settings.repositories().size(), refreshSeconds);
+  }
+
+  @PreDestroy
+  void stop() {
+    if (warmer != null) {
+      warmer.shutdownNow();
+    }
+  }
+
+  /**
+   * Refreshes every resource of every hot repository once, unless the budget, the rate limit or
+   * interactive traffic stops it early.
+   *
+   * @return true if the whole cycle ran
+   */
+  boolean warm() throws InterruptedException {
+    int remaining = remainingRequests.getAsInt();
+    if (remaining != UNKNOWN && remaining < settings.reserveRemaining()) {
+      logger.debug("Not warming: {} API requests left", remaining);
+      return abandon();
+    }
+    for (String repository : settings.repositories()) {
+      String[] parts = repository.split("/", 2);
+      for (var resource : resources) {
+        if (!awaitQuiet() || !spend()) {
+          return abandon();
+        }
+        CallContext.callAs(
+            new CallContext(WARM_CLIENT, CallPriority.PREFETCH, true),
+            () -> {
+              resource.accept(parts[0], parts[1]);
+              return null;
+            });
+        warmed++;
+      }
+    }
+    return true;
+  }
+
+  /** Calls made since startup. */
+  long warmedCalls() {
+    return warmed;
+  }
+
+  /** Cycles cut short by the budget, the rate limit or interactive traffic. */
+  long abandonedCycles() {
+    return abandonedCycles;
+  }
+
+  private void warmSafely() {
+    try {
+      warm();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (RuntimeException e) {
+      logger.warn("Cache warming failed: {}", e.getMessage());
+    }
+  }
+
+  private boolean abandon() {
+    abandonedCycles++;
+    return false;
+  }
+
+  /** Waits while interactive calls are queued; false if they do not let up. */
+  private boolean awaitQuiet() throws InterruptedException {
+    for (int pauses = 0; queuedInteractive.getAsInt() > 0; pauses++) {
+      if (pauses == MAX_PAUSES) {
+        logger.debug("Not warming: interactive calls keep waiting");
+        return false;
+      }
+      Thread.sleep(pause.toMillis());
+    }
+    return true;
+  }
+
+  /** Takes one call from the rolling hourly budget, if any is left. */
+  private boolean spend() {
+    long now = clock.getAsLong();
+    while (!calls.isEmpty() && calls.peekFirst() <= now - HOUR_MILLIS) {
+      calls.removeFirst();
+    }
+    if (calls.size() >= settings.maxCallsPerHour()) {
+      logger.debug("Not warming: hourly budget of {} calls used", settings.maxCallsPerHour());
+      return false;
+    }
+    calls.addLast(now);
+    return true;
+  }
+
+  /** Remaining core API requests; asking costs nothing against the limit. */
+  private static int remainingRequests(GhCommandExecutor executor) {
+    var result =
+        CallContext.callAs(
+            new CallContext(WARM_CLIENT, CallPriority.PREFETCH),
+            () ->
+                executor.executeUncached(
+                    List.of("api", "rate_limit", "--jq", ".resources.core.remaining")));
+    try {
+      return result.isSuccess() ? Integer.parseInt(result.output().strip()) : UNKNOWN;
+    } catch (NumberFormatException e) {
+      return UNKNOWN;
+    }
+  }
+}
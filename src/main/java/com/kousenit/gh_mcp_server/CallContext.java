@@ -0,0 +1,72 @@
+package com.kousenit.gh_mcp_server;
+
+import java.util.function.Supplier;
+
+/**
+ * Who a gh call is made for. It is set on the calling thread at the tool entry point and read by
+ * the scheduler, so tool methods do not have to pass it along.
+ *
+ * @param clientId the MCP session the call belongs to, which is its fair-queuing lane
+ * @param priority an explicit scheduling class, or null to derive it from the command
+ * @param refresh whether reads must skip fresh cached results and update them, as when warming
+ * @param tool the MCP tool the call was made by, or null when it was not made by a tool
+ */
+public record CallContext(String clientId, CallPriority priority, boolean refresh, String tool) {
+
+  /** Client id used when a call does not come through an MCP session, e.g. in STDIO mode. */
+  public static final String DEFAULT_CLIENT = "local";
+
+  private static final ThreadLocal<CallContext> CURRENT = new ThreadLocal<>();
+
+  public CallContext {
+    if (clientId == null || clientId.isBlank()) {
+      clientId = DEFAULT_CLIENT;
+    }
+  }
+
+  public CallContext(String clientId, CallPriority priority, boolean refresh) {
+    this(clientId, priority, refresh, null);
+  }
+
+  public CallContext(String clientId, CallPriority priority) {
+    this(clientId, priority, false);
+  }
+
+  /**
+   * The client id of an MCP session: the session id, so every session gets a lane of its own even
+   * when several run the same client application, prefixed with the client's name as a label.
+   */
+  public static String clientId(String clientName, String sessionId) {
+    boolean named = clientName != null && !clientName.isBlank();
+    if (sessionId == null || sessionId.isBlank()) {
+      return named ? clientName : DEFAULT_CLIENT;
+    }
+    return named ? clientName + "#" + sessionId : sessionId;
+  }
+
+  /** The context of the current thread, or the default client with no explicit priority. */
+  public static CallContext current() {
+    var context = CURRENT.get();
+    return context != null ? context : new CallContext(DEFAULT_CLIENT, null);
+  }
+
+  /** This context for a read that must not be answered from the cache. */
+  public CallContext refreshing() {
+    return new CallContext(clientId, priority, true, tool);
+  }
+
+  /** Runs an action with the given context and restores the previous one afterwards. */
+  public static <T> T callAs(CallContext context, Supplier<T> action) {
+    var previous = CURRENT.get();
+    CURRENT.set(context);
+    try {
+      return action.get();
+    } finally {
+      if (previous == null) {
+        CURRENT.remove();
+      } else {
+        CURRENT.set(previous);
+      }
+    }
+  }
+}
@@ -0,0 +1,21 @@
+package com.kousenit.gh_mcp_server;
+
+/** Scheduling classes for gh calls, with the relative share of slots each gets under contention. */
+public enum CallPriority {
+  /** A single-item tool call an agent is waiting on. */
+  INTERACTIVE(8),
+  /** Listings, searches and paginated reads that can take a while anyway. */
+  BULK(3),
+  /** Background work nobody is waiting on, such as cache warming. */
+  PREFETCH(1);
+
+  private final int weight;
+
+  CallPriority(int weight) {
+    this.weight = weight;
+  }
+
+  public int weight() {
+    return weight;
+  }
+}
@@ -0,0 +1,438 @@
+package com.kousenit.gh_mcp_server;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Waits for workflow runs and pull request checks to finish, with one shared poller per watched
+ * run or pull request however many callers are waiting on it.
+ *
+ * <p>Each poller makes conditional requests with the ETag of its previous answer, so polls that
+ * find nothing new are 304s that do not count against the rate limit. The interval starts at
+ * {@code minPollSeconds}, grows while nothing changes (and faster while a run is still queued),
+ * drops back after a change, and never undercuts the {@code X-Poll-Interval} GitHub asks for. Every
+ * state a poller sees is handed to all of its waiters; the poller stops once the watched target is
+ * done or nobody is waiting any more.
+ */
+@Component
+public class CiWatcher {
+
+  /** Client id the polls are scheduled under. */
+  static final String WATCH_CLIENT = "ci-watch";
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private static final Set<String> QUEUED_PHASES =
+      Set.of("queued", "waiting", "requested", "pending");
+
+  /** Consecutive failed polls after which waiters get the error. */
+  private static final int MAX_FAILURES = 3;
+
+  private static final String RUN_JQ =
+      "{id, name, status, conclusion, event, headBranch: .head_branch, headSha: .head_sha,"
+          + " url: .html_url, updatedAt: .updated_at}";
+
+  private static final String CHECKS_JQ =
+      "{total: .total_count, checks: [.check_runs[] | {name, status, conclusion}]}";
+
+  private static final String STATUS_JQ =
+      "{state, total: .total_count, statuses: [.statuses[] | {context, state}]}";
+
+  /** Check runs read per request; a head commit with more is read page by page. */
+  private static final int CHECKS_PER_PAGE = 100;
+
+  /**
+   * What is watched: a workflow run, or the check runs and commit statuses on a pull request's
+   * head commit.
+   */
+  private record Target(boolean pullRequest, String repository, long id) {
+
+    String describe() {
+      return (pullRequest ? "pull request " : "run ") + repository + "#" + id;
+    }
+  }
+
+  private final Duration minInterval;
+  private final Duration maxInterval;
+  private final Duration maxWait;
+  private final Function<List<String>, GithubCommand> gh;
+  private final Map<Target, Poller> pollers = new ConcurrentHashMap<>();
+
+  @Autowired
+  public CiWatcher(GitHubProperties gitHubProperties, GhCommandExecutor executor) {
+    this(
+        Duration.ofSeconds(gitHubProperties.watch().minPollSeconds()),
+        Duration.ofSeconds(gitHubProperties.watch().maxPollSeconds()),
+        Duration.ofSeconds(gitHubProperties.watch().maxWaitSeconds()),
+        executor::executeUncached);
+  }
+
+  CiWatcher(
+      Duration minInterval,
+      Duration maxInterval,
+      Duration maxWait,
+      Function<List<String>, GithubCommand> gh) {
+    this.minInterval = minInterval;
+    this.maxInterval = maxInterval;
+    this.maxWait = maxWait;
+    this.gh = gh;
+  }
+
+  /**
+   * Waits until a workflow run has completed or the timeout expires.
+   *
+   * @param timeoutSeconds how long to wait; 0 or more than {@code maxWaitSeconds} waits that long
+   * @return the latest state and every state seen while waiting, as JSON
+   */
+  public String watchRun(String owner, String repo, long runId, int timeoutSeconds) {
+    return watch(new Target(false, owner + "/" + repo, runId), timeoutSeconds);
+  }
+
+  /**
+   * Waits until every check run and commit status on a pull request's head commit has completed
+   * or the timeout expires. A push to the pull request restarts the watch on the new head.
+   */
+  public String watchPullRequestChecks(
+      String owner, String repo, int prNumber, int timeoutSeconds) {
+    return watch(new Target(true, owner + "/" + repo, prNumber), timeoutSeconds);
+  }
+
+  /**
+   * Makes every poller of a repository poll now instead of at its next interval, for when a
+   * webhook reports that one of its runs or checks changed.
+   */
+  public void nudge(String repository) {
+    pollers.forEach(
+        (target, poller) -> {
+          if (target.repository().equalsIgnoreCase(repository)) {
+            poller.nudge();
+          }
+        });
+  }
+
+  /** Number of targets being polled right now. */
+  int activePollers() {
+    return pollers.size();
+  }
+
+  private String watch(Target target, int timeoutSeconds) {
+    long timeoutMillis =
+        timeoutSeconds <= 0
+            ? maxWait.toMillis()
+            : Math.min(Duration.ofSeconds(timeoutSeconds).toMillis(), maxWait.toMillis());
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    var started = new Poller[1];
+    var poller =
+        pollers.compute(
+            target,
+            (ignored, existing) -> {
+              if (existing != null && existing.join()) {
+                return existing;
+              }
+              started[0] = new Poller(target);
+              started[0].join();
+              return started[0];
+            });
+    if (started[0] != null) {
+      Thread.ofVirtual().name("ci-watch").start(poller);
+    }
+    int from = poller.seen();
+    try {
+      return poller.await(from, deadline);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return "Error: Watch interrupted";
+    } finally {
+      poller.leave();
+    }
+  }
+
+  /**
+   * Next poll interval: back to the minimum after a change, otherwise half again as long up to the
+   * maximum; at least three times the minimum while queued; never below the server's hint.
+   */
+  static Duration nextInterval(
+      Duration current,
+      boolean changed,
+      String phase,
+      int serverSeconds,
+      Duration min,
+      Duration max) {
+    Duration next = changed ? min : current.plus(current.dividedBy(2));
+    if (QUEUED_PHASES.contains(phase)) {
+      next = maxOf(next, min.multipliedBy(3));
+    }
+    if (next.compareTo(max) > 0) {
+      next = max;
+    }
+    return maxOf(next, Duration.ofSeconds(serverSeconds));
+  }
+
+  private static Duration maxOf(Duration a, Duration b) {
+    return a.compareTo(b) >= 0 ? a : b;
+  }
+
+  /** One poll's outcome. */
+  private record Observation(JsonNode state, String phase, boolean terminal, int serverSeconds) {}
+
+  /** Polls one target for as long as anyone waits on it. */
+  private final class Poller implements Runnable {
+
+    private final Target target;
+    private final Map<String, String> etags = new HashMap<>();
+    private final Map<String, JsonNode> bodies = new HashMap<>();
+    private final List<ObjectNode> changes = new ArrayList<>();
+    private JsonNode state;
+    private String headSha;
+    private boolean terminal;
+    private String error;
+    private int waiters;
+    private int polls;
+    private boolean stopped;
+    private boolean nudged;
+
+    Poller(Target target) {
+      this.target = target;
+    }
+
+    synchronized boolean join() {
+      if (stopped) {
+        return false;
+      }
+      waiters++;
+      return true;
+    }
+
+    synchronized void leave() {
+      waiters--;
+      notifyAll();
+    }
+
+    synchronized void nudge() {
+      nudged = true;
+      notifyAll();
+    }
+
+    /** Index of the latest state, so a late waiter's history starts from what it first sees. */
+    synchronized int seen() {
+      return Math.max(0, changes.size() - 1);
+    }
+
+    @Override
+    public void run() {
+      Duration interval = minInterval;
+      int failures = 0;
+      try {
+        while (!stopped) {
+          Observation observation = null;
+          String failure = null;
+          try {
+            observation =
+                CallContext.callAs(
+                    new CallContext(WATCH_CLIENT, CallPriority.BULK),
+                    () -> target.pullRequest() ? pollChecks() : pollRun());
+          } catch (IllegalStateException e) {
+            failure = e.getMessage();
+          }
+          synchronized (this) {
+            polls++;
+            boolean changed = false;
+            if (observation != null) {
+              failures = 0;
+              changed = !observation.state().equals(state);
+              if (changed) {
+                state = observation.state();
+                var change = MAPPER.createObjectNode();
+                change.put("observedAt", System.currentTimeMillis());
+                change.set("state", state);
+                changes.add(change);
+              }
+              terminal = observation.terminal();
+            } else if (++failures >= MAX_FAILURES) {
+              error = failure;
+            }
+            if (terminal || error != null || waiters == 0) {
+              stopped = true;
+              break;
+            }
+            notifyAll();
+            interval =
+                nextInterval(
+                    interval,
+                    changed,
+                    observation != null ? observation.phase() : "",
+                    observation != null ? observation.serverSeconds() : 0,
+                    minInterval,
+                    maxInterval);
+            // Woken early when the last waiter leaves or a webhook reports activity
+            long wakeAt = System.currentTimeMillis() + interval.toMillis();
+            for (long left = interval.toMillis();
+                left > 0 && waiters > 0 && !nudged;
+                left = wakeAt - System.currentTimeMillis()) {
+              wait(left);
+            }
+            nudged = false;
+            stopped = waiters == 0;
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        synchronized (this) {
+          error = "Watch interrupted";
+          stopped = true;
+        }
+      }
+      // Unregistered before the waiters wake, so a caller who returns sees no active poller. Not
+      // under this poller's lock: watch() holds the map's lock while it joins a poller
+      pollers.remove(target, this);
+      synchronized (this) {
+        notifyAll();
+      }
+    }
+
+    synchronized String await(int from, long deadline) throws InterruptedException {
+      for (long left = deadline - System.currentTimeMillis();
+          !terminal && error == null && left > 0;
+          left = deadline - System.currentTimeMillis()) {
+        wait(left);
+      }
+      if (error != null && state == null) {
+        return "Error: %s".formatted(error);
+      }
+      var result = MAPPER.createObjectNode();
+      result.put("target", target.describe());
+      result.put("terminal", terminal);
+      result.put("timedOut", !terminal && error == null);
+      if (error != null) {
+        result.put("error", error);
+      }
+      result.put("polls", polls);
+      result.set("state", state);
+      result
+          .putArray("changes")
+          .addAll(changes.subList(Math.min(from, changes.size()), changes.size()));
+      return result.toString();
+    }
+
+    private Observation pollRun() {
+      var run =
+          read(
+              "run",
+              "repos/%s/actions/runs/%d".formatted(target.repository(), target.id()),
+              RUN_JQ);
+      String status = run.body().path("status").asText();
+      return new Observation(run.body(), status, status.equals("completed"), run.serverSeconds());
+    }
+
+    private Observation pollChecks() {
+      var pull =
+          read(
+              "pull",
+              "repos/%s/pulls/%d".formatted(target.repository(), target.id()),
+              "{headSha: .head.sha, state, merged}");
+      String sha = pull.body().path("headSha").asText();
+      if (!sha.equals(headSha)) {
+        // A push restarts the checks; the ones remembered for the old head no longer apply
+        etags.keySet().removeIf(name -> !name.equals("pull"));
+        bodies.keySet().removeIf(name -> !name.equals("pull"));
+        headSha = sha;
+      }
+      int serverSeconds = pull.serverSeconds();
+      // The total counts every check run, a page only up to CHECKS_PER_PAGE of them
+      var checks = MAPPER.createArrayNode();
+      int total;
+      int pageSize;
+      int page = 0;
+      do {
+        page++;
+        var checkPage =
+            read(
+                "checks-" + page,
+                "repos/%s/commits/%s/check-runs?per_page=%d&page=%d"
+                    .formatted(target.repository(), sha, CHECKS_PER_PAGE, page),
+                CHECKS_JQ);
+        serverSeconds = Math.max(serverSeconds, checkPage.serverSeconds());
+        total = checkPage.body().path("total").asInt();
+        pageSize = checkPage.body().path("checks").size();
+        checkPage.body().path("checks").forEach(checks::add);
+      } while (pageSize > 0 && checks.size() < total);
+      // Integrations that predate the checks API report commit statuses instead, which gate
+      // merging just the same; the combined state is pending while any of them is
+      var status =
+          read(
+              "status",
+              "repos/%s/commits/%s/status?per_page=%d"
+                  .formatted(target.repository(), sha, CHECKS_PER_PAGE),
+              STATUS_JQ);
+      serverSeconds = Math.max(serverSeconds, status.serverSeconds());
+      int statusTotal = status.body().path("total").asInt();
+      boolean statusesDone =
+          statusTotal == 0 || !status.body().path("state").asText().equals("pending");
+      int completed = 0;
+      boolean running = false;
+      for (JsonNode check : checks) {
+        String checkStatus = check.path("status").asText();
+        completed += checkStatus.equals("completed") ? 1 : 0;
+        running |= checkStatus.equals("in_progress");
+      }
+      int pendingStatuses = 0;
+      for (JsonNode commitStatus : status.body().path("statuses")) {
+        pendingStatuses += commitStatus.path("state").asText().equals("pending") ? 1 : 0;
+      }
+      var state = MAPPER.createObjectNode();
+      state.put("headSha", sha);
+      state.put("pullRequestState", pull.body().path("state").asText());
+      state.put("total", total + statusTotal);
+      state.put("pending", total - completed + pendingStatuses);
+      state.set("checks", checks);
+      state.set("statuses", status.body().path("statuses"));
+      // Nothing left to wait for once every check run and commit status has finished or the pull
+      // request is closed
+      boolean done =
+          (total + statusTotal > 0 && completed == total && statusesDone)
+              || !pull.body().path("state").asText().equals("open");
+      String phase = done ? "completed" : running ? "in_progress" : "queued";
+      return new Observation(state, phase, done, serverSeconds);
+    }
+
+    private record Read(JsonNode body, int serverSeconds) {}
+
+    /**
+     * A conditional read; a 304 answers with the body remembered from the last full answer.
+     *
+     * @throws IllegalStateException if gh fails
+     */
+    private Read read(String name, String path, String jq) {
+      var args =
+          ConditionalReads.withHeaders(List.of("api", path, "--jq", jq), etags.get(name));
+      var raw = gh.apply(args);
+      var response = ConditionalReads.parse(raw.output());
+      if (response.status() == 304 && bodies.containsKey(name)) {
+        return new Read(bodies.get(name), response.pollIntervalSeconds());
+      }
+      if (!raw.isSuccess()) {
+        throw new IllegalStateException(raw.error());
+      }
+      try {
+        var body = MAPPER.readTree(response.body());
+        etags.put(name, response.etag());
+        bodies.put(name, body);
+        return new Read(body, response.pollIntervalSeconds());
+      } catch (JsonProcessingException e) {
+        throw new IllegalStateException("Unexpected response - " + e.getOriginalMessage());
+      }
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package com.kousenit.gh_mcp_server;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/** Utility class for classifying gh argument vectors without running them. */
+public final class CommandUtils {
+
+  private static final Set<String> READ_ONLY_SUBCOMMANDS =
+      Set.of("list", "view", "status", "diff", "checks");
+
+  private static final Set<String> FIELD_FLAGS =
+      Set.of("-f", "-F", "--field", "--raw-field", "--input");
+
+  private CommandUtils() {
+    // Utility class - prevent instantiation
+  }
+
+  /**
+   * Determines whether a gh command only reads data, so its result may be cached and shared
+   * between identical concurrent calls.
+   *
+   * @param args the arguments passed to gh
+   * @return true for reads, false for anything that may change state on GitHub
+   */
+  public static boolean isReadOnly(List<String> args) {
+    if (args.isEmpty()) {
+      return false;
+    }
+    return switch (args.getFirst()) {
+      case "api" -> isReadOnlyApiCall(args);
+      case "search" -> true;
+      case "issue", "pr", "run", "workflow", "release", "repo" ->
+          args.size() > 1 && READ_ONLY_SUBCOMMANDS.contains(args.get(1));
+      default -> false;
+    };
+  }
+
+  private static boolean isReadOnlyApiCall(List<String> args) {
+    // GraphQL always travels as a POST with fields; only the operation type tells reads apart
+    if (args.size() > 1 && args.get(1).equals("graphql")) {
+      return args.stream().noneMatch(arg -> arg.contains("mutation"));
+    }
+    for (int i = 1; i < args.size(); i++) {
+      String arg = args.get(i);
+      if ((arg.equals("--method") || arg.equals("-X")) && i + 1 < args.size()) {
+        if (!args.get(i + 1).equalsIgnoreCase("GET")) {
+          return false;
+        }
+      }
+      // gh api switches to POST as soon as fields are given, unless GET was requested
+      if (FIELD_FLAGS.contains(arg) && !args.contains("GET")) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Extracts the {@code owner/repo} a command targets, from {@code --repo}, a {@code repos/...}
+   * API path, a {@code repo view} argument, or the {@code nameWithOwner} or {@code owner} and
+   * {@code name} variables of a GraphQL call.
+   *
+   * @param args the arguments passed to gh
+   * @return the repository, or empty for commands not bound to one repository
+   */
+  public static Optional<String> repository(List<String> args) {
+    for (int i = 0; i < args.size(); i++) {
+      String arg = args.get(i);
+      if ((arg.equals("--repo") || arg.equals("-R")) && i + 1 < args.size()) {
+        return Optional.of(args.get(i + 1));
+      }
+      if (arg.startsWith("repos/")) {
+        String[] parts = arg.split("[/?]", 4);
+        if (parts.length >= 3) {
+          return Optional.of(parts[1] + "/" + parts[2]);
+        }
+      }
+    }
+    if (args.size() > 2 && args.get(0).equals("repo") && args.get(2).contains("/")) {
+      return Optional.of(args.get(2));
+    }
+    if (args.size() > 1 && args.get(0).equals("api") && args.get(1).equals("graphql")) {
+      return graphqlRepository(args);
+    }
+    return Optional.empty();
+  }
+
+  private static Optional<String> graphqlRepository(List<String> args) {
+    String owner = null;
+    String name = null;
+    for (int i = 2; i + 1 < args.size(); i++) {
+      if (!FIELD_FLAGS.contains(args.get(i))) {
+        continue;
+      }
+      String field = args.get(++i);
+      if (field.startsWith("nameWithOwner=") && field.indexOf('/') > 0) {
+        return Optional.of(field.substring("nameWithOwner=".length()));
+      } else if (field.startsWith("owner=")) {
+        owner = field.substring("owner=".length());
+      } else if (field.startsWith("name=")) {
+        name = field.substring("name=".length());
+      }
+    }
+    return owner != null && name != null ? Optional.of(owner + "/" + name) : Optional.empty();
+  }
+}
@@ -0,0 +1,35 @@
+package com.kousenit.gh_mcp_server;
+
+import com.fasterxml.jackson.core.JsonParser;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * A commit as the tools return it.
+ *
+ * @param sha the abbreviated SHA
+ * @param author the author's name as recorded in the commit, not a GitHub login
+ * @param date the author date
+ */
+public record Commit(String sha, String message, String author, String date) {
+
+  /** Projects each commit of {@code repos/{owner}/{repo}/commits} onto the record's fields. */
+  static final String JQ =
+      "{sha: .sha[0:7], message: .commit.message, author: .commit.author.name, date: .commit.author.date}";
+
+  private static final Map<String, JsonProjection.Reader<?>> READERS =
+      Map.of(
+          "sha", JsonProjection::text,
+          "message", JsonProjection::text,
+          "author", JsonProjection::name,
+          "date", JsonProjection::text);
+
+  static Commit read(JsonParser parser) throws IOException {
+    var values = JsonProjection.object(parser, READERS);
+    return new Commit(
+        (String) values.get("sha"),
+        (String) values.get("message"),
+        (String) values.get("author"),
+        (String) values.get("date"));
+  }
+}
@@ -0,0 +1,95 @@
+package com.kousenit.gh_mcp_server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Utility class for running {@code gh api} reads with response headers, so their ETag can be
+ * cached and later sent back as {@code If-None-Match}. GitHub answers an unchanged resource with
+ * 304 Not Modified, which does not count against the rate limit and carries no body.
+ */
+public final class ConditionalReads {
+
+  /** Flags that change the shape of the output so that headers cannot be split off reliably. */
+  private static final Set<String> INCOMPATIBLE_FLAGS =
+      Set.of("--paginate", "-i", "--include", "--silent", "--verbose");
+
+  /**
+   * Status line, ETag, poll interval and body of a response printed with {@code --include}.
+   *
+   * @param pollIntervalSeconds GitHub's {@code X-Poll-Interval} hint; 0 if it sent none
+   */
+  public record Response(int status, String etag, int pollIntervalSeconds, String body) {}
+
+  private ConditionalReads() {
+    // Utility class - prevent instantiation
+  }
+
+  /** Whether the command is a single-page REST read whose headers can be captured. */
+  public static boolean isRevalidatable(List<String> args) {
+    return args.size() > 1
+        && args.getFirst().equals("api")
+        && !args.get(1).equals("graphql")
+        && CommandUtils.isReadOnly(args)
+        && args.stream().noneMatch(INCOMPATIBLE_FLAGS::contains);
+  }
+
+  /** Adds {@code --include} and, when an ETag is known, the matching conditional header. */
+  public static List<String> withHeaders(List<String> args, String etag) {
+    var conditional = new ArrayList<>(args);
+    conditional.add("--include");
+    if (etag != null) {
+      conditional.add("-H");
+      conditional.add("If-None-Match: " + etag);
+    }
+    return conditional;
+  }
+
+  /**
+   * Splits the headers gh printed for {@code --include} off the body. Output that does not start
+   * with a status line is returned as the body with status 0.
+   */
+  public static Response parse(String output) {
+    if (output == null || !output.startsWith("HTTP/")) {
+      return new Response(0, null, 0, output);
+    }
+    int end = output.indexOf("\r\n\r\n");
+    int bodyStart = end + 4;
+    if (end < 0) {
+      end = output.indexOf("\n\n");
+      bodyStart = end + 2;
+    }
+    if (end < 0) {
+      end = output.length();
+      bodyStart = output.length();
+    }
+    String[] lines = output.substring(0, end).split("\r?\n");
+    String[] statusLine = lines[0].split(" ", 3);
+    int status = statusLine.length > 1 ? parseNumber(statusLine[1]) : 0;
+    String etag = null;
+    int pollInterval = 0;
+    for (int i = 1; i < lines.length; i++) {
+      int colon = lines[i].indexOf(':');
+      if (colon <= 0) {
+        continue;
+      }
+      String name = lines[i].substring(0, colon).trim();
+      String value = lines[i].substring(colon + 1).trim();
+      if (name.equalsIgnoreCase("etag")) {
+        etag = value;
+      } else if (name.equalsIgnoreCase("x-poll-interval")) {
+        pollInterval = Math.max(0, parseNumber(value));
+      }
+    }
+    return new Response(status, etag, pollInterval, output.substring(bodyStart));
+  }
+
+  private static int parseNumber(String number) {
+    try {
+      return Integer.parseInt(number);
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package com.kousenit.gh_mcp_server;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.modelcontextprotocol.server.McpSyncServerExchange;
+import java.util.Arrays;
+import java.util.List;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.ToolCallbackProvider;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+/**
+ * Wraps a tool so that every gh call it makes runs under a {@link CallContext} naming the MCP
+ * session that invoked it. Each session is a fair-queuing lane of its own, so one busy agent cannot
+ * starve sibling sessions of the same client application; the name the client reported during
+ * initialization only labels the lane. Results are kept within the tool's {@link OutputBudget}.
+ */
+public class ContextualToolCallback implements ToolCallback {
+
+  /** Key under which Spring AI passes the MCP exchange in the tool context. */
+  static final String EXCHANGE_KEY = "exchange";
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final ToolCallback delegate;
+  private final OutputBudget budget;
+
+  public ContextualToolCallback(ToolCallback delegate, OutputBudget budget) {
+    this.delegate = delegate;
+    this.budget = budget;
+  }
+
+  /** Wraps every tool of a provider. */
+  public static ToolCallbackProvider wrap(ToolCallbackProvider provider, OutputBudget budget) {
+    List<ToolCallback> wrapped =
+        Arrays.stream(provider.getToolCallbacks())
+            .<ToolCallback>map(tool -> new ContextualToolCallback(tool, budget))
+            .toList();
+    return ToolCallbackProvider.from(wrapped);
+  }
+
+  @Override
+  public ToolDefinition getToolDefinition() {
+    return delegate.getToolDefinition();
+  }
+
+  @Override
+  public ToolMetadata getToolMetadata() {
+    return delegate.getToolMetadata();
+  }
+
+  @Override
+  public String call(String toolInput) {
+    var context = new CallContext(null, null, false, getToolDefinition().name());
+    return budgeted(CallContext.callAs(context, () -> delegate.call(toolInput)));
+  }
+
+  @Override
+  public String call(String toolInput, ToolContext toolContext) {
+    var context =
+        new CallContext(clientId(toolContext), null, false, getToolDefinition().name());
+    return budgeted(CallContext.callAs(context, () -> delegate.call(toolInput, toolContext)));
+  }
+
+  private String budgeted(String result) {
+    String tool = getToolDefinition().name();
+    if (result == null || !result.startsWith("\"")) {
+      return budget.apply(tool, result);
+    }
+    // Spring AI hands back String results encoded as JSON strings
+    try {
+      String text = MAPPER.readValue(result, String.class);
+      String kept = budget.apply(tool, text);
+      return kept.equals(text) ? result : MAPPER.writeValueAsString(kept);
+    } catch (JsonProcessingException e) {
+      return result;
+    }
+  }
+
+  static String clientId(ToolContext toolContext) {
+    if (toolContext != null
+        && toolContext.getContext().get(EXCHANGE_KEY) instanceof McpSyncServerExchange exchange) {
+      return clientId(exchange);
+    }
+    return CallContext.DEFAULT_CLIENT;
+  }
+
+  /** The fair-queuing lane of the exchange's session; see {@link CallContext#clientId}. */
+  static String clientId(McpSyncServerExchange exchange) {
+    if (exchange == null) {
+      return CallContext.DEFAULT_CLIENT;
+    }
+    var clientInfo = exchange.getClientInfo();
+    return CallContext.clientId(
+        clientInfo != null ? clientInfo.name() : null, exchange.sessionId());
+  }
+}
@@ -0,0 +1,236 @@
+package com.kousenit.gh_mcp_server;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * On-disk copy of the response cache, so a restarted server starts warm.
+ *
+ * <p>The file is memory-mapped and only its record headers are read when it is opened; result
+ * bodies stay in the mapping until a record is first asked for. Each record carries the content
+ * SHA-256 of its output, which is checked on decode, so a torn or corrupted file only loses the
+ * affected records. Not thread-safe; {@link GhResponseCache} guards it.
+ */
+final class GhCacheSnapshot {
+
+  private static final Logger logger = LoggerFactory.getLogger(GhCacheSnapshot.class);
+
+  private static final int MAGIC = 0x47484331; // "GHC1"
+
+  /** Where one record's fields and bodies sit in the mapping. */
+  private record Slot(
+      long storedAtMillis,
+      long expiresAtMillis,
+      int exitCode,
+      String etag,
+      String sha256,
+      int outputOffset,
+      int outputLength,
+      int errorLength) {}
+
+  private final ByteBuffer mapping;
+  private final Map<List<String>, Slot> slots;
+
+  private GhCacheSnapshot(ByteBuffer mapping, Map<List<String>, Slot> slots) {
+    this.mapping = mapping;
+    this.slots = slots;
+  }
+
+  static GhCacheSnapshot empty() {
+    return new GhCacheSnapshot(ByteBuffer.allocate(0), new HashMap<>());
+  }
+
+  /** Maps the file and indexes its records; a missing or unreadable file yields an empty one. */
+  static GhCacheSnapshot open(Path file) {
+    if (!Files.isRegularFile(file)) {
+      return empty();
+    }
+    try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      var mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return new GhCacheSnapshot(mapping, index(mapping));
+    } catch (IOException | RuntimeException e) {
+      logger.warn("Ignoring unreadable cache snapshot {}: {}", file, e.getMessage());
+      return empty();
+    }
+  }
+
+  private static Map<List<String>, Slot> index(ByteBuffer buffer) {
+    var slots = new HashMap<List<String>, Slot>();
+    if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+      return slots;
+    }
+    int count = buffer.getInt();
+    try {
+      for (int i = 0; i < count; i++) {
+        int argCount = buffer.getInt();
+        var args = new ArrayList<String>(argCount);
+        for (int a = 0; a < argCount; a++) {
+          args.add(readString(buffer));
+        }
+        long storedAt = buffer.getLong();
+        long expiresAt = buffer.getLong();
+        int exitCode = buffer.getInt();
+        String etag = readString(buffer);
+        String sha256 = readString(buffer);
+        int outputLength = buffer.getInt();
+        int errorLength = buffer.getInt();
+        int outputOffset = buffer.position();
+        buffer.position(outputOffset + outputLength + errorLength);
+        slots.put(
+            List.copyOf(args),
+            new Slot(
+                storedAt,
+                expiresAt,
+                exitCode,
+                etag,
+                sha256,
+                outputOffset,
+                outputLength,
+                errorLength));
+      }
+    } catch (BufferUnderflowException
+        | IllegalArgumentException
+        | NegativeArraySizeException e) {
+      // A file cut short by a crash keeps the records that were complete
+      logger.warn("Cache snapshot is truncated; keeping {} records", slots.size());
+    }
+    return slots;
+  }
+
+  int size() {
+    return slots.size();
+  }
+
+  /** Decodes and removes the record for the arguments; records failing their SHA are dropped. */
+  Optional<GhResponseCache.Entry> take(List<String> args) {
+    var slot = slots.remove(args);
+    if (slot == null) {
+      return Optional.empty();
+    }
+    String output = decode(slot.outputOffset(), slot.outputLength());
+    String error = decode(slot.outputOffset() + slot.outputLength(), slot.errorLength());
+    if (!GhResponseCache.Entry.sha256(output).equals(slot.sha256())) {
+      logger.warn("Dropping cache snapshot record with a content hash mismatch");
+      return Optional.empty();
+    }
+    return Optional.of(
+        new GhResponseCache.Entry(
+            new GithubCommand(output, error, slot.exitCode()),
+            slot.storedAtMillis(),
+            slot.expiresAtMillis(),
+            slot.etag(),
+            slot.sha256()));
+  }
+
+  /** Decodes and removes every remaining record. */
+  Map<List<String>, GhResponseCache.Entry> takeAll() {
+    var all = new HashMap<List<String>, GhResponseCache.Entry>();
+    for (var args : List.copyOf(slots.keySet())) {
+      take(args).ifPresent(entry -> all.put(args, entry));
+    }
+    return all;
+  }
+
+  void removeIf(Predicate<List<String>> filter) {
+    slots.keySet().removeIf(filter);
+  }
+
+  void clear() {
+    slots.clear();
+  }
+
+  /**
+   * Writes the entries to a temporary file next to the target and moves it into place, so
+   * readers never see a partial file. The file is readable by its owner only.
+   */
+  static void write(Path file, Map<List<String>, GhResponseCache.Entry> entries)
+      throws IOException {
+    Files.createDirectories(file.getParent());
+    Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+    try {
+      if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+        Files.setPosixFilePermissions(temp, PosixFilePermissions.fromString("rw-------"));
+      }
+      try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(entries.size());
+        for (var record : entries.entrySet()) {
+          var entry = record.getValue();
+          out.writeInt(record.getKey().size());
+          for (String arg : record.getKey()) {
+            writeString(out, arg);
+          }
+          out.writeLong(entry.storedAtMillis());
+          out.writeLong(entry.expiresAtMillis());
+          out.writeInt(entry.result().exitCode());
+          writeString(out, entry.etag());
+          writeString(out, entry.sha256());
+          byte[] output = bytes(entry.result().output());
+          byte[] error = bytes(entry.result().error());
+          out.writeInt(output.length);
+          out.writeInt(error.length);
+          out.write(output);
+          out.write(error);
+        }
+      }
+      try {
+        Files.move(
+            temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  private String decode(int offset, int length) {
+    byte[] bytes = new byte[length];
+    mapping.get(offset, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static byte[] bytes(String value) {
+    return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] bytes = bytes(value);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,353 @@
+package com.kousenit.gh_mcp_server;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Decides which waiting gh call gets the next free process slot.
+ *
+ * <p>Calls are queued per {@link CallPriority} class and, within a class, per client, with clients
+ * served round-robin so one agent's backlog cannot crowd out another's. Classes share the slots by
+ * weight using stride scheduling, and bulk and prefetch work each have a concurrency cap, so some
+ * slots always stay available for interactive calls. A call that has waited longer than the
+ * starvation limit is served next regardless of its class.
+ */
+@Component
+public class GhCallScheduler {
+
+  private static final long STRIDE_SCALE = 1_000_000L;
+
+  /** A call waiting for, or holding, a slot. */
+  public static final class Ticket {
+    private final String clientId;
+    private final long enqueuedNanos;
+    private final Condition signal;
+    private CallPriority priority;
+    private boolean granted;
+    private boolean withdrawn;
+
+    private Ticket(String clientId, CallPriority priority, long enqueuedNanos, Condition signal) {
+      this.clientId = clientId;
+      this.priority = priority;
+      this.enqueuedNanos = enqueuedNanos;
+      this.signal = signal;
+    }
+  }
+
+  /** Running and queued calls per class. */
+  public record Stats(Map<CallPriority, Integer> running, Map<CallPriority, Integer> queued) {}
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final int totalSlots;
+  private final Map<CallPriority, Integer> caps = new EnumMap<>(CallPriority.class);
+  private final Map<CallPriority, ClassQueue> queues = new EnumMap<>(CallPriority.class);
+  private final Map<CallPriority, Integer> running = new EnumMap<>(CallPriority.class);
+  private final long starvationNanos;
+  private final LongSupplier clock;
+  private long virtualTime;
+  private int runningTotal;
+
+  @Autowired
+  public GhCallScheduler(GitHubProperties gitHubProperties) {
+    this(
+        gitHubProperties.maxConcurrentCommands(),
+        gitHubProperties.scheduler(),
+        System::nanoTime);
+  }
+
+  GhCallScheduler(int totalSlots, GitHubProperties.Scheduler settings, LongSupplier clock) {
+    this.totalSlots = totalSlots;
+    this.starvationNanos = TimeUnit.MILLISECONDS.toNanos(settings.starvationMillis());
+    this.clock = clock;
+    caps.put(CallPriority.INTERACTIVE, totalSlots);
+    caps.put(CallPriority.BULK, cap(settings.bulkMaxConcurrent(), totalSlots / 2));
+    caps.put(CallPriority.PREFETCH, cap(settings.prefetchMaxConcurrent(), totalSlots / 4));
+    for (CallPriority priority : CallPriority.values()) {
+      queues.put(priority, new ClassQueue());
+      running.put(priority, 0);
+    }
+  }
+
+  private int cap(int configured, int derived) {
+    return Math.min(totalSlots, configured > 0 ? configured : Math.max(1, derived));
+  }
+
+  /**
+   * Derives a scheduling class from the command when the caller did not set one: listings,
+   * searches and paginated calls are bulk work, everything else is interactive.
+   */
+  public static CallPriority classify(List<String> args) {
+    if (args.contains("--paginate") || (!args.isEmpty() && args.getFirst().equals("search"))) {
+      return CallPriority.BULK;
+    }
+    return args.size() > 1 && args.get(1).equals("list")
+        ? CallPriority.BULK
+        : CallPriority.INTERACTIVE;
+  }
+
+  /** Queues a call; follow with {@link #await(Ticket)}. */
+  public Ticket enqueue(String clientId, CallPriority priority) {
+    lock.lock();
+    try {
+      var ticket = new Ticket(clientId, priority, clock.getAsLong(), lock.newCondition());
+      activate(priority).add(ticket);
+      dispatch();
+      return ticket;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Blocks until the ticket is granted a slot or withdrawn.
+   *
+   * @return true if a slot was granted and must be released, false if the ticket was withdrawn
+   * @throws InterruptedException if interrupted while queued; the ticket is withdrawn first
+   */
+  public boolean await(Ticket ticket) throws InterruptedException {
+    lock.lock();
+    try {
+      while (!ticket.granted && !ticket.withdrawn) {
+        try {
+          ticket.signal.await();
+        } catch (InterruptedException e) {
+          withdrawLocked(ticket);
+          throw e;
+        }
+      }
+      return ticket.granted;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Convenience for {@link #enqueue} followed by {@link #await}. */
+  public Ticket acquire(String clientId, CallPriority priority) throws InterruptedException {
+    var ticket = enqueue(clientId, priority);
+    await(ticket);
+    return ticket;
+  }
+
+  /**
+   * Grants a slot only if one is free for the class and no call is waiting for it, for optional
+   * work such as a hedged read that should never delay a queued call.
+   *
+   * @return a granted ticket that must be released, or null if there is no spare slot
+   */
+  public Ticket tryAcquire(String clientId, CallPriority priority) {
+    lock.lock();
+    try {
+      boolean waiting = queues.values().stream().anyMatch(queue -> queue.size > 0);
+      if (waiting || runningTotal >= totalSlots || running.get(priority) >= caps.get(priority)) {
+        return null;
+      }
+      var ticket = new Ticket(clientId, priority, clock.getAsLong(), lock.newCondition());
+      ticket.granted = true;
+      running.merge(priority, 1, Integer::sum);
+      runningTotal++;
+      return ticket;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Moves a queued ticket to a more urgent class, e.g. when an interactive call joins it. */
+  public void promote(Ticket ticket, CallPriority priority) {
+    lock.lock();
+    try {
+      if (ticket.granted || ticket.withdrawn || priority.ordinal() >= ticket.priority.ordinal()) {
+        return;
+      }
+      queues.get(ticket.priority).remove(ticket);
+      ticket.priority = priority;
+      activate(priority).add(ticket);
+      dispatch();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Gives up a ticket that is still queued; a granted ticket must be released instead. */
+  public void withdraw(Ticket ticket) {
+    lock.lock();
+    try {
+      if (!ticket.granted) {
+        withdrawLocked(ticket);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Returns a granted slot. */
+  public void release(Ticket ticket) {
+    lock.lock();
+    try {
+      if (ticket.granted) {
+        ticket.granted = false;
+        ticket.withdrawn = true;
+        running.merge(ticket.priority, -1, Integer::sum);
+        runningTotal--;
+        dispatch();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  boolean isGranted(Ticket ticket) {
+    lock.lock();
+    try {
+      return ticket.granted;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Number of interactive calls waiting for a slot right now. */
+  public int queuedInteractive() {
+    lock.lock();
+    try {
+      return queues.get(CallPriority.INTERACTIVE).size;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public Stats stats() {
+    lock.lock();
+    try {
+      var queued = new EnumMap<CallPriority, Integer>(CallPriority.class);
+      queues.forEach((priority, queue) -> queued.put(priority, queue.size));
+      return new Stats(new EnumMap<>(running), queued);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void withdrawLocked(Ticket ticket) {
+    if (ticket.granted) {
+      release(ticket);
+    } else if (!ticket.withdrawn) {
+      ticket.withdrawn = true;
+      queues.get(ticket.priority).remove(ticket);
+      ticket.signal.signal();
+    }
+  }
+
+  /**
+   * Returns the queue of a class about to receive a ticket. A class returning from idle starts at
+   * the current virtual time instead of cashing in credit it would have built up doing nothing.
+   */
+  private ClassQueue activate(CallPriority priority) {
+    var queue = queues.get(priority);
+    if (queue.size == 0) {
+      queue.pass = Math.max(queue.pass, virtualTime);
+    }
+    return queue;
+  }
+
+  private void dispatch() {
+    while (runningTotal < totalSlots) {
+      var priority = nextClass();
+      if (priority == null) {
+        return;
+      }
+      var ticket = queues.get(priority).poll();
+      ticket.granted = true;
+      running.merge(priority, 1, Integer::sum);
+      runningTotal++;
+      ticket.signal.signal();
+    }
+  }
+
+  private CallPriority nextClass() {
+    long now = clock.getAsLong();
+    CallPriority starving = null;
+    long oldest = Long.MAX_VALUE;
+    CallPriority next = null;
+    long nextFinish = Long.MAX_VALUE;
+    for (CallPriority priority : CallPriority.values()) {
+      var queue = queues.get(priority);
+      if (queue.size == 0 || running.get(priority) >= caps.get(priority)) {
+        continue;
+      }
+      long enqueued = queue.oldestEnqueuedNanos();
+      if (now - enqueued >= starvationNanos && enqueued < oldest) {
+        starving = priority;
+        oldest = enqueued;
+      }
+      // Serve the class whose next call would finish first in virtual time
+      long finish = queue.pass + STRIDE_SCALE / priority.weight();
+      if (finish < nextFinish) {
+        next = priority;
+        nextFinish = finish;
+      }
+    }
+    var chosen = starving != null ? starving : next;
+    if (chosen != null) {
+      var queue = queues.get(chosen);
+      virtualTime = queue.pass;
+      queue.pass += STRIDE_SCALE / chosen.weight();
+    }
+    return chosen;
+  }
+
+  /** Tickets of one class, queued per client and served round-robin across clients. */
+  private static final class ClassQueue {
+    private final Map<String, ArrayDeque<Ticket>> byClient = new HashMap<>();
+    private final ArrayDeque<String> rotation = new ArrayDeque<>();
+    private long pass;
+    private int size;
+
+    void add(Ticket ticket) {
+      var tickets = byClient.computeIfAbsent(ticket.clientId, ignored -> new ArrayDeque<>());
+      if (tickets.isEmpty()) {
+        rotation.addLast(ticket.clientId);
+      }
+      tickets.addLast(ticket);
+      size++;
+    }
+
+    Ticket poll() {
+      String clientId = rotation.pollFirst();
+      var tickets = byClient.get(clientId);
+      var ticket = tickets.pollFirst();
+      if (tickets.isEmpty()) {
+        byClient.remove(clientId);
+      } else {
+        rotation.addLast(clientId);
+      }
+      size--;
+      return ticket;
+    }
+
+    void remove(Ticket ticket) {
+      var tickets = byClient.get(ticket.clientId);
+      if (tickets != null && tickets.remove(ticket)) {
+        size--;
+        if (tickets.isEmpty()) {
+          byClient.remove(ticket.clientId);
+          rotation.remove(ticket.clientId);
+        }
+      }
+    }
+
+    long oldestEnqueuedNanos() {
+      long oldest = Long.MAX_VALUE;
+      for (var tickets : byClient.values()) {
+        oldest = Math.min(oldest, tickets.getFirst().enqueuedNanos);
+      }
+      return oldest;
+    }
+  }
+}
@@ -0,0 +1,274 @@
+package com.kousenit.gh_mcp_server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records gh traffic to a cassette file and plays it back without running gh.
+ *
+ * <p>Two kinds of records are written, one JSON object per line in a gzip stream: {@code call}
+ * records for every command a tool asked the executor to run, with its arrival time, and {@code
+ * spawn} records for every gh process actually started, with its result and duration. Replay
+ * serves spawns from the cassette, so the cache, single-flight and scheduling layers above still
+ * run for real; {@link GhCassetteDriver} reissues the recorded calls to drive them. Streamed
+ * commands are not recorded, so the executor refuses them in replay.
+ */
+@Component
+public class GhCassette {
+
+  /** Record kind for commands requested by tools. */
+  public static final String CALL = "call";
+
+  /** Record kind for gh processes that were started. */
+  public static final String SPAWN = "spawn";
+
+  private static final Logger logger = LoggerFactory.getLogger(GhCassette.class);
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private static final String CONDITIONAL_HEADER = "If-None-Match:";
+
+  /**
+   * One recorded command.
+   *
+   * @param kind {@link #CALL} or {@link #SPAWN}
+   * @param args the arguments passed to gh
+   * @param atMillis when the command started, relative to the start of the recording
+   * @param nanos how long it took
+   */
+  public record Recording(
+      String kind,
+      List<String> args,
+      long atMillis,
+      long nanos,
+      String output,
+      String error,
+      int exitCode) {
+
+    public GithubCommand result() {
+      return new GithubCommand(output, error, exitCode);
+    }
+  }
+
+  private final GitHubProperties.Cassette settings;
+  private final Path path;
+  private final long originNanos = System.nanoTime();
+  private final ReentrantLock lock = new ReentrantLock();
+  private final List<Recording> calls = new ArrayList<>();
+  private final Map<List<String>, ArrayDeque<Recording>> spawns = new HashMap<>();
+  private Writer writer;
+
+  @Autowired
+  public GhCassette(GitHubProperties gitHubProperties) {
+    this(gitHubProperties.cassette());
+  }
+
+  GhCassette(GitHubProperties.Cassette settings) {
+    this.settings = settings;
+    this.path = Path.of(settings.path());
+    if (isReplaying()) {
+      for (Recording recording : read(path)) {
+        if (recording.kind().equals(CALL)) {
+          calls.add(recording);
+        } else {
+          spawns
+              .computeIfAbsent(recording.args(), ignored -> new ArrayDeque<>())
+              .add(recording);
+        }
+      }
+    }
+  }
+
+  public boolean isRecording() {
+    return settings.mode() == GitHubProperties.Cassette.Mode.RECORD;
+  }
+
+  public boolean isReplaying() {
+    return settings.mode() == GitHubProperties.Cassette.Mode.REPLAY;
+  }
+
+  /** Appends a record when recording; does nothing otherwise. */
+  public void record(String kind, List<String> args, long startNanos, GithubCommand result) {
+    if (!isRecording()) {
+      return;
+    }
+    long now = System.nanoTime();
+    var recording =
+        new Recording(
+            kind,
+            List.copyOf(args),
+            TimeUnit.NANOSECONDS.toMillis(startNanos - originNanos),
+            now - startNanos,
+            result.output(),
+            result.error(),
+            result.exitCode());
+    lock.lock();
+    try {
+      if (writer == null) {
+        if (path.getParent() != null) {
+          Files.createDirectories(path.getParent());
+        }
+        // Sync-flushing gzip keeps every completed record readable if the process dies
+        writer =
+            new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(path), true), StandardCharsets.UTF_8);
+      }
+      writer.write(MAPPER.writeValueAsString(recording));
+      writer.write('\n');
+      writer.flush();
+    } catch (IOException e) {
+      // A broken recording must not fail the tool call that is being recorded
+      logger.warn("Could not write cassette {}: {}", path, e.getMessage());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Serves the recorded result for a gh invocation. Repeated invocations get successive
+   * recordings, and the last one again once they run out. A conditional header added by newer
+   * caching code is ignored when no recording has it.
+   *
+   * @param cancellation completes when nobody needs the result any more; may be null
+   */
+  public GithubCommand replay(List<String> args, CompletableFuture<Void> cancellation) {
+    Recording recording;
+    lock.lock();
+    try {
+      var recordings = spawns.get(args);
+      if (recordings == null) {
+        recordings = spawns.get(withoutConditionalHeader(args));
+      }
+      if (recordings == null) {
+        return new GithubCommand(
+            "", "No recorded result for: gh %s".formatted(String.join(" ", args)), 1);
+      }
+      recording = recordings.size() > 1 ? recordings.poll() : recordings.peek();
+    } finally {
+      lock.unlock();
+    }
+    if (settings.replayLatency() && !waitOut(Duration.ofNanos(recording.nanos()), cancellation)) {
+      return new GithubCommand("", "Command cancelled", -1);
+    }
+    return recording.result();
+  }
+
+  /** Tool calls loaded from the cassette in replay mode, in arrival order, for the driver. */
+  public List<Recording> calls() {
+    lock.lock();
+    try {
+      return List.copyOf(calls);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @PreDestroy
+  public void close() {
+    lock.lock();
+    try {
+      if (writer != null) {
+        writer.close();
+        writer = null;
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not close cassette " + path, e);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Reads every complete record of a cassette file. */
+  public static List<Recording> read(Path path) {
+    var recordings = new ArrayList<Recording>();
+    try {
+      for (String line : decompress(path).split("\n")) {
+        if (!line.isBlank()) {
+          recordings.add(MAPPER.readValue(line, Recording.class));
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not read cassette " + path, e);
+    }
+    return recordings;
+  }
+
+  /**
+   * Decompresses the whole file. A recording that was never closed has no gzip trailer, so the
+   * end of the data is where the stream runs out.
+   */
+  private static String decompress(Path path) throws IOException {
+    var content = new ByteArrayOutputStream();
+    try (var in = new GZIPInputStream(Files.newInputStream(path))) {
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) > 0) {
+        content.write(buffer, 0, read);
+      }
+    } catch (EOFException e) {
+      // Truncated stream: keep what was decompressed, minus any partial last line
+      int end = content.toString(StandardCharsets.UTF_8).lastIndexOf('\n');
+      return end < 0 ? "" : content.toString(StandardCharsets.UTF_8).substring(0, end);
+    }
+    return content.toString(StandardCharsets.UTF_8);
+  }
+
+  private static List<String> withoutConditionalHeader(List<String> args) {
+    var stripped = new ArrayList<String>(args.size());
+    for (int i = 0; i < args.size(); i++) {
+      if (args.get(i).equals("-H")
+          && i + 1 < args.size()
+          && args.get(i + 1).startsWith(CONDITIONAL_HEADER)) {
+        i++;
+      } else {
+        stripped.add(args.get(i));
+      }
+    }
+    return stripped;
+  }
+
+  private static boolean waitOut(Duration latency, CompletableFuture<Void> cancellation) {
+    try {
+      if (cancellation == null) {
+        Thread.sleep(latency);
+      } else {
+        cancellation.get(latency.toNanos(), TimeUnit.NANOSECONDS);
+        return false;
+      }
+    } catch (TimeoutException e) {
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    } catch (ExecutionException e) {
+      return false;
+    }
+    return true;
+  }
+}
@@ -0,0 +1,153 @@
+package com.kousenit.gh_mcp_server;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reruns the tool calls recorded in a cassette against the executor, so recorded production
+ * traffic can be replayed offline.
+ *
+ * <p>Each recorded call is issued on a virtual thread at its recorded arrival time, relative to
+ * the start of the run, so concurrent calls overlap as they did when recorded. The executor serves
+ * them through its cache, single-flight and scheduling layers with gh results taken from the
+ * cassette, and every result is compared with the recorded one. The report gives the calls whose
+ * results differ and the latency percentiles, to measure a change to those layers against the
+ * same traffic. With {@code driveCalls} set in {@code REPLAY} mode, a run starts with the server
+ * and its report is logged.
+ */
+@Component
+public class GhCassetteDriver {
+
+  private static final Logger logger = LoggerFactory.getLogger(GhCassetteDriver.class);
+
+  /**
+   * The outcome of one run.
+   *
+   * @param calls the number of calls issued
+   * @param mismatched the arguments of the calls whose result differs from the recorded one
+   * @param p50Millis median time the executor took per call
+   * @param p99Millis 99th percentile of the time the executor took per call
+   * @param elapsedMillis how long the whole run took
+   */
+  public record Report(
+      int calls,
+      List<List<String>> mismatched,
+      long p50Millis,
+      long p99Millis,
+      long elapsedMillis) {}
+
+  private final GitHubProperties.Cassette settings;
+  private final GhCassette cassette;
+  private final Function<List<String>, GithubCommand> executor;
+  private Thread driver;
+
+  @Autowired
+  public GhCassetteDriver(
+      GitHubProperties gitHubProperties, GhCassette cassette, GhCommandExecutor executor) {
+    this(gitHubProperties.cassette(), cassette, executor::execute);
+  }
+
+  GhCassetteDriver(
+      GitHubProperties.Cassette settings,
+      GhCassette cassette,
+      Function<List<String>, GithubCommand> executor) {
+    this.settings = settings;
+    this.cassette = cassette;
+    this.executor = executor;
+  }
+
+  @PostConstruct
+  void start() {
+    if (!settings.driveCalls() || !cassette.isReplaying()) {
+      return;
+    }
+    driver =
+        Thread.ofPlatform()
+            .name("cassette-driver")
+            .daemon()
+            .start(
+                () -> {
+                  try {
+                    var report = run();
+                    logger.info(
+                        "Replayed {} calls in {} ms: {} differed, p50 {} ms, p99 {} ms",
+                        report.calls(),
+                        report.elapsedMillis(),
+                        report.mismatched().size(),
+                        report.p50Millis(),
+                        report.p99Millis());
+                    report.mismatched().forEach(args -> logger.info("Differed: gh {}", args));
+                  } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                  }
+                });
+  }
+
+  @PreDestroy
+  void stop() {
+    if (driver != null) {
+      driver.interrupt();
+    }
+  }
+
+  /**
+   * Issues every recorded call at its recorded arrival time and waits for all of them.
+   *
+   * @throws InterruptedException if interrupted; calls not yet issued are skipped
+   */
+  public Report run() throws InterruptedException {
+    var calls = cassette.calls();
+    var results = new GithubCommand[calls.size()];
+    var nanos = new long[calls.size()];
+    long start = System.nanoTime();
+    try (var threads = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (int i = 0; i < calls.size(); i++) {
+        var call = calls.get(i);
+        long wait = call.atMillis() - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (wait > 0) {
+          Thread.sleep(wait);
+        }
+        int index = i;
+        threads.submit(
+            () -> {
+              long issued = System.nanoTime();
+              results[index] = executor.apply(call.args());
+              nanos[index] = System.nanoTime() - issued;
+            });
+      }
+    }
+    long elapsed = System.nanoTime() - start;
+
+    var mismatched = new ArrayList<List<String>>();
+    for (int i = 0; i < calls.size(); i++) {
+      if (!calls.get(i).result().equals(results[i])) {
+        mismatched.add(calls.get(i).args());
+      }
+    }
+    Arrays.sort(nanos);
+    return new Report(
+        calls.size(),
+        List.copyOf(mismatched),
+        percentileMillis(nanos, 50),
+        percentileMillis(nanos, 99),
+        TimeUnit.NANOSECONDS.toMillis(elapsed));
+  }
+
+  private static long percentileMillis(long[] sorted, int percentile) {
+    if (sorted.length == 0) {
+      return 0;
+    }
+    int rank = (int) Math.ceil(sorted.length * percentile / 100.0);
+    return TimeUnit.NANOSECONDS.toMillis(sorted[Math.max(rank, 1) - 1]);
+  }
+}
@@ -0,0 +1,425 @@
+package com.kousenit.gh_mcp_server;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs gh commands for every tool in the process. Read-only results are cached, identical reads
+ * that are already running are joined instead of started again, and the {@link GhCallScheduler}
+ * decides which waiting call gets the next of a process-wide number of gh slots. In the shared
+ * HTTP server mode all of this is shared by every connected client.
+ *
+ * <p>A caller that gives up on a shared read (its thread is interrupted) only leaves that read;
+ * the gh process is cancelled once the last interested caller has left.
+ *
+ * <p>REST reads through {@code gh api} are run with their response headers so the ETag can be
+ * cached; once such an entry expires, it is revalidated with a conditional request.
+ */
+@Component
+public class GhCommandExecutor {
+
+  private final GhProcessLauncher launcher;
+  private final GhTokenProvider tokenProvider;
+  private final GhResponseCache cache;
+  private final GhCallScheduler scheduler;
+  private final GhCassette cassette;
+  private final GhTimeouts timeouts;
+  private final Map<List<String>, Flight> inFlight = new ConcurrentHashMap<>();
+  private final LongAdder coalesced = new LongAdder();
+  private final LongAdder revalidated = new LongAdder();
+
+  public GhCommandExecutor(GitHubProperties gitHubProperties) {
+    this(gitHubProperties, new GhProcessLauncher(gitHubProperties));
+  }
+
+  private GhCommandExecutor(GitHubProperties gitHubProperties, GhProcessLauncher launcher) {
+    this(
+        gitHubProperties,
+        launcher,
+        new GhTokenProvider(launcher),
+        new GhResponseCache(gitHubProperties),
+        new GhCallScheduler(gitHubProperties),
+        new GhCassette(gitHubProperties));
+  }
+
+  public GhCommandExecutor(
+      GitHubProperties gitHubProperties,
+      GhProcessLauncher launcher,
+      GhTokenProvider tokenProvider,
+      GhResponseCache cache,
+      GhCallScheduler scheduler,
+      GhCassette cassette) {
+    this(
+        gitHubProperties,
+        launcher,
+        tokenProvider,
+        cache,
+        scheduler,
+        cassette,
+        new GhTimeouts(gitHubProperties));
+  }
+
+  @Autowired
+  public GhCommandExecutor(
+      GitHubProperties gitHubProperties,
+      GhProcessLauncher launcher,
+      GhTokenProvider tokenProvider,
+      GhResponseCache cache,
+      GhCallScheduler scheduler,
+      GhCassette cassette,
+      GhTimeouts timeouts) {
+    this.launcher = launcher;
+    this.tokenProvider = tokenProvider;
+    this.cache = cache;
+    this.scheduler = scheduler;
+    this.cassette = cassette;
+    this.timeouts = timeouts;
+  }
+
+  public GithubCommand execute(String... args) {
+    return execute(Arrays.asList(args));
+  }
+
+  /**
+   * Runs a gh command, serving reads from the cache or from an identical call in progress.
+   *
+   * @param args the arguments passed to gh
+   * @return the command result
+   */
+  public GithubCommand execute(List<String> args) {
+    long start = System.nanoTime();
+    var result = dispatch(args);
+    cassette.record(GhCassette.CALL, args, start, result);
+    return result;
+  }
+
+  private GithubCommand dispatch(List<String> args) {
+    var context = CallContext.current();
+    var priority =
+        context.priority() != null ? context.priority() : GhCallScheduler.classify(args);
+    if (!CommandUtils.isReadOnly(args)) {
+      var result = runGated(args, context.clientId(), priority, null);
+      if (result.isSuccess()) {
+        CommandUtils.repository(args).ifPresent(cache::invalidateRepository);
+      }
+      return result;
+    }
+
+    var key = List.copyOf(args);
+    // A refresh still joins an identical read in progress, which is as fresh as it gets
+    var cached = context.refresh() ? Optional.<GithubCommand>empty() : cache.get(key);
+    if (cached.isPresent()) {
+      return cached.get();
+    }
+    return joinFlight(key, context.clientId(), priority);
+  }
+
+  /**
+   * Runs a read without the cache and without joining identical reads in progress, for callers
+   * such as pollers that track freshness themselves (for example with their own ETags).
+   */
+  public GithubCommand executeUncached(List<String> args) {
+    long start = System.nanoTime();
+    var context = CallContext.current();
+    var priority =
+        context.priority() != null ? context.priority() : GhCallScheduler.classify(args);
+    var result = runGated(args, context.clientId(), priority, null);
+    cassette.record(GhCassette.CALL, args, start, result);
+    return result;
+  }
+
+  /**
+   * Runs a gh command whose stdout is consumed by a reader as it arrives, for downloads too large
+   * to capture, and for uploads too slow for the command timeout. It waits for a scheduler slot
+   * like any call, but is neither cached, joined with identical calls, nor recorded to a cassette,
+   * so it fails in replay mode; one that changes a repository drops the repository's cached reads,
+   * as other mutations do.
+   *
+   * @param timeout how long the whole download may take
+   */
+  public GithubCommand stream(
+      List<String> args, Duration timeout, GhProcessLauncher.OutputReader reader) {
+    if (cassette.isReplaying()) {
+      return new GithubCommand(
+          "",
+          "Streamed commands are not recorded, so cannot be replayed: gh %s"
+              .formatted(String.join(" ", args)),
+          1);
+    }
+    var context = CallContext.current();
+    var priority = context.priority() != null ? context.priority() : CallPriority.BULK;
+    var result =
+        runGated(
+            context.clientId(),
+            priority,
+            null,
+            environment -> launcher.run(args, environment, timeout, null, reader));
+    if (result.isSuccess() && !CommandUtils.isReadOnly(args)) {
+      CommandUtils.repository(args).ifPresent(cache::invalidateRepository);
+    }
+    return result;
+  }
+
+  /** Number of reads that were answered by a call already in progress. */
+  public long coalescedCalls() {
+    return coalesced.sum();
+  }
+
+  /** Number of expired cache entries GitHub confirmed unchanged with a 304. */
+  public long revalidatedCalls() {
+    return revalidated.sum();
+  }
+
+  private GithubCommand joinFlight(List<String> key, String clientId, CallPriority priority) {
+    var started = new boolean[1];
+    var flight =
+        inFlight.compute(
+            key,
+            (ignored, existing) -> {
+              if (existing != null && existing.join(priority)) {
+                return existing;
+              }
+              started[0] = true;
+              var created = new Flight(priority);
+              created.join(priority);
+              return created;
+            });
+
+    if (started[0]) {
+      // The read runs for whoever started it, so its timeout is the one of that caller's tool
+      var context = CallContext.current();
+      Thread.ofVirtual()
+          .name("gh-read")
+          .start(
+              () ->
+                  CallContext.callAs(
+                      context,
+                      () -> {
+                        fly(key, clientId, flight);
+                        return null;
+                      }));
+    } else {
+      coalesced.increment();
+    }
+
+    try {
+      return flight.result.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return new GithubCommand(
+          "", "Command execution interrupted - %s".formatted(e.getMessage()), -1);
+    } catch (ExecutionException e) {
+      return new GithubCommand(
+          "", "Failed to execute command - %s".formatted(e.getCause().getMessage()), -1);
+    } finally {
+      flight.leave();
+    }
+  }
+
+  private void fly(List<String> key, String clientId, Flight flight) {
+    GithubCommand result = null;
+    RuntimeException failure = null;
+    try {
+      if (ConditionalReads.isRevalidatable(key)) {
+        result = revalidate(key, clientId, flight);
+      } else {
+        result = runGated(key, clientId, flight.priority(), flight);
+        if (!flight.cancellation.isDone()) {
+          cache.put(key, result);
+        }
+      }
+    } catch (RuntimeException e) {
+      failure = e;
+    } finally {
+      // Unregister first, so a caller arriving after completion starts a fresh read
+      inFlight.remove(key, flight);
+    }
+    if (failure != null) {
+      flight.result.completeExceptionally(failure);
+    } else {
+      flight.result.complete(result);
+    }
+  }
+
+  /**
+   * Runs a REST read with its headers captured. If an expired entry with an ETag is cached, the
+   * request is made conditional and a 304 answer renews that entry instead of downloading again.
+   */
+  private GithubCommand revalidate(List<String> key, String clientId, Flight flight) {
+    var stale = cache.lookup(key).filter(entry -> entry.etag() != null);
+    var raw =
+        runGated(
+            ConditionalReads.withHeaders(key, stale.map(GhResponseCache.Entry::etag).orElse(null)),
+            clientId,
+            flight.priority(),
+            flight);
+    var response = ConditionalReads.parse(raw.output());
+    // gh may exit non-zero on a 304 because there is no body to filter; the status line decides
+    if (response.status() == 304 && stale.isPresent()) {
+      cache.renew(key, stale.get());
+      revalidated.increment();
+      return stale.get().result();
+    }
+    var result = new GithubCommand(response.body(), raw.error(), raw.exitCode());
+    if (!flight.cancellation.isDone()) {
+      cache.put(key, result, response.etag());
+    }
+    return result;
+  }
+
+  private GithubCommand runGated(
+      List<String> args, String clientId, CallPriority priority, Flight flight) {
+    var cancellation = flight != null ? flight.cancellation : null;
+    return runGated(
+        clientId, priority, flight, environment -> spawn(args, environment, cancellation));
+  }
+
+  /**
+   * Waits for a scheduler slot and runs a process in it with the current token.
+   *
+   * @param process starts gh with the given environment and returns its result
+   */
+  private GithubCommand runGated(
+      String clientId,
+      CallPriority priority,
+      Flight flight,
+      Function<Map<String, String>, GithubCommand> process) {
+    var ticket = scheduler.enqueue(clientId, priority);
+    var cancellation = flight != null ? flight.cancellation : null;
+    if (flight != null && !flight.attach(ticket)) {
+      scheduler.withdraw(ticket);
+      scheduler.release(ticket);
+      return new GithubCommand("", "Command cancelled", -1);
+    }
+    try {
+      if (!scheduler.await(ticket)) {
+        return new GithubCommand("", "Command cancelled", -1);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return new GithubCommand(
+          "", "Command execution interrupted - %s".formatted(e.getMessage()), -1);
+    }
+    try {
+      if (cancellation != null && cancellation.isDone()) {
+        return new GithubCommand("", "Command cancelled", -1);
+      }
+      var token = tokenProvider.token();
+      var result = process.apply(tokenProvider.environment());
+
+      // A rejected cached token is re-resolved once; nothing happened on GitHub's side yet
+      if (GhTokenProvider.isUnauthorized(result)
+          && tokenProvider.refreshAfterUnauthorized(token.orElse(null))) {
+        result = process.apply(tokenProvider.environment());
+      }
+      return result;
+    } finally {
+      scheduler.release(ticket);
+    }
+  }
+
+  /**
+   * Starts the gh process under the deadline {@link GhTimeouts} sets, or serves its result from
+   * the cassette in replay mode. Tests override this to avoid spawning anything.
+   */
+  protected GithubCommand spawn(
+      List<String> args, Map<String, String> environment, CompletableFuture<Void> cancellation) {
+    if (cassette.isReplaying()) {
+      return cassette.replay(args, cancellation);
+    }
+    var context = CallContext.current();
+    var priority =
+        context.priority() != null ? context.priority() : GhCallScheduler.classify(args);
+    long start = System.nanoTime();
+    var result =
+        timeouts.run(
+            args,
+            context.tool(),
+            cancellation,
+            (timeout, attemptCancellation) ->
+                launcher.run(args, environment, timeout, attemptCancellation),
+            () -> hedge(args, environment, context.clientId(), priority));
+    cassette.record(GhCassette.SPAWN, args, start, result);
+    return result;
+  }
+
+  /** An attempt holding a spare scheduler slot of its own, or null if none is free. */
+  private GhTimeouts.Attempt hedge(
+      List<String> args, Map<String, String> environment, String clientId, CallPriority priority) {
+    var ticket = scheduler.tryAcquire(clientId, priority);
+    if (ticket == null) {
+      return null;
+    }
+    return (timeout, cancellation) -> {
+      try {
+        return launcher.run(args, environment, timeout, cancellation);
+      } finally {
+        scheduler.release(ticket);
+      }
+    };
+  }
+
+  /**
+   * One running read and the callers waiting for it. The read is scheduled at the most urgent
+   * priority of any of its callers, so an interactive call joining a queued bulk read promotes it.
+   */
+  private final class Flight {
+    private final CompletableFuture<GithubCommand> result = new CompletableFuture<>();
+    private final CompletableFuture<Void> cancellation = new CompletableFuture<>();
+    private CallPriority priority;
+    private GhCallScheduler.Ticket ticket;
+    private int waiters;
+
+    Flight(CallPriority priority) {
+      this.priority = priority;
+    }
+
+    /** Registers a waiter; fails if the flight was already abandoned by everyone else. */
+    synchronized boolean join(CallPriority callerPriority) {
+      if (cancellation.isDone()) {
+        return false;
+      }
+      waiters++;
+      if (callerPriority.ordinal() < priority.ordinal()) {
+        priority = callerPriority;
+        if (ticket != null) {
+          scheduler.promote(ticket, callerPriority);
+        }
+      }
+      return true;
+    }
+
+    synchronized CallPriority priority() {
+      return priority;
+    }
+
+    /** Links the queued scheduler ticket; fails if every caller left before it was queued. */
+    synchronized boolean attach(GhCallScheduler.Ticket queued) {
+      ticket = queued;
+      if (cancellation.isDone()) {
+        return false;
+      }
+      scheduler.promote(queued, priority);
+      return true;
+    }
+
+    synchronized void leave() {
+      if (--waiters == 0 && !result.isDone()) {
+        cancellation.complete(null);
+        if (ticket != null) {
+          scheduler.withdraw(ticket);
+        }
+      }
+    }
+  }
+}
@@ -1,20 +1,51 @@
 package com.kousenit.gh_mcp_server;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.modelcontextprotocol.json.jackson.JacksonMcpJsonMapper;
+import io.modelcontextprotocol.server.McpServerFeatures;
+import io.modelcontextprotocol.server.transport.StdioServerTransportProvider;
+import java.util.List;
 import org.springframework.ai.tool.ToolCallbackProvider;
 import org.springframework.ai.tool.method.MethodToolCallbackProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 
 @SpringBootApplication
 public class GhMcpServerApplication {
 
   public static void main(String[] args) {
+    GhProcessLauncher.preferFastLaunchMechanism();
     SpringApplication.run(GhMcpServerApplication.class, args);
   }
 
   @Bean
-  public ToolCallbackProvider githubTools(GithubService githubService) {
-    return MethodToolCallbackProvider.builder().toolObjects(githubService).build();
+  public ToolCallbackProvider githubTools(
+      GithubService githubService, BulkMutations bulkMutations, OutputBudget outputBudget) {
+    return ContextualToolCallback.wrap(
+        MethodToolCallbackProvider.builder()
+            .toolObjects(githubService, bulkMutations, outputBudget)
+            .build(),
+        outputBudget);
+  }
+
+  @Bean
+  public List<McpServerFeatures.SyncResourceTemplateSpecification> githubResources(
+      GhResources resources) {
+    return resources.specifications();
+  }
+
+  /**
+   * The stdio transport Spring AI would otherwise create, with resource subscriptions added. Over
+   * HTTP the transport is left as it is, so subscriptions are neither advertised nor answered.
+   */
+  @Bean
+  @ConditionalOnProperty(prefix = "spring.ai.mcp.server", name = "stdio", havingValue = "true")
+  public SubscribingTransportProvider subscribingStdioTransport(
+      @Qualifier("mcpServerObjectMapper") ObjectMapper objectMapper, GhResources resources) {
+    return new SubscribingTransportProvider(
+        new StdioServerTransportProvider(new JacksonMcpJsonMapper(objectMapper)), resources);
   }
 }
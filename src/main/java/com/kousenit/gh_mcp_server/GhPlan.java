@@ -0,0 +1,139 @@
+package com.kousenit.gh_mcp_server;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * A tool's GitHub calls declared as a graph of dependent steps, run with as much parallelism as
+ * the dependencies allow.
+ *
+ * <p>Each step is a gh call, or a few, that turns the results of the steps it depends on into a
+ * result of its own. A step starts as soon as its dependencies are done, on a virtual thread under
+ * the caller's {@link CallContext}, so independent reads overlap while a chain such as resolving a
+ * ref SHA and then creating a ref stays in order. A result is computed once and handed to every
+ * step that needs it. A step whose result is a gh error fails the plan: the steps depending on it
+ * are skipped, while steps that do not still run.
+ *
+ * <p>Steps may only depend on steps declared before them, which keeps the graph acyclic.
+ */
+final class GhPlan {
+
+  /**
+   * What a plan produced.
+   *
+   * @param results the result of every step that ran and succeeded, by step name
+   * @param failedStep the first step in declaration order that failed, or null
+   * @param error the error of that step, or null
+   */
+  record Outcome(Map<String, String> results, String failedStep, String error) {
+
+    boolean succeeded() {
+      return failedStep == null;
+    }
+
+    /** The result of a step, or the plan's error if it failed. */
+    String resultOr(String step) {
+      return succeeded() ? results.get(step) : error;
+    }
+  }
+
+  private record Step(
+      String name, List<String> dependsOn, Function<Map<String, String>, String> action) {}
+
+  private final Map<String, Step> steps = new LinkedHashMap<>();
+
+  /** Adds a step that needs nothing from other steps. */
+  GhPlan step(String name, Function<Map<String, String>, String> action) {
+    return step(name, List.of(), action);
+  }
+
+  /**
+   * Adds a step. Its action gets the results of the steps it depends on, by name, and returns its
+   * own, or an {@code Error:} result to fail the plan.
+   *
+   * @throws IllegalArgumentException if the name is taken or a dependency is not declared yet
+   */
+  GhPlan step(
+      String name, List<String> dependsOn, Function<Map<String, String>, String> action) {
+    if (steps.containsKey(name)) {
+      throw new IllegalArgumentException("Duplicate step: " + name);
+    }
+    for (String dependency : dependsOn) {
+      if (!steps.containsKey(dependency)) {
+        throw new IllegalArgumentException(
+            "Step %s depends on undeclared step %s".formatted(name, dependency));
+      }
+    }
+    steps.put(name, new Step(name, List.copyOf(dependsOn), action));
+    return this;
+  }
+
+  /** Runs every step and waits for all that can run. */
+  Outcome run() {
+    var context = CallContext.current();
+    var futures = new HashMap<String, CompletableFuture<String>>();
+    var results = new LinkedHashMap<String, String>();
+    String failedStep = null;
+    String error = null;
+    // Later steps are handed to the executor as their dependencies finish, so it stays open
+    // until every step is done
+    try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (var step : steps.values()) {
+        var dependencies = step.dependsOn().stream().map(futures::get).toList();
+        futures.put(
+            step.name(),
+            CompletableFuture.allOf(dependencies.toArray(CompletableFuture<?>[]::new))
+                .thenApplyAsync(
+                    ignored -> CallContext.callAs(context, () -> runStep(step, dependencies)),
+                    executor));
+      }
+      for (var step : steps.values()) {
+        String result;
+        try {
+          result = futures.get(step.name()).get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          futures.values().forEach(future -> future.cancel(true));
+          return new Outcome(results, step.name(), "Error: Interrupted");
+        } catch (ExecutionException e) {
+          // A dependency failed, so this step was skipped; the failed one comes first
+          continue;
+        }
+        if (!isError(result)) {
+          results.put(step.name(), result);
+        } else if (failedStep == null) {
+          failedStep = step.name();
+          error = result;
+        }
+      }
+    }
+    return new Outcome(results, failedStep, error);
+  }
+
+  private static String runStep(Step step, List<CompletableFuture<String>> dependencies) {
+    var inputs = new HashMap<String, String>();
+    for (int i = 0; i < dependencies.size(); i++) {
+      String result = dependencies.get(i).join();
+      if (isError(result)) {
+        throw new IllegalStateException("Skipped after " + step.dependsOn().get(i) + " failed");
+      }
+      inputs.put(step.dependsOn().get(i), result);
+    }
+    try {
+      String result = step.action().apply(inputs);
+      return result != null ? result : "Error: Step " + step.name() + " produced no result";
+    } catch (RuntimeException e) {
+      return "Error: " + e.getMessage();
+    }
+  }
+
+  private static boolean isError(String result) {
+    return result.startsWith("Error:");
+  }
+}
@@ -0,0 +1,435 @@
+package com.kousenit.gh_mcp_server;
+
+import jakarta.annotation.PostConstruct;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Spawns GitHub CLI processes with as little per-call overhead as possible. The {@code gh}
+ * executable is resolved once, children get a small fixed environment instead of a copy of ours,
+ * stdout is drained on the calling thread, and capture buffers are pooled between calls.
+ */
+@Component
+public class GhProcessLauncher {
+
+  private static final Logger logger = LoggerFactory.getLogger(GhProcessLauncher.class);
+
+  /** JDK system property that selects how child processes are created on Unix. */
+  static final String LAUNCH_MECHANISM_PROPERTY = "jdk.lang.Process.launchMechanism";
+
+  /** Parent variables gh still needs: config and keyring locations, locale, proxies and certs. */
+  private static final List<String> INHERITED_VARIABLES =
+      List.of(
+          "PATH",
+          "HOME",
+          "USER",
+          "LANG",
+          "LC_ALL",
+          "TMPDIR",
+          "XDG_CONFIG_HOME",
+          "XDG_CACHE_HOME",
+          "XDG_DATA_HOME",
+          "XDG_STATE_HOME",
+          "XDG_RUNTIME_DIR",
+          "DBUS_SESSION_BUS_ADDRESS",
+          "GH_CONFIG_DIR",
+          "GH_HOST",
+          "GH_TOKEN",
+          "GITHUB_TOKEN",
+          "GH_ENTERPRISE_TOKEN",
+          "GITHUB_ENTERPRISE_TOKEN",
+          "HTTP_PROXY",
+          "HTTPS_PROXY",
+          "NO_PROXY",
+          "http_proxy",
+          "https_proxy",
+          "no_proxy",
+          "SSL_CERT_FILE",
+          "SSL_CERT_DIR",
+          "SYSTEMROOT",
+          "APPDATA",
+          "LOCALAPPDATA",
+          "USERPROFILE");
+
+  /** Settings that keep gh from checking for updates, paging, coloring or prompting. */
+  private static final Map<String, String> FIXED_VARIABLES =
+      Map.of(
+          "GH_NO_UPDATE_NOTIFIER", "1",
+          "GH_NO_EXTENSION_UPDATE_NOTIFIER", "1",
+          "GH_PROMPT_DISABLED", "1",
+          "GH_SPINNER_DISABLED", "1",
+          "GH_PAGER", "cat",
+          "NO_COLOR", "1",
+          "CLICOLOR", "0",
+          "GIT_TERMINAL_PROMPT", "0");
+
+  private static final int MAX_POOLED_BUFFERS = 32;
+  private static final int MAX_POOLED_BUFFER_BYTES = 1 << 20;
+
+  // One shared timer enforces every deadline, so a call needs no extra waiting thread
+  private static final ScheduledExecutorService WATCHDOG =
+      Executors.newSingleThreadScheduledExecutor(
+          Thread.ofPlatform().name("gh-watchdog").daemon().factory());
+
+  private final String executable;
+  private final Map<String, String> environment;
+  private final Queue<CaptureBuffer> bufferPool = new ConcurrentLinkedQueue<>();
+
+  private final LongAdder spawns = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private final LongAdder timeouts = new LongAdder();
+  private final LongAdder spawnNanos = new LongAdder();
+  private final LongAdder runNanos = new LongAdder();
+  private final AtomicLong maxSpawnNanos = new AtomicLong();
+
+  private volatile String version = "unverified";
+
+  @Autowired
+  public GhProcessLauncher(GitHubProperties gitHubProperties) {
+    this(gitHubProperties.ghExecutable(), System.getenv());
+  }
+
+  GhProcessLauncher(String configuredExecutable, Map<String, String> parentEnvironment) {
+    this.environment = minimalEnvironment(parentEnvironment);
+    this.executable = resolveExecutable(configuredExecutable, parentEnvironment.get("PATH"));
+  }
+
+  /**
+   * Picks the cheapest way to create child processes on Linux unless the JVM was started with an
+   * explicit choice. Up to JDK 22 that is VFORK, which execs gh directly instead of going through
+   * jspawnhelper and roughly halves spawn time; from JDK 23 VFORK is deprecated and posix_spawn is
+   * used. Must run before the first process is started.
+   */
+  static void preferFastLaunchMechanism() {
+    if (System.getProperty("os.name", "").startsWith("Linux")
+        && System.getProperty(LAUNCH_MECHANISM_PROPERTY) == null) {
+      System.setProperty(
+          LAUNCH_MECHANISM_PROPERTY, Runtime.version().feature() < 23 ? "VFORK" : "POSIX_SPAWN");
+    }
+  }
+
+  /** Runs {@code gh --version} once so a missing or broken CLI shows up at startup. */
+  @PostConstruct
+  void verify() {
+    var result = run(List.of("--version"), Map.of(), Duration.ofSeconds(10));
+    if (result.isSuccess()) {
+      version = result.output().lines().findFirst().orElse(result.output());
+      logger.info("Using GitHub CLI at {} ({})", executable, version);
+    } else {
+      logger.warn("GitHub CLI at {} could not be verified: {}", executable, result.error());
+    }
+  }
+
+  /**
+   * Runs gh with the given arguments and captures its output.
+   *
+   * @param args arguments after the executable
+   * @param extraEnvironment variables added on top of the minimal environment
+   * @param timeout how long to wait before the process is killed
+   * @return the captured result; failures to start, timeouts and interrupts have exit code -1
+   */
+  public GithubCommand run(
+      List<String> args, Map<String, String> extraEnvironment, Duration timeout) {
+    return run(args, extraEnvironment, timeout, null);
+  }
+
+  /**
+   * Runs gh like {@link #run(List, Map, Duration)}, additionally killing the process as soon as
+   * {@code cancellation} completes.
+   *
+   * @param cancellation completed by the caller when nobody needs the result any more; may be null
+   */
+  public GithubCommand run(
+      List<String> args,
+      Map<String, String> extraEnvironment,
+      Duration timeout,
+      CompletableFuture<?> cancellation) {
+    var output = borrowBuffer();
+    try {
+      return run(
+          args,
+          extraEnvironment,
+          timeout,
+          cancellation,
+          stdout -> {
+            output.drain(stdout);
+            return output.toTrimmedString();
+          });
+    } finally {
+      releaseBuffer(output);
+    }
+  }
+
+  /**
+   * Runs gh like {@link #run(List, Map, Duration, CompletableFuture)}, handing stdout to a reader
+   * as it arrives instead of capturing it. The reader's return value becomes the output of the
+   * result, so large or binary responses can be processed without holding them in memory.
+   */
+  public GithubCommand run(
+      List<String> args,
+      Map<String, String> extraEnvironment,
+      Duration timeout,
+      CompletableFuture<?> cancellation,
+      OutputReader reader) {
+    var command = new ArrayList<String>(args.size() + 1);
+    command.add(executable);
+    command.addAll(args);
+    var processBuilder = new ProcessBuilder(command);
+    var childEnvironment = processBuilder.environment();
+    childEnvironment.clear();
+    childEnvironment.putAll(environment);
+    childEnvironment.putAll(extraEnvironment);
+
+    long started = System.nanoTime();
+    Process process;
+    try {
+      process = processBuilder.start();
+    } catch (IOException e) {
+      failures.increment();
+      return new GithubCommand("", "Failed to execute command - %s".formatted(e.getMessage()), -1);
+    }
+    recordSpawn(System.nanoTime() - started);
+
+    var timedOut = new AtomicBoolean();
+    var deadline =
+        WATCHDOG.schedule(
+            () -> {
+              timedOut.set(true);
+              destroyTree(process);
+            },
+            timeout.toNanos(),
+            TimeUnit.NANOSECONDS);
+    if (cancellation != null) {
+      cancellation.whenComplete((ignored, failure) -> destroyTree(process));
+    }
+
+    var error = borrowBuffer();
+    Thread errorReader = null;
+    try {
+      process.getOutputStream().close();
+
+      // Only stderr needs its own reader; stdout is read right here
+      errorReader =
+          Thread.ofVirtual()
+              .start(
+                  () -> {
+                    try (var stderr = process.getErrorStream()) {
+                      error.drain(stderr);
+                    } catch (IOException e) {
+                      // Nothing left to read
+                    }
+                  });
+      String output;
+      try (var stdout = process.getInputStream()) {
+        output = reader.read(stdout);
+        // Whatever the reader left unread would otherwise block gh on a full pipe
+        stdout.transferTo(OutputStream.nullOutputStream());
+      }
+      int exitCode = process.waitFor();
+      errorReader.join();
+
+      if (timedOut.get()) {
+        timeouts.increment();
+        return new GithubCommand(
+            "", "Command timed out after %d seconds".formatted(timeout.toSeconds()), -1);
+      }
+      if (cancellation != null && cancellation.isDone()) {
+        return new GithubCommand("", "Command cancelled", -1);
+      }
+      return new GithubCommand(output, error.toTrimmedString(), exitCode);
+    } catch (IOException e) {
+      destroyTree(process);
+      if (timedOut.get()) {
+        timeouts.increment();
+        return new GithubCommand(
+            "", "Command timed out after %d seconds".formatted(timeout.toSeconds()), -1);
+      }
+      if (cancellation != null && cancellation.isDone()) {
+        return new GithubCommand("", "Command cancelled", -1);
+      }
+      failures.increment();
+      return new GithubCommand("", "Failed to execute command - %s".formatted(e.getMessage()), -1);
+    } catch (InterruptedException e) {
+      destroyTree(process);
+      Thread.currentThread().interrupt();
+      return new GithubCommand(
+          "", "Command execution interrupted - %s".formatted(e.getMessage()), -1);
+    } finally {
+      deadline.cancel(false);
+      runNanos.add(System.nanoTime() - started);
+      // A reader still running after an interrupt keeps its buffer; it is simply not pooled
+      if (errorReader != null && !errorReader.isAlive()) {
+        releaseBuffer(error);
+      }
+    }
+  }
+
+  /** Consumes a process's stdout while it runs. */
+  @FunctionalInterface
+  public interface OutputReader {
+
+    /**
+     * Reads as much of stdout as needed; the stream is closed afterwards.
+     *
+     * @return the output to report for the command
+     */
+    String read(InputStream stdout) throws IOException;
+  }
+
+  /** Absolute path of the resolved executable, or the configured name if it was not found. */
+  public String executable() {
+    return executable;
+  }
+
+  /** First line of {@code gh --version}, or "unverified" before startup verification. */
+  public String version() {
+    return version;
+  }
+
+  /** Snapshot of spawn and run latency counters since startup. */
+  public Metrics metrics() {
+    long count = spawns.sum();
+    return new Metrics(
+        count,
+        failures.sum(),
+        timeouts.sum(),
+        count == 0 ? 0 : spawnNanos.sum() / 1_000.0 / count,
+        maxSpawnNanos.get() / 1_000.0,
+        count == 0 ? 0 : runNanos.sum() / 1_000_000.0 / count);
+  }
+
+  /**
+   * Spawn statistics. Spawn time covers only process creation; run time covers the whole call
+   * including waiting for gh and its network requests.
+   */
+  public record Metrics(
+      long spawns,
+      long failures,
+      long timeouts,
+      double meanSpawnMicros,
+      double maxSpawnMicros,
+      double meanRunMillis) {}
+
+  static Map<String, String> minimalEnvironment(Map<String, String> parentEnvironment) {
+    var result = new HashMap<String, String>();
+    for (String name : INHERITED_VARIABLES) {
+      String value = parentEnvironment.get(name);
+      if (value != null) {
+        result.put(name, value);
+      }
+    }
+    result.putAll(FIXED_VARIABLES);
+    return Map.copyOf(result);
+  }
+
+  static String resolveExecutable(String configured, String searchPath) {
+    if (configured.contains("/") || configured.contains(File.separator)) {
+      return configured;
+    }
+    if (searchPath != null) {
+      for (String directory : searchPath.split(File.pathSeparator)) {
+        if (directory.isEmpty()) {
+          continue;
+        }
+        for (String name : candidateNames(configured)) {
+          try {
+            Path candidate = Path.of(directory, name);
+            if (Files.isRegularFile(candidate) && Files.isExecutable(candidate)) {
+              return candidate.toAbsolutePath().toString();
+            }
+          } catch (InvalidPathException e) {
+            // Ignore malformed PATH entries
+          }
+        }
+      }
+    }
+    logger.warn(
+        "Could not find '{}' on PATH; GitHub commands will fail until it is installed", configured);
+    return configured;
+  }
+
+  private static List<String> candidateNames(String name) {
+    return System.getProperty("os.name", "").startsWith("Windows")
+        ? List.of(name + ".exe", name)
+        : List.of(name);
+  }
+
+  // Children of gh (pagers, git, extensions) would otherwise keep our pipes open after it dies
+  private static void destroyTree(Process process) {
+    process.descendants().forEach(ProcessHandle::destroyForcibly);
+    process.destroyForcibly();
+  }
+
+  private void recordSpawn(long nanos) {
+    spawns.increment();
+    spawnNanos.add(nanos);
+    maxSpawnNanos.accumulateAndGet(nanos, Math::max);
+  }
+
+  private CaptureBuffer borrowBuffer() {
+    var buffer = bufferPool.poll();
+    return buffer != null ? buffer : new CaptureBuffer();
+  }
+
+  private void releaseBuffer(CaptureBuffer buffer) {
+    // Drop buffers that grew on an unusually large response rather than pinning that memory
+    if (buffer.capacity() <= MAX_POOLED_BUFFER_BYTES && bufferPool.size() < MAX_POOLED_BUFFERS) {
+      buffer.reset();
+      bufferPool.offer(buffer);
+    }
+  }
+
+  /** Byte sink that is reset and reused between calls instead of reallocated. */
+  private static final class CaptureBuffer extends ByteArrayOutputStream {
+    private final byte[] chunk = new byte[8192];
+
+    CaptureBuffer() {
+      super(8192);
+    }
+
+    /** Reads the stream to its end without closing it. */
+    void drain(InputStream in) {
+      try {
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+          write(chunk, 0, read);
+        }
+      } catch (IOException e) {
+        // The stream closes underneath us when a timed-out process is destroyed
+      }
+    }
+
+    String toTrimmedString() {
+      return toString(StandardCharsets.UTF_8).trim();
+    }
+
+    int capacity() {
+      return buf.length;
+    }
+  }
+}
@@ -0,0 +1,457 @@
+package com.kousenit.gh_mcp_server;
+
+import io.modelcontextprotocol.server.McpServerFeatures;
+import io.modelcontextprotocol.server.McpSyncServerExchange;
+import io.modelcontextprotocol.spec.McpSchema;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Serves files, issues, pull requests and workflow runs as MCP resources under {@code gh://}
+ * URIs, so clients can read them by address and cache them on their side.
+ *
+ * <p>Reads go through the same tool methods, and so the same mirrors and response cache, as the
+ * tools. A resource some session has subscribed to is watched until the last of its subscribers
+ * unsubscribes or closes, and checked every {@code pollSeconds} at {@link CallPriority#PREFETCH},
+ * at most {@code maxChecksPerPoll} at a time and those checked longest ago first. A check is a
+ * REST read of the resource that the cache revalidates with its ETag, so an unchanged resource
+ * costs a 304; only when that read changed is the resource read again, and an update notification
+ * is sent, to the subscribed sessions only, when the SHA-256 of its content differs from what was
+ * read at the last check or when subscribing. Webhook deliveries make the watched resources of
+ * their repository be checked right away.
+ */
+@Component
+public class GhResources {
+
+  private static final Logger logger = LoggerFactory.getLogger(GhResources.class);
+
+  /** Client id the change checks are scheduled under. */
+  static final String WATCH_CLIENT = "resource-watcher";
+
+  static final String SCHEME = "gh://";
+
+  /** What a {@code gh://} URI addresses. */
+  enum Kind {
+    FILE("text/plain"),
+    ISSUE("application/json"),
+    PULL_REQUEST("application/json"),
+    RUN("application/json");
+
+    private final String mimeType;
+
+    Kind(String mimeType) {
+      this.mimeType = mimeType;
+    }
+
+    String mimeType() {
+      return mimeType;
+    }
+  }
+
+  /**
+   * A resource template offered to clients.
+   *
+   * @param uriTemplate RFC 6570 template of the URIs
+   * @param name short name of the template
+   * @param description what the URIs address
+   * @param kind what is read for them
+   */
+  record Template(String uriTemplate, String name, String description, Kind kind) {}
+
+  static final List<Template> TEMPLATES =
+      List.of(
+          new Template(
+              "gh://{owner}/{repo}/issues/{number}",
+              "issue",
+              "An issue with its comments",
+              Kind.ISSUE),
+          new Template(
+              "gh://{owner}/{repo}/pulls/{number}",
+              "pull-request",
+              "A pull request",
+              Kind.PULL_REQUEST),
+          new Template(
+              "gh://{owner}/{repo}/runs/{runId}", "workflow-run", "A workflow run", Kind.RUN),
+          new Template(
+              "gh://{owner}/{repo}/{ref}/{path}",
+              "file",
+              "A file at a branch, tag or commit; encode slashes in the ref and path as %2F",
+              Kind.FILE));
+
+  /**
+   * A parsed {@code gh://} URI.
+   *
+   * @param ref branch, tag or commit of a file; null otherwise
+   * @param path path of a file; null otherwise
+   * @param number issue, pull request or run number; 0 for a file
+   */
+  record Address(Kind kind, String owner, String repo, String ref, String path, int number) {
+
+    /**
+     * Parses a resource URI. The segments after the repository name an issue, a pull request or a
+     * run when they are {@code issues}, {@code pulls} or {@code runs} and a number, and a ref and
+     * file path otherwise. Segments are percent-decoded.
+     *
+     * @throws IllegalArgumentException if the URI addresses none of them
+     */
+    static Address parse(String uri) {
+      if (uri == null || !uri.startsWith(SCHEME)) {
+        throw new IllegalArgumentException("Resource URI must start with " + SCHEME + ": " + uri);
+      }
+      var segments =
+          Arrays.stream(uri.substring(SCHEME.length()).split("/")).map(Address::decode).toList();
+      if (segments.size() < 4 || segments.stream().anyMatch(String::isEmpty)) {
+        throw new IllegalArgumentException("Not a GitHub resource URI: " + uri);
+      }
+      String owner = segments.get(0);
+      String repo = segments.get(1);
+      ValidationUtils.validateOwner(owner);
+      ValidationUtils.validateRepo(repo);
+      if (segments.size() == 4) {
+        Kind kind =
+            switch (segments.get(2)) {
+              case "issues" -> Kind.ISSUE;
+              case "pulls" -> Kind.PULL_REQUEST;
+              case "runs" -> Kind.RUN;
+              default -> null;
+            };
+        if (kind != null && segments.get(3).matches("[1-9][0-9]{0,9}")) {
+          long number = Long.parseLong(segments.get(3));
+          if (number <= Integer.MAX_VALUE) {
+            return new Address(kind, owner, repo, null, null, (int) number);
+          }
+        }
+      }
+      String ref = segments.get(2);
+      String path = String.join("/", segments.subList(3, segments.size()));
+      ValidationUtils.validateSafeString(ref, "ref");
+      ValidationUtils.validateSafeString(path, "path");
+      return new Address(Kind.FILE, owner, repo, ref, path, 0);
+    }
+
+    String repository() {
+      return owner + "/" + repo;
+    }
+
+    /**
+     * A REST read that changes whenever the resource does. Unlike the {@code issue view}, {@code
+     * pr view} and {@code run view} reads of the resource, it can be revalidated with an ETag.
+     */
+    List<String> probe() {
+      String base = "repos/" + owner + "/" + repo;
+      return List.of(
+          "api",
+          switch (kind) {
+            case FILE -> base + "/contents/" + path + "?ref=" + ref;
+            case ISSUE -> base + "/issues/" + number;
+            case PULL_REQUEST -> base + "/pulls/" + number;
+            case RUN -> base + "/actions/runs/" + number;
+          });
+    }
+
+    /** Percent-decodes a segment; a plus sign is kept as is, as in a URI path. */
+    private static String decode(String segment) {
+      return URLDecoder.decode(segment.replace("+", "%2B"), StandardCharsets.UTF_8);
+    }
+  }
+
+  /** The content of a resource as read. */
+  record Content(String uri, String mimeType, String text) {}
+
+  /**
+   * A subscribed resource, with the SHA-256 of its content at the last check.
+   *
+   * @param probeSha256 SHA-256 of the resource's probe at the last check, or null before one
+   * @param checkedMillis when it was last checked, or subscribed to if it was not checked since
+   */
+  private record Watched(String uri, String sha256, String probeSha256, long checkedMillis) {}
+
+  private final GitHubProperties.Resources settings;
+  private final GithubService service;
+  private final BiConsumer<String, String> notifier;
+  private final LongSupplier clock;
+  private final Map<String, Watched> watched = new LinkedHashMap<>();
+  private final Map<String, Set<String>> subscribers = new HashMap<>();
+  private ScheduledExecutorService poller;
+
+  @Autowired
+  public GhResources(
+      GitHubProperties gitHubProperties,
+      GithubService service,
+      ObjectProvider<SubscribingTransportProvider> transport) {
+    this(
+        gitHubProperties.resources(),
+        service,
+        (sessionId, uri) ->
+            transport.ifAvailable(provider -> provider.notifyUpdated(sessionId, uri)),
+        System::currentTimeMillis);
+  }
+
+  /**
+   * @param notifier sends an update notification about a URI, the second argument, to the session
+   *     whose id is the first
+   */
+  GhResources(
+      GitHubProperties.Resources settings,
+      GithubService service,
+      BiConsumer<String, String> notifier,
+      LongSupplier clock) {
+    this.settings = settings;
+    this.service = service;
+    this.notifier = notifier;
+    this.clock = clock;
+  }
+
+  @PostConstruct
+  void start() {
+    if (settings.pollSeconds() == 0) {
+      return;
+    }
+    poller =
+        Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("resource-watcher").daemon().factory());
+    poller.scheduleWithFixedDelay(
+        () -> checkSafely(null), settings.pollSeconds(), settings.pollSeconds(), TimeUnit.SECONDS);
+  }
+
+  @PreDestroy
+  void stop() {
+    if (poller != null) {
+      poller.shutdownNow();
+    }
+  }
+
+  /**
+   * One template per kind of resource, listed by {@code resources/templates/list}. They share one
+   * read handler that routes by parsing the URI, so a URI that several templates match, such as
+   * an issue URI that also has the shape of a file URI, is read the same whichever matches.
+   */
+  public List<McpServerFeatures.SyncResourceTemplateSpecification> specifications() {
+    return TEMPLATES.stream()
+        .map(
+            template ->
+                new McpServerFeatures.SyncResourceTemplateSpecification(
+                    new McpSchema.ResourceTemplate(
+                        template.uriTemplate(),
+                        template.name(),
+                        template.description(),
+                        template.kind().mimeType(),
+                        null),
+                    this::read))
+        .toList();
+  }
+
+  private McpSchema.ReadResourceResult read(
+      McpSyncServerExchange exchange, McpSchema.ReadResourceRequest request) {
+    String clientId = ContextualToolCallback.clientId(exchange);
+    var content = CallContext.callAs(new CallContext(clientId, null), () -> read(request.uri()));
+    return new McpSchema.ReadResourceResult(
+        List.of(
+            new McpSchema.TextResourceContents(
+                content.uri(), content.mimeType(), content.text())));
+  }
+
+  /**
+   * Reads a resource.
+   *
+   * @throws IllegalArgumentException if the URI is not a resource or GitHub cannot provide it
+   */
+  Content read(String uri) {
+    var address = Address.parse(uri);
+    return new Content(uri, address.kind().mimeType(), fetchOrThrow(address));
+  }
+
+  /**
+   * Subscribes a session to updates of a resource. A resource not watched yet is read once for
+   * the content later checks compare with, which right after the client read it is a cache hit.
+   *
+   * @throws IllegalArgumentException if the URI is not a resource, GitHub cannot provide it, or
+   *     {@code maxWatched} resources are watched already
+   */
+  void subscribe(String sessionId, String uri) {
+    var address = Address.parse(uri);
+    synchronized (watched) {
+      if (addSubscriber(sessionId, uri)) {
+        return;
+      }
+    }
+    String sha256 = GhResponseCache.Entry.sha256(fetchOrThrow(address));
+    synchronized (watched) {
+      if (!addSubscriber(sessionId, uri)) {
+        subscribers.computeIfAbsent(uri, ignored -> new LinkedHashSet<>()).add(sessionId);
+        watched.put(uri, new Watched(uri, sha256, null, clock.getAsLong()));
+      }
+    }
+  }
+
+  /** Ends a session's subscription to a resource; the last one to go stops the watching. */
+  void unsubscribe(String sessionId, String uri) {
+    synchronized (watched) {
+      var sessions = subscribers.get(uri);
+      if (sessions != null && sessions.remove(sessionId) && sessions.isEmpty()) {
+        subscribers.remove(uri);
+        watched.remove(uri);
+      }
+    }
+  }
+
+  /** Ends all subscriptions of a session that closed. */
+  void sessionClosed(String sessionId) {
+    synchronized (watched) {
+      for (String uri : List.copyOf(subscribers.keySet())) {
+        unsubscribe(sessionId, uri);
+      }
+    }
+  }
+
+  /**
+   * Adds a subscriber to a resource that is watched already.
+   *
+   * @return false if the resource is not watched yet
+   * @throws IllegalArgumentException if it is not and {@code maxWatched} resources are
+   */
+  private boolean addSubscriber(String sessionId, String uri) {
+    var sessions = subscribers.get(uri);
+    if (sessions != null) {
+      sessions.add(sessionId);
+      return true;
+    }
+    if (watched.size() >= settings.maxWatched()) {
+      throw new IllegalArgumentException(
+          "Error: Already watching "
+              + settings.maxWatched()
+              + " resources; unsubscribe from some first");
+    }
+    return false;
+  }
+
+  /** Has the watched resources of a repository checked for changes right away. */
+  public void nudge(String repository) {
+    if (poller == null) {
+      return;
+    }
+    try {
+      poller.execute(() -> checkSafely(repository));
+    } catch (RejectedExecutionException e) {
+      // Shutting down
+    }
+  }
+
+  /**
+   * Checks the watched resources, or those of one repository, and notifies the sessions subscribed
+   * to the ones whose content changed.
+   *
+   * @param repository {@code owner/repo} to check, or null for all
+   * @return the URIs that changed
+   */
+  List<String> check(String repository) {
+    List<Watched> due;
+    long now = clock.getAsLong();
+    synchronized (watched) {
+      due =
+          watched.values().stream()
+              .filter(
+                  w ->
+                      repository == null
+                          || Address.parse(w.uri()).repository().equalsIgnoreCase(repository))
+              .sorted(Comparator.comparingLong(Watched::checkedMillis))
+              .limit(settings.maxChecksPerPoll())
+              .toList();
+    }
+    var context = new CallContext(WATCH_CLIENT, CallPriority.PREFETCH, true);
+    var changed = new ArrayList<String>();
+    for (var resource : due) {
+      var address = Address.parse(resource.uri());
+      var probe =
+          CallContext.callAs(
+              context, () -> service.executeCommand(address.probe().toArray(String[]::new)));
+      String probeSha256 = probe.isSuccess() ? GhResponseCache.Entry.sha256(probe.output()) : null;
+      // A failed probe is tried again next time; one not seen before, as at the first check, or
+      // one that changed has the resource read again
+      String text =
+          probeSha256 == null || probeSha256.equals(resource.probeSha256())
+              ? null
+              : CallContext.callAs(context, () -> fetch(address));
+      String sha256 =
+          text == null || text.startsWith("Error:") ? null : GhResponseCache.Entry.sha256(text);
+      List<String> sessions;
+      synchronized (watched) {
+        var current = watched.get(resource.uri());
+        if (current == null) {
+          continue;
+        }
+        boolean isChanged = sha256 != null && !sha256.equals(current.sha256());
+        watched.replace(
+            resource.uri(),
+            new Watched(
+                resource.uri(),
+                isChanged ? sha256 : current.sha256(),
+                sha256 != null ? probeSha256 : current.probeSha256(),
+                now));
+        if (!isChanged) {
+          continue;
+        }
+        sessions = List.copyOf(subscribers.get(resource.uri()));
+      }
+      changed.add(resource.uri());
+      sessions.forEach(sessionId -> notifier.accept(sessionId, resource.uri()));
+    }
+    return changed;
+  }
+
+  /** Number of resources being watched right now. */
+  int watchedResources() {
+    synchronized (watched) {
+      return watched.size();
+    }
+  }
+
+  private void checkSafely(String repository) {
+    try {
+      check(repository);
+    } catch (RuntimeException e) {
+      logger.warn("Checking resources for changes failed: {}", e.getMessage());
+    }
+  }
+
+  private String fetchOrThrow(Address address) {
+    String text = fetch(address);
+    if (text.startsWith("Error:")) {
+      throw new IllegalArgumentException(text);
+    }
+    return text;
+  }
+
+  private String fetch(Address address) {
+    return switch (address.kind()) {
+      case FILE ->
+          service.getFileContents(address.owner(), address.repo(), address.path(), address.ref());
+      case ISSUE -> service.getIssue(address.owner(), address.repo(), address.number());
+      case PULL_REQUEST ->
+          service.getPullRequest(address.owner(), address.repo(), address.number());
+      case RUN -> service.getWorkflowRun(address.owner(), address.repo(), address.number());
+    };
+  }
+}
@@ -0,0 +1,217 @@
+package com.kousenit.gh_mcp_server;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded, expiring cache of successful read-only gh results keyed by the argument vector. One
+ * instance serves every client of the process, so repeated reads from different sessions cost a
+ * single gh call per TTL.
+ *
+ * <p>When a snapshot directory is configured, the cache is written there on shutdown and the
+ * next process picks it up on first use, so a restarted server starts warm. Expired entries are
+ * kept until evicted because their ETag still allows a cheap conditional revalidation.
+ */
+@Component
+public class GhResponseCache {
+
+  private static final Logger logger = LoggerFactory.getLogger(GhResponseCache.class);
+
+  static final String SNAPSHOT_FILE = "response-cache.bin";
+
+  /**
+   * A cached result, the wall-clock window in which it is fresh, the ETag GitHub sent with it (if
+   * any) and the SHA-256 of its output.
+   */
+  public record Entry(
+      GithubCommand result,
+      long storedAtMillis,
+      long expiresAtMillis,
+      String etag,
+      String sha256) {
+
+    boolean isFresh(long nowMillis) {
+      return nowMillis < expiresAtMillis;
+    }
+
+    static String sha256(String content) {
+      try {
+        var digest = MessageDigest.getInstance("SHA-256");
+        return HexFormat.of()
+            .formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException("SHA-256 not available", e);
+      }
+    }
+  }
+
+  /** Hit and miss counters since startup. */
+  public record Stats(long hits, long misses, int size) {}
+
+  private final long ttlMillis;
+  private final int maxEntries;
+  private final LongSupplier clock;
+  private final Map<List<String>, Entry> entries;
+  private final Path snapshotFile;
+  private GhCacheSnapshot snapshot;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  @Autowired
+  public GhResponseCache(GitHubProperties gitHubProperties) {
+    this(gitHubProperties.cache(), System::currentTimeMillis);
+  }
+
+  GhResponseCache(GitHubProperties.Cache settings, LongSupplier clock) {
+    this.ttlMillis = settings.ttlSeconds() * 1000L;
+    this.clock = clock;
+    this.snapshotFile =
+        settings.snapshotDir() == null ? null : Path.of(settings.snapshotDir(), SNAPSHOT_FILE);
+    this.maxEntries = settings.maxEntries();
+    // Access-ordered, so the least recently used entry is the one evicted
+    this.entries =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<List<String>, Entry> eldest) {
+            return size() > maxEntries;
+          }
+        };
+  }
+
+  /** Returns a fresh cached result for the arguments, if there is one. */
+  public Optional<GithubCommand> get(List<String> args) {
+    var entry = lookup(args);
+    if (entry.isPresent() && entry.get().isFresh(clock.getAsLong())) {
+      hits.increment();
+      return Optional.of(entry.get().result());
+    }
+    misses.increment();
+    return Optional.empty();
+  }
+
+  /** Returns the cached entry for the arguments even if it has expired, for revalidation. */
+  public Optional<Entry> lookup(List<String> args) {
+    synchronized (entries) {
+      var entry = entries.get(args);
+      if (entry == null) {
+        // Snapshot records move into memory the first time they are asked for
+        entry = snapshot().take(args).orElse(null);
+        if (entry != null) {
+          entries.put(List.copyOf(args), entry);
+        }
+      }
+      return Optional.ofNullable(entry);
+    }
+  }
+
+  /** Stores a successful result; failures are never cached. */
+  public void put(List<String> args, GithubCommand result) {
+    put(args, result, null);
+  }
+
+  /** Stores a successful result together with the ETag GitHub returned for it. */
+  public void put(List<String> args, GithubCommand result, String etag) {
+    if (ttlMillis == 0 || !result.isSuccess()) {
+      return;
+    }
+    long now = clock.getAsLong();
+    var entry = new Entry(result, now, now + ttlMillis, etag, Entry.sha256(result.output()));
+    synchronized (entries) {
+      entries.put(List.copyOf(args), entry);
+    }
+  }
+
+  /** Starts a new TTL window for an entry GitHub confirmed is unchanged. */
+  public void renew(List<String> args, Entry entry) {
+    if (ttlMillis == 0) {
+      return;
+    }
+    long now = clock.getAsLong();
+    synchronized (entries) {
+      entries.put(
+          List.copyOf(args),
+          new Entry(entry.result(), now, now + ttlMillis, entry.etag(), entry.sha256()));
+    }
+  }
+
+  /** Drops every entry for commands that target the given {@code owner/repo}. */
+  public void invalidateRepository(String repository) {
+    synchronized (entries) {
+      entries.keySet().removeIf(args -> targets(args, repository));
+      snapshot().removeIf(args -> targets(args, repository));
+    }
+  }
+
+  private static boolean targets(List<String> args, String repository) {
+    return CommandUtils.repository(args).map(repository::equalsIgnoreCase).orElse(false);
+  }
+
+  /** Drops everything. */
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+      snapshot().clear();
+    }
+  }
+
+  public Stats stats() {
+    synchronized (entries) {
+      return new Stats(hits.sum(), misses.sum(), entries.size());
+    }
+  }
+
+  /**
+   * Writes the cache, including snapshot records nobody asked for this time, to the snapshot
+   * directory. Called on shutdown; does nothing when no directory is configured.
+   */
+  @PreDestroy
+  public void persist() {
+    if (snapshotFile == null) {
+      return;
+    }
+    long now = clock.getAsLong();
+    var all = new HashMap<List<String>, Entry>();
+    synchronized (entries) {
+      all.putAll(entries);
+      // Records from the previous snapshot fill whatever room the live entries leave
+      for (var carried : snapshot().takeAll().entrySet()) {
+        if (all.size() >= maxEntries) {
+          break;
+        }
+        all.putIfAbsent(carried.getKey(), carried.getValue());
+      }
+    }
+    // An expired entry without an ETag cannot be revalidated, so it is not worth keeping
+    all.values().removeIf(entry -> !entry.isFresh(now) && entry.etag() == null);
+    try {
+      GhCacheSnapshot.write(snapshotFile, all);
+    } catch (IOException e) {
+      logger.warn("Could not write cache snapshot {}: {}", snapshotFile, e.getMessage());
+    }
+  }
+
+  /** Opens the snapshot on first use; must be called while holding the entries lock. */
+  private GhCacheSnapshot snapshot() {
+    if (snapshot == null) {
+      snapshot =
+          snapshotFile == null ? GhCacheSnapshot.empty() : GhCacheSnapshot.open(snapshotFile);
+    }
+    return snapshot;
+  }
+}
@@ -0,0 +1,516 @@
+package com.kousenit.gh_mcp_server;
+
+import com.fasterxml.jackson.core.JsonParser;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs GitHub searches that may want more than the 1,000 results GitHub returns for one query.
+ *
+ * <p>A search whose limit or total count is within 1,000 pages through the query as is, with the
+ * pages fetched in parallel. A bigger one is split into disjoint partitions on a qualifier the
+ * query does not use yet: {@code created:} dates, then {@code pushed:} dates or {@code stars:} for
+ * repositories, {@code created:} or {@code updated:} dates for issues and {@code size:} for code.
+ * Ranges are halved, both halves counted in parallel, until every partition holds at most 1,000
+ * results, and only as far as the newest or largest partitions needed for the limit. Those are
+ * then paged in parallel and their results merged in partition order with duplicates dropped.
+ *
+ * <p>Every request takes a token from the bucket of its rate limit, code search having its own,
+ * so a burst spends the minute's allowance and then slows to its rate. A throttled request puts
+ * the whole bucket on hold for its {@code Retry-After} and is retried.
+ */
+@Component
+public class GhSearch {
+
+  /** Results GitHub returns for one query, however many pages are asked for. */
+  static final int MAX_RESULTS_PER_QUERY = 1000;
+
+  static final int PAGE_SIZE = 100;
+
+  /** The first day GitHub has anything for. */
+  private static final LocalDate FIRST_DAY = LocalDate.of(2008, 1, 1);
+
+  private static final Set<String> DATE_QUALIFIERS = Set.of("created", "pushed", "updated");
+
+  private static final Pattern THROTTLED =
+      Pattern.compile("(?i)rate limit|abuse detection|HTTP 429|too many requests");
+
+  /** What is searched, with the qualifiers a query can be partitioned on, in order of choice. */
+  enum Kind {
+    REPOSITORIES("repositories", List.of("created", "pushed", "stars")),
+    ISSUES("issues", List.of("created", "updated")),
+    CODE("code", List.of("size"));
+
+    private final String endpoint;
+    private final List<String> partitionQualifiers;
+
+    Kind(String endpoint, List<String> partitionQualifiers) {
+      this.endpoint = endpoint;
+      this.partitionQualifiers = partitionQualifiers;
+    }
+  }
+
+  /** A search result; the URL identifies it across partitions. */
+  public sealed interface Hit permits RepositoryHit, IssueHit, CodeHit {
+    String url();
+  }
+
+  public record RepositoryHit(
+      String fullName,
+      String description,
+      String language,
+      Long stars,
+      String pushedAt,
+      String url)
+      implements Hit {}
+
+  public record IssueHit(
+      String repository,
+      Long number,
+      String title,
+      String state,
+      Boolean pullRequest,
+      String author,
+      String updatedAt,
+      String url)
+      implements Hit {}
+
+  public record CodeHit(String repository, String path, String sha, String url) implements Hit {}
+
+  /**
+   * What a search found.
+   *
+   * @param totalCount results GitHub counts for the whole query
+   * @param partitions queries the search was split into; 1 when it was not split
+   * @param incomplete whether GitHub timed out on a query or a partition still held more than
+   *     1,000 results
+   */
+  public record Result(
+      String query,
+      long totalCount,
+      int returned,
+      int partitions,
+      boolean incomplete,
+      List<Hit> items) {}
+
+  /** One page of a search response. */
+  private record Page(long totalCount, boolean incomplete, List<Hit> items) {}
+
+  /** An inclusive range of a qualifier, in days since the epoch for dates. */
+  private record Span(String qualifier, long from, long to) {
+
+    boolean splittable() {
+      return from < to;
+    }
+
+    Span lower() {
+      return new Span(qualifier, from, from + (to - from) / 2);
+    }
+
+    Span upper() {
+      return new Span(qualifier, from + (to - from) / 2 + 1, to);
+    }
+
+    String filter() {
+      return DATE_QUALIFIERS.contains(qualifier)
+          ? "%s:%s..%s"
+              .formatted(qualifier, LocalDate.ofEpochDay(from), LocalDate.ofEpochDay(to))
+          : "%s:%d..%d".formatted(qualifier, from, to);
+    }
+  }
+
+  /** A partition of a search with the results GitHub counts for it. */
+  private record Part(String query, Span span, long count) {
+
+    long usable() {
+      return Math.min(count, MAX_RESULTS_PER_QUERY);
+    }
+  }
+
+  /**
+   * Hands out request slots at a steady rate with a burst of one minute's allowance. Tokens may
+   * go negative; the debt is how long the next request waits.
+   */
+  private static final class Bucket {
+    private final double perMilli;
+    private final double capacity;
+    private double tokens;
+    private long updated;
+
+    Bucket(int perMinute, long now) {
+      this.perMilli = perMinute / 60_000.0;
+      this.capacity = perMinute;
+      this.tokens = perMinute;
+      this.updated = now;
+    }
+
+    /** Takes a token and returns how long to wait before using it. */
+    synchronized long take(long now) {
+      tokens = Math.min(capacity, tokens + (now - updated) * perMilli);
+      updated = now;
+      tokens -= 1;
+      return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / perMilli);
+    }
+
+    /** Holds every request back until the wait is over. */
+    synchronized void hold(long now, long millis) {
+      take(now);
+      tokens = Math.min(tokens + 1, -millis * perMilli);
+    }
+  }
+
+  private final GitHubProperties.Search settings;
+  private final Function<List<String>, GithubCommand> gh;
+  private final LongSupplier clock;
+  private final BulkMutations.Sleeper sleeper;
+  private final Bucket searchBucket;
+  private final Bucket codeBucket;
+
+  @Autowired
+  public GhSearch(GitHubProperties gitHubProperties, GhCommandExecutor executor) {
+    this(gitHubProperties.search(), executor::execute, System::currentTimeMillis, Thread::sleep);
+  }
+
+  GhSearch(
+      GitHubProperties.Search settings,
+      Function<List<String>, GithubCommand> gh,
+      LongSupplier clock,
+      BulkMutations.Sleeper sleeper) {
+    this.settings = settings;
+    this.gh = gh;
+    this.clock = clock;
+    this.sleeper = sleeper;
+    this.searchBucket = new Bucket(settings.requestsPerMinute(), clock.getAsLong());
+    this.codeBucket = new Bucket(settings.codeRequestsPerMinute(), clock.getAsLong());
+  }
+
+  /**
+   * Searches, splitting the query when more than 1,000 results are wanted and there are.
+   *
+   * @param limit results wanted, capped at {@code maxResults}
+   * @return the results as JSON, or an error message starting with "Error:"
+   */
+  public String search(Kind kind, String query, int limit) {
+    if (query == null || query.isBlank()) {
+      return "Error: No search query given";
+    }
+    String trimmed = query.strip();
+    int wanted = Math.min(Math.max(limit, 1), settings.maxResults());
+    var context = CallContext.current();
+    try (var executor =
+        Executors.newFixedThreadPool(
+            settings.concurrency(), Thread.ofVirtual().name("gh-search-", 0).factory())) {
+      var run = new Run(kind, context, executor);
+      var first = run.page(trimmed, 1, Math.min(wanted, PAGE_SIZE));
+      String qualifier = partitionQualifier(kind, trimmed);
+      List<Part> parts =
+          wanted <= MAX_RESULTS_PER_QUERY
+                  || first.totalCount() <= MAX_RESULTS_PER_QUERY
+                  || qualifier == null
+              ? List.of(new Part(trimmed, null, first.totalCount()))
+              : run.partition(trimmed, fullSpan(qualifier), first.totalCount(), wanted);
+      var items = run.collect(parts, parts.size() == 1 ? first : null, wanted);
+      boolean incomplete =
+          run.incomplete || parts.stream().anyMatch(part -> part.count() > part.usable());
+      return JsonProjection.write(
+          new Result(
+              trimmed, first.totalCount(), items.size(), parts.size(), incomplete, items));
+    } catch (IllegalStateException e) {
+      return "Error: " + e.getMessage();
+    }
+  }
+
+  /** The first qualifier of the kind that the query does not constrain itself, or null. */
+  static String partitionQualifier(Kind kind, String query) {
+    for (String qualifier : kind.partitionQualifiers) {
+      if (!Pattern.compile("(?i)(^|\\s)-?" + qualifier + ":").matcher(query).find()) {
+        return qualifier;
+      }
+    }
+    return null;
+  }
+
+  private Span fullSpan(String qualifier) {
+    return switch (qualifier) {
+      case "stars" -> new Span(qualifier, 0, 1_000_000);
+      // Code search only indexes files smaller than 384 KB
+      case "size" -> new Span(qualifier, 0, 393_216);
+      default ->
+          new Span(
+              qualifier,
+              FIRST_DAY.toEpochDay(),
+              LocalDate.ofEpochDay(Math.floorDiv(clock.getAsLong(), 86_400_000L)).toEpochDay());
+    };
+  }
+
+  /** The requests of one search, run on its executor under the caller's context. */
+  private final class Run {
+    private final Kind kind;
+    private final CallContext context;
+    private final ExecutorService executor;
+    private volatile boolean incomplete;
+
+    Run(Kind kind, CallContext context, ExecutorService executor) {
+      this.kind = kind;
+      this.context = context;
+      this.executor = executor;
+    }
+
+    /**
+     * Splits the query until every partition needed for the limit holds at most 1,000 results,
+     * newest or largest first.
+     */
+    List<Part> partition(String query, Span full, long total, int wanted) {
+      var parts = new ArrayList<Part>(List.of(new Part(query, full, total)));
+      while (true) {
+        trim(parts, wanted);
+        var splits = new LinkedHashMap<Integer, List<Future<Part>>>();
+        for (int i = 0; i < parts.size(); i++) {
+          var part = parts.get(i);
+          if (part.count() > MAX_RESULTS_PER_QUERY && part.span().splittable()) {
+            splits.put(
+                i, List.of(count(query, part.span().upper()), count(query, part.span().lower())));
+          }
+        }
+        if (splits.isEmpty()) {
+          return parts;
+        }
+        var next = new ArrayList<Part>();
+        for (int i = 0; i < parts.size(); i++) {
+          var halves = splits.get(i);
+          if (halves == null) {
+            next.add(parts.get(i));
+            continue;
+          }
+          for (var half : halves) {
+            var part = join(half);
+            if (part.count() > 0) {
+              next.add(part);
+            }
+          }
+        }
+        parts = next;
+      }
+    }
+
+    private Future<Part> count(String query, Span span) {
+      String partition = query + " " + span.filter();
+      return submit(() -> new Part(partition, span, page(partition, 1, 1).totalCount()));
+    }
+
+    /** Pages through the partitions in parallel and merges their results in order. */
+    List<Hit> collect(List<Part> parts, Page first, int wanted) {
+      var pages = new ArrayList<Future<Page>>();
+      long remaining = wanted;
+      for (var part : parts) {
+        long take = Math.min(part.usable(), remaining);
+        remaining -= take;
+        int pageCount = (int) ((take + PAGE_SIZE - 1) / PAGE_SIZE);
+        for (int page = 1; page <= pageCount; page++) {
+          if (page == 1 && first != null) {
+            pages.add(CompletableFuture.completedFuture(first));
+          } else {
+            int number = page;
+            pages.add(submit(() -> page(part.query(), number, PAGE_SIZE)));
+          }
+        }
+      }
+      var merged = new LinkedHashMap<String, Hit>();
+      for (var page : pages) {
+        for (var hit : join(page).items()) {
+          if (merged.size() < wanted) {
+            merged.putIfAbsent(hit.url(), hit);
+          }
+        }
+      }
+      return List.copyOf(merged.values());
+    }
+
+    /** Fetches one page, waiting for a token of the rate limit and retrying when throttled. */
+    Page page(String query, int page, int perPage) {
+      var bucket = kind == Kind.CODE ? codeBucket : searchBucket;
+      List<String> args =
+          List.of(
+              "api",
+              "search/%s?q=%s&per_page=%d&page=%d"
+                  .formatted(
+                      kind.endpoint,
+                      URLEncoder.encode(query, StandardCharsets.UTF_8),
+                      perPage,
+                      page));
+      for (int attempt = 0; ; attempt++) {
+        pause(bucket.take(clock.getAsLong()));
+        var result = CallContext.callAs(context, () -> gh.apply(args));
+        if (result.isSuccess()) {
+          var parsed = parse(result.output());
+          incomplete |= parsed.incomplete();
+          return parsed;
+        }
+        if (attempt >= settings.maxRetries() || !THROTTLED.matcher(result.error()).find()) {
+          throw new IllegalStateException(result.error().strip());
+        }
+        bucket.hold(clock.getAsLong(), BulkMutations.retryAfterMillis(result.error()));
+      }
+    }
+
+    private void pause(long millis) {
+      if (millis <= 0) {
+        return;
+      }
+      try {
+        sleeper.sleep(millis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted");
+      }
+    }
+
+    private <T> Future<T> submit(Callable<T> task) {
+      return executor.submit(task);
+    }
+
+    private <T> T join(Future<T> future) {
+      try {
+        return future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted");
+      } catch (ExecutionException e) {
+        throw e.getCause() instanceof IllegalStateException failure
+            ? failure
+            : new IllegalStateException(e.getCause().getMessage());
+      }
+    }
+
+    private Page parse(String json) {
+      try {
+        var pages =
+            JsonProjection.readAll(
+                json,
+                parser -> {
+                  long[] total = {0};
+                  boolean[] incomplete = {false};
+                  var items = new ArrayList<Hit>();
+                  JsonProjection.fields(
+                      parser,
+                      (name, p) ->
+                          switch (name) {
+                            case "total_count" -> {
+                              total[0] = p.getLongValue();
+                              yield true;
+                            }
+                            case "incomplete_results" -> {
+                              incomplete[0] = Boolean.TRUE.equals(JsonProjection.bool(p));
+                              yield true;
+                            }
+                            case "items" -> {
+                              items.addAll(JsonProjection.list(p, this::hit));
+                              yield true;
+                            }
+                            default -> false;
+                          });
+                  return new Page(total[0], incomplete[0], items);
+                });
+        return pages.getFirst();
+      } catch (IOException | RuntimeException e) {
+        throw new IllegalStateException("Unreadable search response: " + e.getMessage());
+      }
+    }
+
+    private Hit hit(JsonParser parser) throws IOException {
+      var values = new LinkedHashMap<String, Object>();
+      JsonProjection.fields(
+          parser,
+          (name, p) -> {
+            switch (name) {
+              case "full_name", "description", "language", "pushed_at", "html_url", "title",
+                  "state", "updated_at", "path", "sha", "repository_url" ->
+                  values.put(name, JsonProjection.text(p));
+              case "stargazers_count", "number" -> values.put(name, JsonProjection.number(p));
+              case "user" -> values.put(name, JsonProjection.name(p));
+              case "repository" -> values.put(name, repositoryName(p));
+              case "pull_request" -> {
+                p.skipChildren();
+                values.put(name, Boolean.TRUE);
+              }
+              default -> {
+                return false;
+              }
+            }
+            return true;
+          });
+      String url = (String) values.get("html_url");
+      return switch (kind) {
+        case REPOSITORIES ->
+            new RepositoryHit(
+                (String) values.get("full_name"),
+                (String) values.get("description"),
+                (String) values.get("language"),
+                (Long) values.get("stargazers_count"),
+                (String) values.get("pushed_at"),
+                url);
+        case ISSUES ->
+            new IssueHit(
+                repositoryOf((String) values.get("repository_url")),
+                (Long) values.get("number"),
+                (String) values.get("title"),
+                (String) values.get("state"),
+                values.containsKey("pull_request"),
+                (String) values.get("user"),
+                (String) values.get("updated_at"),
+                url);
+        case CODE ->
+            new CodeHit(
+                (String) values.get("repository"),
+                (String) values.get("path"),
+                (String) values.get("sha"),
+                url);
+      };
+    }
+  }
+
+  /** Drops the partitions past the ones that already hold enough results. */
+  private static void trim(List<Part> parts, int wanted) {
+    long usable = 0;
+    for (int i = 0; i < parts.size(); i++) {
+      if (usable >= wanted) {
+        parts.subList(i, parts.size()).clear();
+        return;
+      }
+      usable += parts.get(i).usable();
+    }
+  }
+
+  /** The {@code full_name} of a nested repository object. */
+  private static String repositoryName(JsonParser parser) throws IOException {
+    var values = JsonProjection.object(parser, Map.of("full_name", JsonProjection::text));
+    return (String) values.get("full_name");
+  }
+
+  /** {@code owner/repo} from an API repository URL. */
+  private static String repositoryOf(String repositoryUrl) {
+    if (repositoryUrl == null) {
+      return null;
+    }
+    int repos = repositoryUrl.indexOf("/repos/");
+    return repos >= 0 ? repositoryUrl.substring(repos + "/repos/".length()) : repositoryUrl;
+  }
+}
@@ -0,0 +1,362 @@
+package com.kousenit.gh_mcp_server;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Decides how long a gh command may run. A tool with a configured timeout gets that; otherwise, in
+ * adaptive mode, the deadline is a high percentile of the latencies recently seen for the same
+ * endpoint times a safety margin, so {@code getMe} gives up after seconds while a large workflow
+ * run listing keeps the time it usually needs. Until an endpoint has enough samples, the global
+ * {@code commandTimeoutSeconds} applies.
+ *
+ * <p>A call that times out counts as a sample of its deadline, so an endpoint that has become
+ * slower raises its own deadline instead of timing out for good. A read that times out is run
+ * again, by default once, under the deadline it gets then; the retry keeps the call's scheduler
+ * slot.
+ *
+ * <p>Reads are idempotent, so when {@code hedges} is set, one that is still running when the
+ * endpoint's usual slow latency has passed gets a hedge: the same command is started again,
+ * whichever attempt answers first wins and the others are cancelled. Both attempts stay within the
+ * original deadline. A hedge runs only in a spare scheduler slot, so it never pushes the call count
+ * past {@code maxConcurrentCommands} or a class cap, nor delays a queued call; without a spare slot
+ * the read simply keeps waiting. Mutations are never hedged.
+ */
+@Component
+public class GhTimeouts {
+
+  /** Endpoints tracked at most; calls to further endpoints use the fixed timeouts. */
+  private static final int MAX_ENDPOINTS = 1_000;
+
+  private static final Pattern NUMBER = Pattern.compile("\\d+");
+
+  private static final Pattern SHA = Pattern.compile("[0-9a-f]{40}");
+
+  /** Path segments after which the rest of a REST path names a ref or a file. */
+  private static final List<String> REF_SEGMENTS =
+      List.of("tags", "branches", "compare", "contents", "commits", "ref", "refs");
+
+  /** Runs one attempt of a command within the given time. */
+  @FunctionalInterface
+  interface Attempt {
+    GithubCommand run(Duration timeout, CompletableFuture<Void> cancellation);
+  }
+
+  private final GitHubProperties.Timeouts settings;
+  private final int defaultSeconds;
+  private final Map<String, Latencies> endpoints = new ConcurrentHashMap<>();
+  private final LongAdder hedged = new LongAdder();
+  private final LongAdder hedgeWins = new LongAdder();
+  private final LongAdder retried = new LongAdder();
+
+  @Autowired
+  public GhTimeouts(GitHubProperties gitHubProperties) {
+    this(gitHubProperties.timeouts(), gitHubProperties.commandTimeoutSeconds());
+  }
+
+  GhTimeouts(GitHubProperties.Timeouts settings, int defaultSeconds) {
+    this.settings = settings;
+    this.defaultSeconds = defaultSeconds;
+  }
+
+  /**
+   * Runs a command under its deadline, hedging it if it is a read that runs unusually long and
+   * retrying it if it is a read that timed out.
+   *
+   * @param args the arguments passed to gh
+   * @param tool the tool making the call, or null
+   * @param cancellation completed when the caller gives up, or null
+   * @param attempt starts gh once with a timeout and cancellation of its own
+   * @param spare returns an attempt that runs in a spare scheduler slot, or null if none is free
+   * @return the first result to arrive, or the timeout if none did
+   */
+  GithubCommand run(
+      List<String> args,
+      String tool,
+      CompletableFuture<Void> cancellation,
+      Attempt attempt,
+      Supplier<Attempt> spare) {
+    var latencies = latencies(args);
+    int retries = CommandUtils.isReadOnly(args) ? settings.retries() : 0;
+    GithubCommand result = runOnce(args, tool, latencies, cancellation, attempt, spare);
+    for (int retry = 0; retry < retries && isTimeout(result); retry++) {
+      if (cancellation != null && cancellation.isDone()) {
+        break;
+      }
+      retried.increment();
+      result = runOnce(args, tool, latencies, cancellation, attempt, spare);
+    }
+    return result;
+  }
+
+  /** Runs a command once under the deadline it gets now, counting a timeout as a sample. */
+  private GithubCommand runOnce(
+      List<String> args,
+      String tool,
+      Latencies latencies,
+      CompletableFuture<Void> cancellation,
+      Attempt attempt,
+      Supplier<Attempt> spare) {
+    Duration timeout = timeout(tool, latencies);
+    Duration hedgeAfter = CommandUtils.isReadOnly(args) ? hedgeAfter(latencies, timeout) : null;
+    GithubCommand result;
+    if (hedgeAfter == null) {
+      long start = System.nanoTime();
+      result = attempt.run(timeout, cancellation);
+      record(latencies, result, System.nanoTime() - start);
+    } else {
+      result = hedged(latencies, timeout, hedgeAfter, cancellation, attempt, spare);
+    }
+    if (latencies != null && isTimeout(result)) {
+      latencies.add(timeout.toMillis());
+    }
+    return result;
+  }
+
+  /** The deadline a call would get now, for the given arguments and tool. */
+  Duration timeout(List<String> args, String tool) {
+    return timeout(tool, latencies(args));
+  }
+
+  /** Adds a latency sample, as if a call to the command's endpoint had taken that long. */
+  void record(List<String> args, long millis) {
+    var latencies = latencies(args);
+    if (latencies != null) {
+      latencies.add(millis);
+    }
+  }
+
+  /** Number of reads that were started a second time because they ran long. */
+  public long hedgedCalls() {
+    return hedged.sum();
+  }
+
+  /** Number of hedged reads answered by a hedge rather than the first attempt. */
+  public long hedgeWins() {
+    return hedgeWins.sum();
+  }
+
+  /** Number of times a read that timed out was run again. */
+  public long retriedCalls() {
+    return retried.sum();
+  }
+
+  private Duration timeout(String tool, Latencies latencies) {
+    Integer configured = tool == null ? null : settings.tools().get(tool);
+    if (configured != null) {
+      return Duration.ofSeconds(configured);
+    }
+    if (!settings.adaptive() || latencies == null || latencies.size() < settings.minSamples()) {
+      return Duration.ofSeconds(defaultSeconds);
+    }
+    long millis = Math.round(latencies.percentile(settings.percentile()) * settings.margin());
+    return Duration.ofMillis(
+        Math.clamp(millis, settings.minSeconds() * 1000L, settings.maxSeconds() * 1000L));
+  }
+
+  private Duration hedgeAfter(Latencies latencies, Duration timeout) {
+    if (settings.hedges() == 0
+        || latencies == null
+        || latencies.size() < settings.minSamples()) {
+      return null;
+    }
+    long millis = Math.max(1, latencies.percentile(settings.hedgePercentile()));
+    return millis < timeout.toMillis() ? Duration.ofMillis(millis) : null;
+  }
+
+  /**
+   * Starts the first attempt, then another one each time {@code hedgeAfter} passes without an
+   * answer and a spare slot is free, until the hedges are used up. All attempts share the call's
+   * deadline, so the first answer, whether a result or a timeout, is the call's answer.
+   */
+  private GithubCommand hedged(
+      Latencies latencies,
+      Duration timeout,
+      Duration hedgeAfter,
+      CompletableFuture<Void> cancellation,
+      Attempt attempt,
+      Supplier<Attempt> spare) {
+    var call = new HedgedCall(latencies, System.nanoTime() + timeout.toNanos());
+    if (cancellation != null) {
+      cancellation.whenComplete((ignored, failure) -> call.cancel());
+    }
+    long started = System.nanoTime();
+    try {
+      call.launch(0, attempt);
+      int launched = 0;
+      for (int tick = 1; launched < settings.hedges(); tick++) {
+        long at = started + tick * hedgeAfter.toNanos();
+        if (at >= call.deadline) {
+          break;
+        }
+        var answer = call.answers.poll(at - System.nanoTime(), TimeUnit.NANOSECONDS);
+        if (answer != null) {
+          return answer.result();
+        }
+        var hedge = spare.get();
+        if (hedge != null) {
+          hedged.increment();
+          call.launch(++launched, hedge);
+        }
+      }
+      var answer = call.answers.take();
+      if (answer.index() > 0) {
+        hedgeWins.increment();
+      }
+      return answer.result();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return new GithubCommand(
+          "", "Command execution interrupted - %s".formatted(e.getMessage()), -1);
+    } finally {
+      // The attempts that lost are cancelled, which kills their processes
+      call.cancel();
+    }
+  }
+
+  /** The attempts of one hedged read and the answers they give. */
+  private static final class HedgedCall {
+    private final Latencies latencies;
+    private final long deadline;
+    private final BlockingQueue<Answer> answers = new LinkedBlockingQueue<>();
+    private final List<CompletableFuture<Void>> cancellations = new CopyOnWriteArrayList<>();
+    private volatile boolean cancelled;
+
+    HedgedCall(Latencies latencies, long deadline) {
+      this.latencies = latencies;
+      this.deadline = deadline;
+    }
+
+    void launch(int index, Attempt attempt) {
+      var cancellation = new CompletableFuture<Void>();
+      cancellations.add(cancellation);
+      if (cancelled) {
+        cancellation.complete(null);
+      }
+      Duration remaining = Duration.ofNanos(Math.max(0, deadline - System.nanoTime()));
+      Thread.ofVirtual()
+          .name("gh-hedge-" + index)
+          .start(
+              () -> {
+                long start = System.nanoTime();
+                var result = attempt.run(remaining, cancellation);
+                record(latencies, result, System.nanoTime() - start);
+                answers.add(new Answer(index, result));
+              });
+    }
+
+    void cancel() {
+      cancelled = true;
+      cancellations.forEach(cancellation -> cancellation.complete(null));
+    }
+  }
+
+  private record Answer(int index, GithubCommand result) {}
+
+  /** Counts an answered attempt; a timeout is counted once per call, a cancellation never. */
+  private static void record(Latencies latencies, GithubCommand result, long nanos) {
+    if (latencies != null && !isTimeout(result) && !isCancelled(result)) {
+      latencies.add(TimeUnit.NANOSECONDS.toMillis(nanos));
+    }
+  }
+
+  private static boolean isTimeout(GithubCommand result) {
+    return result.exitCode() == -1 && result.error().startsWith("Command timed out");
+  }
+
+  private static boolean isCancelled(GithubCommand result) {
+    return result.exitCode() == -1
+        && (result.error().equals("Command cancelled")
+            || result.error().startsWith("Command execution interrupted"));
+  }
+
+  private Latencies latencies(List<String> args) {
+    String endpoint = endpoint(args);
+    var latencies = endpoints.get(endpoint);
+    if (latencies == null && endpoints.size() < MAX_ENDPOINTS) {
+      latencies = endpoints.computeIfAbsent(endpoint, ignored -> new Latencies(settings.window()));
+    }
+    return latencies;
+  }
+
+  /**
+   * Names the endpoint a command calls, so calls that cost about the same share their latencies:
+   * the subcommand for gh commands such as {@code run list}, and for {@code gh api} the path with
+   * owners, repositories, numbers and refs replaced by placeholders.
+   */
+  static String endpoint(List<String> args) {
+    if (args.isEmpty()) {
+      return "";
+    }
+    if (args.size() < 2) {
+      return args.getFirst();
+    }
+    if (!args.getFirst().equals("api")) {
+      return args.get(0) + " " + args.get(1);
+    }
+    String[] segments = args.get(1).split("\\?", 2)[0].split("/");
+    var path = new StringBuilder("api");
+    for (int i = 0; i < segments.length; i++) {
+      String segment = segments[i];
+      String previous = i > 0 ? segments[i - 1] : "";
+      path.append(i == 0 ? " " : "/");
+      if (REF_SEGMENTS.contains(previous) && i > 1) {
+        path.append(":ref");
+        break;
+      }
+      path.append(
+          switch (previous) {
+            case "repos", "orgs", "users" -> ":owner";
+            default ->
+                i > 1 && segments[i - 2].equals("repos")
+                    ? ":repo"
+                    : NUMBER.matcher(segment).matches()
+                        ? ":id"
+                        : SHA.matcher(segment).matches() ? ":sha" : segment;
+          });
+    }
+    return path.toString();
+  }
+
+  /** The most recent latencies of one endpoint, in milliseconds. */
+  static final class Latencies {
+    private final long[] samples;
+    private int next;
+    private int size;
+
+    Latencies(int window) {
+      samples = new long[window];
+    }
+
+    synchronized void add(long millis) {
+      samples[next] = millis;
+      next = (next + 1) % samples.length;
+      size = Math.min(size + 1, samples.length);
+    }
+
+    synchronized int size() {
+      return size;
+    }
+
+    /** The latency that the given share of samples did not exceed. */
+    synchronized long percentile(double percentile) {
+      long[] sorted = Arrays.copyOf(samples, size);
+      Arrays.sort(sorted);
+      int rank = (int) Math.ceil(percentile * size) - 1;
+      return sorted[Math.clamp(rank, 0, size - 1)];
+    }
+  }
+}
@@ -0,0 +1,210 @@
+package com.kousenit.gh_mcp_server;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Resolves the GitHub token once and keeps it in memory. Every gh process otherwise repeats the
+ * lookup through its config file or the system keyring. The token is looked up in the
+ * environment, then in gh's {@code hosts.yml}, then with a single {@code gh auth token}, and is
+ * re-resolved when {@code hosts.yml} changes or GitHub rejects it.
+ */
+@Component
+public class GhTokenProvider {
+
+  private static final Logger logger = LoggerFactory.getLogger(GhTokenProvider.class);
+
+  private static final String DEFAULT_HOST = "github.com";
+
+  /** Where a cached token came from. */
+  public enum Source {
+    ENVIRONMENT,
+    CONFIG_FILE,
+    GH_AUTH_TOKEN,
+    NONE
+  }
+
+  private record CachedToken(String token, Source source, FileTime hostsFileModified) {}
+
+  private final GhProcessLauncher launcher;
+  private final Map<String, String> environment;
+  private final String host;
+  private final Path hostsFile;
+
+  private volatile CachedToken cached;
+
+  @Autowired
+  public GhTokenProvider(GhProcessLauncher launcher) {
+    this(launcher, System.getenv());
+  }
+
+  GhTokenProvider(GhProcessLauncher launcher, Map<String, String> environment) {
+    this.launcher = launcher;
+    this.environment = environment;
+    this.host = environment.getOrDefault("GH_HOST", DEFAULT_HOST);
+    this.hostsFile = configDirectory(environment).resolve("hosts.yml");
+  }
+
+  /** The token to use, or empty if gh is not logged in. */
+  public Optional<String> token() {
+    return Optional.ofNullable(current().token());
+  }
+
+  /** Where the current token came from. */
+  public Source source() {
+    return current().source();
+  }
+
+  /**
+   * Variables that hand the token to a gh subprocess so it skips its own credential lookup: {@code
+   * GH_TOKEN} for github.com and {@code GH_ENTERPRISE_TOKEN} for any other {@code GH_HOST}, the
+   * variable gh reads for that host. Empty when there is no token, in which case gh reports the
+   * login problem itself.
+   */
+  public Map<String, String> environment() {
+    return token().map(token -> Map.of(tokenVariables().getFirst(), token)).orElse(Map.of());
+  }
+
+  /**
+   * Drops a token that GitHub rejected and resolves again.
+   *
+   * @param rejected the token that was sent
+   * @return true if a different token is now available, so the call is worth retrying
+   */
+  public synchronized boolean refreshAfterUnauthorized(String rejected) {
+    cached = null;
+    var refreshed = current().token();
+    return refreshed != null && !refreshed.equals(rejected);
+  }
+
+  /** True if gh failed because the credentials were rejected. */
+  public static boolean isUnauthorized(GithubCommand command) {
+    return !command.isSuccess()
+        && (command.error().contains("HTTP 401") || command.error().contains("Bad credentials"));
+  }
+
+  private CachedToken current() {
+    var token = cached;
+    if (token == null || hostsFileChanged(token)) {
+      synchronized (this) {
+        token = cached;
+        if (token == null || hostsFileChanged(token)) {
+          token = resolve();
+          cached = token;
+        }
+      }
+    }
+    return token;
+  }
+
+  private boolean hostsFileChanged(CachedToken token) {
+    // Environment tokens cannot change underneath a running process
+    return token.source() != Source.ENVIRONMENT
+        && !Objects.equals(token.hostsFileModified(), lastModified());
+  }
+
+  private CachedToken resolve() {
+    var modified = lastModified();
+    for (String variable : tokenVariables()) {
+      String value = environment.get(variable);
+      if (value != null && !value.isBlank()) {
+        return new CachedToken(value.trim(), Source.ENVIRONMENT, modified);
+      }
+    }
+
+    var fromFile = readHostsFileToken();
+    if (fromFile.isPresent()) {
+      return new CachedToken(fromFile.get(), Source.CONFIG_FILE, modified);
+    }
+
+    // Recent gh versions keep the token in the system keyring; ask gh for it exactly once
+    var result =
+        launcher.run(
+            List.of("auth", "token", "--hostname", host), Map.of(), Duration.ofSeconds(10));
+    if (result.isSuccess() && !result.output().isBlank()) {
+      return new CachedToken(result.output().trim(), Source.GH_AUTH_TOKEN, modified);
+    }
+    logger.warn("No GitHub token found for {}; gh will report the login problem", host);
+    return new CachedToken(null, Source.NONE, modified);
+  }
+
+  /** The variables gh reads a token for the host from, the one it hands tokens over in first. */
+  private List<String> tokenVariables() {
+    return DEFAULT_HOST.equals(host)
+        ? List.of("GH_TOKEN", "GITHUB_TOKEN")
+        : List.of("GH_ENTERPRISE_TOKEN", "GITHUB_ENTERPRISE_TOKEN");
+  }
+
+  /**
+   * Reads the active account's {@code oauth_token} from the host's block in {@code hosts.yml}. Only
+   * the direct child of the host entry counts; per-user entries nested deeper are skipped.
+   */
+  Optional<String> readHostsFileToken() {
+    List<String> lines;
+    try {
+      lines = Files.readAllLines(hostsFile);
+    } catch (IOException e) {
+      return Optional.empty();
+    }
+
+    boolean inHost = false;
+    int childIndent = -1;
+    for (String line : lines) {
+      if (line.isBlank() || line.trim().startsWith("#")) {
+        continue;
+      }
+      int indent = line.length() - line.stripLeading().length();
+      if (indent == 0) {
+        inHost = line.trim().equals(host + ":");
+        childIndent = -1;
+        continue;
+      }
+      if (!inHost) {
+        continue;
+      }
+      if (childIndent < 0) {
+        childIndent = indent;
+      }
+      String entry = line.trim();
+      if (indent == childIndent && entry.startsWith("oauth_token:")) {
+        String value = entry.substring("oauth_token:".length()).trim();
+        return value.isEmpty() ? Optional.empty() : Optional.of(value);
+      }
+    }
+    return Optional.empty();
+  }
+
+  private FileTime lastModified() {
+    try {
+      return Files.getLastModifiedTime(hostsFile);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private static Path configDirectory(Map<String, String> environment) {
+    if (environment.get("GH_CONFIG_DIR") != null) {
+      return Path.of(environment.get("GH_CONFIG_DIR"));
+    }
+    if (environment.get("XDG_CONFIG_HOME") != null) {
+      return Path.of(environment.get("XDG_CONFIG_HOME"), "gh");
+    }
+    if (environment.get("APPDATA") != null
+        && System.getProperty("os.name", "").startsWith("Windows")) {
+      return Path.of(environment.get("APPDATA"), "GitHub CLI");
+    }
+    String home = environment.getOrDefault("HOME", System.getProperty("user.home"));
+    return Path.of(home, ".config", "gh");
+  }
+}
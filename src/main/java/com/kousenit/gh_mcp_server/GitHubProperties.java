@@ -1,6 +1,10 @@
 package com.kousenit.gh_mcp_server;
 
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.ConstructorBinding;
 
 /** Configuration properties for GitHub operations. */
 @ConfigurationProperties(prefix = "github")
@@ -8,8 +12,29 @@ public record GitHubProperties(
     String defaultBranch,
     Integer commandTimeoutSeconds,
     Integer defaultCommitLimit,
-    Integer defaultSearchLimit) {
+    Integer defaultSearchLimit,
+    String ghExecutable,
+    Integer maxConcurrentCommands,
+    Cache cache,
+    Scheduler scheduler,
+    Cassette cassette,
+    Mirror mirror,
+    Issues issues,
+    Logs logs,
+    Watch watch,
+    Webhook webhook,
+    Prefetch prefetch,
+    Output output,
+    Resources resources,
+    Bulk bulk,
+    Diffs diffs,
+    Search search,
+    Catalog catalog,
+    Assets assets,
+    Artifacts artifacts,
+    Timeouts timeouts) {
 
+  @ConstructorBinding
   public GitHubProperties {
     // Set default values if null or invalid
     if (defaultBranch == null || defaultBranch.trim().isEmpty()) {
@@ -24,5 +49,673 @@ public record GitHubProperties(
     if (defaultSearchLimit == null || defaultSearchLimit <= 0) {
       defaultSearchLimit = 30;
     }
+    if (ghExecutable == null || ghExecutable.trim().isEmpty()) {
+      ghExecutable = "gh";
+    }
+    if (maxConcurrentCommands == null || maxConcurrentCommands <= 0) {
+      maxConcurrentCommands = 8;
+    }
+    if (cache == null) {
+      cache = new Cache(null, null, null);
+    }
+    if (scheduler == null) {
+      scheduler = new Scheduler(null, null, null);
+    }
+    if (cassette == null) {
+      cassette = new Cassette(null, null, null, null);
+    }
+    if (mirror == null) {
+      mirror = new Mirror(null, null, null, null);
+    }
+    if (issues == null) {
+      issues = new Issues(null, null, null);
+    }
+    if (logs == null) {
+      logs = new Logs(null, null, null, null);
+    }
+    if (watch == null) {
+      watch = new Watch(null, null, null);
+    }
+    if (webhook == null) {
+      webhook = new Webhook(null, null, null, null);
+    }
+    if (prefetch == null) {
+      prefetch = new Prefetch(null, null, null, null);
+    }
+    if (output == null) {
+      output = new Output(null, null, null, null);
+    }
+    if (resources == null) {
+      resources = new Resources(null, null, null);
+    }
+    if (bulk == null) {
+      bulk = new Bulk(null, null, null, null, null);
+    }
+    if (diffs == null) {
+      diffs = new Diffs(null, null, null, null, null);
+    }
+    if (search == null) {
+      search = new Search(null, null, null, null, null);
+    }
+    if (catalog == null) {
+      catalog = new Catalog(null, null, null, null, null);
+    }
+    if (assets == null) {
+      assets = new Assets(null, null, null, null, null);
+    }
+    if (artifacts == null) {
+      artifacts = new Artifacts(null, null, null, null, null);
+    }
+    if (timeouts == null) {
+      timeouts = new Timeouts(null, null, null, null, null, null, null, null, null, null, null);
+    }
+  }
+
+  /** Convenience constructor for the core settings, leaving everything else at its default. */
+  public GitHubProperties(
+      String defaultBranch,
+      Integer commandTimeoutSeconds,
+      Integer defaultCommitLimit,
+      Integer defaultSearchLimit) {
+    this(
+        defaultBranch,
+        commandTimeoutSeconds,
+        defaultCommitLimit,
+        defaultSearchLimit,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null);
+  }
+
+  /**
+   * Settings for the shared cache of read-only command results. Without a snapshot directory the
+   * cache lives in memory only.
+   */
+  public record Cache(Integer ttlSeconds, Integer maxEntries, String snapshotDir) {
+
+    public Cache {
+      if (ttlSeconds == null || ttlSeconds < 0) {
+        ttlSeconds = 60;
+      }
+      if (maxEntries == null || maxEntries <= 0) {
+        maxEntries = 1000;
+      }
+      if (snapshotDir != null && snapshotDir.isBlank()) {
+        snapshotDir = null;
+      }
+    }
+  }
+
+  /**
+   * Settings for sharing gh process slots between clients and kinds of work. A concurrency cap of
+   * 0 means it is derived from {@code maxConcurrentCommands}: half the slots for bulk work and a
+   * quarter for prefetching, at least one each.
+   */
+  public record Scheduler(
+      Integer bulkMaxConcurrent, Integer prefetchMaxConcurrent, Integer starvationMillis) {
+
+    public Scheduler {
+      if (bulkMaxConcurrent == null || bulkMaxConcurrent < 0) {
+        bulkMaxConcurrent = 0;
+      }
+      if (prefetchMaxConcurrent == null || prefetchMaxConcurrent < 0) {
+        prefetchMaxConcurrent = 0;
+      }
+      if (starvationMillis == null || starvationMillis <= 0) {
+        starvationMillis = 5000;
+      }
+    }
+  }
+
+  /**
+   * Settings for recording gh traffic to a cassette file, or serving it back from one instead of
+   * running gh, optionally reissuing the recorded tool calls when the server starts.
+   */
+  public record Cassette(Mode mode, String path, Boolean replayLatency, Boolean driveCalls) {
+
+    /** What the cassette is used for. */
+    public enum Mode {
+      OFF,
+      RECORD,
+      REPLAY
+    }
+
+    public Cassette {
+      if (mode == null) {
+        mode = Mode.OFF;
+      }
+      if (path == null || path.isBlank()) {
+        path = "gh-cassette.jsonl.gz";
+      }
+      if (replayLatency == null) {
+        replayLatency = false;
+      }
+      if (driveCalls == null) {
+        driveCalls = false;
+      }
+    }
+  }
+
+  /**
+   * Settings for local git mirrors that answer history, file, tree and diff reads without the API.
+   *
+   * @param repositories {@code owner/repo} names to mirror; empty disables the backend
+   * @param dir where the bare mirrors are kept
+   * @param remoteUrl clone URL with {@code %s} standing for {@code owner/repo}
+   * @param refreshSeconds how often mirrors are fetched; a mirror not fetched within twice this
+   *     interval is stale
+   */
+  public record Mirror(
+      List<String> repositories, String dir, String remoteUrl, Integer refreshSeconds) {
+
+    public Mirror {
+      repositories =
+          repositories == null
+              ? List.of()
+              : repositories.stream().filter(r -> r != null && r.contains("/")).toList();
+      if (dir == null || dir.isBlank()) {
+        dir =
+            Path.of(System.getProperty("user.home"), ".cache", "gh-mcp-server", "mirrors")
+                .toString();
+      }
+      if (remoteUrl == null || remoteUrl.isBlank()) {
+        remoteUrl = "https://github.com/%s.git";
+      }
+      if (refreshSeconds == null || refreshSeconds <= 0) {
+        refreshSeconds = 300;
+      }
+    }
+  }
+
+  /**
+   * Settings for the local copy of issues, pull requests and comments that list and filter tools
+   * are served from.
+   *
+   * @param repositories {@code owner/repo} names to sync; empty disables the local copy
+   * @param syncSeconds how often items updated since the last sync are fetched; a copy not synced
+   *     within twice this interval is stale
+   * @param dir where the synced items are stored; blank keeps them in memory only
+   */
+  public record Issues(List<String> repositories, Integer syncSeconds, String dir) {
+
+    public Issues {
+      repositories =
+          repositories == null
+              ? List.of()
+              : repositories.stream().filter(r -> r != null && r.contains("/")).toList();
+      if (syncSeconds == null || syncSeconds <= 0) {
+        syncSeconds = 120;
+      }
+      if (dir != null && dir.isBlank()) {
+        dir = null;
+      }
+    }
+  }
+
+  /**
+   * Settings for workflow run log retrieval.
+   *
+   * @param cacheDir where log archives of completed runs are kept; blank disables the cache
+   * @param maxCachedRuns archives kept before the least recently used ones are deleted
+   * @param maxLines most log lines returned by one call
+   * @param timeoutSeconds how long downloading one archive may take
+   */
+  public record Logs(
+      String cacheDir, Integer maxCachedRuns, Integer maxLines, Integer timeoutSeconds) {
+
+    public Logs {
+      if (cacheDir != null && cacheDir.isBlank()) {
+        cacheDir = null;
+      }
+      if (maxCachedRuns == null || maxCachedRuns < 0) {
+        maxCachedRuns = 20;
+      }
+      if (maxLines == null || maxLines <= 0) {
+        maxLines = 500;
+      }
+      if (timeoutSeconds == null || timeoutSeconds <= 0) {
+        timeoutSeconds = 300;
+      }
+    }
+  }
+
+  /**
+   * Settings for watching workflow runs and pull request checks. The poll interval starts at the
+   * minimum, grows while nothing changes and never undercuts GitHub's {@code X-Poll-Interval}.
+   *
+   * @param minPollSeconds interval right after a change
+   * @param maxPollSeconds longest interval the poller backs off to by itself
+   * @param maxWaitSeconds longest a single watch call may wait
+   */
+  public record Watch(Integer minPollSeconds, Integer maxPollSeconds, Integer maxWaitSeconds) {
+
+    public Watch {
+      if (minPollSeconds == null || minPollSeconds <= 0) {
+        minPollSeconds = 5;
+      }
+      if (maxPollSeconds == null || maxPollSeconds < minPollSeconds) {
+        maxPollSeconds = Math.max(60, minPollSeconds);
+      }
+      if (maxWaitSeconds == null || maxWaitSeconds <= 0) {
+        maxWaitSeconds = 600;
+      }
+    }
+  }
+
+  /**
+   * Settings for the webhook receiver. It only starts with a port and a secret; GitHub, or a local
+   * relay such as {@code gh webhook forward}, delivers to {@code http://address:port/path}.
+   *
+   * @param port port to listen on; 0 disables the receiver
+   * @param address interface to bind; loopback unless a relay on another host must reach it
+   * @param path request path deliveries are posted to
+   * @param secret the webhook secret every delivery's signature is checked against
+   */
+  public record Webhook(Integer port, String address, String path, String secret) {
+
+    public Webhook {
+      if (port == null || port < 0) {
+        port = 0;
+      }
+      if (address == null || address.isBlank()) {
+        address = "127.0.0.1";
+      }
+      if (path == null || path.isBlank()) {
+        path = "/webhook";
+      }
+      if (secret != null && secret.isBlank()) {
+        secret = null;
+      }
+    }
+  }
+
+  /**
+   * Settings for warming the cache with the repositories agents use most. Warming runs at prefetch
+   * priority, within its own hourly call budget, and pauses while interactive calls are waiting.
+   *
+   * @param repositories {@code owner/repo} entries to keep warm
+   * @param refreshSeconds how often they are refreshed; 0 derives it from the cache TTL and budget
+   * @param maxCallsPerHour gh calls warming may make in any hour
+   * @param reserveRemaining API requests left in the rate limit below which warming stops
+   */
+  public record Prefetch(
+      List<String> repositories,
+      Integer refreshSeconds,
+      Integer maxCallsPerHour,
+      Integer reserveRemaining) {
+
+    public Prefetch {
+      repositories =
+          repositories == null
+              ? List.of()
+              : repositories.stream().filter(r -> r != null && r.contains("/")).toList();
+      if (refreshSeconds == null || refreshSeconds < 0) {
+        refreshSeconds = 0;
+      }
+      if (maxCallsPerHour == null || maxCallsPerHour <= 0) {
+        maxCallsPerHour = 600;
+      }
+      if (reserveRemaining == null || reserveRemaining < 0) {
+        reserveRemaining = 1000;
+      }
+    }
+  }
+
+  /**
+   * Settings for keeping tool results within an agent's context. A result over its budget is
+   * returned in parts, the rest served by {@code continueResult}.
+   *
+   * @param maxTokens budget of every tool, estimated at four characters a token; 0 disables it
+   * @param tools budgets of individual tools by tool name, overriding {@code maxTokens}
+   * @param maxStored results with parts left that are kept; the least recently used go first
+   * @param ttlSeconds how long the remaining parts of a result are kept
+   */
+  public record Output(
+      Integer maxTokens, Map<String, Integer> tools, Integer maxStored, Integer ttlSeconds) {
+
+    public Output {
+      if (maxTokens == null || maxTokens < 0) {
+        maxTokens = 20000;
+      }
+      tools = tools == null ? Map.of() : Map.copyOf(tools);
+      if (maxStored == null || maxStored <= 0) {
+        maxStored = 100;
+      }
+      if (ttlSeconds == null || ttlSeconds <= 0) {
+        ttlSeconds = 900;
+      }
+    }
+  }
+
+  /**
+   * Settings for the MCP resources. A resource a session has subscribed to is watched until it
+   * unsubscribes, and an update notification is sent to it when the content changes.
+   *
+   * @param pollSeconds how often watched resources are checked for changes; 0 disables it
+   * @param maxWatched resources watched at once; subscribing to more fails
+   * @param maxChecksPerPoll watched resources checked in one poll; those checked longest ago go
+   *     first
+   */
+  public record Resources(Integer pollSeconds, Integer maxWatched, Integer maxChecksPerPoll) {
+
+    public Resources {
+      if (pollSeconds == null || pollSeconds < 0) {
+        pollSeconds = 60;
+      }
+      if (maxWatched == null || maxWatched <= 0) {
+        maxWatched = 200;
+      }
+      if (maxChecksPerPoll == null || maxChecksPerPoll <= 0) {
+        maxChecksPerPoll = 50;
+      }
+    }
+  }
+
+  /**
+   * Settings for the bulk mutation tools. GitHub's secondary rate limits punish bursts of
+   * content-creating requests, so mutations are spaced out and run on few slots, and a throttled
+   * request slows the pace down.
+   *
+   * @param pacingMillis least time between the starts of two mutations
+   * @param concurrency mutations in flight at once
+   * @param maxRetries times a throttled mutation is retried before it counts as failed
+   * @param maxSeconds how long one call runs before it returns with the rest left to resume
+   * @param maxJobs unfinished jobs kept for resuming; the least recently used go first
+   */
+  public record Bulk(
+      Integer pacingMillis,
+      Integer concurrency,
+      Integer maxRetries,
+      Integer maxSeconds,
+      Integer maxJobs) {
+
+    public Bulk {
+      if (pacingMillis == null || pacingMillis < 0) {
+        pacingMillis = 1000;
+      }
+      if (concurrency == null || concurrency <= 0) {
+        concurrency = 1;
+      }
+      if (maxRetries == null || maxRetries < 0) {
+        maxRetries = 3;
+      }
+      if (maxSeconds == null || maxSeconds <= 0) {
+        maxSeconds = 300;
+      }
+      if (maxJobs == null || maxJobs <= 0) {
+        maxJobs = 20;
+      }
+    }
+  }
+
+  /**
+   * Settings for pull request diffs. A diff is stored under the SHAs of its base and head commits,
+   * so a cached copy is valid until the pull request gets new commits.
+   *
+   * @param cacheDir where downloaded diffs are kept; blank disables the cache
+   * @param maxCachedDiffs diffs kept before the least recently used ones are deleted
+   * @param maxChars most diff text returned by one call
+   * @param maxFileChars most diff text returned for one file; later hunks are left out
+   * @param timeoutSeconds how long downloading one diff may take
+   */
+  public record Diffs(
+      String cacheDir,
+      Integer maxCachedDiffs,
+      Integer maxChars,
+      Integer maxFileChars,
+      Integer timeoutSeconds) {
+
+    public Diffs {
+      if (cacheDir != null && cacheDir.isBlank()) {
+        cacheDir = null;
+      }
+      if (maxCachedDiffs == null || maxCachedDiffs < 0) {
+        maxCachedDiffs = 50;
+      }
+      if (maxChars == null || maxChars <= 0) {
+        maxChars = 60_000;
+      }
+      if (maxFileChars == null || maxFileChars <= 0) {
+        maxFileChars = 20_000;
+      }
+      if (timeoutSeconds == null || timeoutSeconds <= 0) {
+        timeoutSeconds = 300;
+      }
+    }
+  }
+
+  /**
+   * Settings for searches that go past GitHub's 1,000 results per query by splitting the query
+   * into partitions.
+   *
+   * @param requestsPerMinute search requests allowed a minute, GitHub's limit for an authenticated
+   *     user
+   * @param codeRequestsPerMinute code search requests allowed a minute, a separate, lower limit
+   * @param concurrency search requests in flight at once
+   * @param maxResults most results one search returns
+   * @param maxRetries times a throttled request is retried
+   */
+  public record Search(
+      Integer requestsPerMinute,
+      Integer codeRequestsPerMinute,
+      Integer concurrency,
+      Integer maxResults,
+      Integer maxRetries) {
+
+    public Search {
+      if (requestsPerMinute == null || requestsPerMinute <= 0) {
+        requestsPerMinute = 30;
+      }
+      if (codeRequestsPerMinute == null || codeRequestsPerMinute <= 0) {
+        codeRequestsPerMinute = 10;
+      }
+      if (concurrency == null || concurrency <= 0) {
+        concurrency = 4;
+      }
+      if (maxResults == null || maxResults <= 0) {
+        maxResults = 5000;
+      }
+      if (maxRetries == null || maxRetries < 0) {
+        maxRetries = 3;
+      }
+    }
+  }
+
+  /**
+   * Settings for listing all repositories of an organization or user. Each owner's list is kept in
+   * memory and refreshed by asking only for repositories updated or pushed to since the last
+   * sync, with a full sync now and then to drop deleted and transferred ones.
+   *
+   * @param refreshSeconds how old a list may get before a call refreshes it
+   * @param fullSyncSeconds how old a list may get before a call reads it again in full
+   * @param maxOwners owners whose lists are kept; the least recently used go first
+   * @param pageSize repositories returned per page of a listing
+   * @param timeoutSeconds how long reading one page of repositories may take
+   */
+  public record Catalog(
+      Integer refreshSeconds,
+      Integer fullSyncSeconds,
+      Integer maxOwners,
+      Integer pageSize,
+      Integer timeoutSeconds) {
+
+    public Catalog {
+      if (refreshSeconds == null || refreshSeconds < 0) {
+        refreshSeconds = 300;
+      }
+      if (fullSyncSeconds == null || fullSyncSeconds <= 0) {
+        fullSyncSeconds = 86_400;
+      }
+      if (maxOwners == null || maxOwners <= 0) {
+        maxOwners = 20;
+      }
+      if (pageSize == null || pageSize <= 0) {
+        pageSize = 100;
+      }
+      if (timeoutSeconds == null || timeoutSeconds <= 0) {
+        timeoutSeconds = 120;
+      }
+    }
+  }
+
+  /**
+   * Settings for release asset transfers. Downloads are split into byte ranges fetched in
+   * parallel, and resume from the ranges already on disk.
+   *
+   * @param dir where downloaded assets are written, under {@code owner/repo/tag}
+   * @param concurrency ranges of one download fetched at once
+   * @param rangeMegabytes size of each range
+   * @param timeoutSeconds how long fetching one range, or one whole upload, may take
+   * @param uploadDir the only directory files are uploaded from, so a tool call cannot publish
+   *     arbitrary files the server can read; {@code uploads} under {@code dir} by default
+   */
+  public record Assets(
+      String dir,
+      Integer concurrency,
+      Integer rangeMegabytes,
+      Integer timeoutSeconds,
+      String uploadDir) {
+
+    public Assets {
+      if (dir == null || dir.isBlank()) {
+        dir =
+            Path.of(System.getProperty("user.home"), ".cache", "gh-mcp-server", "assets")
+                .toString();
+      }
+      if (concurrency == null || concurrency <= 0) {
+        concurrency = 4;
+      }
+      if (rangeMegabytes == null || rangeMegabytes <= 0) {
+        rangeMegabytes = 16;
+      }
+      if (timeoutSeconds == null || timeoutSeconds <= 0) {
+        timeoutSeconds = 600;
+      }
+      if (uploadDir == null || uploadDir.isBlank()) {
+        uploadDir = Path.of(dir, "uploads").toString();
+      }
+    }
+  }
+
+  /**
+   * Settings for reading workflow artifacts by byte range. Files read out of an artifact are kept
+   * on disk under its ID, which never points at different content.
+   *
+   * @param cacheDir where extracted files are kept; blank disables the cache
+   * @param maxCachedArtifacts artifacts whose files and directories are kept before the least
+   *     recently used ones are dropped
+   * @param maxChars most text of one file returned by a call
+   * @param tailKilobytes how much of the end of an archive the first request reads, enough for
+   *     the central directory of most artifacts
+   * @param timeoutSeconds how long one range request may take
+   */
+  public record Artifacts(
+      String cacheDir,
+      Integer maxCachedArtifacts,
+      Integer maxChars,
+      Integer tailKilobytes,
+      Integer timeoutSeconds) {
+
+    public Artifacts {
+      if (cacheDir != null && cacheDir.isBlank()) {
+        cacheDir = null;
+      }
+      if (maxCachedArtifacts == null || maxCachedArtifacts < 0) {
+        maxCachedArtifacts = 20;
+      }
+      if (maxChars == null || maxChars <= 0) {
+        maxChars = 60_000;
+      }
+      if (tailKilobytes == null || tailKilobytes <= 0) {
+        tailKilobytes = 64;
+      }
+      if (timeoutSeconds == null || timeoutSeconds <= 0) {
+        timeoutSeconds = 300;
+      }
+    }
+  }
+
+  /**
+   * Settings for how long gh commands may run. Without a configured timeout for its tool, a
+   * command gets a deadline from the latencies recently seen for its endpoint, once there are
+   * enough of them, and {@code commandTimeoutSeconds} before that.
+   *
+   * @param tools timeouts in seconds of individual tools by tool name, ahead of any other
+   * @param adaptive whether deadlines follow the latencies seen for each endpoint
+   * @param percentile the share of recent calls, such as 0.99, whose latency sets the deadline
+   * @param margin what that latency is multiplied by to make the deadline
+   * @param minSeconds shortest deadline adaptive mode sets
+   * @param maxSeconds longest deadline adaptive mode sets
+   * @param minSamples latencies of an endpoint needed before they set its deadline or hedges
+   * @param window most recent latencies kept for each endpoint
+   * @param hedges how many more times a slow read is started before its deadline, each in a spare
+   *     scheduler slot; 0, the default, disables it
+   * @param hedgePercentile the share of recent calls after whose latency a read is hedged
+   * @param retries how many more times a read that timed out is run, under the deadline it gets
+   *     then; mutations are never retried
+   */
+  public record Timeouts(
+      Map<String, Integer> tools,
+      Boolean adaptive,
+      Double percentile,
+      Double margin,
+      Integer minSeconds,
+      Integer maxSeconds,
+      Integer minSamples,
+      Integer window,
+      Integer hedges,
+      Double hedgePercentile,
+      Integer retries) {
+
+    public Timeouts {
+      tools = tools == null ? Map.of() : Map.copyOf(tools);
+      if (adaptive == null) {
+        adaptive = true;
+      }
+      if (percentile == null || percentile <= 0 || percentile > 1) {
+        percentile = 0.99;
+      }
+      if (margin == null || margin < 1) {
+        margin = 2.0;
+      }
+      if (minSeconds == null || minSeconds <= 0) {
+        minSeconds = 5;
+      }
+      if (maxSeconds == null || maxSeconds < minSeconds) {
+        maxSeconds = Math.max(120, minSeconds);
+      }
+      if (minSamples == null || minSamples <= 0) {
+        minSamples = 20;
+      }
+      if (window == null || window < minSamples) {
+        window = Math.max(200, minSamples);
+      }
+      if (hedges == null || hedges < 0) {
+        hedges = 0;
+      }
+      if (hedgePercentile == null || hedgePercentile <= 0 || hedgePercentile > 1) {
+        hedgePercentile = 0.95;
+      }
+      if (retries == null || retries < 0) {
+        retries = 1;
+      }
+    }
   }
 }
@@ -0,0 +1,426 @@
+package com.kousenit.gh_mcp_server;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Blobless bare git mirrors of configured repositories, answering commit history, file, tree and
+ * diff reads from the local object store.
+ *
+ * <p>Mirrors are cloned with {@code --filter=blob:none}, so only commits and trees are copied up
+ * front and file contents are fetched by git the first time they are read. They are refreshed with
+ * incremental fetches every {@code refreshSeconds}; a mirror not fetched within twice that interval
+ * is stale. Every read returns empty when the repository is not mirrored, the mirror is missing or
+ * stale, or git fails, and callers then use the API.
+ */
+@Component
+public class GitMirror {
+
+  private static final Logger logger = LoggerFactory.getLogger(GitMirror.class);
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private static final Duration GIT_TIMEOUT = Duration.ofMinutes(10);
+
+  private static final Pattern FULL_SHA = Pattern.compile("[0-9a-f]{40}");
+
+  /** Touched after every successful clone or fetch; its mtime is the mirror's age. */
+  static final String FETCHED_MARKER = "mirror-fetched";
+
+  private static final List<String> REFSPECS =
+      List.of("+refs/heads/*:refs/heads/*", "+refs/tags/*:refs/tags/*");
+
+  /** State of one mirror. */
+  public record Status(String repository, boolean present, long lastFetchMillis, boolean fresh) {}
+
+  private final GitHubProperties.Mirror settings;
+  private final GhProcessLauncher git;
+  private final Supplier<Optional<String>> token;
+  private final LongSupplier clock;
+  private final Map<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+  private ScheduledExecutorService refresher;
+
+  @Autowired
+  public GitMirror(GitHubProperties gitHubProperties, GhTokenProvider tokenProvider) {
+    this(
+        gitHubProperties.mirror(),
+        new GhProcessLauncher("git", System.getenv()),
+        tokenProvider::token,
+        System::currentTimeMillis);
+  }
+
+  GitMirror(
+      GitHubProperties.Mirror settings,
+      GhProcessLauncher git,
+      Supplier<Optional<String>> token,
+      LongSupplier clock) {
+    this.settings = settings;
+    this.git = git;
+    this.token = token;
+    this.clock = clock;
+  }
+
+  /** A backend with no mirrored repositories, for callers constructed without Spring. */
+  public static GitMirror disabled() {
+    return new GitMirror(
+        new GitHubProperties.Mirror(null, null, null, null),
+        null,
+        Optional::empty,
+        System::currentTimeMillis);
+  }
+
+  /** Clones missing mirrors and keeps all of them fetched in the background. */
+  @PostConstruct
+  void start() {
+    if (settings.repositories().isEmpty()) {
+      return;
+    }
+    refresher =
+        Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("git-mirror").daemon().factory());
+    refresher.scheduleWithFixedDelay(
+        this::refreshAll, 0, settings.refreshSeconds(), TimeUnit.SECONDS);
+  }
+
+  @PreDestroy
+  void stop() {
+    if (refresher != null) {
+      refresher.shutdownNow();
+    }
+  }
+
+  public boolean isMirrored(String owner, String repo) {
+    return settings.repositories().stream()
+        .anyMatch(configured -> configured.equalsIgnoreCase(owner + "/" + repo));
+  }
+
+  public List<Status> status() {
+    return settings.repositories().stream()
+        .map(
+            repository -> {
+              var age = lastFetch(directory(repository));
+              return new Status(
+                  repository,
+                  age.isPresent(),
+                  age.orElse(0L),
+                  age.isPresent() && isFresh(age.get()));
+            })
+        .toList();
+  }
+
+  /** Fetches every configured mirror, cloning the ones that do not exist yet. */
+  public void refreshAll() {
+    for (String repository : settings.repositories()) {
+      try {
+        refresh(repository);
+      } catch (RuntimeException e) {
+        logger.warn("Could not refresh mirror of {}: {}", repository, e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Fetches a mirror in the background soon, for example after a push was reported. Repositories
+   * that are not mirrored are ignored.
+   */
+  public void requestRefresh(String repository) {
+    if (refresher == null) {
+      return;
+    }
+    settings.repositories().stream()
+        .filter(repository::equalsIgnoreCase)
+        .findFirst()
+        .ifPresent(
+            configured ->
+                refresher.execute(
+                    () -> {
+                      try {
+                        refresh(configured);
+                      } catch (RuntimeException e) {
+                        logger.warn(
+                            "Could not refresh mirror of {}: {}", configured, e.getMessage());
+                      }
+                    }));
+  }
+
+  /**
+   * Clones or incrementally fetches one mirror. Concurrent refreshes of the same repository are
+   * skipped rather than queued.
+   *
+   * @return true if the mirror is up to date afterwards
+   */
+  public boolean refresh(String repository) {
+    var lock = locks.computeIfAbsent(repository.toLowerCase(), ignored -> new ReentrantLock());
+    if (!lock.tryLock()) {
+      return false;
+    }
+    try {
+      Path directory = directory(repository);
+      GithubCommand result;
+      if (Files.isDirectory(directory)) {
+        var args = new ArrayList<>(gitDir(directory));
+        args.addAll(List.of("fetch", "--prune", "--filter=blob:none", "origin"));
+        args.addAll(REFSPECS);
+        result = git.run(args, environment(), GIT_TIMEOUT);
+      } else {
+        result = cloneInto(repository, directory);
+      }
+      if (!result.isSuccess()) {
+        logger.warn("git failed for mirror of {}: {}", repository, result.error());
+        return false;
+      }
+      touch(directory.resolve(FETCHED_MARKER));
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Recent commits of the default branch, one JSON object per line with the same fields as
+   * {@link GithubService#getCommitHistory}.
+   */
+  public Optional<String> commitHistory(String owner, String repo, int limit) {
+    return fresh(owner, repo)
+        .flatMap(
+            directory ->
+                run(
+                    directory,
+                    "log",
+                    "-n",
+                    String.valueOf(limit),
+                    "--format=%H%x1f%an%x1f%aI%x1f%B%x1e",
+                    "HEAD"))
+        .map(GitMirror::commitsAsJsonLines);
+  }
+
+  /**
+   * A file's contents at a ref, or at the default branch when the ref is empty. Refs come from tool
+   * callers, so here and below they follow {@code --end-of-options} and are never read as options.
+   */
+  public Optional<String> fileContents(String owner, String repo, String path, String ref) {
+    String revision = ref == null || ref.isBlank() ? "HEAD" : ref;
+    return usable(owner, repo, revision)
+        .flatMap(
+            directory ->
+                run(directory, "cat-file", "blob", "--end-of-options", revision + ":" + path));
+  }
+
+  /**
+   * Entries below a path at a ref, recursively, one JSON object per line with path, type and
+   * SHA.
+   */
+  public Optional<String> tree(String owner, String repo, String ref, String path) {
+    String revision = ref == null || ref.isBlank() ? "HEAD" : ref;
+    var args = new ArrayList<>(List.of("ls-tree", "-r", "-t", "--end-of-options", revision));
+    if (path != null && !path.isBlank()) {
+      args.addAll(List.of("--", path));
+    }
+    return usable(owner, repo, revision)
+        .flatMap(directory -> run(directory, args.toArray(String[]::new)))
+        .map(GitMirror::treeAsJsonLines);
+  }
+
+  /** Unified diff of what {@code head} adds on top of its merge base with {@code base}. */
+  public Optional<String> diff(String owner, String repo, String base, String head) {
+    return fresh(owner, repo)
+        .flatMap(
+            directory ->
+                run(directory, "diff", "--no-color", "--end-of-options", base + "..." + head));
+  }
+
+  /** The mirror directory when it exists and was fetched recently. */
+  private Optional<Path> fresh(String owner, String repo) {
+    if (!isMirrored(owner, repo)) {
+      return Optional.empty();
+    }
+    Path directory = directory(owner + "/" + repo);
+    return lastFetch(directory).filter(this::isFresh).map(ignored -> directory);
+  }
+
+  /** Like {@link #fresh}, but a full commit SHA can be served from a stale mirror too. */
+  private Optional<Path> usable(String owner, String repo, String revision) {
+    var directory = fresh(owner, repo);
+    if (directory.isPresent()
+        || !isMirrored(owner, repo)
+        || !FULL_SHA.matcher(revision).matches()) {
+      return directory;
+    }
+    Path stale = directory(owner + "/" + repo);
+    return lastFetch(stale).isPresent() ? Optional.of(stale) : Optional.empty();
+  }
+
+  private Optional<String> run(Path directory, String... command) {
+    var args = new ArrayList<>(gitDir(directory));
+    args.addAll(List.of(command));
+    var result = git.run(args, environment(), GIT_TIMEOUT);
+    return result.isSuccess() ? Optional.of(result.output()) : Optional.empty();
+  }
+
+  private GithubCommand cloneInto(String repository, Path directory) {
+    try {
+      Files.createDirectories(directory.getParent());
+    } catch (IOException e) {
+      return new GithubCommand("", "Failed to create %s - %s".formatted(directory, e), -1);
+    }
+    // Clone next to the target and move it in, so a half-finished clone is never read
+    Path partial = directory.resolveSibling(directory.getFileName() + ".partial");
+    deleteRecursively(partial);
+    var result =
+        git.run(
+            List.of(
+                "clone",
+                "--bare",
+                "--filter=blob:none",
+                "--quiet",
+                settings.remoteUrl().formatted(repository),
+                partial.toString()),
+            environment(),
+            GIT_TIMEOUT);
+    if (result.isSuccess()) {
+      try {
+        Files.move(partial, directory);
+      } catch (IOException e) {
+        return new GithubCommand("", "Failed to move clone - %s".formatted(e.getMessage()), -1);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Git configuration passed through the environment rather than the command line, so the token
+   * does not show up in process listings. Only HTTPS remotes get the credentials.
+   */
+  private Map<String, String> environment() {
+    var token = this.token.get();
+    if (token.isEmpty() || !settings.remoteUrl().startsWith("https://")) {
+      return Map.of();
+    }
+    String credentials =
+        Base64.getEncoder()
+            .encodeToString(("x-access-token:" + token.get()).getBytes(StandardCharsets.UTF_8));
+    return Map.of(
+        "GIT_CONFIG_COUNT", "1",
+        "GIT_CONFIG_KEY_0", "http.extraHeader",
+        "GIT_CONFIG_VALUE_0", "Authorization: Basic " + credentials);
+  }
+
+  private boolean isFresh(long fetchedAtMillis) {
+    return clock.getAsLong() - fetchedAtMillis < settings.refreshSeconds() * 1000L * 2;
+  }
+
+  Path directory(String repository) {
+    String[] parts = repository.toLowerCase().split("/", 2);
+    return Path.of(settings.dir(), parts[0], parts[1] + ".git");
+  }
+
+  private static List<String> gitDir(Path directory) {
+    return List.of("--git-dir", directory.toString());
+  }
+
+  private static Optional<Long> lastFetch(Path directory) {
+    try {
+      return Optional.of(Files.getLastModifiedTime(directory.resolve(FETCHED_MARKER)).toMillis());
+    } catch (IOException e) {
+      return Optional.empty();
+    }
+  }
+
+  private void touch(Path marker) {
+    try {
+      if (!Files.exists(marker)) {
+        Files.createFile(marker);
+      }
+      Files.setLastModifiedTime(marker, FileTime.fromMillis(clock.getAsLong()));
+    } catch (IOException e) {
+      logger.warn("Could not mark mirror as fetched: {}", e.getMessage());
+    }
+  }
+
+  private static void deleteRecursively(Path path) {
+    if (!Files.exists(path)) {
+      return;
+    }
+    try (var paths = Files.walk(path)) {
+      paths
+          .sorted((a, b) -> b.getNameCount() - a.getNameCount())
+          .forEach(
+              p -> {
+                try {
+                  Files.delete(p);
+                } catch (IOException e) {
+                  // A leftover file only makes the next clone fail and be retried
+                }
+              });
+    } catch (IOException e) {
+      logger.warn("Could not remove {}: {}", path, e.getMessage());
+    }
+  }
+
+  private static String commitsAsJsonLines(String log) {
+    var lines = new ArrayList<String>();
+    for (String record : log.split("\u001e")) {
+      String[] fields = record.strip().split("\u001f", 4);
+      if (fields.length < 4) {
+        continue;
+      }
+      var commit = new LinkedHashMap<String, String>();
+      commit.put("sha", fields[0].substring(0, 7));
+      commit.put("message", fields[3].strip());
+      commit.put("author", fields[1]);
+      commit.put("date", OffsetDateTime.parse(fields[2]).toInstant().toString());
+      lines.add(toJson(commit));
+    }
+    return String.join("\n", lines);
+  }
+
+  private static String treeAsJsonLines(String listing) {
+    var lines = new ArrayList<String>();
+    for (String line : listing.lines().toList()) {
+      // <mode> SP <type> SP <object> TAB <file>
+      int tab = line.indexOf('\t');
+      String[] meta = line.substring(0, tab).split(" ");
+      var entry = new LinkedHashMap<String, String>();
+      entry.put("path", line.substring(tab + 1));
+      entry.put("type", meta[1]);
+      entry.put("sha", meta[2]);
+      lines.add(toJson(entry));
+    }
+    return String.join("\n", lines);
+  }
+
+  private static String toJson(Map<String, String> fields) {
+    try {
+      return MAPPER.writeValueAsString(fields);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
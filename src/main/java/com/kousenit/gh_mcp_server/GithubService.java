@@ -1,12 +1,12 @@
 package com.kousenit.gh_mcp_server;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
 import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.stereotype.Service;
 
@@ -14,81 +14,160 @@ import org.springframework.stereotype.Service;
 @EnableConfigurationProperties(GitHubProperties.class)
 public class GithubService {
 
+  // Applied in process, so differently filtered reads of a resource share its cached response
+  private static final JsonFilter COMMITS = JsonFilter.compile(".[:$limit] | .[] | " + Commit.JQ);
+  private static final JsonFilter FILE_CONTENT = JsonFilter.compile(".content | @base64d");
+  private static final JsonFilter REF_SHA = JsonFilter.compile(".object.sha");
+  private static final JsonFilter REPOSITORY_ID = JsonFilter.compile(".data.repository.id");
+  private static final JsonFilter BASE_OID =
+      JsonFilter.compile(".data.repository.base.target.oid");
+  private static final JsonFilter HEAD_ID = JsonFilter.compile(".data.repository.head.id");
+  private static final JsonFilter OPENED_PULL_REQUEST =
+      JsonFilter.compile(
+          "{number: .data.createPullRequest.pullRequest.number,"
+              + " url: .data.createPullRequest.pullRequest.url,"
+              + " branch: $branch, commit: .data.createCommitOnBranch.commit.oid}");
+
+  /** Repository id, base branch head and whether the new branch exists, in one read. */
+  private static final String BRANCH_TARGET_QUERY =
+      """
+      query($owner: String!, $name: String!, $base: String!, $head: String!) {
+        repository(owner: $owner, name: $name) {
+          id
+          base: ref(qualifiedName: $base) { target { oid } }
+          head: ref(qualifiedName: $head) { id }
+        }
+      }""";
+
+  /** Top-level mutation fields run in order, so this is branch, commit and pull request. */
+  private static final String OPEN_PULL_REQUEST_MUTATION =
+      """
+      mutation($repositoryId: ID!, $nameWithOwner: String!, $ref: String!, $branch: String!,
+          $oid: GitObjectID!, $path: String!, $contents: Base64String!, $message: String!,
+          $base: String!, $title: String!, $body: String) {
+        createRef(input: {repositoryId: $repositoryId, name: $ref, oid: $oid}) { ref { id } }
+        createCommitOnBranch(input: {
+            branch: {repositoryNameWithOwner: $nameWithOwner, branchName: $branch},
+            expectedHeadOid: $oid, message: {headline: $message},
+            fileChanges: {additions: [{path: $path, contents: $contents}]}}) {
+          commit { oid }
+        }
+        createPullRequest(input: {repositoryId: $repositoryId, baseRefName: $base,
+            headRefName: $branch, title: $title, body: $body}) {
+          pullRequest { number url }
+        }
+      }""";
+
+  /** Linux caps a single argument at 128 KiB; file contents travel base64-encoded in one. */
+  static final int MAX_GRAPHQL_CONTENT_CHARS = 120_000;
+  private static final JsonFilter TREE =
+      JsonFilter.compile(
+          ".tree[] | select($path == \"\" or .path == $path or (.path | startswith($path + \"/\")))"
+              + " | {path, type, sha}");
+
   private final GitHubProperties gitHubProperties;
+  private final GhCommandExecutor executor;
+  private final GitMirror mirror;
+  private final IssueMirror issueMirror;
+  private final WorkflowLogs workflowLogs;
+  private final CiWatcher ciWatcher;
+  private final PullRequestDiffs pullRequestDiffs;
+  private final GhSearch search;
+  private final RepositoryCatalog catalog;
+  private final ReleaseAssets releaseAssets;
+  private final WorkflowArtifacts artifacts;
 
   public GithubService(GitHubProperties gitHubProperties) {
+    this(gitHubProperties, new GhCommandExecutor(gitHubProperties));
+  }
+
+  public GithubService(GitHubProperties gitHubProperties, GhCommandExecutor executor) {
+    this(
+        gitHubProperties,
+        executor,
+        GitMirror.disabled(),
+        IssueMirror.disabled(),
+        new WorkflowLogs(gitHubProperties, executor),
+        new CiWatcher(gitHubProperties, executor),
+        new PullRequestDiffs(gitHubProperties, executor),
+        new GhSearch(gitHubProperties, executor),
+        new RepositoryCatalog(gitHubProperties, executor),
+        new ReleaseAssets(gitHubProperties, executor),
+        new WorkflowArtifacts(gitHubProperties, executor));
+  }
+
+  @Autowired
+  public GithubService(
+      GitHubProperties gitHubProperties,
+      GhCommandExecutor executor,
+      GitMirror mirror,
+      IssueMirror issueMirror,
+      WorkflowLogs workflowLogs,
+      CiWatcher ciWatcher,
+      PullRequestDiffs pullRequestDiffs,
+      GhSearch search,
+      RepositoryCatalog catalog,
+      ReleaseAssets releaseAssets,
+      WorkflowArtifacts artifacts) {
     this.gitHubProperties = gitHubProperties;
+    this.executor = executor;
+    this.mirror = mirror;
+    this.issueMirror = issueMirror;
+    this.workflowLogs = workflowLogs;
+    this.ciWatcher = ciWatcher;
+    this.pullRequestDiffs = pullRequestDiffs;
+    this.search = search;
+    this.catalog = catalog;
+    this.releaseAssets = releaseAssets;
+    this.artifacts = artifacts;
   }
 
   protected GithubCommand executeCommand(String... args) {
-    var processBuilder = new ProcessBuilder(); // Java 10+ var
-    var command = new ArrayList<String>();
-    command.add("gh");
-    command.addAll(List.of(args));
-    processBuilder.command(command);
-
-    try {
-      var process = processBuilder.start();
-
-      // Read output and error streams concurrently to prevent deadlock
-      var output = new StringBuilder();
-      var error = new StringBuilder();
-
-      try (var outputReader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-          var errorReader = new BufferedReader(new InputStreamReader(process.getErrorStream()))) {
-
-        // Use virtual threads (Java 21) for concurrent I/O
-        var outputThread =
-            Thread.ofVirtual()
-                .start(
-                    () -> outputReader.lines().forEach(line -> output.append(line).append("\n")));
-
-        var errorThread =
-            Thread.ofVirtual()
-                .start(() -> errorReader.lines().forEach(line -> error.append(line).append("\n")));
-
-        // Wait for process to complete with configurable timeout
-        boolean finished =
-            process.waitFor(gitHubProperties.commandTimeoutSeconds(), TimeUnit.SECONDS);
-        if (!finished) {
-          process.destroyForcibly();
-          return new GithubCommand(
-              "",
-              "Command timed out after %d seconds"
-                  .formatted(gitHubProperties.commandTimeoutSeconds()),
-              -1);
-        }
-
-        // Wait for threads to finish reading
-        outputThread.join(1000);
-        errorThread.join(1000);
+    return executor.execute(args);
+  }
 
-        int exitCode = process.exitValue();
-        return new GithubCommand(output.toString().trim(), error.toString().trim(), exitCode);
-      }
-    } catch (IOException e) {
-      return new GithubCommand("", "Failed to execute command - %s".formatted(e.getMessage()), -1);
-    } catch (InterruptedException e) {
-      Thread.currentThread().interrupt();
-      return new GithubCommand(
-          "", "Command execution interrupted - %s".formatted(e.getMessage()), -1);
+  private String executeGh(String... args) {
+    String result = executeCommand(args).getResult();
+    var command = List.of(args);
+    // Let the local issue copy pick up changes made through the tools right away
+    if ((args[0].equals("issue") || args[0].equals("pr")) && !CommandUtils.isReadOnly(command)) {
+      CommandUtils.repository(command).ifPresent(issueMirror::requestSync);
     }
+    return result;
   }
 
-  private String executeGh(String... args) {
-    return executeCommand(args).getResult();
+  /** Runs a read and filters JSON output in process; other output, such as errors, as is. */
+  private String executeFiltered(JsonFilter filter, Map<String, ?> variables, String... args) {
+    String result = executeGh(args);
+    return filter.apply(result, variables).orElse(result);
+  }
+
+  /** A single value picked from JSON output, or {@code null} when it is missing. */
+  private static String field(JsonFilter filter, String json) {
+    return filter.apply(json, Map.of()).map(String::strip).orElse("null");
+  }
+
+  /** Runs a read and re-encodes JSON output through the domain records; other output as is. */
+  private String executeProjected(JsonProjection.Reader<?> reader, String... args) {
+    String result = executeGh(args);
+    return JsonProjection.project(result, reader).orElse(result);
   }
 
   @Tool(description = "Get commit history for a repository")
   public String getCommitHistory(String owner, String repo, int limit) {
     int actualLimit = limit > 0 ? limit : gitHubProperties.defaultCommitLimit();
-    return executeGh(
-        "api",
-        "repos/" + owner + "/" + repo + "/commits",
-        "--jq",
-        String.format(
-            ".[:%d] | .[] | {sha: .sha[0:7], message: .commit.message, author: .commit.author.name, date: .commit.author.date}",
-            actualLimit));
+    // The mirror prints one commit per line and the filter one value per commit; both become a list
+    String commits =
+        mirror
+            .commitHistory(owner, repo, actualLimit)
+            .orElseGet(
+                () ->
+                    executeFiltered(
+                        COMMITS,
+                        Map.of("limit", actualLimit),
+                        "api",
+                        "repos/" + owner + "/" + repo + "/commits"));
+    return JsonProjection.projectList(commits, Commit::read).orElse(commits);
   }
 
   public String getCommitHistory(String owner, String repo) {
@@ -97,10 +176,12 @@ public class GithubService {
 
   @Tool(description = "List issues in a GitHub repository")
   public String listIssues(String owner, String repo, String state) {
-    // Using text block for JSON fields (Java 15+)
-    var jsonFields = "number,title,state,createdAt,author,body,labels,assignees,url";
-
-    return executeGh(
+    var local = issueMirror.issues(owner, repo, IssueMirror.Filter.state(state));
+    if (local.isPresent()) {
+      return local.get();
+    }
+    return executeProjected(
+        Issue::read,
         "issue",
         "list",
         "--repo",
@@ -108,19 +189,54 @@ public class GithubService {
         "--state",
         state != null ? state : "open",
         "--json",
-        jsonFields);
+        Issue.LIST_FIELDS);
   }
 
   @Tool(description = "Get details of a specific issue in a GitHub repository")
   public String getIssue(String owner, String repo, int issueNumber) {
-    return executeGh(
+    var local = issueMirror.issue(owner, repo, issueNumber);
+    if (local.isPresent()) {
+      return local.get();
+    }
+    return executeProjected(
+        Issue::read,
         "issue",
         "view",
         String.valueOf(issueNumber),
         "--repo",
         owner + "/" + repo,
         "--json",
-        "number,title,state,createdAt,author,body,labels,assignees,comments,url");
+        Issue.VIEW_FIELDS);
+  }
+
+  @Tool(
+      description =
+          "Search the issues and pull requests of a repository, ranked by relevance, using GitHub"
+              + " search syntax: words plus is:, state:, label:, author:, assignee: and in:"
+              + " qualifiers")
+  public String searchRepositoryIssues(String owner, String repo, String query, int limit) {
+    var local = issueMirror.search(owner, repo, query, limit);
+    if (local.isPresent()) {
+      return local.get();
+    }
+    List<String> args =
+        new ArrayList<>(
+            List.of(
+                "search",
+                "issues",
+                "--repo",
+                owner + "/" + repo,
+                "--include-prs",
+                "--limit",
+                String.valueOf(limit > 0 ? limit : gitHubProperties.defaultSearchLimit()),
+                "--json",
+                "number,isPullRequest,title,state,author,labels,updatedAt,url",
+                "--"));
+    // gh quotes arguments containing spaces, which would turn qualifiers into search words
+    if (query != null && !query.isBlank()) {
+      args.addAll(List.of(query.trim().split("\\s+")));
+    }
+    return executeGh(args.toArray(new String[0]));
   }
 
   @Tool(description = "Create a new issue in a GitHub repository")
@@ -135,7 +251,12 @@ public class GithubService {
 
   @Tool(description = "List pull requests in a GitHub repository")
   public String listPullRequests(String owner, String repo, String state) {
-    return executeGh(
+    var local = issueMirror.pullRequests(owner, repo, IssueMirror.Filter.state(state));
+    if (local.isPresent()) {
+      return local.get();
+    }
+    return executeProjected(
+        PullRequest::read,
         "pr",
         "list",
         "--repo",
@@ -143,19 +264,88 @@ public class GithubService {
         "--state",
         state != null ? state : "open",
         "--json",
-        "number,title,state,createdAt,author,headRefName,baseRefName,url");
+        PullRequest.LIST_FIELDS);
   }
 
   @Tool(description = "Get details of a specific pull request")
   public String getPullRequest(String owner, String repo, int prNumber) {
-    return executeGh(
+    return executeProjected(
+        PullRequest::read,
         "pr",
         "view",
         String.valueOf(prNumber),
         "--repo",
         owner + "/" + repo,
         "--json",
-        "number,title,state,createdAt,author,body,headRefName,baseRefName,mergeable,url");
+        PullRequest.VIEW_FIELDS);
+  }
+
+  @Tool(
+      description =
+          "List the files a pull request changes with their additions, deletions and hunk counts."
+              + " Paths narrow the list: comma-separated files, directories or globs such as"
+              + " **/*.java")
+  public String listPullRequestFiles(String owner, String repo, int prNumber, String paths) {
+    return pullRequestDiffs.files(owner, repo, prNumber, paths);
+  }
+
+  @Tool(
+      description =
+          "Get the diff of a pull request, limited to the files matching paths (comma-separated"
+              + " files, directories or globs) and to maxChars (0 for the default). Hunks and files"
+              + " that do not fit are named; hunk picks one hunk of each file, counting from 1")
+  public String getPullRequestDiff(
+      String owner, String repo, int prNumber, String paths, int hunk, int maxChars) {
+    return pullRequestDiffs.diff(owner, repo, prNumber, paths, hunk, maxChars);
+  }
+
+  @Tool(
+      description =
+          "Filter issues, or pull requests when pullRequests is true, by state (open, closed,"
+              + " merged or all), label, author, assignee and earliest update date")
+  public String filterIssues(
+      String owner,
+      String repo,
+      boolean pullRequests,
+      String state,
+      String label,
+      String author,
+      String assignee,
+      String updatedSince) {
+    var filter = new IssueMirror.Filter(state, label, author, assignee, updatedSince);
+    var local =
+        pullRequests
+            ? issueMirror.pullRequests(owner, repo, filter)
+            : issueMirror.issues(owner, repo, filter);
+    if (local.isPresent()) {
+      return local.get();
+    }
+    List<String> args =
+        new ArrayList<>(
+            List.of(
+                pullRequests ? "pr" : "issue",
+                "list",
+                "--repo",
+                owner + "/" + repo,
+                "--state",
+                state != null && !state.trim().isEmpty() ? state : "open"));
+    if (label != null && !label.trim().isEmpty()) {
+      args.addAll(List.of("--label", label));
+    }
+    if (author != null && !author.trim().isEmpty()) {
+      args.addAll(List.of("--author", author));
+    }
+    if (assignee != null && !assignee.trim().isEmpty()) {
+      args.addAll(List.of("--assignee", assignee));
+    }
+    if (updatedSince != null && !updatedSince.trim().isEmpty()) {
+      args.addAll(List.of("--search", "updated:>=" + updatedSince));
+    }
+    args.addAll(
+        List.of("--json", pullRequests ? PullRequest.LIST_FIELDS : Issue.LIST_FIELDS));
+    return pullRequests
+        ? executeProjected(PullRequest::read, args.toArray(new String[0]))
+        : executeProjected(Issue::read, args.toArray(new String[0]));
   }
 
   @Tool(description = "Create a new pull request")
@@ -182,21 +372,21 @@ public class GithubService {
 
   @Tool(description = "Get the contents of a file from a GitHub repository")
   public String getFileContents(String owner, String repo, String path, String branch) {
-    List<String> args = new ArrayList<>();
-    args.add("api");
-
+    if (isOptionLike(branch)) {
+      return invalidRef(branch);
+    }
+    var local = mirror.fileContents(owner, repo, path, branch);
+    if (local.isPresent()) {
+      return local.get();
+    }
     // Build the API endpoint with query parameter for branch
     String endpoint = "repos/" + owner + "/" + repo + "/contents/" + path;
     if (branch != null && !branch.trim().isEmpty()) {
       endpoint += "?ref=" + branch;
     }
-    args.add(endpoint);
 
     // Decode base64 content
-    args.add("--jq");
-    args.add(".content | @base64d");
-
-    return executeGh(args.toArray(new String[0]));
+    return executeFiltered(FILE_CONTENT, Map.of(), "api", endpoint);
   }
 
   @Tool(description = "List repositories for the authenticated user")
@@ -207,22 +397,83 @@ public class GithubService {
       args.addAll(List.of("--visibility", visibility));
     }
 
-    args.addAll(List.of("--json", "name,owner,description,isPrivate,url,updatedAt"));
+    args.addAll(List.of("--json", Repository.LIST_FIELDS));
 
-    return executeGh(args.toArray(new String[0]));
+    return executeProjected(Repository::read, args.toArray(new String[0]));
+  }
+
+  @Tool(
+      description =
+          "List all repositories of an organization or user a page at a time, sorted by name."
+              + " Filters, all optional: language, topic, archived, pushedSince (ISO date) and"
+              + " visibility (public, private or internal). Pages count from 1")
+  public String listOwnerRepositories(
+      String owner,
+      String language,
+      String topic,
+      Boolean archived,
+      String pushedSince,
+      String visibility,
+      int page) {
+    return catalog.list(
+        owner,
+        new RepositoryCatalog.Filter(language, topic, archived, pushedSince, visibility),
+        page > 0 ? page : 1);
   }
 
-  @Tool(description = "Search for repositories on GitHub")
+  @Tool(
+      description =
+          "Search for repositories on GitHub. A limit over 1000 splits the query into date or star"
+              + " ranges searched in parallel and merged")
   public String searchRepositories(String query, int limit) {
-    // Using Math.max for cleaner code
-    return executeGh(
+    int resolved = limit > 0 ? limit : gitHubProperties.defaultSearchLimit();
+    if (resolved > GhSearch.MAX_RESULTS_PER_QUERY) {
+      return search.search(GhSearch.Kind.REPOSITORIES, query, resolved);
+    }
+    return executeProjected(
+        Repository::read,
         "search",
         "repos",
         query,
         "--json",
         "name,owner,description,url,stargazersCount",
         "--limit",
-        String.valueOf(Math.max(limit, 10)));
+        String.valueOf(resolved));
+  }
+
+  @Tool(
+      description =
+          "Search issues across GitHub with search qualifiers such as repo:, org:, label: or"
+              + " is:open. A limit over 1000 splits the query into date ranges searched in"
+              + " parallel")
+  public String searchIssues(String query, int limit) {
+    return search.search(GhSearch.Kind.ISSUES, qualified(query, "is:issue"), searchLimit(limit));
+  }
+
+  @Tool(
+      description =
+          "Search pull requests across GitHub with search qualifiers such as repo:, author: or"
+              + " is:merged. A limit over 1000 splits the query into date ranges searched in"
+              + " parallel")
+  public String searchPullRequests(String query, int limit) {
+    return search.search(GhSearch.Kind.ISSUES, qualified(query, "is:pr"), searchLimit(limit));
+  }
+
+  @Tool(
+      description =
+          "Search code across GitHub with search qualifiers such as repo:, language: or path:."
+              + " A limit over 1000 splits the query into file size ranges searched in parallel")
+  public String searchCode(String query, int limit) {
+    return search.search(GhSearch.Kind.CODE, query, searchLimit(limit));
+  }
+
+  private int searchLimit(int limit) {
+    return limit > 0 ? limit : gitHubProperties.defaultSearchLimit();
+  }
+
+  /** Adds a qualifier to a query that has words to search for. */
+  private static String qualified(String query, String qualifier) {
+    return query == null || query.isBlank() ? query : query.strip() + " " + qualifier;
   }
 
   @Tool(description = "Get details of the authenticated GitHub user")
@@ -237,29 +488,178 @@ public class GithubService {
 
   @Tool(description = "Create a new branch in a GitHub repository")
   public String createBranch(String owner, String repo, String branchName, String fromBranch) {
-    // First get the SHA of the source branch
     String sourceBranch = fromBranch != null ? fromBranch : gitHubProperties.defaultBranch();
-    String sha =
-        executeGh(
-            "api",
-            "repos/" + owner + "/" + repo + "/git/ref/heads/" + sourceBranch,
-            "--jq",
-            ".object.sha");
+    return new GhPlan()
+        .step(
+            "sha",
+            results ->
+                executeFiltered(
+                    REF_SHA,
+                    Map.of(),
+                    "api",
+                    "repos/" + owner + "/" + repo + "/git/ref/heads/" + sourceBranch))
+        .step(
+            "branch",
+            List.of("sha"),
+            results ->
+                executeGh(
+                    "api",
+                    "repos/" + owner + "/" + repo + "/git/refs",
+                    "--method",
+                    "POST",
+                    "--field",
+                    "ref=refs/heads/" + branchName,
+                    "--field",
+                    "sha=" + results.get("sha").trim()))
+        .run()
+        .resultOr("branch");
+  }
 
-    if (sha.startsWith("Error:")) {
-      return sha;
+  @Tool(
+      description =
+          "Create a branch from a base branch, commit one file to it and open a pull request, in"
+              + " two GitHub round trips. Files up to about 90 KB")
+  public String createPullRequestWithFile(
+      String owner,
+      String repo,
+      String branchName,
+      String baseBranch,
+      String path,
+      String contents,
+      String commitMessage,
+      String title,
+      String body) {
+    String base =
+        baseBranch != null && !baseBranch.trim().isEmpty()
+            ? baseBranch.trim()
+            : gitHubProperties.defaultBranch();
+    String encoded =
+        Base64.getEncoder()
+            .encodeToString((contents != null ? contents : "").getBytes(StandardCharsets.UTF_8));
+    if (encoded.length() > MAX_GRAPHQL_CONTENT_CHARS) {
+      return "Error: File too large to commit in one request; create the branch and commit it"
+          + " separately";
     }
+    String message =
+        commitMessage != null && !commitMessage.trim().isEmpty()
+            ? commitMessage
+            : "Update " + path;
+    return new GhPlan()
+        .step(
+            "target",
+            // The mutation is built on this answer, so a cached one could name a stale base oid
+            results ->
+                CallContext.callAs(
+                    CallContext.current().refreshing(),
+                    () ->
+                        executeGh(
+                            "api",
+                            "graphql",
+                            "-f",
+                            "query=" + BRANCH_TARGET_QUERY,
+                            "-f",
+                            "owner=" + owner,
+                            "-f",
+                            "name=" + repo,
+                            "-f",
+                            "base=refs/heads/" + base,
+                            "-f",
+                            "head=refs/heads/" + branchName)))
+        .step(
+            "pullRequest",
+            List.of("target"),
+            results -> {
+              String target = results.get("target");
+              String repositoryId = field(REPOSITORY_ID, target);
+              String oid = field(BASE_OID, target);
+              if (repositoryId.equals("null")) {
+                return "Error: Repository " + owner + "/" + repo + " not found";
+              }
+              if (oid.equals("null")) {
+                return "Error: Base branch " + base + " not found";
+              }
+              if (!field(HEAD_ID, target).equals("null")) {
+                return "Error: Branch " + branchName + " already exists";
+              }
+              String opened =
+                  executeGh(
+                      "api",
+                      "graphql",
+                      "-f",
+                      "query=" + OPEN_PULL_REQUEST_MUTATION,
+                      "-f",
+                      "repositoryId=" + repositoryId,
+                      "-f",
+                      "nameWithOwner=" + owner + "/" + repo,
+                      "-f",
+                      "ref=refs/heads/" + branchName,
+                      "-f",
+                      "branch=" + branchName,
+                      "-f",
+                      "oid=" + oid,
+                      "-f",
+                      "path=" + path,
+                      "-f",
+                      "contents=" + encoded,
+                      "-f",
+                      "message=" + message,
+                      "-f",
+                      "base=" + base,
+                      "-f",
+                      "title=" + title,
+                      "-f",
+                      "body=" + (body != null ? body : ""));
+              return OPENED_PULL_REQUEST
+                  .apply(opened, Map.of("branch", branchName))
+                  .map(String::strip)
+                  .orElse(opened);
+            })
+        .run()
+        .resultOr("pullRequest");
+  }
+
+  @Tool(
+      description =
+          "List files and directories of a repository at a branch, tag or commit, recursively")
+  public String listTree(String owner, String repo, String ref, String path) {
+    if (isOptionLike(ref)) {
+      return invalidRef(ref);
+    }
+    var local = mirror.tree(owner, repo, ref, path);
+    if (local.isPresent()) {
+      return local.get();
+    }
+    String revision = ref != null && !ref.trim().isEmpty() ? ref : "HEAD";
+    return executeFiltered(
+        TREE,
+        Map.of("path", path != null ? path.trim() : ""),
+        "api",
+        "repos/" + owner + "/" + repo + "/git/trees/" + revision + "?recursive=1");
+  }
 
-    // Create the new branch
+  @Tool(description = "Show the diff of what the head ref adds on top of the base ref")
+  public String compareCommits(String owner, String repo, String base, String head) {
+    if (isOptionLike(base) || isOptionLike(head)) {
+      return invalidRef(isOptionLike(base) ? base : head);
+    }
+    var local = mirror.diff(owner, repo, base, head);
+    if (local.isPresent()) {
+      return local.get();
+    }
     return executeGh(
         "api",
-        "repos/" + owner + "/" + repo + "/git/refs",
-        "--method",
-        "POST",
-        "--field",
-        "ref=refs/heads/" + branchName,
-        "--field",
-        "sha=" + sha.trim());
+        "repos/" + owner + "/" + repo + "/compare/" + base + "..." + head,
+        "-H",
+        "Accept: application/vnd.github.diff");
+  }
+
+  /** Whether a ref given by a caller would be taken for an option by git or gh. */
+  private static boolean isOptionLike(String ref) {
+    return ref != null && ref.strip().startsWith("-");
+  }
+
+  private static String invalidRef(String ref) {
+    return "Error: Invalid ref " + ref + "; refs cannot start with '-'";
   }
 
   // Workflow and Actions Operations
@@ -282,49 +682,107 @@ public class GithubService {
       args.addAll(List.of("--status", status));
     }
 
-    args.addAll(
-        List.of(
-            "--json",
-            "databaseId,name,displayTitle,status,conclusion,workflowName,headBranch,createdAt"));
+    args.addAll(List.of("--json", WorkflowRun.LIST_FIELDS));
 
-    return executeGh(args.toArray(new String[0]));
+    return executeProjected(WorkflowRun::read, args.toArray(new String[0]));
   }
 
   @Tool(description = "View workflow run details")
   public String getWorkflowRun(String owner, String repo, int runId) {
-    return executeGh(
+    return executeProjected(
+        WorkflowRun::read,
         "run",
         "view",
         String.valueOf(runId),
         "--repo",
         owner + "/" + repo,
         "--json",
-        "databaseId,name,displayTitle,status,conclusion,workflowName,headBranch,createdAt,updatedAt,url");
+        WorkflowRun.VIEW_FIELDS);
+  }
+
+  @Tool(
+      description =
+          "Get the logs of a workflow run, filtered on the server: by job and step name (partial,"
+              + " case-insensitive), by a regular expression, to error annotations only, or to the"
+              + " last N matching lines (tail 0 returns the first ones)")
+  public String getWorkflowRunLogs(
+      String owner,
+      String repo,
+      long runId,
+      String job,
+      String step,
+      String pattern,
+      int tail,
+      boolean errorsOnly) {
+    return workflowLogs.logs(
+        owner, repo, runId, new WorkflowLogs.Filter(job, step, pattern, tail, errorsOnly));
+  }
+
+  @Tool(description = "List the artifacts a workflow run uploaded, with their IDs and sizes")
+  public String listRunArtifacts(String owner, String repo, long runId) {
+    return artifacts.list(owner, repo, runId);
+  }
+
+  @Tool(
+      description =
+          "List the files in a workflow artifact without downloading it, from the zip's central"
+              + " directory read by byte range")
+  public String listArtifactEntries(String owner, String repo, long artifactId) {
+    return artifacts.entries(owner, repo, artifactId);
+  }
+
+  @Tool(
+      description =
+          "Read one file out of a workflow artifact, such as a test report, fetching only that"
+              + " file's bytes. Returns text content, or only the size and local path of a binary"
+              + " file")
+  public String getArtifactEntry(String owner, String repo, long artifactId, String path) {
+    return artifacts.extract(owner, repo, artifactId, path);
+  }
+
+  @Tool(
+      description =
+          "Wait until a workflow run completes or timeoutSeconds pass, instead of polling"
+              + " getWorkflowRun. Returns the latest state and every state seen while waiting")
+  public String watchWorkflowRun(String owner, String repo, long runId, int timeoutSeconds) {
+    return ciWatcher.watchRun(owner, repo, runId, timeoutSeconds);
+  }
+
+  @Tool(
+      description =
+          "Wait until every check run and commit status on a pull request's head commit"
+              + " completes, the pull request is closed, or timeoutSeconds pass. Returns the"
+              + " latest checks and statuses and every state seen")
+  public String watchPullRequestChecks(
+      String owner, String repo, int prNumber, int timeoutSeconds) {
+    return ciWatcher.watchPullRequestChecks(owner, repo, prNumber, timeoutSeconds);
   }
 
   // Release Operations
 
   @Tool(description = "List releases in a repository")
   public String listReleases(String owner, String repo) {
-    return executeGh(
+    return executeProjected(
+        Release::read,
         "release",
         "list",
         "--repo",
         owner + "/" + repo,
         "--json",
-        "tagName,name,createdAt,publishedAt,isDraft,isPrerelease,author,url");
+        Release.LIST_FIELDS);
   }
 
   @Tool(description = "View release details")
   public String getRelease(String owner, String repo, String tag) {
-    return executeGh(
+    return executeProjected(
+        Release::read,
         "release",
         "view",
         tag,
         "--repo",
         owner + "/" + repo,
         "--json",
-        "tagName,name,body,createdAt,publishedAt,isDraft,isPrerelease,author,assets,url");
+        Release.VIEW_FIELDS);
   }
 
   @Tool(description = "Create a new release")
@@ -358,6 +816,25 @@ public class GithubService {
     return executeGh(args.toArray(new String[0]));
   }
 
+  @Tool(
+      description =
+          "Download a release asset to a local file, in parallel byte ranges that resume after an"
+              + " interruption. Returns the file's path, size and SHA-256, checked against GitHub's"
+              + " digest, instead of its content")
+  public String downloadReleaseAsset(String owner, String repo, String tag, String assetName) {
+    return releaseAssets.download(owner, repo, tag, assetName);
+  }
+
+  @Tool(
+      description =
+          "Upload a file from the server's upload directory as an asset of a release, named after"
+              + " the file; the path may be relative to that directory. replace overwrites an asset"
+              + " of the same name. Returns its size and SHA-256, checked against GitHub's digest")
+  public String uploadReleaseAsset(
+      String owner, String repo, String tag, String filePath, boolean replace) {
+    return releaseAssets.upload(owner, repo, tag, filePath, replace);
+  }
+
   // Pull Request Management Operations
 
   @Tool(description = "Merge a pull request")
@@ -424,15 +901,39 @@ public class GithubService {
     return executeGh(args.toArray(new String[0]));
   }
 
+  @Tool(
+      description =
+          "Add labels to and remove labels from an issue; several labels are separated by commas")
+  public String editIssueLabels(
+      String owner, String repo, int issueNumber, String addLabels, String removeLabels) {
+    List<String> args =
+        new ArrayList<>(
+            List.of("issue", "edit", String.valueOf(issueNumber), "--repo", owner + "/" + repo));
+
+    if (addLabels != null && !addLabels.trim().isEmpty()) {
+      args.addAll(List.of("--add-label", addLabels.trim()));
+    }
+
+    if (removeLabels != null && !removeLabels.trim().isEmpty()) {
+      args.addAll(List.of("--remove-label", removeLabels.trim()));
+    }
+
+    if (args.size() == 5) {
+      return "Error: No labels to add or remove";
+    }
+    return executeGh(args.toArray(new String[0]));
+  }
+
   // Repository Operations
 
   @Tool(description = "Get detailed repository information")
   public String getRepository(String owner, String repo) {
-    return executeGh(
+    return executeProjected(
+        Repository::read,
         "repo",
         "view",
         owner + "/" + repo,
         "--json",
-        "name,description,owner,isPrivate,defaultBranch,language,topics,stargazersCount,forksCount,createdAt,updatedAt,url");
+        Repository.VIEW_FIELDS);
   }
 }
@@ -0,0 +1,78 @@
+package com.kousenit.gh_mcp_server;
+
+import com.fasterxml.jackson.core.JsonParser;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An issue as the tools return it, with people and labels reduced to their login or name.
+ *
+ * @param comments the discussion, only read when viewing a single issue; null otherwise
+ */
+public record Issue(
+    Long number,
+    String title,
+    String state,
+    String author,
+    String body,
+    List<String> labels,
+    List<String> assignees,
+    List<Comment> comments,
+    String createdAt,
+    String url) {
+
+  /** The {@code --json} fields of a listing. */
+  static final String LIST_FIELDS = "number,title,state,createdAt,author,body,labels,assignees,url";
+
+  /** The {@code --json} fields of a single issue, with its comments. */
+  static final String VIEW_FIELDS =
+      "number,title,state,createdAt,author,body,labels,assignees,comments,url";
+
+  /** A comment on an issue or pull request. */
+  public record Comment(String author, String body, String createdAt) {
+
+    private static final Map<String, JsonProjection.Reader<?>> READERS =
+        Map.of(
+            "author", JsonProjection::name,
+            "body", JsonProjection::text,
+            "createdAt", JsonProjection::text);
+
+    static Comment read(JsonParser parser) throws IOException {
+      var values = JsonProjection.object(parser, READERS);
+      return new Comment(
+          (String) values.get("author"),
+          (String) values.get("body"),
+          (String) values.get("createdAt"));
+    }
+  }
+
+  private static final Map<String, JsonProjection.Reader<?>> READERS =
+      Map.of(
+          "number", JsonProjection::number,
+          "title", JsonProjection::text,
+          "state", JsonProjection::text,
+          "author", JsonProjection::name,
+          "body", JsonProjection::text,
+          "labels", JsonProjection::names,
+          "assignees", JsonProjection::names,
+          "comments", parser -> JsonProjection.list(parser, Comment::read),
+          "createdAt", JsonProjection::text,
+          "url", JsonProjection::text);
+
+  @SuppressWarnings("unchecked")
+  static Issue read(JsonParser parser) throws IOException {
+    var values = JsonProjection.object(parser, READERS);
+    return new Issue(
+        (Long) values.get("number"),
+        (String) values.get("title"),
+        (String) values.get("state"),
+        (String) values.get("author"),
+        (String) values.get("body"),
+        (List<String>) values.get("labels"),
+        (List<String>) values.get("assignees"),
+        (List<Comment>) values.get("comments"),
+        (String) values.get("createdAt"),
+        (String) values.get("url"));
+  }
+}
@@ -0,0 +1,326 @@
+package com.kousenit.gh_mcp_server;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index over the synced issues and pull requests of one repository, with their
+ * comments and labels, ranked with BM25F.
+ *
+ * <p>Each field is tokenized separately and weighted (titles and labels count more than bodies and
+ * comments). The index is updated document by document after every sync, so it is built in full
+ * only once per repository and process.
+ */
+final class IssueIndex {
+
+  /** Indexed fields and how much a match in each counts. */
+  enum Field {
+    TITLE(3.0),
+    BODY(1.0),
+    COMMENTS(1.0),
+    LABELS(2.0);
+
+    private final double weight;
+
+    Field(double weight) {
+      this.weight = weight;
+    }
+  }
+
+  /** An issue or pull request. */
+  record Key(boolean pullRequest, int number) {}
+
+  /** A matching document and its relevance; higher is better. */
+  record Hit(Key key, double score) {}
+
+  /**
+   * A parsed query in GitHub search syntax: free words plus the {@code is:}, {@code state:},
+   * {@code label:}, {@code author:}, {@code assignee:} and {@code in:} qualifiers.
+   *
+   * @param terms tokens to rank by; empty matches every document
+   * @param fields fields the terms are looked up in
+   * @param pullRequest true or false to return only pull requests or only issues; null for both
+   * @param filter conditions on the stored item, applied by the caller
+   */
+  record Query(
+      List<String> terms, Set<Field> fields, Boolean pullRequest, IssueMirror.Filter filter) {}
+
+  private static final double K1 = 1.2;
+  private static final double B = 0.75;
+
+  private static final Pattern WORDS = Pattern.compile("(\\S+?:\"[^\"]*\")|\"([^\"]*)\"|(\\S+)");
+  private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+  private static final Set<String> STOP_WORDS =
+      Set.of(
+          "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "in", "is", "it", "of",
+          "on", "or", "that", "the", "this", "to", "was", "with");
+
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Map<String, Map<Key, int[]>> postings = new HashMap<>();
+  private final Map<Key, int[]> lengths = new HashMap<>();
+  private final Map<Key, Set<String>> terms = new HashMap<>();
+  private final long[] totalLengths = new long[Field.values().length];
+
+  /** Indexes everything stored for a repository. */
+  static IssueIndex build(IssueStore.Contents contents) {
+    var index = new IssueIndex();
+    var comments = commentsByIssue(contents.comments().values());
+    contents
+        .issues()
+        .forEach(
+            (number, issue) ->
+                index.put(new Key(false, number), issue, comments.getOrDefault(number, List.of())));
+    contents
+        .pullRequests()
+        .forEach(
+            (number, pull) ->
+                index.put(new Key(true, number), pull, comments.getOrDefault(number, List.of())));
+    return index;
+  }
+
+  /**
+   * Re-indexes the items a sync changed, and the items whose comments it changed.
+   *
+   * @param contents the repository's contents after the sync
+   */
+  IssueIndex update(
+      Collection<Key> changed, Collection<Integer> commented, IssueStore.Contents contents) {
+    var keys = new HashSet<>(changed);
+    for (int number : commented) {
+      keys.add(new Key(contents.pullRequests().containsKey(number), number));
+    }
+    var numbers = new HashSet<Integer>();
+    keys.forEach(key -> numbers.add(key.number()));
+    var comments =
+        commentsByIssue(
+            contents.comments().values().stream()
+                .filter(comment -> numbers.contains(comment.path("issue").asInt()))
+                .toList());
+    for (Key key : keys) {
+      var item =
+          key.pullRequest()
+              ? contents.pullRequests().get(key.number())
+              : contents.issues().get(key.number());
+      if (item != null) {
+        put(key, item, comments.getOrDefault(key.number(), List.of()));
+      }
+    }
+    return this;
+  }
+
+  /** Replaces the indexed text of one document. */
+  void put(Key key, JsonNode item, List<JsonNode> comments) {
+    var frequencies = new HashMap<String, int[]>();
+    int[] fieldLengths = new int[Field.values().length];
+    addTokens(frequencies, fieldLengths, Field.TITLE, item.path("title").asText());
+    addTokens(frequencies, fieldLengths, Field.BODY, item.path("body").asText());
+    for (JsonNode comment : comments) {
+      addTokens(frequencies, fieldLengths, Field.COMMENTS, comment.path("body").asText());
+    }
+    for (JsonNode label : item.path("labels")) {
+      addTokens(frequencies, fieldLengths, Field.LABELS, label.path("name").asText());
+    }
+    lock.writeLock().lock();
+    try {
+      removeLocked(key);
+      frequencies.forEach(
+          (term, counts) ->
+              postings.computeIfAbsent(term, ignored -> new HashMap<>()).put(key, counts));
+      terms.put(key, frequencies.keySet());
+      lengths.put(key, fieldLengths);
+      for (int f = 0; f < fieldLengths.length; f++) {
+        totalLengths[f] += fieldLengths[f];
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  int size() {
+    lock.readLock().lock();
+    try {
+      return lengths.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Documents matching any query term in the query's fields, best first. A query without terms
+   * matches every document with score 0.
+   */
+  List<Hit> search(Query query) {
+    lock.readLock().lock();
+    try {
+      Predicate<Key> kindMatches =
+          key -> query.pullRequest() == null || key.pullRequest() == query.pullRequest();
+      if (query.terms().isEmpty()) {
+        return lengths.keySet().stream()
+            .filter(kindMatches)
+            .map(key -> new Hit(key, 0))
+            .toList();
+      }
+      int documents = lengths.size();
+      double[] averageLengths = new double[totalLengths.length];
+      for (int f = 0; f < totalLengths.length; f++) {
+        averageLengths[f] = documents == 0 ? 0 : (double) totalLengths[f] / documents;
+      }
+      var scores = new HashMap<Key, Double>();
+      for (String term : new HashSet<>(query.terms())) {
+        var documentsWithTerm = postings.getOrDefault(term, Map.of());
+        int frequency = documentsWithTerm.size();
+        double idf = Math.log(1 + (documents - frequency + 0.5) / (frequency + 0.5));
+        documentsWithTerm.forEach(
+            (key, counts) -> {
+              if (!kindMatches.test(key)) {
+                return;
+              }
+              double weighted =
+                  weightedFrequency(counts, lengths.get(key), averageLengths, query.fields());
+              if (weighted > 0) {
+                scores.merge(key, idf * weighted / (K1 + weighted), Double::sum);
+              }
+            });
+      }
+      return scores.entrySet().stream()
+          .map(entry -> new Hit(entry.getKey(), entry.getValue()))
+          .sorted(Comparator.comparingDouble(Hit::score).reversed())
+          .toList();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Parses a query in GitHub search syntax. Unknown qualifiers are searched as words. */
+  static Query parse(String text) {
+    var words = new ArrayList<String>();
+    Set<Field> fields = EnumSet.noneOf(Field.class);
+    Boolean pullRequest = null;
+    String state = "all";
+    String label = null;
+    String author = null;
+    String assignee = null;
+    Matcher matcher = WORDS.matcher(text == null ? "" : text);
+    while (matcher.find()) {
+      if (matcher.group(2) != null) {
+        words.add(matcher.group(2));
+        continue;
+      }
+      String word = matcher.group();
+      int colon = word.indexOf(':');
+      String qualifier = colon > 0 ? word.substring(0, colon).toLowerCase(Locale.ROOT) : "";
+      String value = colon > 0 ? word.substring(colon + 1).replace("\"", "") : word;
+      switch (qualifier) {
+        case "is" -> {
+          switch (value.toLowerCase(Locale.ROOT)) {
+            case "pr" -> pullRequest = true;
+            case "issue" -> pullRequest = false;
+            default -> state = value;
+          }
+        }
+        case "state" -> state = value;
+        case "label" -> label = value;
+        case "author" -> author = value;
+        case "assignee" -> assignee = value;
+        case "in" -> {
+          for (String field : value.split(",")) {
+            switch (field.toLowerCase(Locale.ROOT)) {
+              case "title" -> fields.add(Field.TITLE);
+              case "body" -> fields.add(Field.BODY);
+              case "comments" -> fields.add(Field.COMMENTS);
+              default -> {
+                // GitHub ignores unknown fields too
+              }
+            }
+          }
+        }
+        default -> words.add(word);
+      }
+    }
+    if (fields.isEmpty()) {
+      fields = EnumSet.allOf(Field.class);
+    }
+    var terms = new ArrayList<String>();
+    words.forEach(word -> tokenize(word).forEach(terms::add));
+    return new Query(
+        terms, fields, pullRequest, new IssueMirror.Filter(state, label, author, assignee, null));
+  }
+
+  /** Lower-cased words of a text without punctuation and stop words. */
+  static List<String> tokenize(String text) {
+    var tokens = new ArrayList<String>();
+    for (String token : TOKEN_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+      if (token.length() > 1 && !STOP_WORDS.contains(token)) {
+        tokens.add(token);
+      }
+    }
+    return tokens;
+  }
+
+  private void removeLocked(Key key) {
+    var previous = terms.remove(key);
+    if (previous == null) {
+      return;
+    }
+    for (String term : previous) {
+      var documents = postings.get(term);
+      documents.remove(key);
+      if (documents.isEmpty()) {
+        postings.remove(term);
+      }
+    }
+    int[] previousLengths = lengths.remove(key);
+    for (int f = 0; f < previousLengths.length; f++) {
+      totalLengths[f] -= previousLengths[f];
+    }
+  }
+
+  private static void addTokens(
+      Map<String, int[]> frequencies, int[] fieldLengths, Field field, String text) {
+    for (String token : tokenize(text)) {
+      frequencies.computeIfAbsent(token, ignored -> new int[Field.values().length])[
+          field.ordinal()]++;
+      fieldLengths[field.ordinal()]++;
+    }
+  }
+
+  /** BM25F: term frequencies normalized by field length, weighted and summed over fields. */
+  private static double weightedFrequency(
+      int[] counts, int[] fieldLengths, double[] averageLengths, Set<Field> fields) {
+    double weighted = 0;
+    for (Field field : fields) {
+      int f = field.ordinal();
+      if (counts[f] == 0) {
+        continue;
+      }
+      double normalization =
+          averageLengths[f] == 0 ? 1 : 1 - B + B * fieldLengths[f] / averageLengths[f];
+      weighted += field.weight * counts[f] / normalization;
+    }
+    return weighted;
+  }
+
+  private static Map<Integer, List<JsonNode>> commentsByIssue(Collection<JsonNode> comments) {
+    var byIssue = new HashMap<Integer, List<JsonNode>>();
+    for (JsonNode comment : comments) {
+      byIssue
+          .computeIfAbsent(comment.path("issue").asInt(), ignored -> new ArrayList<>())
+          .add(comment);
+    }
+    return byIssue;
+  }
+}
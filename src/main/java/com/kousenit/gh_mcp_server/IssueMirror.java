@@ -0,0 +1,527 @@
+package com.kousenit.gh_mcp_server;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Local copy of the issues, pull requests and comments of configured repositories, kept current by
+ * incremental syncs and used to answer list, get and filter tools without calling GitHub.
+ *
+ * <p>Every sync only asks for items updated since the newest {@code updated_at} seen before (the
+ * watermark): issues and comments through the {@code since} parameter, pull requests, whose
+ * endpoint has none, by reading pages newest first until an older item shows up. Answers carry a
+ * {@code freshness} object with the time of the last sync, next to items in the same {@link Issue}
+ * and {@link PullRequest} shape the live calls return. Every query returns empty when the
+ * repository is not synced, has never been synced, or was not synced within twice the interval,
+ * and callers then make the live call.
+ */
+@Component
+public class IssueMirror {
+
+  private static final Logger logger = LoggerFactory.getLogger(IssueMirror.class);
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  /** Client id the scheduler sees for sync calls. */
+  static final String SYNC_CLIENT = "issue-sync";
+
+  /** Items per page, the maximum the REST API allows. */
+  static final int PAGE_SIZE = 100;
+
+  /** Items returned by list and filter queries, the same as gh's default for list commands. */
+  static final int DEFAULT_LIMIT = 30;
+
+  private static final String COMMON_FIELDS =
+      "number, title, createdAt: .created_at, updatedAt: .updated_at, closedAt: .closed_at,"
+          + " author: {login: .user.login}, body, labels: [.labels[] | {name}],"
+          + " assignees: [.assignees[] | {login}], url: .html_url";
+
+  private static final String ISSUE_JQ =
+      ".[] | {%s, state: (.state | ascii_upcase), isPullRequest: (.pull_request != null)}"
+          .formatted(COMMON_FIELDS);
+
+  private static final String PULL_JQ =
+      (".[] | {%s, state: (if .merged_at then \"MERGED\" else (.state | ascii_upcase) end),"
+              + " headRefName: .head.ref, baseRefName: .base.ref, isDraft: .draft}")
+          .formatted(COMMON_FIELDS);
+
+  private static final String COMMENT_JQ =
+      ".[] | {id, issue: (.issue_url | split(\"/\") | last | tonumber),"
+          + " author: {login: .user.login}, body, createdAt: .created_at,"
+          + " updatedAt: .updated_at, url: .html_url}";
+
+  /**
+   * Conditions of a list or filter query; null fields match everything.
+   *
+   * @param state {@code open} (the default), {@code closed}, {@code merged} or {@code all}
+   * @param updatedSince ISO-8601 date or timestamp the item must have been updated at or after
+   */
+  public record Filter(
+      String state, String label, String author, String assignee, String updatedSince) {
+
+    public static Filter state(String state) {
+      return new Filter(state, null, null, null, null);
+    }
+
+    boolean matches(JsonNode item) {
+      return matchesState(item.path("state").asText())
+          && (isBlank(label)
+              || names(item.path("labels"), "name").anyMatch(label::equalsIgnoreCase))
+          && (isBlank(author)
+              || author.equalsIgnoreCase(item.path("author").path("login").asText()))
+          && (isBlank(assignee)
+              || names(item.path("assignees"), "login").anyMatch(assignee::equalsIgnoreCase))
+          && (isBlank(updatedSince)
+              || item.path("updatedAt").asText().compareTo(updatedSince) >= 0);
+    }
+
+    private boolean matchesState(String itemState) {
+      String wanted = isBlank(state) ? "open" : state.toLowerCase();
+      return switch (wanted) {
+        case "all" -> true;
+        case "closed" -> !itemState.equals("OPEN");
+        default -> itemState.equalsIgnoreCase(wanted);
+      };
+    }
+
+    private static Stream<String> names(JsonNode array, String field) {
+      var names = new ArrayList<String>();
+      array.forEach(element -> names.add(element.path(field).asText()));
+      return names.stream();
+    }
+
+    private static boolean isBlank(String value) {
+      return value == null || value.isBlank();
+    }
+  }
+
+  private final GitHubProperties.Issues settings;
+  private final IssueStore store;
+  private final Function<List<String>, GithubCommand> gh;
+  private final LongSupplier clock;
+  private final Map<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+  private final Map<String, IssueIndex> indexes = new ConcurrentHashMap<>();
+  private ScheduledExecutorService syncer;
+
+  @Autowired
+  public IssueMirror(GitHubProperties gitHubProperties, GhCommandExecutor executor) {
+    this(
+        gitHubProperties.issues(),
+        args ->
+            CallContext.callAs(
+                new CallContext(SYNC_CLIENT, CallPriority.PREFETCH), () -> executor.execute(args)),
+        System::currentTimeMillis);
+  }
+
+  IssueMirror(
+      GitHubProperties.Issues settings,
+      Function<List<String>, GithubCommand> gh,
+      LongSupplier clock) {
+    this.settings = settings;
+    this.store = new IssueStore(settings.dir() == null ? null : Path.of(settings.dir()));
+    this.gh = gh;
+    this.clock = clock;
+  }
+
+  /** A local copy with no synced repositories, for callers constructed without Spring. */
+  public static IssueMirror disabled() {
+    return new IssueMirror(
+        new GitHubProperties.Issues(null, null, null), null, System::currentTimeMillis);
+  }
+
+  /** Syncs every configured repository now and then every {@code syncSeconds}. */
+  @PostConstruct
+  void start() {
+    if (settings.repositories().isEmpty()) {
+      return;
+    }
+    syncer =
+        Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("issue-sync").daemon().factory());
+    syncer.scheduleWithFixedDelay(this::syncAll, 0, settings.syncSeconds(), TimeUnit.SECONDS);
+  }
+
+  @PreDestroy
+  void stop() {
+    if (syncer != null) {
+      syncer.shutdownNow();
+    }
+  }
+
+  public boolean isSynced(String owner, String repo) {
+    return settings.repositories().stream()
+        .anyMatch(configured -> configured.equalsIgnoreCase(owner + "/" + repo));
+  }
+
+  /** Asks for a sync soon, e.g. after a tool changed an issue, without waiting for it. */
+  public void requestSync(String repository) {
+    if (syncer != null
+        && settings.repositories().stream().anyMatch(repository::equalsIgnoreCase)) {
+      syncer.execute(() -> sync(repository));
+    }
+  }
+
+  public void syncAll() {
+    for (String repository : settings.repositories()) {
+      try {
+        sync(repository);
+      } catch (RuntimeException e) {
+        logger.warn("Could not sync issues of {}: {}", repository, e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Fetches everything updated since the last sync and stores it. Concurrent syncs of the same
+   * repository are skipped rather than queued, and a failed sync leaves the stored items as they
+   * were.
+   *
+   * @return true if the repository is up to date afterwards
+   */
+  public boolean sync(String repository) {
+    var lock = locks.computeIfAbsent(repository.toLowerCase(), ignored -> new ReentrantLock());
+    if (!lock.tryLock()) {
+      return false;
+    }
+    try {
+      var current = store.get(repository).orElse(IssueStore.Contents.EMPTY);
+      var watermarks = new HashMap<>(current.watermarks());
+      var issues = new HashMap<>(current.issues());
+      var pullRequests = new HashMap<>(current.pullRequests());
+      var comments = new HashMap<>(current.comments());
+      String base = "repos/" + repository;
+
+      var updatedIssues =
+          fetchSince(
+              base + "/issues?state=all&sort=updated&direction=asc",
+              ISSUE_JQ,
+              watermarks.get("issues"));
+      if (updatedIssues.isEmpty()) {
+        return false;
+      }
+      var updatedPulls =
+          fetchNewestFirst(base + "/pulls?state=all&sort=updated", watermarks.get("pulls"));
+      if (updatedPulls.isEmpty()) {
+        return false;
+      }
+      var updatedComments =
+          fetchSince(
+              base + "/issues/comments?sort=updated&direction=asc",
+              COMMENT_JQ,
+              watermarks.get("comments"));
+      if (updatedComments.isEmpty()) {
+        return false;
+      }
+
+      var changed = new ArrayList<IssueIndex.Key>();
+      for (ObjectNode issue : updatedIssues.get()) {
+        // The issues endpoint lists pull requests too; they are kept from the pulls endpoint
+        boolean isPullRequest = issue.path("isPullRequest").asBoolean();
+        issue.remove("isPullRequest");
+        if (!isPullRequest) {
+          issues.put(issue.path("number").asInt(), issue);
+          changed.add(new IssueIndex.Key(false, issue.path("number").asInt()));
+        }
+      }
+      for (ObjectNode pull : updatedPulls.get()) {
+        pullRequests.put(pull.path("number").asInt(), pull);
+        changed.add(new IssueIndex.Key(true, pull.path("number").asInt()));
+      }
+      var commented = new ArrayList<Integer>();
+      for (ObjectNode comment : updatedComments.get()) {
+        comments.put(comment.path("id").asLong(), comment);
+        commented.add(comment.path("issue").asInt());
+      }
+      advance(watermarks, "issues", updatedIssues.get());
+      advance(watermarks, "pulls", updatedPulls.get());
+      advance(watermarks, "comments", updatedComments.get());
+
+      var updated =
+          new IssueStore.Contents(clock.getAsLong(), watermarks, issues, pullRequests, comments);
+      store.put(repository, updated);
+      // An index being built right now reads the store first, so it either already has these
+      // items or is finished before this update runs
+      indexes.computeIfPresent(
+          repository.toLowerCase(), (ignored, index) -> index.update(changed, commented, updated));
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Issues matching the filter, newest first, with freshness metadata. */
+  public Optional<String> issues(String owner, String repo, Filter filter) {
+    return fresh(owner, repo)
+        .map(
+            contents ->
+                list(contents, contents.issues(), filter, Issue::read, Issue.LIST_FIELDS));
+  }
+
+  /** Pull requests matching the filter, newest first, with freshness metadata. */
+  public Optional<String> pullRequests(String owner, String repo, Filter filter) {
+    return fresh(owner, repo)
+        .map(
+            contents ->
+                list(
+                    contents,
+                    contents.pullRequests(),
+                    filter,
+                    PullRequest::read,
+                    PullRequest.LIST_FIELDS));
+  }
+
+  /** One issue with its comments and freshness metadata. */
+  public Optional<String> issue(String owner, String repo, int number) {
+    return fresh(owner, repo)
+        .flatMap(
+            contents ->
+                Optional.ofNullable(contents.issues().get(number))
+                    .map(
+                        issue -> {
+                          ObjectNode stored = issue.deepCopy();
+                          stored.set("comments", commentsOf(contents, number));
+                          var answer =
+                              (ObjectNode) projected(stored, Issue::read, Issue.VIEW_FIELDS);
+                          answer.set("freshness", freshness(contents));
+                          return toJson(answer);
+                        }));
+  }
+
+  /**
+   * Issues and pull requests ranked by relevance to a query in GitHub search syntax, with
+   * freshness metadata. Without search words, matching items are returned newest first.
+   */
+  public Optional<String> search(String owner, String repo, String query, int limit) {
+    return fresh(owner, repo)
+        .map(
+            contents -> {
+              var parsed = IssueIndex.parse(query);
+              var hits =
+                  indexes
+                      .computeIfAbsent(
+                          (owner + "/" + repo).toLowerCase(),
+                          ignored ->
+                              IssueIndex.build(
+                                  store.get(owner + "/" + repo).orElse(IssueStore.Contents.EMPTY)))
+                      .search(parsed);
+              Comparator<IssueIndex.Hit> newestFirst =
+                  Comparator.comparingInt(hit -> hit.key().number());
+              var matching =
+                  hits.stream()
+                      .sorted(
+                          parsed.terms().isEmpty()
+                              ? newestFirst.reversed()
+                              : Comparator.comparingDouble(IssueIndex.Hit::score).reversed())
+                      .map(hit -> summary(contents, hit))
+                      .filter(item -> item != null && parsed.filter().matches(item))
+                      .toList();
+              ObjectNode answer = MAPPER.createObjectNode();
+              answer.set("freshness", freshness(contents));
+              answer.put("total", matching.size());
+              answer
+                  .putArray("items")
+                  .addAll(matching.stream().limit(limit > 0 ? limit : DEFAULT_LIMIT).toList());
+              return toJson(answer);
+            });
+  }
+
+  /** The stored items of a repository, when they are fresh enough to answer from. */
+  Optional<IssueStore.Contents> fresh(String owner, String repo) {
+    if (!isSynced(owner, repo)) {
+      return Optional.empty();
+    }
+    return store
+        .get(owner + "/" + repo)
+        .filter(contents -> contents.syncedAtMillis() > 0)
+        .filter(
+            contents ->
+                clock.getAsLong() - contents.syncedAtMillis()
+                    < settings.syncSeconds() * 1000L * 2);
+  }
+
+  /** Pages through an endpoint that takes {@code since}, oldest update first. */
+  private Optional<List<ObjectNode>> fetchSince(String endpoint, String jq, String since) {
+    var items = new ArrayList<ObjectNode>();
+    for (int page = 1; ; page++) {
+      String url =
+          endpoint
+              + "&per_page="
+              + PAGE_SIZE
+              + "&page="
+              + page
+              + (since != null ? "&since=" + since : "");
+      var batch = fetchPage(url, jq);
+      if (batch.isEmpty()) {
+        return Optional.empty();
+      }
+      items.addAll(batch.get());
+      if (batch.get().size() < PAGE_SIZE) {
+        return Optional.of(items);
+      }
+    }
+  }
+
+  /** Pages through pull requests newest update first until one is older than the watermark. */
+  private Optional<List<ObjectNode>> fetchNewestFirst(String endpoint, String since) {
+    Predicate<ObjectNode> updated =
+        pull -> since == null || pull.path("updatedAt").asText().compareTo(since) >= 0;
+    var items = new ArrayList<ObjectNode>();
+    for (int page = 1; ; page++) {
+      var batch =
+          fetchPage(
+              endpoint + "&direction=desc&per_page=" + PAGE_SIZE + "&page=" + page, PULL_JQ);
+      if (batch.isEmpty()) {
+        return Optional.empty();
+      }
+      batch.get().stream().filter(updated).forEach(items::add);
+      if (batch.get().size() < PAGE_SIZE || !batch.get().stream().allMatch(updated)) {
+        return Optional.of(items);
+      }
+    }
+  }
+
+  private Optional<List<ObjectNode>> fetchPage(String url, String jq) {
+    var result = gh.apply(List.of("api", url, "--jq", jq));
+    if (!result.isSuccess()) {
+      logger.warn("Issue sync call failed for {}: {}", url, result.error());
+      return Optional.empty();
+    }
+    var items = new ArrayList<ObjectNode>();
+    try {
+      for (String line : result.output().lines().toList()) {
+        if (!line.isBlank()) {
+          items.add((ObjectNode) MAPPER.readTree(line));
+        }
+      }
+    } catch (JsonProcessingException | ClassCastException e) {
+      logger.warn("Unexpected issue sync output for {}: {}", url, e.getMessage());
+      return Optional.empty();
+    }
+    return Optional.of(items);
+  }
+
+  private static void advance(Map<String, String> watermarks, String kind, List<ObjectNode> items) {
+    items.stream()
+        .map(item -> item.path("updatedAt").asText())
+        .filter(updatedAt -> !updatedAt.isEmpty())
+        .max(Comparator.naturalOrder())
+        .filter(newest -> newest.compareTo(watermarks.getOrDefault(kind, "")) > 0)
+        .ifPresent(newest -> watermarks.put(kind, newest));
+  }
+
+  private String list(
+      IssueStore.Contents contents,
+      Map<Integer, JsonNode> items,
+      Filter filter,
+      JsonProjection.Reader<?> reader,
+      String fields) {
+    Comparator<JsonNode> byNumber = Comparator.comparingInt(item -> item.path("number").asInt());
+    var matching =
+        items.values().stream().filter(filter::matches).sorted(byNumber.reversed()).toList();
+    ObjectNode answer = MAPPER.createObjectNode();
+    answer.set("freshness", freshness(contents));
+    answer.put("total", matching.size());
+    answer
+        .putArray("items")
+        .addAll(
+            matching.stream()
+                .limit(DEFAULT_LIMIT)
+                .map(item -> projected(item, reader, fields))
+                .toList());
+    return toJson(answer);
+  }
+
+  /**
+   * A stored item in the shape the live call returns: only the {@code --json} fields it asks gh
+   * for, read through the same record.
+   */
+  private static JsonNode projected(JsonNode item, JsonProjection.Reader<?> reader, String fields) {
+    ObjectNode kept = MAPPER.createObjectNode();
+    for (String field : fields.split(",")) {
+      if (item.has(field)) {
+        kept.set(field, item.get(field));
+      }
+    }
+    try {
+      return JsonProjection.projectTree(kept, reader);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** The fields of a search result, or null if the item is no longer stored. */
+  private static ObjectNode summary(IssueStore.Contents contents, IssueIndex.Hit hit) {
+    int number = hit.key().number();
+    JsonNode item =
+        hit.key().pullRequest()
+            ? contents.pullRequests().get(number)
+            : contents.issues().get(number);
+    if (item == null) {
+      return null;
+    }
+    ObjectNode summary = MAPPER.createObjectNode();
+    summary.put("number", number);
+    summary.put("isPullRequest", hit.key().pullRequest());
+    for (String field : List.of("title", "state", "author", "labels", "assignees", "updatedAt")) {
+      if (item.has(field)) {
+        summary.set(field, item.get(field));
+      }
+    }
+    summary.put("url", item.path("url").asText());
+    summary.put("score", Math.round(hit.score() * 1000) / 1000.0);
+    return summary;
+  }
+
+  private static ArrayNode commentsOf(IssueStore.Contents contents, int number) {
+    ArrayNode comments = MAPPER.createArrayNode();
+    contents.comments().values().stream()
+        .filter(comment -> comment.path("issue").asInt() == number)
+        .sorted(Comparator.comparing(comment -> comment.path("createdAt").asText()))
+        .forEach(comments::add);
+    return comments;
+  }
+
+  private ObjectNode freshness(IssueStore.Contents contents) {
+    ObjectNode freshness = MAPPER.createObjectNode();
+    freshness.put("source", "local");
+    freshness.put("syncedAt", Instant.ofEpochMilli(contents.syncedAtMillis()).toString());
+    long ageMillis = clock.getAsLong() - contents.syncedAtMillis();
+    freshness.put("ageSeconds", TimeUnit.MILLISECONDS.toSeconds(ageMillis));
+    return freshness;
+  }
+
+  private static String toJson(JsonNode node) {
+    try {
+      return MAPPER.writeValueAsString(node);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
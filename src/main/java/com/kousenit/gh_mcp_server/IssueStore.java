@@ -0,0 +1,130 @@
+package com.kousenit.gh_mcp_server;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Embedded store of the issues, pull requests and comments synced for each repository.
+ *
+ * <p>A repository's items are an immutable {@link Contents} value that each sync replaces as a
+ * whole, so readers never see half an update. With a directory, every replacement is also written
+ * to one JSON file per repository and loaded back on the next start, so a restart resumes from the
+ * stored watermarks instead of downloading everything again.
+ */
+final class IssueStore {
+
+  private static final Logger logger = LoggerFactory.getLogger(IssueStore.class);
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  /**
+   * Everything synced for one repository.
+   *
+   * @param syncedAtMillis when the last successful sync finished; 0 if there was none
+   * @param watermarks newest {@code updated_at} seen per kind of item
+   * @param issues issues by number, without pull requests
+   * @param pullRequests pull requests by number
+   * @param comments issue and pull request conversation comments by id
+   */
+  record Contents(
+      long syncedAtMillis,
+      Map<String, String> watermarks,
+      Map<Integer, JsonNode> issues,
+      Map<Integer, JsonNode> pullRequests,
+      Map<Long, JsonNode> comments) {
+
+    static final Contents EMPTY = new Contents(0, Map.of(), Map.of(), Map.of(), Map.of());
+
+    Contents {
+      watermarks = Map.copyOf(watermarks);
+      issues = Map.copyOf(issues);
+      pullRequests = Map.copyOf(pullRequests);
+      comments = Map.copyOf(comments);
+    }
+  }
+
+  private final Path directory;
+  private final Map<String, Contents> contents = new ConcurrentHashMap<>();
+
+  /**
+   * @param directory where repositories are persisted, or null to keep them in memory only
+   */
+  IssueStore(Path directory) {
+    this.directory = directory;
+  }
+
+  Optional<Contents> get(String repository) {
+    return Optional.ofNullable(contents.computeIfAbsent(repository.toLowerCase(), this::load));
+  }
+
+  void put(String repository, Contents updated) {
+    contents.put(repository.toLowerCase(), updated);
+    if (directory != null) {
+      save(file(repository.toLowerCase()), updated);
+    }
+  }
+
+  private Contents load(String repository) {
+    if (directory == null) {
+      return null;
+    }
+    Path file = file(repository);
+    if (!Files.exists(file)) {
+      return null;
+    }
+    try {
+      JsonNode root = MAPPER.readTree(file.toFile());
+      var watermarks = new HashMap<String, String>();
+      root.path("watermarks")
+          .fields()
+          .forEachRemaining(field -> watermarks.put(field.getKey(), field.getValue().asText()));
+      var issues = new HashMap<Integer, JsonNode>();
+      root.path("issues").forEach(item -> issues.put(item.path("number").asInt(), item));
+      var pullRequests = new HashMap<Integer, JsonNode>();
+      root.path("pullRequests")
+          .forEach(item -> pullRequests.put(item.path("number").asInt(), item));
+      var comments = new HashMap<Long, JsonNode>();
+      root.path("comments").forEach(item -> comments.put(item.path("id").asLong(), item));
+      return new Contents(
+          root.path("syncedAtMillis").asLong(), watermarks, issues, pullRequests, comments);
+    } catch (IOException e) {
+      // An unreadable file only costs a full sync
+      logger.warn("Ignoring unreadable issue store {}: {}", file, e.getMessage());
+      return null;
+    }
+  }
+
+  private static void save(Path file, Contents contents) {
+    ObjectNode root = MAPPER.createObjectNode();
+    root.put("syncedAtMillis", contents.syncedAtMillis());
+    root.set("watermarks", MAPPER.valueToTree(new LinkedHashMap<>(contents.watermarks())));
+    root.putArray("issues").addAll(contents.issues().values());
+    root.putArray("pullRequests").addAll(contents.pullRequests().values());
+    root.putArray("comments").addAll(contents.comments().values());
+    try {
+      Files.createDirectories(file.getParent());
+      Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+      MAPPER.writeValue(temp.toFile(), root);
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      logger.warn("Could not save issue store {}: {}", file, e.getMessage());
+    }
+  }
+
+  private Path file(String repository) {
+    String[] parts = repository.split("/", 2);
+    return directory.resolve(parts[0]).resolve(parts[1] + ".json");
+  }
+}
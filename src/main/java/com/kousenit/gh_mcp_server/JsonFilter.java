@@ -0,0 +1,1189 @@
+package com.kousenit.gh_mcp_server;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * A filter in a subset of jq, compiled once and applied in process to gh output, so the same
+ * cached response can be filtered in different ways and nothing is parsed and printed twice.
+ *
+ * <p>The subset covers what the tools need: {@code .}, {@code .name}, {@code ."name"}, {@code
+ * .[n]}, slices {@code .[from:to]} of arrays and strings, {@code .[]}, pipes, commas, {@code
+ * [...]} and {@code {...}} construction (with {@code {name}} shorthand), string, number, boolean
+ * and null literals, {@code $name} variables, {@code ==}, {@code !=}, {@code <}, {@code <=},
+ * {@code >}, {@code >=}, {@code and}, {@code or}, {@code //}, {@code +}, {@code -}, the functions
+ * {@code select}, {@code map}, {@code startswith}, {@code endswith}, {@code has}, {@code length},
+ * {@code keys}, {@code not}, {@code empty}, {@code tostring}, {@code tonumber} and {@code
+ * ascii_downcase}, and the formats {@code @base64} and {@code @base64d}. Anything else is rejected
+ * when compiling.
+ *
+ * <p>A filter that starts with a path ending in {@code []}, such as {@code .tree[] | ...}, is
+ * applied while the input is parsed: each element is built, filtered and dropped in turn, so a
+ * large listing is never held as a whole.
+ */
+public final class JsonFilter {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+  private final String expression;
+  private final Expr root;
+
+  /** Field names leading to the array the filter iterates while parsing; null if it cannot. */
+  private final List<String> streamPath;
+
+  /** What the filter does with each element of that array; null to output it as is. */
+  private final Expr streamRest;
+
+  private JsonFilter(String expression, Expr root) {
+    this.expression = expression;
+    this.root = root;
+    List<Expr> segments = root instanceof Pipe pipe ? pipe.segments() : List.of(root);
+    List<String> fields = segments.getFirst() instanceof Path path ? path.streamFields() : null;
+    this.streamPath = fields;
+    if (fields == null || segments.size() == 1) {
+      this.streamRest = null;
+    } else if (segments.size() == 2) {
+      this.streamRest = segments.get(1);
+    } else {
+      this.streamRest = new Pipe(List.copyOf(segments.subList(1, segments.size())));
+    }
+  }
+
+  /**
+   * Compiles a filter.
+   *
+   * @throws IllegalArgumentException if the expression is not in the supported subset
+   */
+  public static JsonFilter compile(String expression) {
+    return new JsonFilter(expression, new Parser(expression).parse());
+  }
+
+  public String expression() {
+    return expression;
+  }
+
+  @Override
+  public String toString() {
+    return expression;
+  }
+
+  /**
+   * Filters gh output and prints the results the way {@code gh --jq} does: strings raw, other
+   * values as compact JSON, one per line.
+   *
+   * @param variables values of the {@code $name} variables, converted to JSON
+   * @return the printed results, an {@code Error:} line if the filter failed on the input, or
+   *     empty if the output is not JSON, such as an error from gh
+   */
+  public Optional<String> apply(String output, Map<String, ?> variables) {
+    String trimmed = output == null ? "" : output.strip();
+    if (!trimmed.startsWith("{") && !trimmed.startsWith("[")) {
+      return Optional.empty();
+    }
+    var printed = new StringBuilder();
+    try (var parser = MAPPER.createParser(trimmed)) {
+      apply(parser, variables, value -> printed.append(print(value)).append('\n'));
+    } catch (IOException e) {
+      return Optional.empty();
+    } catch (IllegalStateException e) {
+      return Optional.of("Error: " + e.getMessage());
+    }
+    return Optional.of(printed.toString());
+  }
+
+  /**
+   * Filters every JSON value of a stream, handing each result to the consumer as it is produced.
+   * The stream is not closed.
+   *
+   * @throws IllegalStateException if the filter fails on the input, as jq would
+   */
+  public void apply(InputStream in, Map<String, ?> variables, Consumer<JsonNode> output)
+      throws IOException {
+    try (var parser = MAPPER.createParser(in)) {
+      parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+      apply(parser, variables, output);
+    }
+  }
+
+  private void apply(JsonParser parser, Map<String, ?> variables, Consumer<JsonNode> output)
+      throws IOException {
+    var env = new HashMap<String, JsonNode>();
+    variables.forEach((name, value) -> env.put(name, MAPPER.valueToTree(value)));
+    while (parser.nextToken() != null) {
+      if (streamPath != null) {
+        stream(parser, 0, env, output);
+      } else {
+        root.eval(parser.readValueAsTree(), env, output);
+      }
+    }
+  }
+
+  /** Prints one result the way {@code gh --jq} does. */
+  static String print(JsonNode value) {
+    return value.isTextual() ? value.textValue() : value.toString();
+  }
+
+  /** Walks down the stream path from the current token, then filters the elements one by one. */
+  private void stream(
+      JsonParser parser, int depth, Map<String, JsonNode> env, Consumer<JsonNode> out)
+      throws IOException {
+    var token = parser.currentToken();
+    if (depth == streamPath.size()) {
+      if (token == JsonToken.START_ARRAY) {
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+          emit(parser.readValueAsTree(), env, out);
+        }
+      } else if (token == JsonToken.START_OBJECT) {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          parser.nextToken();
+          emit(parser.readValueAsTree(), env, out);
+        }
+      } else {
+        throw new IllegalStateException("Cannot iterate over " + typeOf(parser.readValueAsTree()));
+      }
+      return;
+    }
+    if (token != JsonToken.START_OBJECT) {
+      JsonNode value = parser.readValueAsTree();
+      throw new IllegalStateException(
+          value.isNull()
+              ? "Cannot iterate over null"
+              : "Cannot index %s with \"%s\"".formatted(typeOf(value), streamPath.get(depth)));
+    }
+    boolean found = false;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String name = parser.currentName();
+      parser.nextToken();
+      if (!found && name.equals(streamPath.get(depth))) {
+        found = true;
+        stream(parser, depth + 1, env, out);
+      } else {
+        parser.skipChildren();
+      }
+    }
+    if (!found) {
+      throw new IllegalStateException("Cannot iterate over null");
+    }
+  }
+
+  private void emit(JsonNode element, Map<String, JsonNode> env, Consumer<JsonNode> out) {
+    if (streamRest == null) {
+      out.accept(element);
+    } else {
+      streamRest.eval(element, env, out);
+    }
+  }
+
+  // Evaluation
+
+  /** A compiled expression, producing zero or more outputs for each input like jq. */
+  private interface Expr {
+    void eval(JsonNode input, Map<String, JsonNode> env, Consumer<JsonNode> out);
+  }
+
+  private record Identity() implements Expr {
+    @Override
+    public void eval(JsonNode input, Map<String, JsonNode> env, Consumer<JsonNode> out) {
+      out.accept(input);
+    }
+  }
+
+  private record Literal(JsonNode value) implements Expr {
+    @Override
+    public void eval(JsonNode input, Map<String, JsonNode> env, Consumer<JsonNode> out) {
+      out.accept(value);
+    }
+  }
+
+  private record Variable(String name) implements Expr {
+    @Override
+    public void eval(JsonNode input, Map<String, JsonNode> env, Consumer<JsonNode> out) {
+      var value = env.get(name);
+      if (value == null) {
+        throw new IllegalStateException("$" + name + " is not defined");
+      }
+      out.accept(value);
+    }
+  }
+
+  private record Pipe(List<Expr> segments) implements Expr {
+    @Override
+    public void eval(JsonNode input, Map<String, JsonNode> env, Consumer<JsonNode> out) {
+      eval(0, input, env, out);
+    }
+
+    private void eval(
+        int index, JsonNode input, Map<String, JsonNode> env, Consumer<JsonNode> out) {
+      if (index == segments.size() - 1) {
+        segments.get(index).eval(input, env, out);
+      } else {
+        segments.get(index).eval(input, env, value -> eval(index + 1, value, env, out));
+      }
+    }
+  }
+
+  private record Comma(Expr left, Expr right) implements Expr {
+    @Override
+    public void eval(JsonNode input, Map<String, JsonNode> env, Consumer<JsonNode> out) {
+      left.eval(input, env, out);
+      right.eval(input, env, out);
+    }
+  }
+
+  /** One step of a path: a field, an index, a slice or an iteration. */
+  private sealed interface Step {}
+
+  private record FieldStep(String name) implements Step {}
+
+  private record IndexStep(Expr index) implements Step {}
+
+  private record SliceStep(Expr from, Expr to) implements Step {}
+
+  private record IterateStep() implements Step {}
+
+  private record Path(Expr base, List<Step> steps) implements Expr {
+
+    /** The fields before a final {@code []} when the path starts at the input; else null. */
+    List<String> streamFields() {
+      if (!(base instanceof Identity) || !(steps.getLast() instanceof IterateStep)) {
+        return null;
+      }
+      var fields = new ArrayList<String>();
+      for (var step : steps.subList(0, steps.size() - 1)) {
+        if (!(step instanceof FieldStep field)) {
+          return null;
+        }
+        fields.add(field.name());
+      }
+      return fields;
+    }
+
+    @Override
+    public void eval(JsonNode input, Map<String, JsonNode> env, Consumer<JsonNode> out) {
+      base.eval(input, env, value -> walk(0, input, value, env, out));
+    }
+
+    private void walk(
+        int index,
+        JsonNode input,
+        JsonNode value,
+        Map<String, JsonNode> env,
+        Consumer<JsonNode> out) {
+      if (index == steps.size()) {
+        out.accept(value);
+        return;
+      }
+      Consumer<JsonNode> next = result -> walk(index + 1, input, result, env, out);
+      switch (steps.get(index)) {
+        case FieldStep field -> next.accept(field(value, field.name()));
+        case IndexStep step ->
+            step.index().eval(input, env, key -> next.accept(index(value, key)));
+        case SliceStep slice ->
+            bound(
+                slice.from(),
+                input,
+                env,
+                from -> bound(slice.to(), input, env, to -> next.accept(slice(value, from, to))));
+        case IterateStep ignored -> iterate(value, next);
+      }
+    }
+
+    private static void bound(
+        Expr bound, JsonNode input, Map<String, JsonNode> env, Consumer<JsonNode> out) {
+      if (bound == null) {
+        out.accept(NullNode.getInstance());
+      } else {
+        bound.eval(input, env, out);
+      }
+    }
+  }
+
+  private record ArrayConstruction(Expr body) implements Expr {
+    @Override
+    public void eval(JsonNode input, Map<String, JsonNode> env, Consumer<JsonNode> out) {
+      ArrayNode array = NODES.arrayNode();
+      if (body != null) {
+        body.eval(input, env, array::add);
+      }
+      out.accept(array);
+    }
+  }
+
+  private record Entry(Expr key, Expr value) {}
+
+  private record ObjectConstruction(List<Entry> entries) implements Expr {
+    @Override
+    public void eval(JsonNode input, Map<String, JsonNode> env, Consumer<JsonNode> out) {
+      build(0, NODES.objectNode(), input, env, out);
+    }
+
+    /** Every combination of the entries' outputs, as jq does. */
+    private void build(
+        int index,
+        ObjectNode partial,
+        JsonNode input,
+        Map<String, JsonNode> env,
+        Consumer<JsonNode> out) {
+      if (index == entries.size()) {
+        out.accept(partial);
+        return;
+      }
+      var entry = entries.get(index);
+      entry
+          .key()
+          .eval(
+              input,
+              env,
+              key -> {
+                if (!key.isTextual()) {
+                  throw new IllegalStateException(
+                      "Object keys must be strings, not " + typeOf(key));
+                }
+                entry
+                    .value()
+                    .eval(
+                        input,
+                        env,
+                        value -> {
+                          ObjectNode object = partial.deepCopy();
+                          object.set(key.textValue(), value);
+                          build(index + 1, object, input, env, out);
+                        });
+              });
+    }
+  }
+
+  private enum Operator {
+    EQ("=="),
+    NE("!="),
+    LT("<"),
+    LE("<="),
+    GT(">"),
+    GE(">="),
+    PLUS("+"),
+    MINUS("-");
+
+    private final String symbol;
+
+    Operator(String symbol) {
+      this.symbol = symbol;
+    }
+
+    static Operator of(String symbol) {
+      for (var operator : values()) {
+        if (operator.symbol.equals(symbol)) {
+          return operator;
+        }
+      }
+      return null;
+    }
+  }
+
+  private record Binary(Operator operator, Expr left, Expr right) implements Expr {
+    @Override
+    public void eval(JsonNode input, Map<String, JsonNode> env, Consumer<JsonNode> out) {
+      right.eval(
+          input, env, r -> left.eval(input, env, l -> out.accept(apply(operator, l, r))));
+    }
+
+    private static JsonNode apply(Operator operator, JsonNode l, JsonNode r) {
+      return switch (operator) {
+        case EQ -> BooleanNode.valueOf(compare(l, r) == 0);
+        case NE -> BooleanNode.valueOf(compare(l, r) != 0);
+        case LT -> BooleanNode.valueOf(compare(l, r) < 0);
+        case LE -> BooleanNode.valueOf(compare(l, r) <= 0);
+        case GT -> BooleanNode.valueOf(compare(l, r) > 0);
+        case GE -> BooleanNode.valueOf(compare(l, r) >= 0);
+        case PLUS -> plus(l, r);
+        case MINUS -> minus(l, r);
+      };
+    }
+  }
+
+  private record And(Expr left, Expr right) implements Expr {
+    @Override
+    public void eval(JsonNode input, Map<String, JsonNode> env, Consumer<JsonNode> out) {
+      left.eval(
+          input,
+          env,
+          l -> {
+            if (!truthy(l)) {
+              out.accept(BooleanNode.FALSE);
+            } else {
+              right.eval(input, env, r -> out.accept(BooleanNode.valueOf(truthy(r))));
+            }
+          });
+    }
+  }
+
+  private record Or(Expr left, Expr right) implements Expr {
+    @Override
+    public void eval(JsonNode input, Map<String, JsonNode> env, Consumer<JsonNode> out) {
+      left.eval(
+          input,
+          env,
+          l -> {
+            if (truthy(l)) {
+              out.accept(BooleanNode.TRUE);
+            } else {
+              right.eval(input, env, r -> out.accept(BooleanNode.valueOf(truthy(r))));
+            }
+          });
+    }
+  }
+
+  private record Alternative(Expr left, Expr right) implements Expr {
+    @Override
+    public void eval(JsonNode input, Map<String, JsonNode> env, Consumer<JsonNode> out) {
+      var kept = new ArrayList<JsonNode>();
+      try {
+        left.eval(
+            input,
+            env,
+            value -> {
+              if (truthy(value)) {
+                kept.add(value);
+              }
+            });
+      } catch (IllegalStateException e) {
+        // Errors on the left count as no output
+      }
+      if (kept.isEmpty()) {
+        right.eval(input, env, out);
+      } else {
+        kept.forEach(out);
+      }
+    }
+  }
+
+  private record Call(String name, List<Expr> args) implements Expr {
+    @Override
+    public void eval(JsonNode input, Map<String, JsonNode> env, Consumer<JsonNode> out) {
+      switch (name) {
+        case "select" ->
+            args.getFirst()
+                .eval(
+                    input,
+                    env,
+                    condition -> {
+                      if (truthy(condition)) {
+                        out.accept(input);
+                      }
+                    });
+        case "map" -> {
+          ArrayNode mapped = NODES.arrayNode();
+          iterate(input, element -> args.getFirst().eval(element, env, mapped::add));
+          out.accept(mapped);
+        }
+        case "startswith", "endswith", "has" ->
+            args.getFirst().eval(input, env, arg -> out.accept(test(input, arg)));
+        case "length" -> out.accept(length(input));
+        case "keys" -> out.accept(keys(input));
+        case "not" -> out.accept(BooleanNode.valueOf(!truthy(input)));
+        case "empty" -> {}
+        case "tostring" -> out.accept(TextNode.valueOf(print(input)));
+        case "tonumber" -> out.accept(toNumber(input));
+        case "ascii_downcase" -> out.accept(TextNode.valueOf(text(input, name).toLowerCase()));
+        case "@base64" ->
+            out.accept(
+                TextNode.valueOf(
+                    Base64.getEncoder()
+                        .encodeToString(print(input).getBytes(StandardCharsets.UTF_8))));
+        case "@base64d" ->
+            // The contents API wraps its base64 at 60 columns
+            out.accept(
+                TextNode.valueOf(
+                    new String(
+                        Base64.getMimeDecoder().decode(text(input, name)),
+                        StandardCharsets.UTF_8)));
+        default -> throw new IllegalStateException(name + " is not defined");
+      }
+    }
+
+    private JsonNode test(JsonNode input, JsonNode arg) {
+      return switch (name) {
+        case "startswith" -> BooleanNode.valueOf(text(input, name).startsWith(text(arg, name)));
+        case "endswith" -> BooleanNode.valueOf(text(input, name).endsWith(text(arg, name)));
+        default -> {
+          if (input.isObject() && arg.isTextual()) {
+            yield BooleanNode.valueOf(input.has(arg.textValue()));
+          }
+          if (input.isArray() && arg.isNumber()) {
+            yield BooleanNode.valueOf(arg.asInt() >= 0 && arg.asInt() < input.size());
+          }
+          throw new IllegalStateException(
+              "Cannot check whether %s has a %s key".formatted(typeOf(input), typeOf(arg)));
+        }
+      };
+    }
+  }
+
+  /** Arity of each supported function; formats are parsed separately. */
+  private static final Map<String, Integer> FUNCTIONS =
+      Map.ofEntries(
+          Map.entry("select", 1),
+          Map.entry("map", 1),
+          Map.entry("startswith", 1),
+          Map.entry("endswith", 1),
+          Map.entry("has", 1),
+          Map.entry("length", 0),
+          Map.entry("keys", 0),
+          Map.entry("not", 0),
+          Map.entry("empty", 0),
+          Map.entry("tostring", 0),
+          Map.entry("tonumber", 0),
+          Map.entry("ascii_downcase", 0));
+
+  private static final List<String> FORMATS = List.of("@base64", "@base64d");
+
+  // Semantics shared by the expressions
+
+  private static boolean truthy(JsonNode value) {
+    return !(value.isNull() || value.isMissingNode() || (value.isBoolean() && !value.asBoolean()));
+  }
+
+  private static String typeOf(JsonNode value) {
+    return switch (value.getNodeType()) {
+      case ARRAY -> "array";
+      case OBJECT -> "object";
+      case STRING -> "string";
+      case NUMBER -> "number";
+      case BOOLEAN -> "boolean";
+      default -> "null";
+    };
+  }
+
+  private static String text(JsonNode value, String function) {
+    if (!value.isTextual()) {
+      throw new IllegalStateException(
+          "%s (%s) cannot be used with %s".formatted(typeOf(value), value, function));
+    }
+    return value.textValue();
+  }
+
+  private static JsonNode field(JsonNode value, String name) {
+    if (value.isNull()) {
+      return NullNode.getInstance();
+    }
+    if (!value.isObject()) {
+      throw new IllegalStateException("Cannot index %s with \"%s\"".formatted(typeOf(value), name));
+    }
+    var field = value.get(name);
+    return field == null ? NullNode.getInstance() : field;
+  }
+
+  private static JsonNode index(JsonNode value, JsonNode key) {
+    if (key.isTextual()) {
+      return field(value, key.textValue());
+    }
+    if (value.isNull()) {
+      return NullNode.getInstance();
+    }
+    if (!value.isArray() || !key.isNumber()) {
+      throw new IllegalStateException(
+          "Cannot index %s with %s".formatted(typeOf(value), typeOf(key)));
+    }
+    int i = key.asInt();
+    var element = value.get(i < 0 ? value.size() + i : i);
+    return element == null ? NullNode.getInstance() : element;
+  }
+
+  private static JsonNode slice(JsonNode value, JsonNode from, JsonNode to) {
+    if (value.isNull()) {
+      return NullNode.getInstance();
+    }
+    int length =
+        value.isArray()
+            ? value.size()
+            : value.isTextual()
+                ? value.textValue().codePointCount(0, value.textValue().length())
+                : -1;
+    if (length < 0) {
+      throw new IllegalStateException("Cannot slice " + typeOf(value));
+    }
+    int start = clamp(from, 0, length);
+    int end = Math.max(start, clamp(to, length, length));
+    if (value.isArray()) {
+      ArrayNode array = NODES.arrayNode();
+      for (int i = start; i < end; i++) {
+        array.add(value.get(i));
+      }
+      return array;
+    }
+    String text = value.textValue();
+    return TextNode.valueOf(
+        text.substring(text.offsetByCodePoints(0, start), text.offsetByCodePoints(0, end)));
+  }
+
+  private static int clamp(JsonNode bound, int missing, int length) {
+    if (bound.isNull()) {
+      return missing;
+    }
+    if (!bound.isNumber()) {
+      throw new IllegalStateException("Slice bounds must be numbers, not " + typeOf(bound));
+    }
+    int i = bound.asInt();
+    return Math.min(Math.max(i < 0 ? length + i : i, 0), length);
+  }
+
+  private static void iterate(JsonNode value, Consumer<JsonNode> out) {
+    if (value.isArray() || value.isObject()) {
+      // Iterating an object node yields its values
+      value.forEach(out);
+    } else {
+      throw new IllegalStateException("Cannot iterate over " + typeOf(value));
+    }
+  }
+
+  private static JsonNode length(JsonNode value) {
+    return switch (value.getNodeType()) {
+      case STRING -> {
+        String text = value.textValue();
+        yield NODES.numberNode(text.codePointCount(0, text.length()));
+      }
+      case ARRAY, OBJECT -> NODES.numberNode(value.size());
+      case NUMBER -> NODES.numberNode(Math.abs(value.asDouble()));
+      case NULL -> NODES.numberNode(0);
+      default -> throw new IllegalStateException(typeOf(value) + " has no length");
+    };
+  }
+
+  private static JsonNode keys(JsonNode value) {
+    ArrayNode keys = NODES.arrayNode();
+    if (value.isObject()) {
+      var names = new ArrayList<String>();
+      value.fieldNames().forEachRemaining(names::add);
+      names.stream().sorted().forEach(keys::add);
+    } else if (value.isArray()) {
+      for (int i = 0; i < value.size(); i++) {
+        keys.add(i);
+      }
+    } else {
+      throw new IllegalStateException(typeOf(value) + " has no keys");
+    }
+    return keys;
+  }
+
+  private static JsonNode toNumber(JsonNode value) {
+    if (value.isNumber()) {
+      return value;
+    }
+    try {
+      return NODES.numberNode(new BigDecimal(text(value, "tonumber").strip()));
+    } catch (NumberFormatException e) {
+      throw new IllegalStateException("Cannot parse '%s' as a number".formatted(value.textValue()));
+    }
+  }
+
+  /** jq's total order: null, false, true, numbers, strings, arrays, objects. */
+  private static int compare(JsonNode l, JsonNode r) {
+    int byType = Integer.compare(rank(l), rank(r));
+    if (byType != 0) {
+      return byType;
+    }
+    return switch (l.getNodeType()) {
+      case NUMBER -> l.decimalValue().compareTo(r.decimalValue());
+      case STRING -> l.textValue().compareTo(r.textValue());
+      case ARRAY -> {
+        for (int i = 0; i < Math.min(l.size(), r.size()); i++) {
+          int byElement = compare(l.get(i), r.get(i));
+          if (byElement != 0) {
+            yield byElement;
+          }
+        }
+        yield Integer.compare(l.size(), r.size());
+      }
+      // Not jq's key-by-key order, but consistent, which is all sorting and equality need
+      case OBJECT -> l.equals(r) ? 0 : l.toString().compareTo(r.toString());
+      default -> 0;
+    };
+  }
+
+  private static int rank(JsonNode value) {
+    return switch (value.getNodeType()) {
+      case BOOLEAN -> value.asBoolean() ? 2 : 1;
+      case NUMBER -> 3;
+      case STRING -> 4;
+      case ARRAY -> 5;
+      case OBJECT -> 6;
+      default -> 0;
+    };
+  }
+
+  private static JsonNode plus(JsonNode l, JsonNode r) {
+    if (l.isNull()) {
+      return r;
+    }
+    if (r.isNull()) {
+      return l;
+    }
+    if (l.isNumber() && r.isNumber()) {
+      return NODES.numberNode(l.decimalValue().add(r.decimalValue()));
+    }
+    if (l.isTextual() && r.isTextual()) {
+      return TextNode.valueOf(l.textValue() + r.textValue());
+    }
+    if (l.isArray() && r.isArray()) {
+      return ((ArrayNode) l.deepCopy()).addAll((ArrayNode) r);
+    }
+    if (l.isObject() && r.isObject()) {
+      return ((ObjectNode) l.deepCopy()).setAll((ObjectNode) r);
+    }
+    throw new IllegalStateException(
+        "%s and %s cannot be added".formatted(typeOf(l), typeOf(r)));
+  }
+
+  private static JsonNode minus(JsonNode l, JsonNode r) {
+    if (l.isNumber() && r.isNumber()) {
+      return NODES.numberNode(l.decimalValue().subtract(r.decimalValue()));
+    }
+    if (l.isArray() && r.isArray()) {
+      ArrayNode array = NODES.arrayNode();
+      l.forEach(
+          element -> {
+            boolean removed = false;
+            for (var other : r) {
+              removed |= compare(element, other) == 0;
+            }
+            if (!removed) {
+              array.add(element);
+            }
+          });
+      return array;
+    }
+    throw new IllegalStateException(
+        "%s and %s cannot be subtracted".formatted(typeOf(l), typeOf(r)));
+  }
+
+  // Parsing
+
+  private enum Kind {
+    FIELD,
+    IDENT,
+    VARIABLE,
+    FORMAT,
+    STRING,
+    NUMBER,
+    SYMBOL,
+    END
+  }
+
+  private record Token(Kind kind, String text, int position) {
+    boolean is(String symbol) {
+      return kind == Kind.SYMBOL && text.equals(symbol);
+    }
+  }
+
+  /** Longer symbols first, so {@code //} is not read as two slashes. */
+  private static final List<String> SYMBOLS =
+      List.of(
+          "//", "==", "!=", "<=", ">=", "<", ">", "+", "-", "|", ",", ":", ";", ".", "[", "]", "{",
+          "}", "(", ")", "?");
+
+  /** A recursive descent parser over jq's precedence levels, loosest first. */
+  private static final class Parser {
+
+    private final String source;
+    private final List<Token> tokens;
+    private int next;
+
+    Parser(String source) {
+      this.source = source;
+      this.tokens = tokenize(source);
+    }
+
+    Expr parse() {
+      var expr = pipe();
+      if (peek().kind() != Kind.END) {
+        throw error("unexpected '" + peek().text() + "'");
+      }
+      return expr;
+    }
+
+    private Expr pipe() {
+      var segments = new ArrayList<Expr>();
+      segments.add(comma());
+      while (accept("|")) {
+        segments.add(comma());
+      }
+      return segments.size() == 1 ? segments.getFirst() : new Pipe(segments);
+    }
+
+    private Expr comma() {
+      var expr = alternative();
+      while (accept(",")) {
+        expr = new Comma(expr, alternative());
+      }
+      return expr;
+    }
+
+    private Expr alternative() {
+      var expr = or();
+      // Right-associative, as in jq
+      return accept("//") ? new Alternative(expr, alternative()) : expr;
+    }
+
+    private Expr or() {
+      var expr = and();
+      while (acceptKeyword("or")) {
+        expr = new Or(expr, and());
+      }
+      return expr;
+    }
+
+    private Expr and() {
+      var expr = comparison();
+      while (acceptKeyword("and")) {
+        expr = new And(expr, comparison());
+      }
+      return expr;
+    }
+
+    private Expr comparison() {
+      var expr = additive();
+      var token = peek();
+      var operator = token.kind() == Kind.SYMBOL ? Operator.of(token.text()) : null;
+      if (operator != null && operator != Operator.PLUS && operator != Operator.MINUS) {
+        next++;
+        expr = new Binary(operator, expr, additive());
+      }
+      return expr;
+    }
+
+    private Expr additive() {
+      var expr = postfix();
+      while (peek().is("+") || peek().is("-")) {
+        var operator = Operator.of(tokens.get(next++).text());
+        expr = new Binary(operator, expr, postfix());
+      }
+      return expr;
+    }
+
+    private Expr postfix() {
+      var base = primary();
+      var steps = new ArrayList<Step>();
+      if (base instanceof Path path) {
+        base = path.base();
+        steps.addAll(path.steps());
+      }
+      while (true) {
+        if (peek().kind() == Kind.FIELD) {
+          steps.add(new FieldStep(tokens.get(next++).text()));
+        } else if (peek().is(".") && tokens.get(next + 1).kind() == Kind.STRING) {
+          next++;
+          steps.add(new FieldStep(tokens.get(next++).text()));
+        } else if (peek().is("[")) {
+          next++;
+          steps.add(bracket());
+        } else if (peek().is("?")) {
+          throw error("'?' is not supported");
+        } else {
+          break;
+        }
+      }
+      return steps.isEmpty() ? base : new Path(base, List.copyOf(steps));
+    }
+
+    /** The inside of {@code [...]} after a value: iteration, an index or a slice. */
+    private Step bracket() {
+      if (accept("]")) {
+        return new IterateStep();
+      }
+      Expr from = peek().is(":") ? null : pipe();
+      if (accept(":")) {
+        Expr to = peek().is("]") ? null : pipe();
+        expect("]");
+        if (from == null && to == null) {
+          throw error("a slice needs a bound");
+        }
+        return new SliceStep(from, to);
+      }
+      expect("]");
+      return new IndexStep(from);
+    }
+
+    private Expr primary() {
+      var token = tokens.get(next++);
+      switch (token.kind()) {
+        case FIELD -> {
+          return new Path(new Identity(), List.of(new FieldStep(token.text())));
+        }
+        case STRING -> {
+          return new Literal(TextNode.valueOf(token.text()));
+        }
+        case NUMBER -> {
+          return new Literal(NODES.numberNode(new BigDecimal(token.text())));
+        }
+        case VARIABLE -> {
+          return new Variable(token.text());
+        }
+        case FORMAT -> {
+          if (!FORMATS.contains(token.text())) {
+            throw error(token, token.text() + " is not a supported format");
+          }
+          return new Call(token.text(), List.of());
+        }
+        case IDENT -> {
+          return identifier(token);
+        }
+        case END -> throw error(token, "unexpected end of filter");
+        default -> {}
+      }
+      switch (token.text()) {
+        case "." -> {
+          if (peek().kind() == Kind.STRING) {
+            return new Path(new Identity(), List.of(new FieldStep(tokens.get(next++).text())));
+          }
+          return new Identity();
+        }
+        case "(" -> {
+          var expr = pipe();
+          expect(")");
+          return expr;
+        }
+        case "[" -> {
+          Expr body = peek().is("]") ? null : pipe();
+          expect("]");
+          return new ArrayConstruction(body);
+        }
+        case "{" -> {
+          return object();
+        }
+        case "-" -> {
+          var number = tokens.get(next++);
+          if (number.kind() != Kind.NUMBER) {
+            throw error(number, "only numbers can be negated");
+          }
+          return new Literal(NODES.numberNode(new BigDecimal("-" + number.text())));
+        }
+        default -> throw error(token, "unexpected '" + token.text() + "'");
+      }
+    }
+
+    private Expr identifier(Token token) {
+      switch (token.text()) {
+        case "true" -> {
+          return new Literal(BooleanNode.TRUE);
+        }
+        case "false" -> {
+          return new Literal(BooleanNode.FALSE);
+        }
+        case "null" -> {
+          return new Literal(NullNode.getInstance());
+        }
+        default -> {}
+      }
+      Integer arity = FUNCTIONS.get(token.text());
+      if (arity == null) {
+        throw error(token, token.text() + "/0 is not a supported function");
+      }
+      var args = new ArrayList<Expr>();
+      if (accept("(")) {
+        do {
+          args.add(pipe());
+        } while (accept(";"));
+        expect(")");
+      }
+      if (args.size() != arity) {
+        throw error(
+            token, "%s/%d is not a supported function".formatted(token.text(), args.size()));
+      }
+      return new Call(token.text(), List.copyOf(args));
+    }
+
+    private Expr object() {
+      var entries = new ArrayList<Entry>();
+      if (accept("}")) {
+        return new ObjectConstruction(entries);
+      }
+      do {
+        var token = tokens.get(next++);
+        Expr key;
+        Expr shorthand;
+        switch (token.kind()) {
+          case IDENT -> {
+            key = new Literal(TextNode.valueOf(token.text()));
+            shorthand = new Path(new Identity(), List.of(new FieldStep(token.text())));
+          }
+          case STRING -> {
+            key = new Literal(TextNode.valueOf(token.text()));
+            shorthand = new Path(new Identity(), List.of(new FieldStep(token.text())));
+          }
+          case VARIABLE -> {
+            key = new Literal(TextNode.valueOf(token.text()));
+            shorthand = new Variable(token.text());
+          }
+          default -> {
+            if (!token.is("(")) {
+              throw error(token, "unexpected '" + token.text() + "' in object");
+            }
+            key = pipe();
+            expect(")");
+            shorthand = null;
+          }
+        }
+        Expr value;
+        if (accept(":")) {
+          // Values may be piped but not comma-separated
+          var segments = new ArrayList<Expr>();
+          segments.add(alternative());
+          while (accept("|")) {
+            segments.add(alternative());
+          }
+          value = segments.size() == 1 ? segments.getFirst() : new Pipe(segments);
+        } else if (shorthand != null) {
+          value = shorthand;
+        } else {
+          throw error(peek(), "expected ':' after a computed key");
+        }
+        entries.add(new Entry(key, value));
+      } while (accept(","));
+      expect("}");
+      return new ObjectConstruction(List.copyOf(entries));
+    }
+
+    private Token peek() {
+      return tokens.get(next);
+    }
+
+    private boolean accept(String symbol) {
+      if (peek().is(symbol)) {
+        next++;
+        return true;
+      }
+      return false;
+    }
+
+    private boolean acceptKeyword(String keyword) {
+      if (peek().kind() == Kind.IDENT && peek().text().equals(keyword)) {
+        next++;
+        return true;
+      }
+      return false;
+    }
+
+    private void expect(String symbol) {
+      if (!accept(symbol)) {
+        throw error(peek(), "expected '" + symbol + "'");
+      }
+    }
+
+    private IllegalArgumentException error(String message) {
+      return error(peek(), message);
+    }
+
+    private IllegalArgumentException error(Token token, String message) {
+      return new IllegalArgumentException(
+          "Invalid filter '%s' at %d: %s".formatted(source, token.position(), message));
+    }
+
+    private static List<Token> tokenize(String source) {
+      var tokens = new ArrayList<Token>();
+      int i = 0;
+      while (i < source.length()) {
+        char c = source.charAt(i);
+        int start = i;
+        if (Character.isWhitespace(c)) {
+          i++;
+        } else if (c == '"') {
+          var text = new StringBuilder();
+          i++;
+          while (i < source.length() && source.charAt(i) != '"') {
+            char ch = source.charAt(i++);
+            if (ch == '\\' && i < source.length()) {
+              char escaped = source.charAt(i++);
+              switch (escaped) {
+                case 'n' -> text.append('\n');
+                case 't' -> text.append('\t');
+                case 'r' -> text.append('\r');
+                case 'u' -> {
+                  text.append((char) Integer.parseInt(source.substring(i, i + 4), 16));
+                  i += 4;
+                }
+                case '(' -> throw invalid(source, start, "string interpolation is not supported");
+                default -> text.append(escaped);
+              }
+            } else {
+              text.append(ch);
+            }
+          }
+          if (i == source.length()) {
+            throw invalid(source, start, "unterminated string");
+          }
+          i++;
+          tokens.add(new Token(Kind.STRING, text.toString(), start));
+        } else if (Character.isDigit(c)) {
+          while (i < source.length()
+              && (Character.isDigit(source.charAt(i)) || source.charAt(i) == '.')) {
+            i++;
+          }
+          tokens.add(new Token(Kind.NUMBER, source.substring(start, i), start));
+        } else if ((c == '.' || c == '$' || c == '@')
+            && i + 1 < source.length()
+            && isIdentifierStart(source.charAt(i + 1))) {
+          i = identifierEnd(source, i + 1);
+          String name = source.substring(start + 1, i);
+          tokens.add(
+              switch (c) {
+                case '.' -> new Token(Kind.FIELD, name, start);
+                case '$' -> new Token(Kind.VARIABLE, name, start);
+                default -> new Token(Kind.FORMAT, "@" + name, start);
+              });
+        } else if (isIdentifierStart(c)) {
+          i = identifierEnd(source, i);
+          tokens.add(new Token(Kind.IDENT, source.substring(start, i), start));
+        } else {
+          String symbol =
+              SYMBOLS.stream()
+                  .filter(s -> source.startsWith(s, start))
+                  .findFirst()
+                  .orElseThrow(() -> invalid(source, start, "unexpected '" + c + "'"));
+          if (symbol.equals(".") && source.startsWith("..", start)) {
+            throw invalid(source, start, "recursive descent is not supported");
+          }
+          i += symbol.length();
+          tokens.add(new Token(Kind.SYMBOL, symbol, start));
+        }
+      }
+      tokens.add(new Token(Kind.END, "", source.length()));
+      return tokens;
+    }
+
+    private static boolean isIdentifierStart(char c) {
+      return Character.isLetter(c) || c == '_';
+    }
+
+    private static int identifierEnd(String source, int i) {
+      while (i < source.length()
+          && (Character.isLetterOrDigit(source.charAt(i)) || source.charAt(i) == '_')) {
+        i++;
+      }
+      return i;
+    }
+
+    private static IllegalArgumentException invalid(String source, int position, String message) {
+      return new IllegalArgumentException(
+          "Invalid filter '%s' at %d: %s".formatted(source, position, message));
+    }
+  }
+}
@@ -0,0 +1,237 @@
+package com.kousenit.gh_mcp_server;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Utility class for reading gh's JSON output into the typed records of the domain model in a
+ * single streaming pass, and for writing the records back out compactly.
+ *
+ * <p>Readers pull only the fields their record keeps and skip every other value without building
+ * it, so nested objects such as a full author or a label's description and color cost nothing
+ * beyond the bytes read. Input may be one value, an array of values, or a sequence of top-level
+ * values as printed by {@code --jq}. Records are written without their null components.
+ */
+public final class JsonProjection {
+
+  private static final JsonFactory FACTORY = new JsonFactory();
+
+  private static final ObjectMapper MAPPER =
+      new ObjectMapper().setSerializationInclusion(JsonInclude.Include.NON_NULL);
+
+  /** Reads one record from a parser positioned on its value. */
+  @FunctionalInterface
+  public interface Reader<T> {
+    T read(JsonParser parser) throws IOException;
+  }
+
+  /** Handles one field of an object; returns false to have the value skipped. */
+  @FunctionalInterface
+  public interface FieldReader {
+    boolean read(String name, JsonParser parser) throws IOException;
+  }
+
+  private JsonProjection() {
+    // Utility class - prevent instantiation
+  }
+
+  /** Reads every record of the stream; the stream is read to its end but not closed. */
+  public static <T> List<T> readAll(InputStream in, Reader<T> reader) throws IOException {
+    try (var parser = FACTORY.createParser(in)) {
+      parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+      return readAll(parser, reader);
+    }
+  }
+
+  /** Reads every record of the text. */
+  public static <T> List<T> readAll(String json, Reader<T> reader) throws IOException {
+    try (var parser = FACTORY.createParser(json)) {
+      return readAll(parser, reader);
+    }
+  }
+
+  private static <T> List<T> readAll(JsonParser parser, Reader<T> reader) throws IOException {
+    var records = new ArrayList<T>();
+    for (var token = parser.nextToken(); token != null; token = parser.nextToken()) {
+      if (token == JsonToken.START_ARRAY) {
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+          records.add(reader.read(parser));
+        }
+      } else {
+        records.add(reader.read(parser));
+      }
+    }
+    return records;
+  }
+
+  /**
+   * Re-encodes gh output through the records of the reader: a list when gh printed an array or a
+   * sequence of values, a single record otherwise.
+   *
+   * @return the compact JSON, or empty if the output is not JSON the reader understands
+   */
+  public static Optional<String> project(String output, Reader<?> reader) {
+    String trimmed = output == null ? "" : output.strip();
+    if (!trimmed.startsWith("{") && !trimmed.startsWith("[")) {
+      return Optional.empty();
+    }
+    try {
+      var records = readAll(trimmed, reader);
+      boolean single = trimmed.startsWith("{") && records.size() == 1;
+      return Optional.of(MAPPER.writeValueAsString(single ? records.getFirst() : records));
+    } catch (IOException | RuntimeException e) {
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Re-encodes the output of a list tool through the records of the reader, always as a list: one
+   * record, whether gh printed it alone or in an array, still comes back in an array. Blank output
+   * is the empty list.
+   *
+   * @return the compact JSON array, or empty if the output is not JSON the reader understands
+   */
+  public static Optional<String> projectList(String output, Reader<?> reader) {
+    String trimmed = output == null ? "" : output.strip();
+    if (trimmed.isEmpty()) {
+      return Optional.of("[]");
+    }
+    if (!trimmed.startsWith("{") && !trimmed.startsWith("[")) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(MAPPER.writeValueAsString(readAll(trimmed, reader)));
+    } catch (IOException | RuntimeException e) {
+      return Optional.empty();
+    }
+  }
+
+  /** Reads one stored JSON value through the record of the reader, as a tree without nulls. */
+  public static JsonNode projectTree(JsonNode value, Reader<?> reader) throws IOException {
+    try (var parser = value.traverse()) {
+      parser.nextToken();
+      return MAPPER.valueToTree(reader.read(parser));
+    }
+  }
+
+  /** Writes a record, or a list of them, without null components. */
+  public static String write(Object value) {
+    try {
+      return MAPPER.writeValueAsString(value);
+    } catch (IOException e) {
+      throw new IllegalStateException("Cannot encode " + value.getClass().getSimpleName(), e);
+    }
+  }
+
+  /**
+   * Walks the fields of the object the parser is on, leaving it on the closing brace. Values the
+   * field reader does not take are skipped whole.
+   */
+  public static void fields(JsonParser parser, FieldReader fieldReader) throws IOException {
+    if (parser.currentToken() != JsonToken.START_OBJECT) {
+      parser.skipChildren();
+      return;
+    }
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String name = parser.currentName();
+      parser.nextToken();
+      if (!fieldReader.read(name, parser)) {
+        parser.skipChildren();
+      }
+    }
+  }
+
+  /**
+   * Reads the fields of the object the parser is on that have a reader, keyed by field name.
+   * Fields without a reader, and fields that are null, are left out.
+   */
+  public static Map<String, Object> object(JsonParser parser, Map<String, Reader<?>> readers)
+      throws IOException {
+    var values = new HashMap<String, Object>();
+    fields(
+        parser,
+        (name, p) -> {
+          var reader = readers.get(name);
+          if (reader == null) {
+            return false;
+          }
+          var value = reader.read(p);
+          if (value != null) {
+            values.put(name, value);
+          }
+          return true;
+        });
+    return values;
+  }
+
+  /** The current value as text, or null for JSON null. */
+  public static String text(JsonParser parser) throws IOException {
+    return parser.currentToken() == JsonToken.VALUE_NULL ? null : parser.getValueAsString();
+  }
+
+  /** The current value as a number, or null when it is not one. */
+  public static Long number(JsonParser parser) throws IOException {
+    return parser.currentToken().isNumeric() ? parser.getLongValue() : null;
+  }
+
+  /** The current value as a boolean, or null when it is not one. */
+  public static Boolean bool(JsonParser parser) {
+    var token = parser.currentToken();
+    return token.isBoolean() ? token == JsonToken.VALUE_TRUE : null;
+  }
+
+  /**
+   * The current value as a name: a string as is, or the {@code login} or else {@code name} field
+   * of an object, which is how gh prints users, labels, languages and branch refs.
+   */
+  public static String name(JsonParser parser) throws IOException {
+    if (parser.currentToken() != JsonToken.START_OBJECT) {
+      return text(parser);
+    }
+    String[] names = new String[2];
+    fields(
+        parser,
+        (field, p) ->
+            switch (field) {
+              case "login" -> {
+                names[0] = text(p);
+                yield true;
+              }
+              case "name" -> {
+                names[1] = text(p);
+                yield true;
+              }
+              default -> false;
+            });
+    return names[0] != null ? names[0] : names[1];
+  }
+
+  /** The names of the values of the current array; see {@link #name}. */
+  public static List<String> names(JsonParser parser) throws IOException {
+    return list(parser, JsonProjection::name);
+  }
+
+  /** The records of the current array, or null when the value is not an array. */
+  public static <T> List<T> list(JsonParser parser, Reader<T> reader) throws IOException {
+    if (parser.currentToken() != JsonToken.START_ARRAY) {
+      parser.skipChildren();
+      return null;
+    }
+    var values = new ArrayList<T>();
+    while (parser.nextToken() != JsonToken.END_ARRAY) {
+      values.add(reader.read(parser));
+    }
+    return values;
+  }
+}
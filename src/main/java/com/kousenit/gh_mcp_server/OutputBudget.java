@@ -0,0 +1,192 @@
+package com.kousenit.gh_mcp_server;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps tool results within a token budget. A result over its tool's budget is cut into slices;
+ * the first is returned with a continuation handle, and the rest are kept in memory and served by
+ * the {@code continueResult} tool without calling GitHub again.
+ *
+ * <p>Tokens are estimated at four characters each. JSON arrays are cut between elements so every
+ * slice is a valid array; other text is cut at a line break where one is near the limit. Kept
+ * results expire after a while, and only the most recently used ones are kept.
+ */
+@Component
+public class OutputBudget {
+
+  /** The tool serving later slices; its own results are already sliced. */
+  static final String CONTINUE_TOOL = "continueResult";
+
+  static final int CHARS_PER_TOKEN = 4;
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final SecureRandom RANDOM = new SecureRandom();
+
+  /** The slices of a result not handed out yet. */
+  private record Pending(List<String> slices, int next, long expiresAtMillis) {}
+
+  private final GitHubProperties.Output settings;
+  private final LongSupplier clock;
+  private final Map<String, Pending> pending;
+
+  @Autowired
+  public OutputBudget(GitHubProperties gitHubProperties) {
+    this(gitHubProperties.output(), System::currentTimeMillis);
+  }
+
+  OutputBudget(GitHubProperties.Output settings, LongSupplier clock) {
+    this.settings = settings;
+    this.clock = clock;
+    // Access-ordered, so the least recently used result is the one dropped
+    this.pending =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Pending> eldest) {
+            return size() > settings.maxStored();
+          }
+        };
+  }
+
+  /** The budget of a tool in tokens; 0 for none. */
+  int maxTokens(String tool) {
+    return settings.tools().getOrDefault(tool, settings.maxTokens());
+  }
+
+  /**
+   * Returns the result as is if it fits the tool's budget, or else its first slice followed by a
+   * note with the handle for the next one.
+   */
+  public String apply(String tool, String result) {
+    int maxTokens = maxTokens(tool);
+    if (result == null || tool.equals(CONTINUE_TOOL) || maxTokens <= 0) {
+      return result;
+    }
+    int maxChars = maxTokens * CHARS_PER_TOKEN;
+    if (result.length() <= maxChars) {
+      return result;
+    }
+    var slices = slice(result, maxChars);
+    if (slices.size() == 1) {
+      return result;
+    }
+    String handle = HexFormat.of().formatHex(handleBytes());
+    long expiresAt = clock.getAsLong() + settings.ttlSeconds() * 1000L;
+    synchronized (pending) {
+      pending.put(handle, new Pending(slices, 1, expiresAt));
+    }
+    return withNote(slices.getFirst(), handle, 1, slices.size());
+  }
+
+  @Tool(
+      description =
+          "Get the next part of a result that was too large to return at once, using the handle"
+              + " given at the end of the previous part")
+  public String continueResult(String handle) {
+    Pending entry;
+    synchronized (pending) {
+      entry = handle == null ? null : pending.get(handle.strip());
+      if (entry == null || clock.getAsLong() >= entry.expiresAtMillis()) {
+        if (entry != null) {
+          pending.remove(handle.strip());
+        }
+        return "Error: Unknown or expired continuation handle; call the original tool again";
+      }
+      int next = entry.next() + 1;
+      if (next == entry.slices().size()) {
+        pending.remove(handle.strip());
+      } else {
+        pending.put(handle.strip(), new Pending(entry.slices(), next, entry.expiresAtMillis()));
+      }
+    }
+    String slice = entry.slices().get(entry.next());
+    int part = entry.next() + 1;
+    return part == entry.slices().size()
+        ? slice
+        : withNote(slice, handle.strip(), part, entry.slices().size());
+  }
+
+  /** Results with slices left, for tests. */
+  int stored() {
+    synchronized (pending) {
+      return pending.size();
+    }
+  }
+
+  private static byte[] handleBytes() {
+    byte[] bytes = new byte[12];
+    RANDOM.nextBytes(bytes);
+    return bytes;
+  }
+
+  private static String withNote(String slice, String handle, int part, int parts) {
+    return slice
+        + "\n\n[Part %d of %d. Call continueResult with handle \"%s\" for the next part.]"
+            .formatted(part, parts, handle);
+  }
+
+  /** Cuts a result into slices of at most about maxChars characters. */
+  static List<String> slice(String result, int maxChars) {
+    String trimmed = result.strip();
+    if (trimmed.startsWith("[")) {
+      try {
+        JsonNode array = MAPPER.readTree(trimmed);
+        if (array.isArray()) {
+          return sliceArray(array, maxChars);
+        }
+      } catch (JsonProcessingException e) {
+        // Not JSON after all; cut it as text
+      }
+    }
+    return sliceText(result, maxChars);
+  }
+
+  /** Packs whole elements into arrays; an element larger than a slice gets one of its own. */
+  private static List<String> sliceArray(JsonNode array, int maxChars) {
+    var slices = new ArrayList<String>();
+    var current = new StringBuilder("[");
+    for (var element : array) {
+      String encoded = element.toString();
+      if (current.length() > 1 && current.length() + encoded.length() + 1 > maxChars) {
+        slices.add(current.append(']').toString());
+        current = new StringBuilder("[");
+      }
+      if (current.length() > 1) {
+        current.append(',');
+      }
+      current.append(encoded);
+    }
+    slices.add(current.append(']').toString());
+    return slices;
+  }
+
+  /** Cuts at the last line break in the second half of each slice, or else at the limit. */
+  private static List<String> sliceText(String text, int maxChars) {
+    var slices = new ArrayList<String>();
+    int start = 0;
+    while (text.length() - start > maxChars) {
+      int end = start + maxChars;
+      int lineBreak = text.lastIndexOf('\n', end - 1);
+      if (lineBreak >= start + maxChars / 2) {
+        end = lineBreak + 1;
+      } else if (Character.isHighSurrogate(text.charAt(end - 1))) {
+        end--;
+      }
+      slices.add(text.substring(start, end));
+      start = end;
+    }
+    slices.add(text.substring(start));
+    return slices;
+  }
+}
@@ -0,0 +1,61 @@
+package com.kousenit.gh_mcp_server;
+
+import com.fasterxml.jackson.core.JsonParser;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * A pull request as the tools return it, with its author reduced to a login.
+ *
+ * @param body the description, only read when viewing a single pull request; null otherwise
+ * @param mergeable GitHub's {@code MERGEABLE}, {@code CONFLICTING} or {@code UNKNOWN}, only read
+ *     when viewing a single pull request
+ */
+public record PullRequest(
+    Long number,
+    String title,
+    String state,
+    String author,
+    String body,
+    String headRefName,
+    String baseRefName,
+    String mergeable,
+    String createdAt,
+    String url) {
+
+  /** The {@code --json} fields of a listing. */
+  static final String LIST_FIELDS =
+      "number,title,state,createdAt,author,headRefName,baseRefName,url";
+
+  /** The {@code --json} fields of a single pull request. */
+  static final String VIEW_FIELDS =
+      "number,title,state,createdAt,author,body,headRefName,baseRefName,mergeable,url";
+
+  private static final Map<String, JsonProjection.Reader<?>> READERS =
+      Map.of(
+          "number", JsonProjection::number,
+          "title", JsonProjection::text,
+          "state", JsonProjection::text,
+          "author", JsonProjection::name,
+          "body", JsonProjection::text,
+          "headRefName", JsonProjection::text,
+          "baseRefName", JsonProjection::text,
+          "mergeable", JsonProjection::text,
+          "createdAt", JsonProjection::text,
+          "url", JsonProjection::text);
+
+  static PullRequest read(JsonParser parser) throws IOException {
+    var values = JsonProjection.object(parser, READERS);
+    return new PullRequest(
+        (Long) values.get("number"),
+        (String) values.get("title"),
+        (String) values.get("state"),
+        (String) values.get("author"),
+        (String) values.get("body"),
+        (String) values.get("headRefName"),
+        (String) values.get("baseRefName"),
+        (String) values.get("mergeable"),
+        (String) values.get("createdAt"),
+        (String) values.get("url"));
+  }
+}
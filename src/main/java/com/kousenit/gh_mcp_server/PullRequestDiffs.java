@@ -0,0 +1,585 @@
+package com.kousenit.gh_mcp_server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reads pull request diffs file by file without holding the whole diff in memory.
+ *
+ * <p>The diff is fetched for the exact pair of base and head commits the pull request points at,
+ * so its content never changes: it is copied to disk while it downloads and later calls for the
+ * same pair, with any filters, read the local copy until the pull request gets new commits; calls
+ * for a pair that is still downloading wait for its copy. The diff is read line by line and only
+ * what will be returned is kept: the files matching the path filters, and of those whole hunks up
+ * to {@code maxFileChars} per file and {@code maxChars} per call. Files and hunks that do not fit
+ * are named, so they can be asked for on their own.
+ */
+@Component
+public class PullRequestDiffs {
+
+  private static final Logger logger = LoggerFactory.getLogger(PullRequestDiffs.class);
+
+  private static final JsonFilter BASE_SHA = JsonFilter.compile(".baseRefOid");
+  private static final JsonFilter HEAD_SHA = JsonFilter.compile(".headRefOid");
+
+  private static final Pattern SHA = Pattern.compile("[0-9a-f]{40}");
+
+  private static final Pattern GLOB = Pattern.compile("[*?\\[{]");
+
+  /**
+   * A changed file, counted from the diff.
+   *
+   * @param previousPath the path before a rename or copy; null otherwise
+   * @param status {@code added}, {@code removed}, {@code renamed}, {@code copied} or {@code
+   *     modified}
+   * @param chars size of the file's part of the diff, to plan calls for big files
+   */
+  public record FileStat(
+      String path,
+      String previousPath,
+      String status,
+      int additions,
+      int deletions,
+      int hunks,
+      boolean binary,
+      long chars) {}
+
+  /**
+   * The files a pull request changes.
+   *
+   * @param changedFiles files in the diff, matching the path filter or not
+   * @param files the files matching the path filter
+   */
+  public record ChangedFiles(
+      int number,
+      String baseSha,
+      String headSha,
+      int changedFiles,
+      int additions,
+      int deletions,
+      List<FileStat> files) {}
+
+  /** The commits a pull request's diff is taken between, or why they are unknown. */
+  private record Range(String base, String head, String error) {}
+
+  /** Consumes the lines of a diff and renders the result of a call. */
+  @FunctionalInterface
+  private interface DiffReader {
+    String read(BufferedReader diff) throws IOException;
+  }
+
+  private final GitHubProperties.Diffs settings;
+  private final Function<List<String>, GithubCommand> gh;
+  private final WorkflowLogs.Streamer streamer;
+  private final Map<Path, Object> downloads = new ConcurrentHashMap<>();
+
+  @Autowired
+  public PullRequestDiffs(GitHubProperties gitHubProperties, GhCommandExecutor executor) {
+    this(gitHubProperties.diffs(), executor::execute, executor::stream);
+  }
+
+  PullRequestDiffs(
+      GitHubProperties.Diffs settings,
+      Function<List<String>, GithubCommand> gh,
+      WorkflowLogs.Streamer streamer) {
+    this.settings = settings;
+    this.gh = gh;
+    this.streamer = streamer;
+  }
+
+  /**
+   * The files a pull request changes with their stats, as JSON.
+   *
+   * @param paths comma-separated paths, directories or globs; blank for all files
+   * @return the files, or an error message starting with "Error:"
+   */
+  public String files(String owner, String repo, int number, String paths) {
+    Predicate<String> filter;
+    try {
+      filter = pathFilter(paths);
+    } catch (IllegalArgumentException e) {
+      return "Error: Invalid path filter - " + e.getMessage();
+    }
+    var range = range(owner, repo, number);
+    if (range.error() != null) {
+      return range.error();
+    }
+    return read(
+        owner,
+        repo,
+        range,
+        diff -> {
+          var scan = new Scan(filter, 0, 0, 0);
+          scan.read(diff);
+          return JsonProjection.write(
+              new ChangedFiles(
+                  number,
+                  range.base(),
+                  range.head(),
+                  scan.files,
+                  scan.additions,
+                  scan.deletions,
+                  scan.stats));
+        });
+  }
+
+  /**
+   * The diff of the files matching the path filter, after a summary line.
+   *
+   * @param paths comma-separated paths, directories or globs; blank for all files
+   * @param hunk the only hunk to return of each file, counting from 1; 0 for all
+   * @param maxChars most diff text to return, up to the configured limit; 0 for the limit
+   * @return the diff, or an error message starting with "Error:"
+   */
+  public String diff(String owner, String repo, int number, String paths, int hunk, int maxChars) {
+    Predicate<String> filter;
+    try {
+      filter = pathFilter(paths);
+    } catch (IllegalArgumentException e) {
+      return "Error: Invalid path filter - " + e.getMessage();
+    }
+    if (hunk < 0) {
+      return "Error: Hunk numbers start at 1";
+    }
+    int budget = maxChars > 0 ? Math.min(maxChars, settings.maxChars()) : settings.maxChars();
+    var range = range(owner, repo, number);
+    if (range.error() != null) {
+      return range.error();
+    }
+    return read(
+        owner,
+        repo,
+        range,
+        diff -> {
+          var scan = new Scan(filter, hunk, budget, Math.min(settings.maxFileChars(), budget));
+          scan.read(diff);
+          return scan.render(number, range);
+        });
+  }
+
+  private Range range(String owner, String repo, int number) {
+    if (number <= 0) {
+      return new Range(null, null, "Error: Pull request numbers are positive");
+    }
+    var view =
+        gh.apply(
+            List.of(
+                "pr",
+                "view",
+                String.valueOf(number),
+                "--repo",
+                owner + "/" + repo,
+                "--json",
+                "baseRefOid,headRefOid"));
+    if (!view.isSuccess()) {
+      return new Range(null, null, view.getResult());
+    }
+    String base = sha(BASE_SHA, view.output());
+    String head = sha(HEAD_SHA, view.output());
+    if (base == null || head == null) {
+      return new Range(
+          null, null, "Error: Could not find the commits of pull request #" + number);
+    }
+    return new Range(base, head, null);
+  }
+
+  /** Runs a reader over the diff, from the local copy when there is one. */
+  private String read(String owner, String repo, Range range, DiffReader reader) {
+    var cached = cached(owner, repo, range);
+    if (cached == null) {
+      return download(owner, repo, range, reader, null);
+    }
+    // Two calls for the same diff would write over each other's copy; the later one waits and
+    // reads the copy the earlier one kept
+    synchronized (downloads.computeIfAbsent(cached, ignored -> new Object())) {
+      if (Files.isRegularFile(cached)) {
+        try (var diff = Files.newBufferedReader(cached, StandardCharsets.UTF_8)) {
+          String result = reader.read(diff);
+          Files.setLastModifiedTime(cached, FileTime.fromMillis(System.currentTimeMillis()));
+          return result;
+        } catch (IOException e) {
+          logger.warn("Ignoring unreadable diff {}: {}", cached, e.getMessage());
+        }
+      }
+      return download(owner, repo, range, reader, cached);
+    }
+  }
+
+  /** Runs a reader over the diff as it downloads, copying it to {@code cached} unless null. */
+  private String download(String owner, String repo, Range range, DiffReader reader, Path cached) {
+    Path partial = cached == null ? null : cached.resolveSibling(cached.getFileName() + ".partial");
+    // The three-dot comparison is the one GitHub shows: head against its merge base with base
+    var result =
+        streamer.stream(
+            List.of(
+                "api",
+                "repos/%s/%s/compare/%s...%s".formatted(owner, repo, range.base(), range.head()),
+                "-H",
+                "Accept: application/vnd.github.diff"),
+            Duration.ofSeconds(settings.timeoutSeconds()),
+            stdout ->
+                partial == null ? reader.read(lines(stdout)) : copying(stdout, partial, reader));
+    if (partial != null) {
+      keep(partial, cached, result.isSuccess());
+    }
+    return result.getResult();
+  }
+
+  /** Reads the diff while copying every byte of it to a file. */
+  private static String copying(InputStream stdout, Path partial, DiffReader reader)
+      throws IOException {
+    Files.createDirectories(partial.getParent());
+    try (var copy = Files.newOutputStream(partial);
+        var tee = new TeeInputStream(stdout, copy)) {
+      String result = reader.read(lines(tee));
+      tee.transferTo(OutputStream.nullOutputStream());
+      return result;
+    }
+  }
+
+  private static BufferedReader lines(InputStream in) {
+    return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+  }
+
+  /** Moves a completed download into the cache, or drops it, and evicts old diffs. */
+  private void keep(Path partial, Path cached, boolean complete) {
+    try {
+      if (!complete) {
+        Files.deleteIfExists(partial);
+        return;
+      }
+      Files.move(partial, cached, StandardCopyOption.REPLACE_EXISTING);
+      evict(cached);
+    } catch (IOException e) {
+      logger.warn("Could not cache diff {}: {}", cached, e.getMessage());
+    }
+  }
+
+  private void evict(Path newest) throws IOException {
+    List<Path> diffs;
+    try (Stream<Path> files = Files.walk(Path.of(settings.cacheDir()))) {
+      diffs =
+          files
+              .filter(file -> file.toString().endsWith(".diff") && !file.equals(newest))
+              .sorted(Comparator.comparing(PullRequestDiffs::lastModified).reversed())
+              .toList();
+    }
+    for (int i = settings.maxCachedDiffs() - 1; i < diffs.size(); i++) {
+      Files.deleteIfExists(diffs.get(i));
+    }
+  }
+
+  private Path cached(String owner, String repo, Range range) {
+    if (settings.cacheDir() == null || settings.maxCachedDiffs() == 0) {
+      return null;
+    }
+    return Path.of(
+        settings.cacheDir(),
+        owner.toLowerCase(),
+        repo.toLowerCase(),
+        range.base() + "-" + range.head() + ".diff");
+  }
+
+  private static long lastModified(Path file) {
+    try {
+      return Files.getLastModifiedTime(file).toMillis();
+    } catch (IOException e) {
+      return 0;
+    }
+  }
+
+  private static String sha(JsonFilter filter, String json) {
+    return filter
+        .apply(json, Map.of())
+        .map(String::strip)
+        .filter(value -> SHA.matcher(value).matches())
+        .orElse(null);
+  }
+
+  /**
+   * Matches paths against comma-separated entries: an entry with {@code *}, {@code ?}, {@code [}
+   * or {@code {} is a glob, where {@code **} crosses directories; any other entry matches the path
+   * itself and everything under it.
+   *
+   * @throws IllegalArgumentException if a glob is malformed
+   */
+  static Predicate<String> pathFilter(String paths) {
+    var entries =
+        paths == null
+            ? List.<String>of()
+            : Arrays.stream(paths.split(",")).map(String::strip).filter(e -> !e.isEmpty()).toList();
+    if (entries.isEmpty()) {
+      return path -> true;
+    }
+    Predicate<String> filter = path -> false;
+    for (String entry : entries) {
+      if (GLOB.matcher(entry).find()) {
+        var matcher = FileSystems.getDefault().getPathMatcher("glob:" + entry);
+        filter = filter.or(path -> matcher.matches(Path.of(path)));
+      } else {
+        String directory = entry.endsWith("/") ? entry : entry + "/";
+        filter = filter.or(path -> path.equals(entry) || path.startsWith(directory));
+      }
+    }
+    return filter;
+  }
+
+  /**
+   * One pass over a diff: counts every file and keeps the hunks of the selected ones that fit.
+   * Without a budget nothing is kept, which is how the file list is built.
+   */
+  private static final class Scan {
+    private final Predicate<String> filter;
+    private final int hunk;
+    private final int fileBudget;
+    private long budget;
+
+    final List<FileStat> stats = new ArrayList<>();
+    final List<String> leftOut = new ArrayList<>();
+    final StringBuilder out = new StringBuilder();
+    int files;
+    int additions;
+    int deletions;
+
+    // The file being read
+    private final List<String> header = new ArrayList<>();
+    private boolean inHeader;
+    private String oldPath;
+    private String newPath;
+    private String status;
+    private boolean binary;
+    private int fileAdditions;
+    private int fileDeletions;
+    private int hunks;
+    private long chars;
+    private boolean selected;
+    private boolean shown;
+    private long room;
+    private int firstMissingHunk;
+    private StringBuilder hunkText;
+
+    Scan(Predicate<String> filter, int hunk, long budget, int fileBudget) {
+      this.filter = filter;
+      this.hunk = hunk;
+      this.budget = budget;
+      this.fileBudget = fileBudget;
+    }
+
+    void read(BufferedReader diff) throws IOException {
+      for (String line = diff.readLine(); line != null; line = diff.readLine()) {
+        if (line.startsWith("diff --git ")) {
+          endFile();
+          startFile(line);
+        } else if (status == null) {
+          continue;
+        } else if (line.startsWith("@@")) {
+          if (inHeader) {
+            endHeader();
+          }
+          endHunk();
+          startHunk();
+          addToHunk(line);
+        } else if (inHeader) {
+          readHeader(line);
+        } else {
+          if (line.startsWith("+")) {
+            fileAdditions++;
+          } else if (line.startsWith("-")) {
+            fileDeletions++;
+          }
+          addToHunk(line);
+        }
+        chars += line.length() + 1;
+      }
+      endFile();
+    }
+
+    private void startFile(String line) {
+      header.clear();
+      header.add(line);
+      inHeader = true;
+      status = "modified";
+      String[] paths = gitPaths(line.substring("diff --git ".length()));
+      oldPath = paths[0];
+      newPath = paths[1];
+      binary = false;
+      fileAdditions = 0;
+      fileDeletions = 0;
+      hunks = 0;
+      chars = 0;
+      firstMissingHunk = 0;
+      hunkText = null;
+    }
+
+    private void readHeader(String line) {
+      header.add(line);
+      if (line.startsWith("new file mode")) {
+        status = "added";
+      } else if (line.startsWith("deleted file mode")) {
+        status = "removed";
+      } else if (line.startsWith("rename from ")) {
+        status = "renamed";
+        oldPath = line.substring("rename from ".length());
+      } else if (line.startsWith("rename to ")) {
+        newPath = line.substring("rename to ".length());
+      } else if (line.startsWith("copy from ")) {
+        status = "copied";
+        oldPath = line.substring("copy from ".length());
+      } else if (line.startsWith("copy to ")) {
+        newPath = line.substring("copy to ".length());
+      } else if (line.startsWith("--- a/")) {
+        oldPath = line.substring("--- a/".length());
+      } else if (line.startsWith("+++ b/")) {
+        newPath = line.substring("+++ b/".length());
+      } else if (line.startsWith("Binary files ")) {
+        binary = true;
+      }
+    }
+
+    /** Decides whether the file is selected and shown once its paths are known. */
+    private void endHeader() {
+      inHeader = false;
+      selected = filter.test(newPath) || (oldPath != null && filter.test(oldPath));
+      long headerChars = header.stream().mapToLong(line -> line.length() + 1).sum();
+      shown = selected && budget > 0 && headerChars <= budget;
+      if (shown) {
+        header.forEach(line -> out.append(line).append('\n'));
+        budget -= headerChars;
+        room = Math.min(fileBudget, budget);
+      }
+    }
+
+    private void startHunk() {
+      hunks++;
+      boolean wanted = hunk == 0 || hunk == hunks;
+      hunkText = shown && wanted && firstMissingHunk == 0 ? new StringBuilder() : null;
+    }
+
+    private void addToHunk(String line) {
+      if (hunkText == null) {
+        return;
+      }
+      if (hunkText.length() + line.length() + 1 > room) {
+        // Later hunks are left out too, so what is shown of a file is a prefix of it
+        firstMissingHunk = hunks;
+        hunkText = null;
+        return;
+      }
+      hunkText.append(line).append('\n');
+    }
+
+    private void endHunk() {
+      if (hunkText != null) {
+        out.append(hunkText);
+        room -= hunkText.length();
+        budget -= hunkText.length();
+        hunkText = null;
+      }
+    }
+
+    private void endFile() {
+      if (status == null) {
+        return;
+      }
+      if (inHeader) {
+        endHeader();
+      }
+      endHunk();
+      files++;
+      additions += fileAdditions;
+      deletions += fileDeletions;
+      if (!selected) {
+        return;
+      }
+      String path = status.equals("removed") ? oldPath : newPath;
+      boolean moved = status.equals("renamed") || status.equals("copied");
+      stats.add(
+          new FileStat(
+              path,
+              moved ? oldPath : null,
+              status,
+              fileAdditions,
+              fileDeletions,
+              hunks,
+              binary,
+              chars));
+      if (!shown) {
+        leftOut.add("%s (%d chars)".formatted(path, chars));
+      } else if (firstMissingHunk > 0 && hunk > 0) {
+        out.append("[... hunk %d of %s left out for size]\n".formatted(hunk, path));
+      } else if (firstMissingHunk > 0) {
+        out.append(
+            "[... hunks %d-%d of %s left out for size; ask for one with hunk=%d]\n"
+                .formatted(firstMissingHunk, hunks, path, firstMissingHunk));
+      } else if (hunk > hunks) {
+        out.append("[%s has only %d hunks]\n".formatted(path, hunks));
+      }
+    }
+
+    String render(int number, Range range) {
+      var summary =
+          new StringBuilder(
+              "Pull request #%d (%s...%s): %d of %d changed files match, +%d -%d"
+                  .formatted(
+                      number,
+                      range.base().substring(0, 7),
+                      range.head().substring(0, 7),
+                      stats.size(),
+                      files,
+                      additions,
+                      deletions));
+      if (!leftOut.isEmpty()) {
+        summary.append(", %d left out for size".formatted(leftOut.size()));
+      }
+      summary.append('\n').append(out);
+      if (!leftOut.isEmpty()) {
+        summary
+            .append("Left out for size; ask for them by path: ")
+            .append(String.join(", ", leftOut))
+            .append('\n');
+      }
+      return summary.toString().stripTrailing();
+    }
+
+    /** The two paths of {@code a/x b/y}; when they differ, the header lines correct them. */
+    private static String[] gitPaths(String paths) {
+      int half = (paths.length() - 1) / 2;
+      if (paths.length() % 2 == 1
+          && paths.startsWith("a/")
+          && paths.substring(half).startsWith(" b/")
+          && paths.substring(2, half).equals(paths.substring(half + 3))) {
+        String path = paths.substring(2, half);
+        return new String[] {path, path};
+      }
+      int split = paths.indexOf(" b/");
+      if (paths.startsWith("a/") && split > 0) {
+        return new String[] {paths.substring(2, split), paths.substring(split + 3)};
+      }
+      return new String[] {paths, paths};
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package com.kousenit.gh_mcp_server;
+
+import com.fasterxml.jackson.core.JsonParser;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A release as the tools return it, with its author reduced to a login.
+ *
+ * @param body the release notes, only read when viewing a single release; null otherwise
+ * @param assets the uploaded files, only read when viewing a single release; null otherwise
+ */
+public record Release(
+    String tagName,
+    String name,
+    String body,
+    Boolean isDraft,
+    Boolean isPrerelease,
+    String author,
+    List<Asset> assets,
+    String createdAt,
+    String publishedAt,
+    String url) {
+
+  /** The {@code --json} fields of a listing. */
+  static final String LIST_FIELDS =
+      "tagName,name,createdAt,publishedAt,isDraft,isPrerelease,author,url";
+
+  /** The {@code --json} fields of a single release, with its notes and assets. */
+  static final String VIEW_FIELDS =
+      "tagName,name,body,createdAt,publishedAt,isDraft,isPrerelease,author,assets,url";
+
+  /** A file uploaded to a release. */
+  public record Asset(String name, Long size, Long downloadCount, String url) {
+
+    private static final Map<String, JsonProjection.Reader<?>> READERS =
+        Map.of(
+            "name", JsonProjection::text,
+            "size", JsonProjection::number,
+            "downloadCount", JsonProjection::number,
+            "url", JsonProjection::text);
+
+    static Asset read(JsonParser parser) throws IOException {
+      var values = JsonProjection.object(parser, READERS);
+      return new Asset(
+          (String) values.get("name"),
+          (Long) values.get("size"),
+          (Long) values.get("downloadCount"),
+          (String) values.get("url"));
+    }
+  }
+
+  private static final Map<String, JsonProjection.Reader<?>> READERS =
+      Map.of(
+          "tagName", JsonProjection::text,
+          "name", JsonProjection::text,
+          "body", JsonProjection::text,
+          "isDraft", JsonProjection::bool,
+          "isPrerelease", JsonProjection::bool,
+          "author", JsonProjection::name,
+          "assets", parser -> JsonProjection.list(parser, Asset::read),
+          "createdAt", JsonProjection::text,
+          "publishedAt", JsonProjection::text,
+          "url", JsonProjection::text);
+
+  @SuppressWarnings("unchecked")
+  static Release read(JsonParser parser) throws IOException {
+    var values = JsonProjection.object(parser, READERS);
+    return new Release(
+        (String) values.get("tagName"),
+        (String) values.get("name"),
+        (String) values.get("body"),
+        (Boolean) values.get("isDraft"),
+        (Boolean) values.get("isPrerelease"),
+        (String) values.get("author"),
+        (List<Asset>) values.get("assets"),
+        (String) values.get("createdAt"),
+        (String) values.get("publishedAt"),
+        (String) values.get("url"));
+  }
+}
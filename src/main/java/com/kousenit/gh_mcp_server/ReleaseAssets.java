@@ -0,0 +1,492 @@
+package com.kousenit.gh_mcp_server;
+
+import com.fasterxml.jackson.core.JsonParser;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Downloads release assets to files and uploads files as release assets, streaming between gh and
+ * the disk so that not even a part of an asset is held in memory.
+ *
+ * <p>A download is split into ranges of {@code rangeMegabytes}, fetched {@code concurrency} at a
+ * time with HTTP range requests and written through a file channel straight into their place in
+ * a {@code .partial} file. Each finished range is recorded in a {@code .ranges} file next to it,
+ * so a download that fails or times out carries on from the ranges on disk when asked again. The
+ * SHA-256 is computed while the download runs, range by range in file order as soon as a range
+ * and all those before it are on disk, and checked against the digest GitHub reports for the
+ * asset. Tools return where the file is and its digest, never its content.
+ *
+ * <p>Uploads only read files inside {@code uploadDir}. A tool caller can be steered by text it has
+ * read, such as an issue body, so the path it gives is resolved with symlinks followed and
+ * rejected unless the real file lies in that directory; keys and gh's own credentials elsewhere
+ * can never be published.
+ */
+@Component
+public class ReleaseAssets {
+
+  private static final int DIGEST_BUFFER_BYTES = 1 << 16;
+
+  /**
+   * A finished transfer.
+   *
+   * @param path the file on disk
+   * @param sha256 the file's SHA-256 in hex
+   * @param verified whether the digest matches the one GitHub reports for the asset; null when
+   *     GitHub reports none
+   * @param ranges byte ranges the download was split into; 0 when the file was already there, 1
+   *     for an upload
+   * @param resumedRanges ranges already on disk from an earlier attempt
+   */
+  public record Transfer(
+      String name,
+      String path,
+      long size,
+      String sha256,
+      Boolean verified,
+      int ranges,
+      int resumedRanges) {}
+
+  /**
+   * An asset as the REST API lists it.
+   *
+   * @param digest {@code sha256:} and the hex digest, for assets GitHub has hashed
+   */
+  record Asset(Long id, String name, Long size, String digest) {
+
+    private static final Map<String, JsonProjection.Reader<?>> READERS =
+        Map.of(
+            "id", JsonProjection::number,
+            "name", JsonProjection::text,
+            "size", JsonProjection::number,
+            "digest", JsonProjection::text);
+
+    static Asset read(JsonParser parser) throws IOException {
+      var values = JsonProjection.object(parser, READERS);
+      return new Asset(
+          (Long) values.get("id"),
+          (String) values.get("name"),
+          (Long) values.get("size"),
+          (String) values.get("digest"));
+    }
+
+    /** Whether a SHA-256 matches GitHub's, or null when GitHub reports none. */
+    Boolean verifies(String sha256) {
+      return digest == null ? null : digest.equalsIgnoreCase("sha256:" + sha256);
+    }
+  }
+
+  private static final Map<String, JsonProjection.Reader<?>> RELEASE_READERS =
+      Map.of("assets", parser -> JsonProjection.list(parser, Asset::read));
+
+  private final GitHubProperties.Assets settings;
+  private final Function<List<String>, GithubCommand> gh;
+  private final WorkflowLogs.Streamer streamer;
+  private final Map<Path, Object> downloads = new ConcurrentHashMap<>();
+
+  @Autowired
+  public ReleaseAssets(GitHubProperties gitHubProperties, GhCommandExecutor executor) {
+    this(gitHubProperties.assets(), executor::execute, executor::stream);
+  }
+
+  ReleaseAssets(
+      GitHubProperties.Assets settings,
+      Function<List<String>, GithubCommand> gh,
+      WorkflowLogs.Streamer streamer) {
+    this.settings = settings;
+    this.gh = gh;
+    this.streamer = streamer;
+  }
+
+  /**
+   * Downloads an asset to {@code dir/owner/repo/tag/name}, resuming an earlier attempt.
+   *
+   * @return the transfer as JSON, or an error message starting with "Error:"
+   */
+  public String download(String owner, String repo, String tag, String name) {
+    if (!isFileName(name) || tag == null || tag.isBlank()) {
+      return "Error: Give the release tag and the asset's file name";
+    }
+    Path target =
+        Path.of(
+            settings.dir(),
+            owner.toLowerCase(),
+            repo.toLowerCase(),
+            tag.replaceAll("[/\\\\]", "_").replace("..", "_"),
+            name);
+    try {
+      var asset =
+          assets(owner, repo, tag).stream()
+              .filter(candidate -> name.equals(candidate.name()))
+              .findFirst()
+              .orElse(null);
+      if (asset == null) {
+        return "Error: Release %s has no asset named %s".formatted(tag, name);
+      }
+      if (asset.id() == null || asset.size() == null) {
+        return "Error: GitHub did not report the id and size of " + name;
+      }
+      // Two calls for the same file would write over each other's ranges
+      synchronized (downloads.computeIfAbsent(target, ignored -> new Object())) {
+        return JsonProjection.write(download(owner, repo, asset, target));
+      }
+    } catch (IOException | IllegalStateException e) {
+      return "Error: " + e.getMessage();
+    }
+  }
+
+  private Transfer download(String owner, String repo, Asset asset, Path target)
+      throws IOException {
+    long size = asset.size();
+    if (asset.digest() != null && Files.isRegularFile(target) && Files.size(target) == size) {
+      String sha256 = sha256(target);
+      if (asset.verifies(sha256)) {
+        return new Transfer(asset.name(), target.toString(), size, sha256, true, 0, 0);
+      }
+    }
+
+    long rangeBytes = settings.rangeMegabytes() * 1024L * 1024L;
+    int count = (int) ((size + rangeBytes - 1) / rangeBytes);
+    Path partial = target.resolveSibling(asset.name() + ".partial");
+    Path progress = target.resolveSibling(asset.name() + ".ranges");
+    Files.createDirectories(target.getParent());
+    boolean[] done = resume(partial, progress, asset.id() + " " + size + " " + rangeBytes, count);
+
+    Download download;
+    var failures = new ConcurrentLinkedQueue<String>();
+    try (var channel =
+        FileChannel.open(
+            partial,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+      download = new Download(channel, progress, size, rangeBytes, done);
+      download.hashReady();
+      var context = CallContext.current();
+      try (var executor =
+          Executors.newFixedThreadPool(
+              settings.concurrency(), Thread.ofVirtual().name("release-asset-", 0).factory())) {
+        for (int index = 0; index < count; index++) {
+          if (done[index]) {
+            continue;
+          }
+          int range = index;
+          executor.submit(
+              () ->
+                  CallContext.callAs(
+                      context,
+                      () -> fetch(owner, repo, asset.id(), download, range, failures)));
+        }
+      }
+    }
+    if (!failures.isEmpty()) {
+      throw new IllegalStateException(
+          "%d of %d ranges failed; the rest are kept for the next attempt. %s"
+              .formatted(failures.size(), count, failures.peek()));
+    }
+
+    String sha256 = download.sha256();
+    Boolean verified = asset.verifies(sha256);
+    if (Boolean.FALSE.equals(verified)) {
+      Files.deleteIfExists(partial);
+      Files.deleteIfExists(progress);
+      throw new IllegalStateException(
+          "The download's SHA-256 %s does not match GitHub's %s".formatted(sha256, asset.digest()));
+    }
+    Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING);
+    Files.deleteIfExists(progress);
+    return new Transfer(
+        asset.name(), target.toString(), size, sha256, verified, count, download.resumed);
+  }
+
+  /**
+   * Reads which ranges an earlier attempt finished, starting over when there was none or it was
+   * for a different asset or range size.
+   */
+  private static boolean[] resume(Path partial, Path progress, String header, int count)
+      throws IOException {
+    var done = new boolean[count];
+    if (Files.isRegularFile(partial) && Files.isRegularFile(progress)) {
+      var lines = Files.readAllLines(progress, StandardCharsets.UTF_8);
+      if (!lines.isEmpty() && lines.getFirst().equals(header)) {
+        for (String line : lines.subList(1, lines.size())) {
+          try {
+            int index = Integer.parseInt(line.strip());
+            if (index >= 0 && index < count) {
+              done[index] = true;
+            }
+          } catch (NumberFormatException e) {
+            // A line cut short by a crash; its range is fetched again
+          }
+        }
+        return done;
+      }
+    }
+    Files.deleteIfExists(partial);
+    Files.writeString(progress, header + "\n", StandardCharsets.UTF_8);
+    return done;
+  }
+
+  private Void fetch(
+      String owner,
+      String repo,
+      long id,
+      Download download,
+      int index,
+      Queue<String> failures) {
+    long from = index * download.rangeBytes;
+    long length = Math.min(download.size, from + download.rangeBytes) - from;
+    var result =
+        streamer.stream(
+            List.of(
+                "api",
+                "repos/%s/%s/releases/assets/%d".formatted(owner, repo, id),
+                "--include",
+                "-H",
+                "Accept: application/octet-stream",
+                "-H",
+                "Range: bytes=%d-%d".formatted(from, from + length - 1)),
+            Duration.ofSeconds(settings.timeoutSeconds()),
+            stdout -> {
+              write(stdout, download.channel, from, length);
+              return "";
+            });
+    try {
+      if (!result.isSuccess()) {
+        failures.add("Range %d: %s".formatted(index + 1, result.error().strip()));
+        return null;
+      }
+      download.finished(index);
+    } catch (IOException e) {
+      failures.add("Range %d: %s".formatted(index + 1, e.getMessage()));
+    }
+    return null;
+  }
+
+  /**
+   * Writes one range of gh's output, after the response headers {@code --include} prints, into
+   * its place in the file.
+   */
+  static void write(InputStream stdout, FileChannel channel, long from, long length)
+      throws IOException {
+    var head = ResponseHead.read(stdout);
+    if (head.status() >= 400) {
+      // gh fails the command and says why
+      return;
+    }
+    if (head.status() == 200) {
+      // A server that ignores ranges sends the whole file
+      stdout.skipNBytes(from);
+    } else if (!head.isPartial()) {
+      throw new IOException("Unexpected response status " + head.status());
+    }
+    var source = Channels.newChannel(stdout);
+    long written = 0;
+    while (written < length) {
+      long transferred = channel.transferFrom(source, from + written, length - written);
+      if (transferred <= 0) {
+        throw new IOException(
+            "The response ended after %d of %d bytes".formatted(written, length));
+      }
+      written += transferred;
+    }
+  }
+
+  /**
+   * Uploads a file in the upload directory as a release asset named after it.
+   *
+   * @param file the file, absolute or relative to the upload directory
+   * @param replace whether to replace an asset of the same name
+   * @return the transfer as JSON, or an error message starting with "Error:"
+   */
+  public String upload(String owner, String repo, String tag, String file, boolean replace) {
+    if (file == null || file.isBlank() || tag == null || tag.isBlank()) {
+      return "Error: Give the release tag and the path of the file to upload";
+    }
+    Path uploads;
+    try {
+      uploads = Files.createDirectories(Path.of(settings.uploadDir())).toRealPath();
+    } catch (IOException e) {
+      return "Error: Cannot use the upload directory %s: %s"
+          .formatted(settings.uploadDir(), e.getMessage());
+    }
+    Path path;
+    try {
+      // The real path has every symlink resolved, so a link cannot lead out of the directory
+      path = uploads.resolve(file).toRealPath();
+    } catch (IOException | InvalidPathException e) {
+      return "Error: No file at " + uploads.resolve(file).normalize();
+    }
+    if (!path.startsWith(uploads)) {
+      return "Error: Only files in %s can be uploaded".formatted(uploads);
+    }
+    if (!Files.isRegularFile(path)) {
+      return "Error: No file at " + path;
+    }
+    String name = path.getFileName().toString();
+    if (name.contains("#")) {
+      return "Error: gh reads a '#' in the file name as the start of a label; rename the file";
+    }
+    try {
+      long size = Files.size(path);
+      String sha256 = sha256(path);
+      var args =
+          new ArrayList<>(
+              List.of("release", "upload", tag, path.toString(), "--repo", owner + "/" + repo));
+      if (replace) {
+        args.add("--clobber");
+      }
+      // gh reads the file itself, so the upload gets the long timeout of a download
+      var result =
+          streamer.stream(
+              args,
+              Duration.ofSeconds(settings.timeoutSeconds()),
+              stdout -> new String(stdout.readAllBytes(), StandardCharsets.UTF_8));
+      if (!result.isSuccess()) {
+        return result.getResult();
+      }
+      Boolean verified =
+          assets(owner, repo, tag).stream()
+              .filter(asset -> name.equals(asset.name()))
+              .findFirst()
+              .map(asset -> asset.verifies(sha256))
+              .orElse(null);
+      if (Boolean.FALSE.equals(verified)) {
+        return "Error: GitHub's digest of the uploaded %s does not match the file's SHA-256 %s"
+            .formatted(name, sha256);
+      }
+      return JsonProjection.write(
+          new Transfer(name, path.toString(), size, sha256, verified, 1, 0));
+    } catch (IOException | IllegalStateException e) {
+      return "Error: " + e.getMessage();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<Asset> assets(String owner, String repo, String tag) throws IOException {
+    var release =
+        gh.apply(List.of("api", "repos/%s/%s/releases/tags/%s".formatted(owner, repo, tag)));
+    if (!release.isSuccess()) {
+      throw new IllegalStateException(release.error().strip());
+    }
+    var assets = new ArrayList<Asset>();
+    for (var values : JsonProjection.readAll(release.output(), this::release)) {
+      if (values.get("assets") != null) {
+        assets.addAll((List<Asset>) values.get("assets"));
+      }
+    }
+    return assets;
+  }
+
+  private Map<String, Object> release(JsonParser parser) throws IOException {
+    return JsonProjection.object(parser, RELEASE_READERS);
+  }
+
+  /** The SHA-256 of a file, read through a direct buffer. */
+  static String sha256(Path file) throws IOException {
+    var digest = sha256Digest();
+    var buffer = ByteBuffer.allocateDirect(DIGEST_BUFFER_BYTES);
+    try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      while (channel.read(buffer.clear()) != -1) {
+        digest.update(buffer.flip());
+      }
+    }
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  private static MessageDigest sha256Digest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+
+  private static boolean isFileName(String name) {
+    return name != null
+        && !name.isBlank()
+        && !name.contains("/")
+        && !name.contains("\\")
+        && !name.equals(".")
+        && !name.equals("..");
+  }
+
+  /** A download in progress: which of its ranges are on disk, and the digest of those in order. */
+  private static final class Download {
+    final FileChannel channel;
+    final Path progress;
+    final long size;
+    final long rangeBytes;
+    final int resumed;
+    private final boolean[] done;
+    private final MessageDigest digest = sha256Digest();
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(DIGEST_BUFFER_BYTES);
+    private int hashed;
+
+    Download(FileChannel channel, Path progress, long size, long rangeBytes, boolean[] done) {
+      this.channel = channel;
+      this.progress = progress;
+      this.size = size;
+      this.rangeBytes = rangeBytes;
+      this.done = done;
+      int onDisk = 0;
+      for (boolean range : done) {
+        onDisk += range ? 1 : 0;
+      }
+      this.resumed = onDisk;
+    }
+
+    synchronized void finished(int index) throws IOException {
+      Files.writeString(
+          progress, index + "\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+      done[index] = true;
+      hashReady();
+    }
+
+    /** Hashes the ranges at the front of the file that are all on disk and not hashed yet. */
+    synchronized void hashReady() throws IOException {
+      while (hashed < done.length && done[hashed]) {
+        long end = Math.min(size, (hashed + 1) * rangeBytes);
+        for (long position = hashed * rangeBytes; position < end; ) {
+          buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+          int read = channel.read(buffer, position);
+          if (read < 0) {
+            throw new IOException("Range %d is missing from the file".formatted(hashed + 1));
+          }
+          digest.update(buffer.flip());
+          position += read;
+        }
+        hashed++;
+      }
+    }
+
+    synchronized String sha256() {
+      if (hashed < done.length) {
+        throw new IllegalStateException("Range %d was never downloaded".formatted(hashed + 1));
+      }
+      return HexFormat.of().formatHex(digest.digest());
+    }
+  }
+}
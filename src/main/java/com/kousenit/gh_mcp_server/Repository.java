@@ -0,0 +1,76 @@
+package com.kousenit.gh_mcp_server;
+
+import com.fasterxml.jackson.core.JsonParser;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A repository as the tools return it, with its owner, default branch, language and topics
+ * reduced to names. Each component also accepts the name gh uses for it in {@code repo view
+ * --json}, such as {@code defaultBranchRef} or {@code stargazerCount}.
+ */
+public record Repository(
+    String name,
+    String owner,
+    String description,
+    Boolean isPrivate,
+    String defaultBranch,
+    String language,
+    List<String> topics,
+    Long stargazersCount,
+    Long forksCount,
+    String createdAt,
+    String updatedAt,
+    String url) {
+
+  /** The {@code --json} fields of {@code repo view}. */
+  static final String VIEW_FIELDS =
+      "name,description,owner,isPrivate,defaultBranch,language,topics,stargazersCount,forksCount,createdAt,updatedAt,url";
+
+  /** The {@code --json} fields of {@code repo list}. */
+  static final String LIST_FIELDS = "name,owner,description,isPrivate,url,updatedAt";
+
+  private static final Map<String, JsonProjection.Reader<?>> READERS =
+      Map.ofEntries(
+          Map.entry("name", JsonProjection::text),
+          Map.entry("owner", JsonProjection::name),
+          Map.entry("description", JsonProjection::text),
+          Map.entry("isPrivate", JsonProjection::bool),
+          Map.entry("defaultBranch", JsonProjection::name),
+          Map.entry("defaultBranchRef", JsonProjection::name),
+          Map.entry("language", JsonProjection::name),
+          Map.entry("primaryLanguage", JsonProjection::name),
+          Map.entry("topics", JsonProjection::names),
+          Map.entry("repositoryTopics", JsonProjection::names),
+          Map.entry("stargazersCount", JsonProjection::number),
+          Map.entry("stargazerCount", JsonProjection::number),
+          Map.entry("forksCount", JsonProjection::number),
+          Map.entry("forkCount", JsonProjection::number),
+          Map.entry("createdAt", JsonProjection::text),
+          Map.entry("updatedAt", JsonProjection::text),
+          Map.entry("url", JsonProjection::text));
+
+  @SuppressWarnings("unchecked")
+  static Repository read(JsonParser parser) throws IOException {
+    var values = JsonProjection.object(parser, READERS);
+    return new Repository(
+        (String) values.get("name"),
+        (String) values.get("owner"),
+        (String) values.get("description"),
+        (Boolean) values.get("isPrivate"),
+        (String) either(values, "defaultBranch", "defaultBranchRef"),
+        (String) either(values, "language", "primaryLanguage"),
+        (List<String>) either(values, "topics", "repositoryTopics"),
+        (Long) either(values, "stargazersCount", "stargazerCount"),
+        (Long) either(values, "forksCount", "forkCount"),
+        (String) values.get("createdAt"),
+        (String) values.get("updatedAt"),
+        (String) values.get("url"));
+  }
+
+  private static Object either(Map<String, Object> values, String name, String ghName) {
+    var value = values.get(name);
+    return value != null ? value : values.get(ghName);
+  }
+}
@@ -0,0 +1,294 @@
+package com.kousenit.gh_mcp_server;
+
+import com.fasterxml.jackson.core.JsonParser;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Lists every repository of an organization or user, however many there are, filtered before
+ * anything is serialized and returned a page at a time.
+ *
+ * <p>Repositories are read from the REST API a page of 100 at a time, each page parsed as it
+ * streams in and reduced to a small set of fields, and kept in memory per owner. Within {@code
+ * refreshSeconds} calls are answered from memory. After that a call first reads repositories
+ * newest {@code updated_at} first, and then newest {@code pushed_at} first, each until it reaches
+ * one older than the newest it had seen, so a refresh of an org where little changed costs two
+ * requests. A full read every {@code fullSyncSeconds} drops repositories that were deleted or
+ * moved away.
+ */
+@Component
+public class RepositoryCatalog {
+
+  /** Repositories per request, the maximum the REST API allows. */
+  static final int API_PAGE_SIZE = 100;
+
+  /**
+   * A repository as listed, without its owner, which the listing names.
+   *
+   * @param visibility {@code public}, {@code private} or {@code internal}
+   */
+  public record Entry(
+      String name,
+      String description,
+      String language,
+      List<String> topics,
+      String visibility,
+      Boolean archived,
+      Boolean fork,
+      Long stars,
+      String pushedAt,
+      String updatedAt) {
+
+    private static final Map<String, JsonProjection.Reader<?>> READERS =
+        Map.of(
+            "name", JsonProjection::text,
+            "description", JsonProjection::text,
+            "language", JsonProjection::text,
+            "topics", JsonProjection::names,
+            "visibility", JsonProjection::text,
+            "archived", JsonProjection::bool,
+            "fork", JsonProjection::bool,
+            "stargazers_count", JsonProjection::number,
+            "pushed_at", JsonProjection::text,
+            "updated_at", JsonProjection::text);
+
+    @SuppressWarnings("unchecked")
+    static Entry read(JsonParser parser) throws IOException {
+      var values = JsonProjection.object(parser, READERS);
+      return new Entry(
+          (String) values.get("name"),
+          (String) values.get("description"),
+          (String) values.get("language"),
+          (List<String>) values.get("topics"),
+          (String) values.get("visibility"),
+          (Boolean) values.get("archived"),
+          (Boolean) values.get("fork"),
+          (Long) values.get("stargazers_count"),
+          (String) values.get("pushed_at"),
+          (String) values.get("updated_at"));
+    }
+  }
+
+  /**
+   * Conditions of a listing; null and blank fields match everything.
+   *
+   * @param language primary language, ignoring case
+   * @param topic a topic the repository has, ignoring case
+   * @param archived whether the repository is archived
+   * @param pushedSince ISO-8601 date or timestamp of the last push at or after
+   * @param visibility {@code public}, {@code private} or {@code internal}
+   */
+  public record Filter(
+      String language, String topic, Boolean archived, String pushedSince, String visibility) {
+
+    boolean matches(Entry entry) {
+      return (isBlank(language) || language.equalsIgnoreCase(entry.language()))
+          && (isBlank(topic)
+              || (entry.topics() != null
+                  && entry.topics().stream().anyMatch(topic::equalsIgnoreCase)))
+          && (archived == null || archived.equals(entry.archived()))
+          && (isBlank(pushedSince)
+              || (entry.pushedAt() != null && entry.pushedAt().compareTo(pushedSince) >= 0))
+          && (isBlank(visibility) || visibility.equalsIgnoreCase(entry.visibility()));
+    }
+  }
+
+  /**
+   * One page of a listing.
+   *
+   * @param total repositories the owner has
+   * @param matched repositories matching the filter, across all pages
+   * @param syncedAt when the list was last brought up to date with GitHub
+   */
+  public record Listing(
+      String owner,
+      int total,
+      int matched,
+      int page,
+      int pages,
+      String syncedAt,
+      List<Entry> repositories) {}
+
+  /** What is known of one owner's repositories; guarded by its own monitor. */
+  private static final class Owner {
+    final String name;
+    String path;
+    final Map<String, Entry> repositories = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    long syncedMillis;
+    long fullSyncMillis;
+
+    Owner(String name) {
+      this.name = name;
+    }
+  }
+
+  private final GitHubProperties.Catalog settings;
+  private final WorkflowLogs.Streamer streamer;
+  private final LongSupplier clock;
+  private final Map<String, Owner> owners;
+
+  @Autowired
+  public RepositoryCatalog(GitHubProperties gitHubProperties, GhCommandExecutor executor) {
+    this(gitHubProperties.catalog(), executor::stream, System::currentTimeMillis);
+  }
+
+  RepositoryCatalog(
+      GitHubProperties.Catalog settings, WorkflowLogs.Streamer streamer, LongSupplier clock) {
+    this.settings = settings;
+    this.streamer = streamer;
+    this.clock = clock;
+    // Access-ordered, so the least recently listed owner is the one dropped
+    this.owners =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Owner> eldest) {
+            return size() > settings.maxOwners();
+          }
+        };
+  }
+
+  /**
+   * A page of the owner's repositories matching the filter, sorted by name, as JSON.
+   *
+   * @param page the page to return, counting from 1
+   * @return the page, or an error message starting with "Error:"
+   */
+  public String list(String owner, Filter filter, int page) {
+    if (page < 1) {
+      return "Error: Pages are counted from 1";
+    }
+    Owner known;
+    synchronized (owners) {
+      known = owners.computeIfAbsent(owner.toLowerCase(), ignored -> new Owner(owner));
+    }
+    synchronized (known) {
+      try {
+        sync(known);
+      } catch (IllegalStateException e) {
+        return "Error: " + e.getMessage();
+      }
+      var matching = known.repositories.values().stream().filter(filter::matches).toList();
+      int size = settings.pageSize();
+      int pages = Math.max(1, (matching.size() + size - 1) / size);
+      int from = Math.min((page - 1) * size, matching.size());
+      return JsonProjection.write(
+          new Listing(
+              known.name,
+              known.repositories.size(),
+              matching.size(),
+              page,
+              pages,
+              Instant.ofEpochMilli(known.syncedMillis).toString(),
+              matching.subList(from, Math.min(from + size, matching.size()))));
+    }
+  }
+
+  /** Brings the owner's list up to date: in full when it is old or new, else incrementally. */
+  private void sync(Owner owner) {
+    long now = clock.getAsLong();
+    if (owner.fullSyncMillis == 0
+        || now - owner.fullSyncMillis >= settings.fullSyncSeconds() * 1000L) {
+      var all = new ArrayList<Entry>();
+      for (int page = 1; ; page++) {
+        var entries = fetch(owner, "full_name", page);
+        all.addAll(entries);
+        if (entries.size() < API_PAGE_SIZE) {
+          break;
+        }
+      }
+      owner.repositories.clear();
+      all.forEach(entry -> owner.repositories.put(entry.name(), entry));
+      owner.fullSyncMillis = now;
+      owner.syncedMillis = now;
+    } else if (now - owner.syncedMillis >= settings.refreshSeconds() * 1000L) {
+      refresh(owner, "updated", Entry::updatedAt);
+      refresh(owner, "pushed", Entry::pushedAt);
+      owner.syncedMillis = now;
+    }
+  }
+
+  /**
+   * Reads repositories newest first by one timestamp until one is older than the newest known,
+   * and takes them over.
+   */
+  private void refresh(Owner owner, String sort, Function<Entry, String> timestamp) {
+    String watermark =
+        owner.repositories.values().stream()
+            .map(timestamp)
+            .filter(value -> value != null)
+            .max(String::compareTo)
+            .orElse("");
+    for (int page = 1; ; page++) {
+      var entries = fetch(owner, sort, page);
+      boolean older = false;
+      for (var entry : entries) {
+        String value = timestamp.apply(entry);
+        if (value != null && value.compareTo(watermark) < 0) {
+          older = true;
+          break;
+        }
+        owner.repositories.put(entry.name(), entry);
+      }
+      if (older || entries.size() < API_PAGE_SIZE) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Reads one page of the owner's repositories, trying the organization endpoint first and
+   * remembering which one the owner answers on.
+   */
+  private List<Entry> fetch(Owner owner, String sort, int page) {
+    if (owner.path != null) {
+      return fetch(owner.path, sort, page);
+    }
+    try {
+      var entries = fetch("orgs/" + owner.name + "/repos", sort, page);
+      owner.path = "orgs/" + owner.name + "/repos";
+      return entries;
+    } catch (IllegalStateException e) {
+      if (!e.getMessage().contains("404")) {
+        throw e;
+      }
+    }
+    var entries = fetch("users/" + owner.name + "/repos", sort, page);
+    owner.path = "users/" + owner.name + "/repos";
+    return entries;
+  }
+
+  private List<Entry> fetch(String path, String sort, int page) {
+    // Names sort ascending, timestamps newest first
+    String direction = sort.equals("full_name") ? "asc" : "desc";
+    var entries = new ArrayList<Entry>();
+    var result =
+        streamer.stream(
+            List.of(
+                "api",
+                "%s?per_page=%d&page=%d&sort=%s&direction=%s"
+                    .formatted(path, API_PAGE_SIZE, page, sort, direction)),
+            Duration.ofSeconds(settings.timeoutSeconds()),
+            stdout -> {
+              entries.addAll(JsonProjection.readAll(stdout, Entry::read));
+              return "";
+            });
+    if (!result.isSuccess()) {
+      throw new IllegalStateException(result.error().strip());
+    }
+    return entries;
+  }
+
+  private static boolean isBlank(String value) {
+    return value == null || value.isBlank();
+  }
+}
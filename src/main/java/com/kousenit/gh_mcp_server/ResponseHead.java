@@ -0,0 +1,79 @@
+package com.kousenit.gh_mcp_server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * The status and headers {@code gh api --include} prints ahead of a response body, which is how
+ * range requests learn whether they got a range and of how long a file.
+ *
+ * @param headers the headers by lower-case name
+ */
+record ResponseHead(int status, Map<String, String> headers) {
+
+  private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+|\\*)");
+
+  /** The bytes a ranged response holds and the length of the whole file, -1 when not given. */
+  record ContentRange(long first, long last, long length) {}
+
+  /**
+   * Reads the head of a response a byte at a time, so that none of the body is taken with it and
+   * the stream is left at the first byte of the body.
+   */
+  static ResponseHead read(InputStream in) throws IOException {
+    String statusLine = null;
+    var headers = new HashMap<String, String>();
+    var line = new StringBuilder();
+    for (int next = in.read(); next != -1; next = in.read()) {
+      if (next != '\n') {
+        line.append((char) next);
+        continue;
+      }
+      String text = line.toString().strip();
+      line.setLength(0);
+      if (text.isEmpty()) {
+        return new ResponseHead(status(statusLine), headers);
+      }
+      int colon = text.indexOf(':');
+      if (statusLine == null) {
+        statusLine = text;
+      } else if (colon > 0) {
+        headers.put(
+            text.substring(0, colon).strip().toLowerCase(Locale.ROOT),
+            text.substring(colon + 1).strip());
+      }
+    }
+    throw new IOException("The response had no headers");
+  }
+
+  private static int status(String statusLine) throws IOException {
+    // HTTP/2.0 206 Partial Content
+    String[] parts = statusLine == null ? new String[0] : statusLine.split(" ", 3);
+    try {
+      return Integer.parseInt(parts[1]);
+    } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+      throw new IOException("Unexpected response " + statusLine);
+    }
+  }
+
+  boolean isPartial() {
+    return status == 206;
+  }
+
+  /** The Content-Range of a partial response, or null when there is none. */
+  ContentRange contentRange() {
+    String value = headers.get("content-range");
+    var matcher = value == null ? null : CONTENT_RANGE.matcher(value);
+    if (matcher == null || !matcher.matches()) {
+      return null;
+    }
+    return new ContentRange(
+        Long.parseLong(matcher.group(1)),
+        Long.parseLong(matcher.group(2)),
+        matcher.group(3).equals("*") ? -1 : Long.parseLong(matcher.group(3)));
+  }
+}
@@ -0,0 +1,240 @@
+package com.kousenit.gh_mcp_server;
+
+import io.modelcontextprotocol.json.TypeRef;
+import io.modelcontextprotocol.spec.McpSchema;
+import io.modelcontextprotocol.spec.McpServerSession;
+import io.modelcontextprotocol.spec.McpServerTransport;
+import io.modelcontextprotocol.spec.McpServerTransportProvider;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Adds resource subscriptions to an MCP server transport.
+ *
+ * <p>The SDK neither advertises nor answers {@code resources/subscribe} and {@code
+ * resources/unsubscribe}, so each session the server creates is wrapped: those two requests are
+ * answered here and recorded with {@link GhResources} under the session's id, every other message
+ * goes to the server's session, and the capabilities the server answers {@code initialize} with
+ * are amended to advertise {@code subscribe}. Update notifications are sent to one session at a
+ * time, and a session's subscriptions end when it closes.
+ */
+public class SubscribingTransportProvider implements McpServerTransportProvider {
+
+  private static final Logger logger = LoggerFactory.getLogger(SubscribingTransportProvider.class);
+
+  private final McpServerTransportProvider delegate;
+  private final GhResources resources;
+  private final Map<String, McpServerSession> sessions = new ConcurrentHashMap<>();
+
+  public SubscribingTransportProvider(McpServerTransportProvider delegate, GhResources resources) {
+    this.delegate = delegate;
+    this.resources = resources;
+  }
+
+  @Override
+  public void setSessionFactory(McpServerSession.Factory sessionFactory) {
+    delegate.setSessionFactory(
+        transport -> {
+          var session = sessionFactory.create(new AdvertisingTransport(transport));
+          sessions.put(session.getId(), session);
+          return new SubscribingSession(session, transport);
+        });
+  }
+
+  /** Sends a resource update notification to one session, if it is still open. */
+  void notifyUpdated(String sessionId, String uri) {
+    var session = sessions.get(sessionId);
+    if (session == null) {
+      return;
+    }
+    session
+        .sendNotification(
+            McpSchema.METHOD_NOTIFICATION_RESOURCES_UPDATED,
+            new McpSchema.ResourcesUpdatedNotification(uri))
+        .subscribe(
+            ignored -> {}, e -> logger.debug("Could not notify about {}: {}", uri, e.getMessage()));
+  }
+
+  @Override
+  public Mono<Void> notifyClients(String method, Object params) {
+    return delegate.notifyClients(method, params);
+  }
+
+  @Override
+  public Mono<Void> closeGracefully() {
+    return delegate.closeGracefully();
+  }
+
+  @Override
+  public void close() {
+    delegate.close();
+  }
+
+  @Override
+  public List<String> protocolVersions() {
+    return delegate.protocolVersions();
+  }
+
+  /** Sets {@code subscribe} in the resource capabilities of an {@code initialize} answer. */
+  static McpSchema.JSONRPCMessage advertiseSubscribe(McpSchema.JSONRPCMessage message) {
+    if (!(message instanceof McpSchema.JSONRPCResponse response)
+        || !(response.result() instanceof McpSchema.InitializeResult result)
+        || result.capabilities() == null
+        || result.capabilities().resources() == null) {
+      return message;
+    }
+    var capabilities =
+        result
+            .capabilities()
+            .mutate()
+            .resources(true, result.capabilities().resources().listChanged())
+            .build();
+    return new McpSchema.JSONRPCResponse(
+        response.jsonrpc(),
+        response.id(),
+        new McpSchema.InitializeResult(
+            result.protocolVersion(),
+            capabilities,
+            result.serverInfo(),
+            result.instructions(),
+            result.meta()),
+        response.error());
+  }
+
+  /** The transport of one session, with {@code subscribe} advertised. */
+  private record AdvertisingTransport(McpServerTransport transport) implements McpServerTransport {
+
+    @Override
+    public Mono<Void> sendMessage(McpSchema.JSONRPCMessage message) {
+      return transport.sendMessage(advertiseSubscribe(message));
+    }
+
+    @Override
+    public <T> T unmarshalFrom(Object data, TypeRef<T> typeRef) {
+      return transport.unmarshalFrom(data, typeRef);
+    }
+
+    @Override
+    public Mono<Void> closeGracefully() {
+      return transport.closeGracefully();
+    }
+
+    @Override
+    public void close() {
+      transport.close();
+    }
+
+    @Override
+    public List<String> protocolVersions() {
+      return transport.protocolVersions();
+    }
+  }
+
+  /**
+   * A session of the server that answers subscription requests itself. The SDK's session is a
+   * class rather than an interface, so this extends it only to be handed to the transport, and
+   * delegates everything else to the session the server created.
+   */
+  private final class SubscribingSession extends McpServerSession {
+
+    private final McpServerSession session;
+    private final McpServerTransport transport;
+
+    SubscribingSession(McpServerSession session, McpServerTransport transport) {
+      super(session.getId(), Duration.ZERO, transport, null, Map.of(), Map.of());
+      this.session = session;
+      this.transport = transport;
+    }
+
+    @Override
+    public Mono<Void> handle(McpSchema.JSONRPCMessage message) {
+      if (message instanceof McpSchema.JSONRPCRequest request
+          && (request.method().equals(McpSchema.METHOD_RESOURCES_SUBSCRIBE)
+              || request.method().equals(McpSchema.METHOD_RESOURCES_UNSUBSCRIBE))) {
+        // Subscribing reads the resource, so it must not block the thread reading messages
+        return Mono.fromCallable(() -> answer(request))
+            .subscribeOn(Schedulers.boundedElastic())
+            .flatMap(transport::sendMessage);
+      }
+      return session.handle(message);
+    }
+
+    private McpSchema.JSONRPCResponse answer(McpSchema.JSONRPCRequest request) {
+      try {
+        String uri =
+            transport
+                .unmarshalFrom(request.params(), new TypeRef<McpSchema.SubscribeRequest>() {})
+                .uri();
+        if (request.method().equals(McpSchema.METHOD_RESOURCES_SUBSCRIBE)) {
+          var context = new CallContext(CallContext.clientId(null, getId()), null);
+          CallContext.callAs(
+              context,
+              () -> {
+                resources.subscribe(getId(), uri);
+                return null;
+              });
+        } else {
+          resources.unsubscribe(getId(), uri);
+        }
+        return new McpSchema.JSONRPCResponse(
+            McpSchema.JSONRPC_VERSION, request.id(), Map.of(), null);
+      } catch (IllegalArgumentException e) {
+        return new McpSchema.JSONRPCResponse(
+            McpSchema.JSONRPC_VERSION,
+            request.id(),
+            null,
+            new McpSchema.JSONRPCResponse.JSONRPCError(
+                McpSchema.ErrorCodes.INVALID_PARAMS, e.getMessage(), null));
+      }
+    }
+
+    @Override
+    public void init(
+        McpSchema.ClientCapabilities clientCapabilities, McpSchema.Implementation clientInfo) {
+      session.init(clientCapabilities, clientInfo);
+    }
+
+    @Override
+    public void setMinLoggingLevel(McpSchema.LoggingLevel minLoggingLevel) {
+      session.setMinLoggingLevel(minLoggingLevel);
+    }
+
+    @Override
+    public boolean isNotificationForLevelAllowed(McpSchema.LoggingLevel loggingLevel) {
+      return session.isNotificationForLevelAllowed(loggingLevel);
+    }
+
+    @Override
+    public <T> Mono<T> sendRequest(String method, Object requestParams, TypeRef<T> typeRef) {
+      return session.sendRequest(method, requestParams, typeRef);
+    }
+
+    @Override
+    public Mono<Void> sendNotification(String method, Object params) {
+      return session.sendNotification(method, params);
+    }
+
+    @Override
+    public Mono<Void> closeGracefully() {
+      ended();
+      return session.closeGracefully();
+    }
+
+    @Override
+    public void close() {
+      ended();
+      session.close();
+    }
+
+    private void ended() {
+      sessions.remove(getId());
+      resources.sessionClosed(getId());
+    }
+  }
+}
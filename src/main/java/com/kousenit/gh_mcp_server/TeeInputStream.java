@@ -0,0 +1,40 @@
+package com.kousenit.gh_mcp_server;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/** Passes a stream through while writing every byte read to another stream. */
+final class TeeInputStream extends FilterInputStream {
+  private final OutputStream copy;
+
+  TeeInputStream(InputStream in, OutputStream copy) {
+    super(in);
+    this.copy = copy;
+  }
+
+  @Override
+  public int read() throws IOException {
+    int b = super.read();
+    if (b >= 0) {
+      copy.write(b);
+    }
+    return b;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    int read = super.read(buffer, offset, length);
+    if (read > 0) {
+      copy.write(buffer, offset, read);
+    }
+    return read;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    // Skipped bytes must reach the copy too
+    return read(new byte[(int) Math.min(n, 8192)]);
+  }
+}
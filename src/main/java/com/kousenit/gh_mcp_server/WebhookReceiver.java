@@ -0,0 +1,236 @@
+package com.kousenit.gh_mcp_server;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Accepts GitHub webhook deliveries on a local port so watched repositories are kept fresh by
+ * push instead of polling.
+ *
+ * <p>Every delivery must carry a valid {@code X-Hub-Signature-256} for the configured secret. For
+ * the delivery's repository, cached results are dropped; issue and pull request events also sync
+ * the local issue copy, pushes fetch the git mirror, and workflow and check events make watchers
+ * of that repository poll right away. Every event also has the MCP resources read from that
+ * repository checked for changes. Redelivered events are recognized by their delivery id and
+ * applied once.
+ *
+ * <p>The receiver uses the JDK's HTTP server, so it also runs in STDIO mode where there is no web
+ * server. It binds to loopback by default, which is what a local relay such as {@code gh webhook
+ * forward} or smee.io's client expects.
+ */
+@Component
+public class WebhookReceiver {
+
+  private static final Logger logger = LoggerFactory.getLogger(WebhookReceiver.class);
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  /** GitHub caps payloads at 25 MB. */
+  static final int MAX_PAYLOAD_BYTES = 25 * 1024 * 1024;
+
+  private static final int REMEMBERED_DELIVERIES = 1000;
+
+  private static final Set<String> ISSUE_EVENTS =
+      Set.of(
+          "issues",
+          "issue_comment",
+          "label",
+          "pull_request",
+          "pull_request_review",
+          "pull_request_review_comment");
+
+  private static final Set<String> GIT_EVENTS = Set.of("push", "create", "delete");
+
+  private static final Set<String> RUN_EVENTS =
+      Set.of("workflow_run", "workflow_job", "check_run", "check_suite", "status");
+
+  /**
+   * A verified delivery.
+   *
+   * @param event the {@code X-GitHub-Event} name
+   * @param action the payload's {@code action}, or null for events without one such as push
+   * @param repository {@code owner/repo} the event is about, or null for account-level events
+   */
+  record Delivery(String event, String action, String repository) {}
+
+  private final GitHubProperties.Webhook settings;
+  private final Consumer<Delivery> handler;
+  private final byte[] secret;
+  private final Map<String, Boolean> deliveries =
+      new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+          return size() > REMEMBERED_DELIVERIES;
+        }
+      };
+  private HttpServer server;
+
+  @Autowired
+  public WebhookReceiver(
+      GitHubProperties gitHubProperties,
+      GhResponseCache cache,
+      GitMirror mirror,
+      IssueMirror issueMirror,
+      CiWatcher watcher,
+      GhResources resources) {
+    this(gitHubProperties.webhook(), cache, mirror, issueMirror, watcher, resources);
+  }
+
+  WebhookReceiver(
+      GitHubProperties.Webhook settings,
+      GhResponseCache cache,
+      GitMirror mirror,
+      IssueMirror issueMirror,
+      CiWatcher watcher,
+      GhResources resources) {
+    this(
+        settings,
+        delivery -> {
+          String repository = delivery.repository();
+          if (repository == null) {
+            return;
+          }
+          cache.invalidateRepository(repository);
+          if (ISSUE_EVENTS.contains(delivery.event())) {
+            issueMirror.requestSync(repository);
+          } else if (GIT_EVENTS.contains(delivery.event())) {
+            mirror.requestRefresh(repository);
+          } else if (RUN_EVENTS.contains(delivery.event())) {
+            watcher.nudge(repository);
+          }
+          resources.nudge(repository);
+        });
+  }
+
+  WebhookReceiver(GitHubProperties.Webhook settings, Consumer<Delivery> handler) {
+    this.settings = settings;
+    this.handler = handler;
+    this.secret =
+        settings.secret() == null ? null : settings.secret().getBytes(StandardCharsets.UTF_8);
+  }
+
+  @PostConstruct
+  void start() throws IOException {
+    if (settings.port() == 0) {
+      return;
+    }
+    if (secret == null) {
+      // Unsigned deliveries could be forged by anything that can reach the port
+      logger.warn("Webhook receiver not started: github.webhook.secret is not set");
+      return;
+    }
+    server = HttpServer.create(new InetSocketAddress(settings.address(), settings.port()), 0);
+    server.createContext(settings.path(), this::exchange);
+    server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    server.start();
+    logger.info(
+        "Receiving webhooks on http://{}:{}{}", settings.address(), port(), settings.path());
+  }
+
+  @PreDestroy
+  void stop() {
+    if (server != null) {
+      server.stop(0);
+    }
+  }
+
+  /** The port the receiver listens on, or 0 if it is not running. */
+  int port() {
+    return server == null ? 0 : server.getAddress().getPort();
+  }
+
+  /**
+   * Verifies and applies one delivery.
+   *
+   * @param signature the {@code X-Hub-Signature-256} header, {@code sha256=} and a hex HMAC
+   * @return the HTTP status to answer with
+   */
+  int receive(String event, String deliveryId, String signature, byte[] payload) {
+    if (!verify(signature, payload)) {
+      return 401;
+    }
+    if (event == null || event.isBlank()) {
+      return 400;
+    }
+    if (deliveryId != null) {
+      synchronized (deliveries) {
+        if (deliveries.put(deliveryId, Boolean.TRUE) != null) {
+          return 200;
+        }
+      }
+    }
+    JsonNode root;
+    try {
+      root = MAPPER.readTree(payload);
+    } catch (IOException e) {
+      return 400;
+    }
+    String repository = root.path("repository").path("full_name").asText(null);
+    String action = root.path("action").asText(null);
+    var delivery = new Delivery(event, action, repository);
+    logger.debug("Webhook {} {} for {}", event, action, repository);
+    handler.accept(delivery);
+    return event.equals("ping") ? 200 : 202;
+  }
+
+  /** Whether the signature is GitHub's HMAC-SHA256 of the payload with the secret. */
+  boolean verify(String signature, byte[] payload) {
+    if (secret == null || signature == null || !signature.startsWith("sha256=")) {
+      return false;
+    }
+    try {
+      var mac = Mac.getInstance("HmacSHA256");
+      mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+      byte[] expected = mac.doFinal(payload);
+      byte[] actual = HexFormat.of().parseHex(signature.substring("sha256=".length()));
+      // Constant time, so the signature cannot be guessed byte by byte
+      return MessageDigest.isEqual(expected, actual);
+    } catch (IllegalArgumentException | GeneralSecurityException e) {
+      return false;
+    }
+  }
+
+  private void exchange(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      if (!exchange.getRequestMethod().equals("POST")) {
+        exchange.getResponseHeaders().add("Allow", "POST");
+        exchange.sendResponseHeaders(405, -1);
+        return;
+      }
+      byte[] payload = exchange.getRequestBody().readNBytes(MAX_PAYLOAD_BYTES + 1);
+      if (payload.length > MAX_PAYLOAD_BYTES) {
+        exchange.sendResponseHeaders(413, -1);
+        return;
+      }
+      var headers = exchange.getRequestHeaders();
+      int status =
+          receive(
+              headers.getFirst("X-GitHub-Event"),
+              headers.getFirst("X-GitHub-Delivery"),
+              headers.getFirst("X-Hub-Signature-256"),
+              payload);
+      exchange.sendResponseHeaders(status, -1);
+    }
+  }
+}
@@ -0,0 +1,644 @@
+package com.kousenit.gh_mcp_server;
+
+import com.fasterxml.jackson.core.JsonParser;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Lists the artifacts of workflow runs and reads single files out of them without downloading
+ * the whole archive.
+ *
+ * <p>An artifact is a zip whose table of contents, the central directory, sits at its end. One
+ * range request for the last {@code tailKilobytes} of the archive finds the end record and
+ * usually the whole directory; a bigger directory takes one more request for exactly its bytes,
+ * parsed as they stream in. Reading a file then asks for only that file's bytes and inflates them
+ * straight to disk, checking the CRC. An artifact never changes under its ID, so directories are
+ * kept in memory and extracted files on disk under {@code cacheDir/owner/repo/artifactId}, for
+ * the {@code maxCachedArtifacts} most recently used artifacts.
+ */
+@Component
+public class WorkflowArtifacts {
+
+  private static final Logger logger = LoggerFactory.getLogger(WorkflowArtifacts.class);
+
+  private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+  private static final int ZIP64_END_LOCATOR = 0x07064b50;
+  private static final int ZIP64_END_OF_CENTRAL_DIRECTORY = 0x06064b50;
+  private static final int CENTRAL_DIRECTORY_HEADER = 0x02014b50;
+  private static final int LOCAL_FILE_HEADER = 0x04034b50;
+
+  /** Value of a 32-bit size or offset that is too big for it and kept in the zip64 extra field. */
+  private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+  private static final int STORED = 0;
+  private static final int DEFLATED = 8;
+
+  /**
+   * An artifact of a workflow run.
+   *
+   * @param size bytes of the zip archive
+   * @param expired whether the artifact was deleted after its retention period
+   * @param digest {@code sha256:} and the hex digest of the archive, for artifacts that have one
+   */
+  public record Artifact(
+      Long id,
+      String name,
+      Long size,
+      Boolean expired,
+      String createdAt,
+      String expiresAt,
+      String digest) {
+
+    private static final Map<String, JsonProjection.Reader<?>> READERS =
+        Map.of(
+            "id", JsonProjection::number,
+            "name", JsonProjection::text,
+            "size_in_bytes", JsonProjection::number,
+            "expired", JsonProjection::bool,
+            "created_at", JsonProjection::text,
+            "expires_at", JsonProjection::text,
+            "digest", JsonProjection::text);
+
+    static Artifact read(JsonParser parser) throws IOException {
+      var values = JsonProjection.object(parser, READERS);
+      return new Artifact(
+          (Long) values.get("id"),
+          (String) values.get("name"),
+          (Long) values.get("size_in_bytes"),
+          (Boolean) values.get("expired"),
+          (String) values.get("created_at"),
+          (String) values.get("expires_at"),
+          (String) values.get("digest"));
+    }
+  }
+
+  /** The artifacts of a run; {@code totalCount} counts those past the first 100 too. */
+  public record Artifacts(long runId, Long totalCount, List<Artifact> artifacts) {}
+
+  /** A file in an artifact, with its size before and after compression. */
+  public record Entry(String name, long size, long compressedSize) {}
+
+  /** The files in an artifact. */
+  public record Entries(long artifactId, int files, long size, List<Entry> entries) {}
+
+  /**
+   * A file read out of an artifact.
+   *
+   * @param file where the extracted file is kept; null without a cache directory
+   * @param binary whether the file is not UTF-8 text; its content is then left out
+   * @param truncated whether the content stops at {@code maxChars}, short of the end of the file
+   */
+  public record Extracted(
+      long artifactId,
+      String name,
+      long size,
+      String file,
+      boolean binary,
+      boolean truncated,
+      String content) {}
+
+  /** A central directory record: a file and where its bytes are in the archive. */
+  private record Member(
+      String name, long size, long compressedSize, int method, int flags, long crc, long offset) {}
+
+  /**
+   * An artifact's table of contents.
+   *
+   * @param end where the central directory starts, and so the bytes of the last file end
+   */
+  private record Directory(List<Member> members, long end) {
+
+    /** Where a member's bytes end: where the next one starts, or the directory does. */
+    long end(Member member) {
+      long next = end;
+      for (var other : members) {
+        if (other.offset() > member.offset() && other.offset() < next) {
+          next = other.offset();
+        }
+      }
+      return next;
+    }
+  }
+
+  /** The last bytes of an archive, and where they start in it. */
+  private record Tail(long start, byte[] bytes) {}
+
+  /** Reads the body of a ranged response, after its head. */
+  @FunctionalInterface
+  private interface BodyReader<T> {
+    T read(ResponseHead head, InputStream body) throws IOException;
+  }
+
+  private static final Map<String, JsonProjection.Reader<?>> LISTING_READERS =
+      Map.of(
+          "total_count", JsonProjection::number,
+          "artifacts", parser -> JsonProjection.list(parser, Artifact::read));
+
+  private final GitHubProperties.Artifacts settings;
+  private final Function<List<String>, GithubCommand> gh;
+  private final WorkflowLogs.Streamer streamer;
+  private final Map<String, Directory> directories;
+  private final Map<Path, Object> extractions = new ConcurrentHashMap<>();
+
+  @Autowired
+  public WorkflowArtifacts(GitHubProperties gitHubProperties, GhCommandExecutor executor) {
+    this(gitHubProperties.artifacts(), executor::execute, executor::stream);
+  }
+
+  WorkflowArtifacts(
+      GitHubProperties.Artifacts settings,
+      Function<List<String>, GithubCommand> gh,
+      WorkflowLogs.Streamer streamer) {
+    this.settings = settings;
+    this.gh = gh;
+    this.streamer = streamer;
+    // Access-ordered, so the least recently read artifact is the one dropped
+    this.directories =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Directory> eldest) {
+            return size() > settings.maxCachedArtifacts();
+          }
+        };
+  }
+
+  /**
+   * The artifacts of a workflow run, as JSON.
+   *
+   * @return the artifacts, or an error message starting with "Error:"
+   */
+  @SuppressWarnings("unchecked")
+  public String list(String owner, String repo, long runId) {
+    String path = "repos/%s/%s/actions/runs/%d/artifacts".formatted(owner, repo, runId);
+    var result = gh.apply(List.of("api", path + "?per_page=100"));
+    if (!result.isSuccess()) {
+      return result.getResult();
+    }
+    try {
+      var listings = JsonProjection.readAll(result.output(), this::listing);
+      var listing = listings.isEmpty() ? Map.<String, Object>of() : listings.getFirst();
+      var artifacts = (List<Artifact>) listing.get("artifacts");
+      return JsonProjection.write(
+          new Artifacts(
+              runId,
+              (Long) listing.get("total_count"),
+              artifacts == null ? List.of() : artifacts));
+    } catch (IOException e) {
+      return "Error: Could not read the artifacts - " + e.getMessage();
+    }
+  }
+
+  private Map<String, Object> listing(JsonParser parser) throws IOException {
+    return JsonProjection.object(parser, LISTING_READERS);
+  }
+
+  /**
+   * The files in an artifact, read from its central directory, as JSON.
+   *
+   * @return the files, or an error message starting with "Error:"
+   */
+  public String entries(String owner, String repo, long artifactId) {
+    try {
+      var files =
+          directory(owner, repo, artifactId).members().stream()
+              .filter(member -> !member.name().endsWith("/"))
+              .map(member -> new Entry(member.name(), member.size(), member.compressedSize()))
+              .toList();
+      return JsonProjection.write(
+          new Entries(
+              artifactId, files.size(), files.stream().mapToLong(Entry::size).sum(), files));
+    } catch (IOException | IllegalStateException e) {
+      return "Error: " + e.getMessage();
+    }
+  }
+
+  /**
+   * One file of an artifact, fetched by its byte range, with its content when it is text.
+   *
+   * @param path the file's path in the artifact, as listed by {@link #entries}
+   * @return the file as JSON, or an error message starting with "Error:"
+   */
+  public String extract(String owner, String repo, long artifactId, String path) {
+    if (path == null || path.isBlank()) {
+      return "Error: Give the path of a file in the artifact";
+    }
+    try {
+      var directory = directory(owner, repo, artifactId);
+      var member =
+          directory.members().stream()
+              .filter(candidate -> candidate.name().equals(path))
+              .findFirst()
+              .orElse(null);
+      if (member == null || member.name().endsWith("/")) {
+        return "Error: Artifact %d has no file %s; listArtifactEntries shows the files it holds"
+            .formatted(artifactId, path);
+      }
+      if ((member.flags() & 1) != 0) {
+        return "Error: %s is encrypted".formatted(path);
+      }
+      if (member.method() != STORED && member.method() != DEFLATED) {
+        return "Error: %s is compressed with method %d, which cannot be read"
+            .formatted(path, member.method());
+      }
+
+      Path base = artifactDirectory(owner, repo, artifactId);
+      if (base == null) {
+        Path temporary = Files.createTempFile("artifact-", ".tmp");
+        try {
+          extract(owner, repo, artifactId, member, directory.end(member), temporary);
+          return JsonProjection.write(render(artifactId, member, temporary, null));
+        } finally {
+          Files.deleteIfExists(temporary);
+        }
+      }
+      Path file = base.resolve(member.name()).normalize();
+      if (!file.startsWith(base)) {
+        return "Error: %s points outside the artifact".formatted(path);
+      }
+      // Two calls for the same file would write over each other's partial copy; the later one
+      // waits and finds the file the earlier one extracted
+      synchronized (extractions.computeIfAbsent(file, ignored -> new Object())) {
+        if (!Files.isRegularFile(file) || Files.size(file) != member.size()) {
+          Files.createDirectories(file.getParent());
+          Path partial = file.resolveSibling(file.getFileName() + ".partial");
+          try {
+            extract(owner, repo, artifactId, member, directory.end(member), partial);
+            Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING);
+          } finally {
+            Files.deleteIfExists(partial);
+          }
+        }
+      }
+      Files.setLastModifiedTime(base, FileTime.fromMillis(System.currentTimeMillis()));
+      evict(base);
+      return JsonProjection.write(render(artifactId, member, file, file.toString()));
+    } catch (IOException | IllegalStateException e) {
+      return "Error: " + e.getMessage();
+    }
+  }
+
+  /** The artifact's central directory, from memory or read with one or two range requests. */
+  private Directory directory(String owner, String repo, long artifactId) throws IOException {
+    String key = "%s/%s/%d".formatted(owner, repo, artifactId).toLowerCase();
+    synchronized (directories) {
+      var known = directories.get(key);
+      if (known != null) {
+        return known;
+      }
+    }
+    int tailBytes = settings.tailKilobytes() * 1024;
+    var tail =
+        range(
+            owner,
+            repo,
+            artifactId,
+            "-" + tailBytes,
+            (head, body) -> {
+              byte[] bytes = body.readNBytes(tailBytes + 1);
+              if (head.status() == 200) {
+                // Only an archive no bigger than the tail may come whole
+                if (bytes.length > tailBytes) {
+                  throw new IOException("GitHub did not serve a byte range of the artifact");
+                }
+                return new Tail(0, bytes);
+              }
+              var contentRange = head.contentRange();
+              if (!head.isPartial() || contentRange == null) {
+                throw new IOException("GitHub did not say which bytes of the artifact it sent");
+              }
+              return new Tail(contentRange.first(), bytes);
+            });
+    var directory = readDirectory(owner, repo, artifactId, tail);
+    synchronized (directories) {
+      directories.put(key, directory);
+    }
+    return directory;
+  }
+
+  private Directory readDirectory(String owner, String repo, long artifactId, Tail tail)
+      throws IOException {
+    var bytes = ByteBuffer.wrap(tail.bytes()).order(ByteOrder.LITTLE_ENDIAN);
+    int end = -1;
+    for (int i = tail.bytes().length - 22; i >= 0; i--) {
+      if (bytes.getInt(i) == END_OF_CENTRAL_DIRECTORY) {
+        end = i;
+        break;
+      }
+    }
+    if (end < 0) {
+      throw new IOException("Artifact %d is not a zip archive".formatted(artifactId));
+    }
+    long size = bytes.getInt(end + 12) & ZIP64_MAGIC;
+    long offset = bytes.getInt(end + 16) & ZIP64_MAGIC;
+
+    // A zip64 archive puts a locator of its own end record right before the classic one
+    int locator = end - 20;
+    if (locator >= 0 && bytes.getInt(locator) == ZIP64_END_LOCATOR) {
+      long zip64End = bytes.getLong(locator + 8);
+      ByteBuffer record;
+      if (zip64End >= tail.start()) {
+        record = bytes.slice((int) (zip64End - tail.start()), 56).order(ByteOrder.LITTLE_ENDIAN);
+      } else {
+        record =
+            range(
+                owner,
+                repo,
+                artifactId,
+                "%d-%d".formatted(zip64End, zip64End + 55),
+                (head, body) ->
+                    ByteBuffer.wrap(skipToRange(head, body, zip64End).readNBytes(56))
+                        .order(ByteOrder.LITTLE_ENDIAN));
+      }
+      if (record.limit() < 56 || record.getInt(0) != ZIP64_END_OF_CENTRAL_DIRECTORY) {
+        throw new IOException("Artifact %d has a broken zip64 end record".formatted(artifactId));
+      }
+      size = record.getLong(40);
+      offset = record.getLong(48);
+    } else if (size == ZIP64_MAGIC || offset == ZIP64_MAGIC) {
+      throw new IOException("Artifact %d has no zip64 end record".formatted(artifactId));
+    }
+
+    long start = offset;
+    long length = size;
+    List<Member> members;
+    if (start >= tail.start() && start - tail.start() + length <= tail.bytes().length) {
+      members =
+          readMembers(
+              new ByteArrayInputStream(tail.bytes(), (int) (start - tail.start()), (int) length));
+    } else {
+      members =
+          range(
+              owner,
+              repo,
+              artifactId,
+              "%d-%d".formatted(start, start + length - 1),
+              (head, body) -> readMembers(skipToRange(head, body, start)));
+    }
+    return new Directory(members, start);
+  }
+
+  /** Reads central directory records until the stream or the records run out. */
+  private static List<Member> readMembers(InputStream in) throws IOException {
+    var members = new ArrayList<Member>();
+    byte[] fixed = new byte[46];
+    var header = ByteBuffer.wrap(fixed).order(ByteOrder.LITTLE_ENDIAN);
+    while (in.readNBytes(fixed, 0, 4) == 4 && header.getInt(0) == CENTRAL_DIRECTORY_HEADER) {
+      if (in.readNBytes(fixed, 4, 42) < 42) {
+        throw new IOException("The central directory is cut short");
+      }
+      int flags = header.getShort(8) & 0xFFFF;
+      int method = header.getShort(10) & 0xFFFF;
+      long crc = header.getInt(16) & ZIP64_MAGIC;
+      long compressedSize = header.getInt(20) & ZIP64_MAGIC;
+      long size = header.getInt(24) & ZIP64_MAGIC;
+      int nameLength = header.getShort(28) & 0xFFFF;
+      int extraLength = header.getShort(30) & 0xFFFF;
+      int commentLength = header.getShort(32) & 0xFFFF;
+      long offset = header.getInt(42) & ZIP64_MAGIC;
+      String name = new String(in.readNBytes(nameLength), StandardCharsets.UTF_8);
+      var extra = ByteBuffer.wrap(in.readNBytes(extraLength)).order(ByteOrder.LITTLE_ENDIAN);
+      in.skipNBytes(commentLength);
+
+      // Values too big for their field are in extra field 1, in this order, and only those
+      for (int field = 0; field + 4 <= extra.limit(); ) {
+        int id = extra.getShort(field) & 0xFFFF;
+        int end = Math.min(extra.limit(), field + 4 + (extra.getShort(field + 2) & 0xFFFF));
+        int at = field + 4;
+        if (id == 1) {
+          if (size == ZIP64_MAGIC && at + 8 <= end) {
+            size = extra.getLong(at);
+            at += 8;
+          }
+          if (compressedSize == ZIP64_MAGIC && at + 8 <= end) {
+            compressedSize = extra.getLong(at);
+            at += 8;
+          }
+          if (offset == ZIP64_MAGIC && at + 8 <= end) {
+            offset = extra.getLong(at);
+          }
+        }
+        field = end;
+      }
+      members.add(new Member(name, size, compressedSize, method, flags, crc, offset));
+    }
+    return members;
+  }
+
+  /** Fetches a member's bytes and writes it, inflated and checked, to a file. */
+  private void extract(
+      String owner, String repo, long artifactId, Member member, long end, Path target)
+      throws IOException {
+    range(
+        owner,
+        repo,
+        artifactId,
+        "%d-%d".formatted(member.offset(), end - 1),
+        (head, body) -> {
+          var in = skipToRange(head, body, member.offset());
+          var local = ByteBuffer.wrap(in.readNBytes(30)).order(ByteOrder.LITTLE_ENDIAN);
+          if (local.limit() < 30 || local.getInt(0) != LOCAL_FILE_HEADER) {
+            throw new IOException("No file header where the directory puts " + member.name());
+          }
+          // The local name and extra field may differ in length from the directory's
+          in.skipNBytes((local.getShort(26) & 0xFFFF) + (local.getShort(28) & 0xFFFF));
+          var inflater = member.method() == DEFLATED ? new Inflater(true) : null;
+          try (var channel =
+              FileChannel.open(
+                  target,
+                  StandardOpenOption.CREATE,
+                  StandardOpenOption.WRITE,
+                  StandardOpenOption.TRUNCATE_EXISTING)) {
+            var data =
+                new CheckedInputStream(
+                    inflater == null ? in : new InflaterInputStream(in, inflater), new CRC32());
+            var source = Channels.newChannel(data);
+            long written = 0;
+            while (written < member.size()) {
+              long transferred = channel.transferFrom(source, written, member.size() - written);
+              if (transferred <= 0) {
+                throw new IOException(
+                    "%s ended after %d of %d bytes"
+                        .formatted(member.name(), written, member.size()));
+              }
+              written += transferred;
+            }
+            if (data.getChecksum().getValue() != member.crc()) {
+              throw new IOException("%s does not match its CRC".formatted(member.name()));
+            }
+          } finally {
+            if (inflater != null) {
+              inflater.end();
+            }
+          }
+          return Boolean.TRUE;
+        });
+  }
+
+  /**
+   * Streams a byte range of the artifact's archive to a reader.
+   *
+   * @param range a range such as {@code 100-199}, or {@code -100} for the last 100 bytes
+   * @throws IllegalStateException if gh fails, with its error
+   */
+  private <T> T range(
+      String owner, String repo, long artifactId, String range, BodyReader<T> reader) {
+    var read = new AtomicReference<T>();
+    var result =
+        streamer.stream(
+            List.of(
+                "api",
+                "repos/%s/%s/actions/artifacts/%d/zip".formatted(owner, repo, artifactId),
+                "--include",
+                "-H",
+                "Range: bytes=" + range),
+            Duration.ofSeconds(settings.timeoutSeconds()),
+            stdout -> {
+              var head = ResponseHead.read(stdout);
+              // On an error status gh fails the command and says why
+              if (head.status() < 400) {
+                read.set(reader.read(head, stdout));
+              }
+              return "";
+            });
+    if (!result.isSuccess()) {
+      throw new IllegalStateException(result.error().strip());
+    }
+    if (read.get() == null) {
+      throw new IllegalStateException("GitHub sent no part of artifact " + artifactId);
+    }
+    return read.get();
+  }
+
+  /** Skips to the first byte asked for when the server sent the whole archive instead. */
+  private static InputStream skipToRange(ResponseHead head, InputStream body, long first)
+      throws IOException {
+    if (head.status() == 200) {
+      body.skipNBytes(first);
+    } else if (!head.isPartial()) {
+      throw new IOException("Unexpected response status " + head.status());
+    }
+    return body;
+  }
+
+  /** Reads up to {@code maxChars} of an extracted file, unless it is not UTF-8 text. */
+  private Extracted render(long artifactId, Member member, Path file, String kept)
+      throws IOException {
+    var decoder =
+        StandardCharsets.UTF_8
+            .newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+    int maxChars = settings.maxChars();
+    var chars = new char[maxChars + 1];
+    int read = 0;
+    try (var reader =
+        new BufferedReader(new InputStreamReader(Files.newInputStream(file), decoder))) {
+      while (read < chars.length) {
+        int n = reader.read(chars, read, chars.length - read);
+        if (n == -1) {
+          break;
+        }
+        read += n;
+      }
+    } catch (CharacterCodingException e) {
+      return new Extracted(artifactId, member.name(), member.size(), kept, true, false, null);
+    }
+    String content = new String(chars, 0, Math.min(read, maxChars));
+    if (content.indexOf('\0') >= 0) {
+      return new Extracted(artifactId, member.name(), member.size(), kept, true, false, null);
+    }
+    return new Extracted(
+        artifactId, member.name(), member.size(), kept, false, read > maxChars, content);
+  }
+
+  private Path artifactDirectory(String owner, String repo, long artifactId) {
+    if (settings.cacheDir() == null || settings.maxCachedArtifacts() == 0) {
+      return null;
+    }
+    return Path.of(
+            settings.cacheDir(),
+            owner.toLowerCase(),
+            repo.toLowerCase(),
+            String.valueOf(artifactId))
+        .toAbsolutePath()
+        .normalize();
+  }
+
+  /** Deletes the extracted files of all but the most recently used artifacts. */
+  private void evict(Path newest) {
+    Path root = newest.getParent().getParent().getParent();
+    List<Path> artifacts;
+    try (Stream<Path> paths = Files.walk(root, 3)) {
+      artifacts =
+          paths
+              .filter(path -> root.relativize(path).getNameCount() == 3)
+              .filter(path -> Files.isDirectory(path) && !path.equals(newest))
+              .sorted(Comparator.comparing(WorkflowArtifacts::lastModified).reversed())
+              .toList();
+    } catch (IOException e) {
+      logger.warn("Could not list extracted artifacts in {}: {}", root, e.getMessage());
+      return;
+    }
+    for (int i = settings.maxCachedArtifacts() - 1; i < artifacts.size(); i++) {
+      deleteRecursively(artifacts.get(i));
+    }
+  }
+
+  private static void deleteRecursively(Path path) {
+    try (var paths = Files.walk(path)) {
+      paths
+          .sorted((a, b) -> b.getNameCount() - a.getNameCount())
+          .forEach(
+              p -> {
+                try {
+                  Files.delete(p);
+                } catch (IOException e) {
+                  // Files left behind are extracted again, or evicted next time
+                }
+              });
+    } catch (IOException e) {
+      logger.warn("Could not remove {}: {}", path, e.getMessage());
+    }
+  }
+
+  private static long lastModified(Path file) {
+    try {
+      return Files.getLastModifiedTime(file).toMillis();
+    } catch (IOException e) {
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,297 @@
+package com.kousenit.gh_mcp_server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reads workflow run logs without holding the archive in memory.
+ *
+ * <p>The log zip is read entry by entry straight from gh's output and every line is run through
+ * the filters as it is decompressed; only the lines that will be returned are kept, up to {@code
+ * maxLines}. Archives of completed runs are copied to disk while they stream past, so later calls
+ * for the same run, with any filters, read the local copy instead of downloading it again.
+ */
+@Component
+public class WorkflowLogs {
+
+  private static final Logger logger = LoggerFactory.getLogger(WorkflowLogs.class);
+
+  /** Marker GitHub puts in front of error annotations in the raw log. */
+  static final String ERROR_MARKER = "##[error]";
+
+  private static final int MAX_LINE_LENGTH = 2000;
+
+  private static final Pattern ORDINAL_PREFIX = Pattern.compile("^\\d+_");
+
+  /**
+   * Which lines to return; null and blank fields match everything.
+   *
+   * @param job case-insensitive part of the job name
+   * @param step case-insensitive part of the step name; selects per-step logs instead of whole
+   *     job logs
+   * @param pattern regular expression a line must contain
+   * @param tail return only the last this many matching lines; 0 for the first ones
+   * @param errorsOnly return only error annotations
+   */
+  public record Filter(String job, String step, String pattern, int tail, boolean errorsOnly) {}
+
+  /** Runs a command whose output is consumed by a reader while it downloads. */
+  @FunctionalInterface
+  interface Streamer {
+    GithubCommand stream(
+        List<String> args, Duration timeout, GhProcessLauncher.OutputReader reader);
+  }
+
+  private final GitHubProperties.Logs settings;
+  private final Function<List<String>, GithubCommand> gh;
+  private final Streamer streamer;
+
+  @Autowired
+  public WorkflowLogs(GitHubProperties gitHubProperties, GhCommandExecutor executor) {
+    this(gitHubProperties.logs(), executor::execute, executor::stream);
+  }
+
+  WorkflowLogs(
+      GitHubProperties.Logs settings, Function<List<String>, GithubCommand> gh, Streamer streamer) {
+    this.settings = settings;
+    this.gh = gh;
+    this.streamer = streamer;
+  }
+
+  /**
+   * The filtered log lines of a run, grouped under job and step headings, after a summary line.
+   *
+   * @return the lines, or an error message starting with "Error:"
+   */
+  public String logs(String owner, String repo, long runId, Filter filter) {
+    Pattern pattern;
+    try {
+      pattern = isBlank(filter.pattern()) ? null : Pattern.compile(filter.pattern());
+    } catch (PatternSyntaxException e) {
+      return "Error: Invalid pattern - %s".formatted(e.getDescription());
+    }
+    var archive = archive(owner, repo, runId);
+    if (archive != null && Files.isRegularFile(archive)) {
+      try (var in = Files.newInputStream(archive)) {
+        String result = filter(in, runId, filter, pattern);
+        Files.setLastModifiedTime(archive, FileTime.fromMillis(System.currentTimeMillis()));
+        return result;
+      } catch (IOException e) {
+        logger.warn("Ignoring unreadable log archive {}: {}", archive, e.getMessage());
+      }
+    }
+
+    // Only completed runs have final logs worth keeping
+    var status =
+        gh.apply(
+            List.of(
+                "api",
+                "repos/%s/%s/actions/runs/%d".formatted(owner, repo, runId),
+                "--jq",
+                ".status"));
+    Path partial =
+        archive != null && status.isSuccess() && status.output().strip().equals("completed")
+            ? archive.resolveSibling(archive.getFileName() + ".partial")
+            : null;
+    var result =
+        streamer.stream(
+            List.of("api", "repos/%s/%s/actions/runs/%d/logs".formatted(owner, repo, runId)),
+            Duration.ofSeconds(settings.timeoutSeconds()),
+            stdout ->
+                partial == null
+                    ? filter(stdout, runId, filter, pattern)
+                    : copying(stdout, partial, runId, filter, pattern));
+    if (partial != null) {
+      keep(partial, archive, result.isSuccess());
+    }
+    return result.getResult();
+  }
+
+  /** Filters the archive while copying every byte of it to a file. */
+  private String copying(
+      InputStream stdout, Path partial, long runId, Filter filter, Pattern pattern)
+      throws IOException {
+    Files.createDirectories(partial.getParent());
+    try (var copy = Files.newOutputStream(partial);
+        var tee = new TeeInputStream(stdout, copy)) {
+      String result = filter(tee, runId, filter, pattern);
+      // The zip reader stops before the central directory; the copy should be complete
+      tee.transferTo(OutputStream.nullOutputStream());
+      return result;
+    }
+  }
+
+  private String filter(InputStream archive, long runId, Filter filter, Pattern pattern)
+      throws IOException {
+    boolean keepLast = filter.tail() > 0;
+    var collector =
+        new Collector(
+            keepLast ? Math.min(filter.tail(), settings.maxLines()) : settings.maxLines(),
+            keepLast);
+    boolean wantSteps = !isBlank(filter.step());
+    long lines = 0;
+    int files = 0;
+    var zip = new ZipInputStream(archive, StandardCharsets.UTF_8);
+    for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+      if (entry.isDirectory()) {
+        continue;
+      }
+      // Whole job logs are "3_build.txt"; the same log split by step is "build/2_Run tests.txt"
+      String name = entry.getName();
+      int slash = name.indexOf('/');
+      boolean stepEntry = slash >= 0;
+      String job = stepEntry ? name.substring(0, slash) : displayName(name);
+      String step = stepEntry ? displayName(name.substring(slash + 1)) : null;
+      if (stepEntry != wantSteps
+          || !contains(job, filter.job())
+          || (wantSteps && !contains(step, filter.step()))) {
+        continue;
+      }
+      files++;
+      String heading = step == null ? job : job + " / " + step;
+      // Not closed: that would close the archive; the entry ends where the reader sees EOF
+      var reader = new BufferedReader(new InputStreamReader(zip, StandardCharsets.UTF_8));
+      for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+        lines++;
+        if (line.startsWith("\uFEFF")) {
+          line = line.substring(1);
+        }
+        if ((!filter.errorsOnly() || line.contains(ERROR_MARKER))
+            && (pattern == null || pattern.matcher(line).find())) {
+          collector.add(heading, line);
+        }
+      }
+    }
+    return collector.render(runId, lines, files);
+  }
+
+  /** Moves a completed download into the cache, or drops it, and evicts old archives. */
+  private void keep(Path partial, Path archive, boolean complete) {
+    try {
+      if (!complete) {
+        Files.deleteIfExists(partial);
+        return;
+      }
+      Files.move(partial, archive, StandardCopyOption.REPLACE_EXISTING);
+      evict(archive);
+    } catch (IOException e) {
+      logger.warn("Could not cache log archive {}: {}", archive, e.getMessage());
+    }
+  }
+
+  private void evict(Path newest) throws IOException {
+    List<Path> archives;
+    try (Stream<Path> files = Files.walk(Path.of(settings.cacheDir()))) {
+      archives =
+          files
+              .filter(file -> file.toString().endsWith(".zip") && !file.equals(newest))
+              .sorted(Comparator.comparing(WorkflowLogs::lastModified).reversed())
+              .toList();
+    }
+    for (int i = settings.maxCachedRuns() - 1; i < archives.size(); i++) {
+      Files.deleteIfExists(archives.get(i));
+    }
+  }
+
+  private Path archive(String owner, String repo, long runId) {
+    if (settings.cacheDir() == null || settings.maxCachedRuns() == 0) {
+      return null;
+    }
+    return Path.of(settings.cacheDir(), owner.toLowerCase(), repo.toLowerCase(), runId + ".zip");
+  }
+
+  private static long lastModified(Path file) {
+    try {
+      return Files.getLastModifiedTime(file).toMillis();
+    } catch (IOException e) {
+      return 0;
+    }
+  }
+
+  /** "2_Run tests.txt" becomes "Run tests". */
+  private static String displayName(String file) {
+    String name = file.endsWith(".txt") ? file.substring(0, file.length() - 4) : file;
+    return ORDINAL_PREFIX.matcher(name).replaceFirst("");
+  }
+
+  private static boolean contains(String value, String part) {
+    return isBlank(part)
+        || value.toLowerCase(Locale.ROOT).contains(part.toLowerCase(Locale.ROOT));
+  }
+
+  private static boolean isBlank(String value) {
+    return value == null || value.isBlank();
+  }
+
+  /** Keeps the first or the last {@code limit} matching lines and counts the rest. */
+  private static final class Collector {
+    private record Line(String heading, String text) {}
+
+    private final int limit;
+    private final boolean keepLast;
+    private final Deque<Line> kept = new ArrayDeque<>();
+    private long matched;
+
+    Collector(int limit, boolean keepLast) {
+      this.limit = limit;
+      this.keepLast = keepLast;
+    }
+
+    void add(String heading, String text) {
+      matched++;
+      if (kept.size() == limit) {
+        if (!keepLast) {
+          return;
+        }
+        kept.removeFirst();
+      }
+      if (text.length() > MAX_LINE_LENGTH) {
+        text = text.substring(0, MAX_LINE_LENGTH) + "...";
+      }
+      kept.addLast(new Line(heading, text));
+    }
+
+    String render(long runId, long lines, int files) {
+      var out = new StringBuilder();
+      out.append(
+          "Run %d: %d of %d lines matched in %d log files".formatted(runId, matched, lines, files));
+      if (matched > kept.size()) {
+        out.append(" (showing %s %d)".formatted(keepLast ? "last" : "first", kept.size()));
+      }
+      out.append('\n');
+      String heading = null;
+      for (Line line : kept) {
+        if (!line.heading().equals(heading)) {
+          heading = line.heading();
+          out.append("== ").append(heading).append(" ==\n");
+        }
+        out.append(line.text()).append('\n');
+      }
+      return out.toString().stripTrailing();
+    }
+  }
+}
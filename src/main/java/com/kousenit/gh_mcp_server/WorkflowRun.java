@@ -0,0 +1,65 @@
+package com.kousenit.gh_mcp_server;
+
+import com.fasterxml.jackson.core.JsonParser;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * A workflow run as the tools return it.
+ *
+ * @param databaseId the run id other run tools take
+ * @param conclusion the outcome once {@code status} is {@code completed}; null before
+ */
+public record WorkflowRun(
+    Long databaseId,
+    String name,
+    String displayTitle,
+    String workflowName,
+    String headBranch,
+    String status,
+    String conclusion,
+    String createdAt,
+    String updatedAt,
+    String url) {
+
+  /** The {@code --json} fields of a listing. */
+  static final String LIST_FIELDS =
+      "databaseId,name,displayTitle,status,conclusion,workflowName,headBranch,createdAt";
+
+  /** The {@code --json} fields of a single run. */
+  static final String VIEW_FIELDS =
+      "databaseId,name,displayTitle,status,conclusion,workflowName,headBranch,createdAt,updatedAt,url";
+
+  private static final Map<String, JsonProjection.Reader<?>> READERS =
+      Map.of(
+          "databaseId", JsonProjection::number,
+          "name", JsonProjection::text,
+          "displayTitle", JsonProjection::text,
+          "workflowName", JsonProjection::text,
+          "headBranch", JsonProjection::text,
+          "status", JsonProjection::text,
+          // gh prints an empty conclusion while the run is going
+          "conclusion", parser -> blankToNull(JsonProjection.text(parser)),
+          "createdAt", JsonProjection::text,
+          "updatedAt", JsonProjection::text,
+          "url", JsonProjection::text);
+
+  static WorkflowRun read(JsonParser parser) throws IOException {
+    var values = JsonProjection.object(parser, READERS);
+    return new WorkflowRun(
+        (Long) values.get("databaseId"),
+        (String) values.get("name"),
+        (String) values.get("displayTitle"),
+        (String) values.get("workflowName"),
+        (String) values.get("headBranch"),
+        (String) values.get("status"),
+        (String) values.get("conclusion"),
+        (String) values.get("createdAt"),
+        (String) values.get("updatedAt"),
+        (String) values.get("url"));
+  }
+
+  private static String blankToNull(String value) {
+    return value == null || value.isBlank() ? null : value;
+  }
+}
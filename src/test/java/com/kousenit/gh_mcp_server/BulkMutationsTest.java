@@ -0,0 +1,232 @@
+package com.kousenit.gh_mcp_server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Bulk Mutations Tests")
+class BulkMutationsTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private static final GithubCommand OK = new GithubCommand("done", "", 0);
+
+  private static final GithubCommand THROTTLED =
+      new GithubCommand(
+          "",
+          "HTTP 403: You have exceeded a secondary rate limit. Please wait a few minutes"
+              + " (Retry-After: 30)",
+          1);
+
+  private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+  private final List<Long> starts = new ArrayList<>();
+  private final Deque<GithubCommand> results = new ArrayDeque<>();
+
+  private final TestGithubService service =
+      new TestGithubService(new GitHubProperties("main", 30, 10, 30)) {
+        @Override
+        protected GithubCommand executeCommand(String... args) {
+          synchronized (results) {
+            super.executeCommand(args);
+            starts.add(now.get());
+            return results.isEmpty() ? OK : results.removeFirst();
+          }
+        }
+      };
+
+  private BulkMutations bulk(int maxRetries, int maxSeconds) {
+    return new BulkMutations(
+        new GitHubProperties.Bulk(1000, 1, maxRetries, maxSeconds, null),
+        service,
+        now::get,
+        now::addAndGet);
+  }
+
+  private static JsonNode json(String result) throws Exception {
+    return MAPPER.readTree(result);
+  }
+
+  @Nested
+  @DisplayName("Pacing")
+  class Pacing {
+
+    @Test
+    @DisplayName("Should space mutations out and report every item")
+    void testPaces() throws Exception {
+      var progress = json(bulk(3, 300).bulkCloseIssues("o", "r", List.of(1, 2, 3)));
+
+      assertThat(starts)
+          .containsExactly(1_700_000_000_000L, 1_700_000_001_000L, 1_700_000_002_000L);
+      assertThat(service.getAllCommands().get(1))
+          .containsExactly("gh", "issue", "close", "2", "--repo", "o/r");
+      assertThat(progress.get("done").asInt()).isEqualTo(3);
+      assertThat(progress.get("pending").asInt()).isEqualTo(0);
+      assertThat(progress.has("jobId")).isFalse();
+      assertThat(progress.get("items").get(0).get("target").asText()).isEqualTo("#1");
+      assertThat(progress.get("items").get(0).get("status").asText()).isEqualTo("done");
+    }
+
+    @Test
+    @DisplayName("Should wait out Retry-After, slow down and retry the item")
+    void testRetryAfter() throws Exception {
+      results.add(THROTTLED);
+      var bulk = bulk(3, 300);
+
+      var progress = json(bulk.bulkCommentOnIssues("o", "r", List.of(7, 8), "Closing as stale"));
+
+      assertThat(service.getAllCommands()).hasSize(3);
+      assertThat(starts.get(1) - starts.get(0)).isEqualTo(30_000L);
+      assertThat(starts.get(2) - starts.get(1)).isEqualTo(2000L);
+      assertThat(progress.get("done").asInt()).isEqualTo(2);
+      assertThat(progress.get("pacingMillis").asLong()).isEqualTo(1620L);
+    }
+
+    @Test
+    @DisplayName("Should fail an item that stays throttled, waiting a minute without Retry-After")
+    void testRetriesExhausted() throws Exception {
+      var throttled = new GithubCommand("", "HTTP 429: Too Many Requests", 1);
+      results.add(throttled);
+      results.add(throttled);
+
+      var progress = json(bulk(1, 600).bulkCloseIssues("o", "r", List.of(5)));
+
+      assertThat(starts.get(1) - starts.get(0))
+          .isEqualTo(BulkMutations.DEFAULT_RETRY_AFTER_MILLIS);
+      assertThat(progress.get("failed").asInt()).isEqualTo(1);
+      assertThat(progress.get("items").get(0).get("message").asText()).contains("429");
+    }
+
+    @Test
+    @DisplayName("Should slow down for GraphQL content-creation and secondary limits")
+    void testGraphqlThrottling() throws Exception {
+      results.add(new GithubCommand("", "GraphQL: was submitted too quickly (addComment)", 1));
+      results.add(
+          new GithubCommand(
+              "",
+              "GraphQL: You have exceeded a secondary rate limit. Please wait a few minutes before"
+                  + " you try again. If you reach out to GitHub Support for help, please include"
+                  + " the request ID 0400:3F1A:1C2B3D:1D3E4F:65A1B2C3. (addComment)",
+              1));
+
+      var progress = json(bulk(3, 600).bulkCommentOnIssues("o", "r", List.of(9), "Thanks"));
+
+      assertThat(service.getAllCommands()).hasSize(3);
+      assertThat(starts.get(1) - starts.get(0))
+          .isEqualTo(BulkMutations.DEFAULT_RETRY_AFTER_MILLIS);
+      assertThat(progress.get("done").asInt()).isEqualTo(1);
+      assertThat(progress.get("failed").asInt()).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("Should not retry ordinary failures")
+    void testOrdinaryFailure() throws Exception {
+      results.add(new GithubCommand("", "could not find issue", 1));
+
+      var progress = json(bulk(3, 300).bulkCloseIssues("o", "r", List.of(5, 6)));
+
+      assertThat(service.getAllCommands()).hasSize(2);
+      assertThat(progress.get("failed").asInt()).isEqualTo(1);
+      assertThat(progress.get("done").asInt()).isEqualTo(1);
+    }
+  }
+
+  @Nested
+  @DisplayName("Resuming")
+  class Resuming {
+
+    @Test
+    @DisplayName("Should stop at the time limit and resume the pending items")
+    void testResume() throws Exception {
+      var bulk = bulk(3, 2);
+
+      var first = json(bulk.bulkLabelIssues("o", "r", List.of(1, 2, 3, 4), "stale", null));
+
+      assertThat(first.get("done").asInt()).isEqualTo(2);
+      assertThat(first.get("pending").asInt()).isEqualTo(2);
+      assertThat(first.get("items").get(2).get("status").asText()).isEqualTo("pending");
+      assertThat(bulk.unfinishedJobs()).isEqualTo(1);
+
+      now.addAndGet(10_000);
+      var second = json(bulk.resumeBulkMutation(first.get("jobId").asText()));
+
+      assertThat(second.get("done").asInt()).isEqualTo(4);
+      assertThat(second.has("jobId")).isFalse();
+      assertThat(service.getLastCommand())
+          .containsExactly("gh", "issue", "edit", "4", "--repo", "o/r", "--add-label", "stale");
+      assertThat(bulk.unfinishedJobs()).isEqualTo(0);
+      assertThat(bulk.resumeBulkMutation(first.get("jobId").asText())).startsWith("Error:");
+    }
+
+    @Test
+    @DisplayName("Should return the progress so far when the call is interrupted")
+    void testInterrupted() throws Exception {
+      var bulk =
+          new BulkMutations(
+              new GitHubProperties.Bulk(1000, 1, 3, 300, null),
+              service,
+              now::get,
+              millis -> {
+                throw new InterruptedException();
+              });
+
+      var progress = json(bulk.bulkCloseIssues("o", "r", List.of(1, 2, 3)));
+      boolean interrupted = Thread.interrupted();
+
+      assertThat(interrupted).isTrue();
+      assertThat(progress.get("done").asInt()).isEqualTo(1);
+      assertThat(progress.get("pending").asInt()).isEqualTo(2);
+      assertThat(progress.get("jobId").asText()).hasSize(24);
+    }
+  }
+
+  @Nested
+  @DisplayName("Input")
+  class Input {
+
+    @Test
+    @DisplayName("Should run each issue once and refuse empty or invalid lists")
+    void testInput() throws Exception {
+      var bulk = bulk(3, 300);
+
+      assertThat(bulk.bulkCloseIssues("o", "r", List.of())).startsWith("Error:");
+      assertThat(bulk.bulkCloseIssues("o", "r", List.of(1, -2))).startsWith("Error:");
+      assertThat(bulk.bulkLabelIssues("o", "r", List.of(1), " ", null)).startsWith("Error:");
+      assertThat(bulk.bulkCommentOnIssues("o", "r", List.of(1), "")).startsWith("Error:");
+      assertThat(service.getAllCommands()).isEmpty();
+
+      var progress = json(bulk.bulkCloseIssues("o", "r", List.of(3, 3, 4)));
+      assertThat(progress.get("items").size()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should run items concurrently when configured to")
+    void testConcurrency() throws Exception {
+      var bulk =
+          new BulkMutations(
+              new GitHubProperties.Bulk(0, 3, 3, 300, null), service, now::get, millis -> {});
+
+      var progress = json(bulk.bulkCloseIssues("o", "r", List.of(1, 2, 3, 4, 5, 6)));
+
+      assertThat(progress.get("done").asInt()).isEqualTo(6);
+      assertThat(service.getAllCommands()).hasSize(6);
+    }
+
+    @Test
+    @DisplayName("Should read Retry-After from error text")
+    void testRetryAfterMillis() {
+      assertThat(BulkMutations.retryAfterMillis("Retry-After: 45")).isEqualTo(45_000L);
+      assertThat(BulkMutations.retryAfterMillis("retry after 5 seconds")).isEqualTo(5000L);
+      assertThat(BulkMutations.retryAfterMillis("secondary rate limit"))
+          .isEqualTo(BulkMutations.DEFAULT_RETRY_AFTER_MILLIS);
+    }
+  }
+}
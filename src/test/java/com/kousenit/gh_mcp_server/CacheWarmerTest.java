@@ -0,0 +1,156 @@
+package com.kousenit.gh_mcp_server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Cache Warmer Tests")
+class CacheWarmerTest {
+
+  private final List<CallContext> contexts = new ArrayList<>();
+  private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+  private final AtomicInteger interactive = new AtomicInteger();
+  private int remaining = 5000;
+
+  private final TestGithubService service =
+      new TestGithubService(new GitHubProperties("main", 30, 10, 30)) {
+        @Override
+        protected GithubCommand executeCommand(String... args) {
+          contexts.add(CallContext.current());
+          return super.executeCommand(args);
+        }
+      };
+
+  private CacheWarmer warmer(int maxCallsPerHour) {
+    return new CacheWarmer(
+        new GitHubProperties.Prefetch(List.of("o/a", "o/b"), 0, maxCallsPerHour, 1000),
+        60,
+        service,
+        interactive::get,
+        () -> remaining,
+        now::get,
+        Duration.ofMillis(1));
+  }
+
+  @Nested
+  @DisplayName("Warming")
+  class Warming {
+
+    @Test
+    @DisplayName("Should refresh the session-start reads of every hot repository")
+    void testWarmsResources() throws Exception {
+      assertThat(warmer(600).warm()).isTrue();
+
+      var commands = service.getAllCommands();
+      assertThat(commands).hasSize(8);
+      assertThat(commands.get(0)).startsWith("gh", "repo", "view", "o/a");
+      assertThat(commands.get(1)).containsExactly("gh", "api", "repos/o/a/branches");
+      assertThat(commands.get(2)).startsWith("gh", "workflow", "list", "--repo", "o/a");
+      assertThat(commands.get(3)).startsWith("gh", "pr", "list", "--repo", "o/a");
+      assertThat(commands.get(4)).startsWith("gh", "repo", "view", "o/b");
+    }
+
+    @Test
+    @DisplayName("Should call at prefetch priority and bypass fresh cache entries")
+    void testCallContext() throws Exception {
+      warmer(600).warm();
+
+      assertThat(contexts).isNotEmpty();
+      for (var context : contexts) {
+        assertThat(context.clientId()).isEqualTo(CacheWarmer.WARM_CLIENT);
+        assertThat(context.priority()).isEqualTo(CallPriority.PREFETCH);
+        assertThat(context.refresh()).isTrue();
+      }
+    }
+  }
+
+  @Nested
+  @DisplayName("Budget")
+  class Budget {
+
+    @Test
+    @DisplayName("Should stop at the hourly call budget and resume an hour later")
+    void testHourlyBudget() throws Exception {
+      var warmer = warmer(5);
+
+      assertThat(warmer.warm()).isFalse();
+      assertThat(service.getAllCommands()).hasSize(5);
+
+      now.addAndGet(Duration.ofHours(1).toMillis());
+      assertThat(warmer.warm()).isFalse();
+      assertThat(service.getAllCommands()).hasSize(10);
+      assertThat(warmer.abandonedCycles()).isEqualTo(2L);
+    }
+
+    @Test
+    @DisplayName("Should not warm when the rate limit is down to the reserve")
+    void testReserve() throws Exception {
+      remaining = 999;
+
+      assertThat(warmer(600).warm()).isFalse();
+      assertThat(service.getAllCommands()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should derive the interval from the cache TTL and the budget")
+    void testRefreshSeconds() {
+      var twenty = new ArrayList<String>();
+      for (int i = 0; i < 20; i++) {
+        twenty.add("o/r" + i);
+      }
+
+      assertThat(
+              CacheWarmer.refreshSeconds(
+                  new GitHubProperties.Prefetch(twenty, 0, 600, null), 60, 4))
+          .isEqualTo(480L);
+      assertThat(
+              CacheWarmer.refreshSeconds(
+                  new GitHubProperties.Prefetch(List.of("o/r"), 0, 600, null), 60, 4))
+          .isEqualTo(60L);
+      assertThat(
+              CacheWarmer.refreshSeconds(
+                  new GitHubProperties.Prefetch(twenty, 30, 600, null), 60, 4))
+          .isEqualTo(30L);
+    }
+  }
+
+  @Nested
+  @DisplayName("Interactive Traffic")
+  class InteractiveTraffic {
+
+    @Test
+    @DisplayName("Should pause while interactive calls are queued")
+    void testPauses() throws Exception {
+      var checks = new AtomicInteger();
+      var warmer =
+          new CacheWarmer(
+              new GitHubProperties.Prefetch(List.of("o/a"), 0, 600, 1000),
+              60,
+              service,
+              () -> checks.incrementAndGet() <= 3 ? 1 : 0,
+              () -> CacheWarmer.UNKNOWN,
+              now::get,
+              Duration.ofMillis(1));
+
+      assertThat(warmer.warm()).isTrue();
+      assertThat(service.getAllCommands()).hasSize(4);
+    }
+
+    @Test
+    @DisplayName("Should give up the cycle when interactive calls keep waiting")
+    void testGivesWay() throws Exception {
+      interactive.set(1);
+      var warmer = warmer(600);
+
+      assertThat(warmer.warm()).isFalse();
+      assertThat(service.getAllCommands()).isEmpty();
+    }
+  }
+}
@@ -0,0 +1,351 @@
+package com.kousenit.gh_mcp_server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("CI Watcher Tests")
+class CiWatcherTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private static final String NO_STATUSES = "{\"state\":\"pending\",\"total\":0,\"statuses\":[]}";
+
+  private final List<List<String>> calls = Collections.synchronizedList(new ArrayList<>());
+  private final AtomicInteger runPolls = new AtomicInteger();
+
+  private static GithubCommand response(int status, String etag, String body) {
+    return new GithubCommand(
+        "HTTP/2.0 %d OK\nEtag: %s\n\n%s".formatted(status, etag, body), "", status == 304 ? 1 : 0);
+  }
+
+  private static String run(String status, String conclusion) {
+    return "{\"id\":7,\"status\":\"%s\",\"conclusion\":%s}"
+        .formatted(status, conclusion == null ? "null" : "\"" + conclusion + "\"");
+  }
+
+  /** A watcher whose run endpoint answers with the body for the n-th poll (from 0). */
+  private CiWatcher watcher(IntFunction<String> runAtPoll) {
+    return new CiWatcher(
+        Duration.ofMillis(10),
+        Duration.ofMillis(40),
+        Duration.ofSeconds(5),
+        args -> {
+          calls.add(args);
+          String body = runAtPoll.apply(runPolls.getAndIncrement());
+          String etag = "\"" + body.hashCode() + "\"";
+          return args.contains("If-None-Match: " + etag)
+              ? response(304, etag, "")
+              : response(200, etag, body);
+        });
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static JsonNode json(String value) throws Exception {
+    return MAPPER.readTree(value);
+  }
+
+  private static List<String> statuses(JsonNode result) {
+    var statuses = new ArrayList<String>();
+    result.path("changes").forEach(c -> statuses.add(c.path("state").path("status").asText()));
+    return statuses;
+  }
+
+  @Nested
+  @DisplayName("Workflow Runs")
+  class WorkflowRuns {
+
+    @Test
+    @DisplayName("Should return once the run completes with every state seen")
+    void testCompletes() throws Exception {
+      var watcher =
+          watcher(
+              poll ->
+                  switch (poll) {
+                    case 0, 1 -> run("queued", null);
+                    case 2, 3 -> run("in_progress", null);
+                    default -> run("completed", "success");
+                  });
+
+      var result = json(watcher.watchRun("o", "r", 7, 10));
+
+      assertThat(result.path("terminal").asBoolean()).isTrue();
+      assertThat(result.path("timedOut").asBoolean()).isFalse();
+      assertThat(result.path("state").path("conclusion").asText()).isEqualTo("success");
+      assertThat(statuses(result)).containsExactly("queued", "in_progress", "completed");
+    }
+
+    @Test
+    @DisplayName("Should revalidate with the previous ETag")
+    void testConditionalPolls() throws Exception {
+      var watcher =
+          watcher(poll -> poll < 3 ? run("in_progress", null) : run("completed", "failure"));
+
+      watcher.watchRun("o", "r", 7, 10);
+
+      assertThat(calls.getFirst()).doesNotContain("-H");
+      assertThat(calls.get(1)).contains("--include").contains("-H");
+    }
+
+    @Test
+    @DisplayName("Should share one poller between concurrent waiters")
+    void testSharedPoller() throws Exception {
+      var watcher =
+          watcher(
+              poll -> {
+                if (poll == 0) {
+                  // Give every waiter time to join before anything changes
+                  sleep(100);
+                }
+                return poll < 8 ? run("in_progress", null) : run("completed", "success");
+              });
+
+      var waiters = new ArrayList<CompletableFuture<String>>();
+      for (int i = 0; i < 5; i++) {
+        var waiter = new CompletableFuture<String>();
+        Thread.ofVirtual().start(() -> waiter.complete(watcher.watchRun("o", "r", 7, 10)));
+        waiters.add(waiter);
+      }
+
+      for (var waiter : waiters) {
+        assertThat(json(waiter.get()).path("terminal").asBoolean()).isTrue();
+      }
+      // One poll per interval, however many waiters: completes on the ninth poll
+      assertThat(runPolls.get()).isEqualTo(9);
+      assertThat(watcher.activePollers()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should give up at the deadline and stop polling once nobody waits")
+    void testDeadline() throws Exception {
+      var watcher = watcher(poll -> run("in_progress", null));
+
+      var result = json(watcher.watchRun("o", "r", 7, 1));
+
+      assertThat(result.path("timedOut").asBoolean()).isTrue();
+      assertThat(result.path("state").path("status").asText()).isEqualTo("in_progress");
+      Thread.sleep(200);
+      assertThat(watcher.activePollers()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should poll right away when a webhook nudges the repository")
+    void testNudge() throws Exception {
+      var watcher =
+          new CiWatcher(
+              Duration.ofSeconds(30),
+              Duration.ofSeconds(30),
+              Duration.ofSeconds(5),
+              args -> {
+                String body =
+                    runPolls.getAndIncrement() == 0
+                        ? run("in_progress", null)
+                        : run("completed", "success");
+                return response(200, "\"" + body.hashCode() + "\"", body);
+              });
+      var waiter = new CompletableFuture<String>();
+      Thread.ofVirtual().start(() -> waiter.complete(watcher.watchRun("o", "r", 7, 5)));
+      while (runPolls.get() == 0) {
+        Thread.sleep(5);
+      }
+
+      watcher.nudge("O/R");
+
+      assertThat(json(waiter.get()).path("terminal").asBoolean()).isTrue();
+      assertThat(runPolls.get()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should report the error after repeated failed polls")
+    void testFailures() {
+      var watcher =
+          new CiWatcher(
+              Duration.ofMillis(10),
+              Duration.ofMillis(40),
+              Duration.ofSeconds(5),
+              args -> new GithubCommand("", "HTTP 404: Not Found", 1));
+
+      assertThat(watcher.watchRun("o", "r", 7, 10)).isEqualTo("Error: HTTP 404: Not Found");
+    }
+  }
+
+  @Nested
+  @DisplayName("Pull Request Checks")
+  class PullRequestChecks {
+
+    @Test
+    @DisplayName("Should wait for every check on the current head to complete")
+    void testChecks() throws Exception {
+      var checkPolls = new AtomicInteger();
+      var watcher =
+          new CiWatcher(
+              Duration.ofMillis(10),
+              Duration.ofMillis(40),
+              Duration.ofSeconds(5),
+              args -> {
+                if (args.get(1).startsWith("repos/o/r/pulls/")) {
+                  // Pushed to after the first poll
+                  String sha = checkPolls.get() == 0 ? "aaa" : "bbb";
+                  return response(200, sha, "{\"headSha\":\"" + sha + "\",\"state\":\"open\"}");
+                }
+                if (args.get(1).contains("/status?")) {
+                  return response(200, "none", NO_STATUSES);
+                }
+                assertThat(args.get(1)).contains(checkPolls.get() == 0 ? "/aaa/" : "/bbb/");
+                String status = checkPolls.getAndIncrement() < 2 ? "in_progress" : "completed";
+                return response(
+                    200,
+                    status,
+                    "{\"total\":2,\"checks\":[{\"name\":\"build\",\"status\":\"completed\"},"
+                        + "{\"name\":\"test\",\"status\":\"%s\"}]}".formatted(status));
+              });
+
+      var result = json(watcher.watchPullRequestChecks("o", "r", 12, 10));
+
+      assertThat(result.path("terminal").asBoolean()).isTrue();
+      assertThat(result.path("state").path("headSha").asText()).isEqualTo("bbb");
+      assertThat(result.path("state").path("pending").asInt()).isZero();
+      assertThat(result.path("target").asText()).isEqualTo("pull request o/r#12");
+    }
+  }
+
+  @Nested
+  @DisplayName("Pull Request Statuses")
+  class PullRequestStatuses {
+
+    private final List<String> paths = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * A watcher of an open pull request at head {@code aaa}, with check runs answered per page
+     * and the combined status per poll.
+     */
+    private CiWatcher watcher(IntFunction<String> checksAtPage, IntFunction<String> statusAtPoll) {
+      var statusPolls = new AtomicInteger();
+      return new CiWatcher(
+          Duration.ofMillis(10),
+          Duration.ofMillis(40),
+          Duration.ofSeconds(5),
+          args -> {
+            String path = args.get(1);
+            paths.add(path);
+            String body;
+            if (path.startsWith("repos/o/r/pulls/")) {
+              body = "{\"headSha\":\"aaa\",\"state\":\"open\"}";
+            } else if (path.contains("/status?")) {
+              body = statusAtPoll.apply(statusPolls.getAndIncrement());
+            } else {
+              body = checksAtPage.apply(Integer.parseInt(path.replaceAll(".*&page=", "")));
+            }
+            return response(200, "\"" + body.hashCode() + "\"", body);
+          });
+    }
+
+    private static String checks(int total, int count, String status) {
+      var checks = new ArrayList<String>();
+      for (int i = 0; i < count; i++) {
+        checks.add("{\"name\":\"job-%d\",\"status\":\"%s\"}".formatted(i, status));
+      }
+      return "{\"total\":%d,\"checks\":[%s]}".formatted(total, String.join(",", checks));
+    }
+
+    @Test
+    @DisplayName("Should read every page of check runs before calling the checks done")
+    void testPagedChecks() throws Exception {
+      var watcher =
+          watcher(
+              page -> page == 1 ? checks(150, 100, "completed") : checks(150, 50, "in_progress"),
+              poll -> NO_STATUSES);
+
+      var result = json(watcher.watchPullRequestChecks("o", "r", 12, 1));
+
+      assertThat(result.path("terminal").asBoolean()).isFalse();
+      assertThat(result.path("state").path("total").asInt()).isEqualTo(150);
+      assertThat(result.path("state").path("pending").asInt()).isEqualTo(50);
+      assertThat(result.path("state").path("checks").size()).isEqualTo(150);
+      assertThat(paths)
+          .contains(
+              "repos/o/r/commits/aaa/check-runs?per_page=100&page=1",
+              "repos/o/r/commits/aaa/check-runs?per_page=100&page=2");
+    }
+
+    @Test
+    @DisplayName("Should finish a pull request gated only by commit statuses")
+    void testCommitStatuses() throws Exception {
+      var watcher =
+          watcher(
+              page -> checks(0, 0, "completed"),
+              poll -> {
+                String state = poll < 2 ? "pending" : "success";
+                return ("{\"state\":\"%s\",\"total\":1,"
+                        + "\"statuses\":[{\"context\":\"ci/jenkins\",\"state\":\"%s\"}]}")
+                    .formatted(state, state);
+              });
+
+      var result = json(watcher.watchPullRequestChecks("o", "r", 12, 10));
+
+      assertThat(result.path("terminal").asBoolean()).isTrue();
+      assertThat(result.path("state").path("total").asInt()).isEqualTo(1);
+      assertThat(result.path("state").path("pending").asInt()).isZero();
+      assertThat(result.path("state").path("statuses").get(0).path("context").asText())
+          .isEqualTo("ci/jenkins");
+      assertThat(result.path("changes").get(0).path("state").path("pending").asInt())
+          .isEqualTo(1);
+    }
+  }
+
+  @Nested
+  @DisplayName("Poll Interval")
+  class PollInterval {
+
+    private final Duration min = Duration.ofSeconds(5);
+    private final Duration max = Duration.ofSeconds(60);
+
+    @Test
+    @DisplayName("Should back off while unchanged and reset after a change")
+    void testBackoff() {
+      assertThat(CiWatcher.nextInterval(min, false, "in_progress", 0, min, max))
+          .isEqualTo(Duration.ofMillis(7500));
+      var longest = Duration.ofSeconds(50);
+      assertThat(CiWatcher.nextInterval(longest, false, "in_progress", 0, min, max))
+          .isEqualTo(max);
+      assertThat(CiWatcher.nextInterval(max, true, "in_progress", 0, min, max)).isEqualTo(min);
+    }
+
+    @Test
+    @DisplayName("Should poll queued runs less often and never faster than X-Poll-Interval")
+    void testPhaseAndServerHint() {
+      assertThat(CiWatcher.nextInterval(min, true, "queued", 0, min, max))
+          .isEqualTo(Duration.ofSeconds(15));
+      assertThat(CiWatcher.nextInterval(min, true, "in_progress", 90, min, max))
+          .isEqualTo(Duration.ofSeconds(90));
+    }
+
+    @Test
+    @DisplayName("Should parse X-Poll-Interval from response headers")
+    void testHeader() {
+      var response =
+          ConditionalReads.parse("HTTP/2.0 200 OK\nX-Poll-Interval: 60\nEtag: \"x\"\n\n{}");
+
+      assertThat(response.pollIntervalSeconds()).isEqualTo(60);
+      assertThat(response.etag()).isEqualTo("\"x\"");
+    }
+  }
+}
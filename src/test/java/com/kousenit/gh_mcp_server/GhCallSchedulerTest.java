@@ -0,0 +1,240 @@
+package com.kousenit.gh_mcp_server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("GitHub Call Scheduler Tests")
+class GhCallSchedulerTest {
+
+  private final AtomicLong nanos = new AtomicLong();
+
+  private GhCallScheduler scheduler(int slots, int bulkCap) {
+    return new GhCallScheduler(
+        slots, new GitHubProperties.Scheduler(bulkCap, 1, 5000), nanos::get);
+  }
+
+  /** Releases granted tickets one at a time and records the order clients were served in. */
+  private static List<String> drain(
+      GhCallScheduler scheduler, GhCallScheduler.Ticket running, List<Entry> queued) {
+    List<String> order = new ArrayList<>();
+    var current = running;
+    for (int i = 0; i < queued.size(); i++) {
+      scheduler.release(current);
+      for (Entry entry : queued) {
+        if (!order.contains(entry.name()) && scheduler.isGranted(entry.ticket())) {
+          order.add(entry.name());
+          current = entry.ticket();
+        }
+      }
+    }
+    return order;
+  }
+
+  private record Entry(String name, GhCallScheduler.Ticket ticket) {}
+
+  @Nested
+  @DisplayName("Slot allocation")
+  class SlotAllocation {
+
+    @Test
+    @DisplayName("Should grant a free slot immediately")
+    void testImmediateGrant() throws InterruptedException {
+      var scheduler = scheduler(2, 1);
+
+      var ticket = scheduler.acquire("a", CallPriority.INTERACTIVE);
+
+      assertThat(scheduler.stats().running().get(CallPriority.INTERACTIVE)).isEqualTo(1);
+      scheduler.release(ticket);
+      assertThat(scheduler.stats().running().get(CallPriority.INTERACTIVE)).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("Should keep bulk work within its cap and leave slots for interactive calls")
+    void testBulkCap() throws InterruptedException {
+      var scheduler = scheduler(2, 1);
+      scheduler.acquire("a", CallPriority.BULK);
+
+      var secondBulk = scheduler.enqueue("a", CallPriority.BULK);
+      var interactive = scheduler.enqueue("b", CallPriority.INTERACTIVE);
+
+      assertThat(scheduler.isGranted(interactive)).isTrue();
+      assertThat(scheduler.stats().queued().get(CallPriority.BULK)).isEqualTo(1);
+      scheduler.withdraw(secondBulk);
+      assertThat(scheduler.stats().queued().get(CallPriority.BULK)).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("Should serve interactive calls ahead of earlier queued bulk work")
+    void testInteractiveFirst() throws InterruptedException {
+      var scheduler = scheduler(1, 1);
+      var running = scheduler.acquire("a", CallPriority.INTERACTIVE);
+      var bulk = scheduler.enqueue("a", CallPriority.BULK);
+      var interactive = scheduler.enqueue("b", CallPriority.INTERACTIVE);
+
+      scheduler.release(running);
+
+      assertThat(scheduler.isGranted(interactive)).isTrue();
+      assertThat(scheduler.isGranted(bulk)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should withdraw a ticket whose waiter is interrupted")
+    void testInterruptWithdraws() throws InterruptedException {
+      var scheduler = scheduler(1, 1);
+      scheduler.acquire("a", CallPriority.INTERACTIVE);
+      var queued = scheduler.enqueue("b", CallPriority.INTERACTIVE);
+      var interrupted = new AtomicBoolean();
+      Thread waiter =
+          Thread.ofVirtual()
+              .start(
+                  () -> {
+                    try {
+                      scheduler.await(queued);
+                    } catch (InterruptedException e) {
+                      interrupted.set(true);
+                    }
+                  });
+
+      waiter.interrupt();
+      waiter.join();
+
+      assertThat(interrupted.get()).isTrue();
+      assertThat(scheduler.queuedInteractive()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should move a promoted ticket into the interactive queue")
+    void testPromote() throws InterruptedException {
+      var scheduler = scheduler(1, 1);
+      var running = scheduler.acquire("a", CallPriority.INTERACTIVE);
+      var prefetch = scheduler.enqueue("warmer", CallPriority.PREFETCH);
+      var bulk = scheduler.enqueue("b", CallPriority.BULK);
+
+      scheduler.promote(prefetch, CallPriority.INTERACTIVE);
+      scheduler.release(running);
+
+      assertThat(scheduler.isGranted(prefetch)).isTrue();
+      assertThat(scheduler.isGranted(bulk)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should grant optional work only a spare slot within its class cap")
+    void testTryAcquire() throws InterruptedException {
+      var scheduler = scheduler(3, 1);
+      var bulk = scheduler.acquire("a", CallPriority.BULK);
+
+      assertThat(scheduler.tryAcquire("a", CallPriority.BULK)).isNull();
+      var spare = scheduler.tryAcquire("a", CallPriority.INTERACTIVE);
+      assertThat(spare).isNotNull();
+      scheduler.acquire("b", CallPriority.INTERACTIVE);
+      assertThat(scheduler.tryAcquire("a", CallPriority.INTERACTIVE)).isNull();
+
+      scheduler.release(spare);
+      var queued = scheduler.enqueue("c", CallPriority.BULK);
+      assertThat(scheduler.tryAcquire("a", CallPriority.INTERACTIVE)).isNull();
+      scheduler.release(bulk);
+      assertThat(scheduler.isGranted(queued)).isTrue();
+    }
+  }
+
+  @Nested
+  @DisplayName("Fairness")
+  class Fairness {
+
+    @Test
+    @DisplayName("Should alternate between clients instead of serving one client's backlog")
+    void testRoundRobinAcrossClients() throws InterruptedException {
+      var scheduler = scheduler(1, 1);
+      var running = scheduler.acquire("busy", CallPriority.INTERACTIVE);
+      var queued =
+          List.of(
+              new Entry("busy-1", scheduler.enqueue("busy", CallPriority.INTERACTIVE)),
+              new Entry("busy-2", scheduler.enqueue("busy", CallPriority.INTERACTIVE)),
+              new Entry("busy-3", scheduler.enqueue("busy", CallPriority.INTERACTIVE)),
+              new Entry("quiet-1", scheduler.enqueue("quiet", CallPriority.INTERACTIVE)));
+
+      var order = drain(scheduler, running, queued);
+
+      assertThat(order).containsExactly("busy-1", "quiet-1", "busy-2", "busy-3");
+    }
+
+    @Test
+    @DisplayName("Should give each session of one client application a lane of its own")
+    void testLanePerSession() throws InterruptedException {
+      var scheduler = scheduler(1, 1);
+      String busy = CallContext.clientId("agent-app", "session-1");
+      String sibling = CallContext.clientId("agent-app", "session-2");
+      var running = scheduler.acquire(busy, CallPriority.INTERACTIVE);
+      var queued =
+          List.of(
+              new Entry("busy-1", scheduler.enqueue(busy, CallPriority.INTERACTIVE)),
+              new Entry("busy-2", scheduler.enqueue(busy, CallPriority.INTERACTIVE)),
+              new Entry("sibling-1", scheduler.enqueue(sibling, CallPriority.INTERACTIVE)));
+
+      var order = drain(scheduler, running, queued);
+
+      assertThat(busy).isEqualTo("agent-app#session-1").isNotEqualTo(sibling);
+      assertThat(CallContext.clientId(null, null)).isEqualTo(CallContext.DEFAULT_CLIENT);
+      assertThat(order).containsExactly("busy-1", "sibling-1", "busy-2");
+    }
+
+    @Test
+    @DisplayName("Should share slots between classes by weight under contention")
+    void testWeightedShare() throws InterruptedException {
+      var scheduler = scheduler(1, 1);
+      var running = scheduler.acquire("a", CallPriority.INTERACTIVE);
+      var queued = new ArrayList<Entry>();
+      for (int i = 0; i < 8; i++) {
+        queued.add(new Entry("i" + i, scheduler.enqueue("a", CallPriority.INTERACTIVE)));
+      }
+      queued.add(new Entry("bulk", scheduler.enqueue("b", CallPriority.BULK)));
+
+      var order = drain(scheduler, running, queued);
+
+      // With weights 8:3 the bulk class gets a turn long before the interactive backlog is empty
+      assertThat(order.indexOf("bulk")).isLessThan(5);
+    }
+
+    @Test
+    @DisplayName("Should serve a starving call next regardless of its class")
+    void testStarvationProtection() throws InterruptedException {
+      var scheduler =
+          new GhCallScheduler(1, new GitHubProperties.Scheduler(1, 1, 1000), nanos::get);
+      var running = scheduler.acquire("a", CallPriority.INTERACTIVE);
+      var prefetch = scheduler.enqueue("warmer", CallPriority.PREFETCH);
+      nanos.addAndGet(TimeUnit.SECONDS.toNanos(2));
+      var interactive = scheduler.enqueue("b", CallPriority.INTERACTIVE);
+
+      scheduler.release(running);
+
+      assertThat(scheduler.isGranted(prefetch)).isTrue();
+      assertThat(scheduler.isGranted(interactive)).isFalse();
+    }
+  }
+
+  @Nested
+  @DisplayName("Classification")
+  class Classification {
+
+    @Test
+    @DisplayName("Should treat listings, searches and pagination as bulk work")
+    void testClassify() {
+      assertThat(GhCallScheduler.classify(List.of("issue", "list", "--repo", "o/r")))
+          .isEqualTo(CallPriority.BULK);
+      assertThat(GhCallScheduler.classify(List.of("search", "repos", "java")))
+          .isEqualTo(CallPriority.BULK);
+      assertThat(GhCallScheduler.classify(List.of("api", "repos/o/r/issues", "--paginate")))
+          .isEqualTo(CallPriority.BULK);
+      assertThat(GhCallScheduler.classify(List.of("issue", "view", "1", "--repo", "o/r")))
+          .isEqualTo(CallPriority.INTERACTIVE);
+    }
+  }
+}
@@ -0,0 +1,233 @@
+package com.kousenit.gh_mcp_server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayName("GitHub Cassette Tests")
+class GhCassetteTest {
+
+  private static final List<String> REPO_VIEW = List.of("repo", "view", "o/r", "--json", "name");
+
+  @TempDir Path tempDir;
+
+  private GitHubProperties.Cassette settings(
+      GitHubProperties.Cassette.Mode mode, boolean replayLatency) {
+    return new GitHubProperties.Cassette(
+        mode, tempDir.resolve("traffic.jsonl.gz").toString(), replayLatency, false);
+  }
+
+  private GhCassette recorder() {
+    return new GhCassette(settings(GitHubProperties.Cassette.Mode.RECORD, false));
+  }
+
+  private GhCassette player(boolean replayLatency) {
+    return new GhCassette(settings(GitHubProperties.Cassette.Mode.REPLAY, replayLatency));
+  }
+
+  private static void recordSpawn(GhCassette cassette, List<String> args, String output) {
+    cassette.record(GhCassette.SPAWN, args, System.nanoTime(), new GithubCommand(output, "", 0));
+  }
+
+  /** An executor serving gh results from the cassette, with no gh executable to fall back on. */
+  private static GhCommandExecutor executor(GhCassette player) {
+    var properties = new GitHubProperties("main", 30, 10, 30);
+    var launcher = new GhProcessLauncher("/nonexistent/gh", Map.of());
+    return new GhCommandExecutor(
+        properties,
+        launcher,
+        new GhTokenProvider(launcher, Map.of("GH_TOKEN", "test-token")),
+        new GhResponseCache(properties),
+        new GhCallScheduler(properties),
+        player);
+  }
+
+  @Nested
+  @DisplayName("Recording")
+  class Recording {
+
+    @Test
+    @DisplayName("Should write calls and spawns with their results and timing")
+    void testRecordsBothKinds() {
+      var cassette = recorder();
+      long start = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(20);
+      cassette.record(GhCassette.SPAWN, REPO_VIEW, start, new GithubCommand("out", "warn", 0));
+      cassette.record(GhCassette.CALL, REPO_VIEW, start, new GithubCommand("out", "warn", 0));
+      cassette.close();
+
+      var recordings = GhCassette.read(tempDir.resolve("traffic.jsonl.gz"));
+
+      assertThat(recordings).hasSize(2);
+      assertThat(recordings.getFirst().kind()).isEqualTo(GhCassette.SPAWN);
+      assertThat(recordings.getFirst().args()).isEqualTo(REPO_VIEW);
+      assertThat(recordings.getFirst().result()).isEqualTo(new GithubCommand("out", "warn", 0));
+      assertThat(recordings.getFirst().nanos() >= TimeUnit.MILLISECONDS.toNanos(20)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should keep records readable without an orderly close")
+    void testReadableWithoutClose() {
+      var cassette = recorder();
+      recordSpawn(cassette, REPO_VIEW, "a");
+
+      assertThat(GhCassette.read(tempDir.resolve("traffic.jsonl.gz"))).hasSize(1);
+      cassette.close();
+    }
+
+    @Test
+    @DisplayName("Should not record when recording is off")
+    void testOff() {
+      var cassette = new GhCassette(settings(GitHubProperties.Cassette.Mode.OFF, false));
+
+      recordSpawn(cassette, REPO_VIEW, "a");
+
+      assertThat(tempDir.resolve("traffic.jsonl.gz").toFile().exists()).isFalse();
+    }
+  }
+
+  @Nested
+  @DisplayName("Replay")
+  class Replay {
+
+    @Test
+    @DisplayName("Should serve repeated invocations in recorded order, then repeat the last")
+    void testReplayOrder() {
+      var cassette = recorder();
+      recordSpawn(cassette, REPO_VIEW, "1");
+      recordSpawn(cassette, REPO_VIEW, "2");
+      cassette.close();
+
+      var player = player(false);
+
+      assertThat(player.replay(REPO_VIEW, null).output()).isEqualTo("1");
+      assertThat(player.replay(REPO_VIEW, null).output()).isEqualTo("2");
+      assertThat(player.replay(REPO_VIEW, null).output()).isEqualTo("2");
+    }
+
+    @Test
+    @DisplayName("Should report commands that were never recorded")
+    void testUnknownCommand() {
+      var cassette = recorder();
+      recordSpawn(cassette, REPO_VIEW, "r");
+      cassette.close();
+
+      var result = player(false).replay(List.of("api", "user"), null);
+
+      assertThat(result.exitCode()).isEqualTo(1);
+      assertThat(result.error()).contains("No recorded result for: gh api user");
+    }
+
+    @Test
+    @DisplayName("Should ignore a conditional header the recording did not have")
+    void testConditionalHeaderIgnored() {
+      var cassette = recorder();
+      var recorded = List.of("api", "repos/o/r/branches", "--include");
+      recordSpawn(cassette, recorded, "[]");
+      cassette.close();
+
+      var result =
+          player(false)
+              .replay(
+                  List.of("api", "repos/o/r/branches", "--include", "-H", "If-None-Match: \"x\""),
+                  null);
+
+      assertThat(result.output()).isEqualTo("[]");
+    }
+
+    @Test
+    @DisplayName("Should reproduce recorded latency when asked to")
+    void testReplayLatency() {
+      var cassette = recorder();
+      long start = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(100);
+      cassette.record(GhCassette.SPAWN, REPO_VIEW, start, new GithubCommand("slow", "", 0));
+      cassette.close();
+
+      var player = player(true);
+      long before = System.nanoTime();
+      player.replay(REPO_VIEW, null);
+
+      assertThat(System.nanoTime() - before >= TimeUnit.MILLISECONDS.toNanos(100)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should run the executor from the cassette without spawning gh")
+    void testExecutorReplay() {
+      var cassette = recorder();
+      recordSpawn(cassette, REPO_VIEW, "r");
+      cassette.record(GhCassette.CALL, REPO_VIEW, System.nanoTime(), new GithubCommand("r", "", 0));
+      cassette.close();
+      var player = player(false);
+      var executor = executor(player);
+
+      for (var call : player.calls()) {
+        assertThat(executor.execute(call.args())).isEqualTo(call.result());
+      }
+      assertThat(player.calls()).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Should refuse streamed commands, which are never recorded")
+    void testStreamRefused() {
+      var cassette = recorder();
+      recordSpawn(cassette, REPO_VIEW, "r");
+      cassette.close();
+      var read = new boolean[1];
+
+      var result =
+          executor(player(false))
+              .stream(
+                  REPO_VIEW,
+                  Duration.ofSeconds(5),
+                  stdout -> {
+                    read[0] = true;
+                    return "";
+                  });
+
+      assertThat(result.exitCode()).isEqualTo(1);
+      assertThat(result.error()).contains("Streamed commands are not recorded");
+      assertThat(read[0]).isFalse();
+    }
+  }
+
+  @Nested
+  @DisplayName("Driving")
+  class Driving {
+
+    @Test
+    @DisplayName("Should reissue recorded calls at their arrival times and report differences")
+    void testDriveCalls() throws InterruptedException {
+      var other = List.of("issue", "view", "1", "--repo", "o/r");
+      var cassette = recorder();
+      recordSpawn(cassette, REPO_VIEW, "r");
+      recordSpawn(cassette, other, "fresh");
+      cassette.record(GhCassette.CALL, REPO_VIEW, System.nanoTime(), new GithubCommand("r", "", 0));
+      cassette.record(
+          GhCassette.CALL,
+          other,
+          System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100),
+          new GithubCommand("stale", "", 0));
+      cassette.close();
+      var player = player(false);
+      var driver =
+          new GhCassetteDriver(
+              settings(GitHubProperties.Cassette.Mode.REPLAY, false),
+              player,
+              executor(player)::execute);
+
+      var report = driver.run();
+
+      assertThat(report.calls()).isEqualTo(2);
+      assertThat(report.mismatched()).containsExactly(other);
+      assertThat(report.elapsedMillis()).isGreaterThanOrEqualTo(100);
+      assertThat(report.p99Millis()).isGreaterThanOrEqualTo(report.p50Millis());
+    }
+  }
+}
@@ -0,0 +1,311 @@
+package com.kousenit.gh_mcp_server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("GitHub Command Executor Tests")
+class GhCommandExecutorTest {
+
+  private static final List<String> REPO_VIEW =
+      List.of("repo", "view", "octocat/Hello-World", "--json", "name");
+
+  private StubExecutor executor;
+
+  @BeforeEach
+  void setUp() {
+    executor = new StubExecutor();
+  }
+
+  /** Executor whose gh processes are simulated and can be held open by the test. */
+  private static class StubExecutor extends GhCommandExecutor {
+    private final AtomicInteger spawns = new AtomicInteger();
+    private final List<CompletableFuture<Void>> cancellations = new CopyOnWriteArrayList<>();
+    private volatile CompletableFuture<Void> release = CompletableFuture.completedFuture(null);
+    private volatile GithubCommand nextResult = new GithubCommand("ok", "", 0);
+    private final List<List<String>> spawned = new CopyOnWriteArrayList<>();
+
+    StubExecutor() {
+      this(new GitHubProperties("main", 30, 10, 30));
+    }
+
+    private StubExecutor(GitHubProperties properties) {
+      this(properties, new GhProcessLauncher(properties));
+    }
+
+    private StubExecutor(GitHubProperties properties, GhProcessLauncher launcher) {
+      this(properties, launcher, new GhResponseCache(properties));
+    }
+
+    private StubExecutor(
+        GitHubProperties properties, GhProcessLauncher launcher, GhResponseCache cache) {
+      super(
+          properties,
+          launcher,
+          new GhTokenProvider(launcher, Map.of("GH_TOKEN", "test-token")),
+          cache,
+          new GhCallScheduler(properties),
+          new GhCassette(properties));
+    }
+
+    @Override
+    protected GithubCommand spawn(
+        List<String> args, Map<String, String> environment, CompletableFuture<Void> cancellation) {
+      spawns.incrementAndGet();
+      spawned.add(args);
+      if (cancellation != null) {
+        cancellations.add(cancellation);
+        CompletableFuture.anyOf(release, cancellation).join();
+        if (cancellation.isDone()) {
+          return new GithubCommand("", "Command cancelled", -1);
+        }
+      }
+      return nextResult;
+    }
+  }
+
+  private static void await(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!condition.getAsBoolean()) {
+      if (System.currentTimeMillis() > deadline) {
+        throw new AssertionError("Condition not met within 5 seconds");
+      }
+      Thread.sleep(5);
+    }
+  }
+
+  @Nested
+  @DisplayName("Caching")
+  class Caching {
+
+    @Test
+    @DisplayName("Should serve repeated reads from the cache")
+    void testReadIsCached() {
+      GithubCommand first = executor.execute(REPO_VIEW);
+      GithubCommand second = executor.execute(REPO_VIEW);
+
+      assertThat(first.output()).isEqualTo("ok");
+      assertThat(second).isEqualTo(first);
+      assertThat(executor.spawns.get()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should re-read and update a fresh entry when the context asks for a refresh")
+    void testRefreshBypassesCache() {
+      executor.execute(REPO_VIEW);
+      executor.nextResult = new GithubCommand("newer", "", 0);
+
+      var refreshed =
+          CallContext.callAs(
+              new CallContext("warmer", CallPriority.PREFETCH, true),
+              () -> executor.execute(REPO_VIEW));
+
+      assertThat(refreshed.output()).isEqualTo("newer");
+      assertThat(executor.execute(REPO_VIEW).output()).isEqualTo("newer");
+      assertThat(executor.spawns.get()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should not cache failed reads")
+    void testFailureIsNotCached() {
+      executor.nextResult = new GithubCommand("", "HTTP 502", 1);
+
+      executor.execute(REPO_VIEW);
+      executor.execute(REPO_VIEW);
+
+      assertThat(executor.spawns.get()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should never cache mutations")
+    void testMutationIsNotCached() {
+      List<String> close = List.of("issue", "close", "1", "--repo", "octocat/Hello-World");
+
+      executor.execute(close);
+      executor.execute(close);
+
+      assertThat(executor.spawns.get()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should invalidate cached reads of a repository after a mutation")
+    void testMutationInvalidatesRepository() {
+      executor.execute(REPO_VIEW);
+      executor.execute("issue", "close", "1", "--repo", "octocat/Hello-World");
+      executor.execute(REPO_VIEW);
+
+      assertThat(executor.spawns.get()).isEqualTo(3);
+    }
+  }
+
+  @Nested
+  @DisplayName("Single flight")
+  class SingleFlight {
+
+    @Test
+    @DisplayName("Should run concurrent identical reads only once")
+    void testConcurrentReadsCoalesce() throws Exception {
+      executor.release = new CompletableFuture<>();
+      List<GithubCommand> results = new CopyOnWriteArrayList<>();
+      List<Thread> callers = new ArrayList<>();
+      for (int i = 0; i < 5; i++) {
+        callers.add(Thread.ofVirtual().start(() -> results.add(executor.execute(REPO_VIEW))));
+      }
+
+      await(() -> executor.coalescedCalls() == 4);
+      executor.release.complete(null);
+      for (Thread caller : callers) {
+        caller.join();
+      }
+
+      assertThat(executor.spawns.get()).isEqualTo(1);
+      assertThat(results).hasSize(5);
+      assertThat(results.stream().allMatch(result -> result.output().equals("ok"))).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should keep a shared read running when only one caller gives up")
+    void testAbandoningCallerDoesNotCancelOthers() throws Exception {
+      executor.release = new CompletableFuture<>();
+      var abandoned = new AtomicReference<GithubCommand>();
+      var remaining = new AtomicReference<GithubCommand>();
+      Thread first = Thread.ofVirtual().start(() -> abandoned.set(executor.execute(REPO_VIEW)));
+      await(() -> executor.spawns.get() == 1);
+      Thread second = Thread.ofVirtual().start(() -> remaining.set(executor.execute(REPO_VIEW)));
+      await(() -> executor.coalescedCalls() == 1);
+
+      first.interrupt();
+      first.join();
+      executor.release.complete(null);
+      second.join();
+
+      assertThat(abandoned.get().error()).contains("interrupted");
+      assertThat(remaining.get().output()).isEqualTo("ok");
+      assertThat(executor.cancellations.getFirst().isDone()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should cancel a read once every caller has given up")
+    void testLastCallerLeavingCancels() throws Exception {
+      executor.release = new CompletableFuture<>();
+      Thread caller = Thread.ofVirtual().start(() -> executor.execute(REPO_VIEW));
+      await(() -> executor.spawns.get() == 1);
+
+      caller.interrupt();
+      caller.join();
+
+      await(() -> executor.cancellations.getFirst().isDone());
+      executor.release.complete(null);
+      assertThat(executor.execute(REPO_VIEW).output()).isEqualTo("ok");
+      assertThat(executor.spawns.get()).isEqualTo(2);
+    }
+  }
+
+  @Nested
+  @DisplayName("Conditional revalidation")
+  class Revalidation {
+
+    private static final List<String> BRANCHES = List.of("api", "repos/o/r/branches");
+
+    @Test
+    @DisplayName("Should capture the ETag of a REST read and strip the headers")
+    void testCapturesEtag() {
+      executor.nextResult = new GithubCommand("HTTP/2.0 200 OK\nEtag: \"v1\"\n\n[]", "", 0);
+
+      GithubCommand result = executor.execute(BRANCHES);
+
+      assertThat(result.output()).isEqualTo("[]");
+      assertThat(executor.spawned.getFirst()).contains("--include");
+    }
+
+    @Test
+    @DisplayName("Should renew an expired entry when GitHub answers 304")
+    void testNotModifiedRenewsEntry() {
+      var clock = new AtomicLong();
+      var properties = new GitHubProperties("main", 30, 10, 30);
+      var launcher = new GhProcessLauncher(properties);
+      executor =
+          new StubExecutor(
+              properties,
+              launcher,
+              new GhResponseCache(new GitHubProperties.Cache(60, 100, null), clock::get));
+      executor.nextResult = new GithubCommand("HTTP/2.0 200 OK\nEtag: \"v1\"\n\n[]", "", 0);
+      executor.execute(BRANCHES);
+      clock.addAndGet(120_000);
+      executor.nextResult = new GithubCommand("HTTP/2.0 304 Not Modified\n\n", "", 1);
+
+      GithubCommand result = executor.execute(BRANCHES);
+
+      assertThat(result.output()).isEqualTo("[]");
+      assertThat(executor.spawned.getLast()).contains("If-None-Match: \"v1\"");
+      assertThat(executor.revalidatedCalls()).isEqualTo(1);
+      assertThat(executor.execute(BRANCHES).output()).isEqualTo("[]");
+      assertThat(executor.spawns.get()).isEqualTo(2);
+    }
+  }
+
+  @Nested
+  @DisplayName("Command classification")
+  class Classification {
+
+    @Test
+    @DisplayName("Should treat list and view commands as read-only")
+    void testReadOnlyCommands() {
+      assertThat(CommandUtils.isReadOnly(List.of("issue", "list", "--repo", "o/r"))).isTrue();
+      assertThat(CommandUtils.isReadOnly(List.of("run", "view", "1", "--repo", "o/r"))).isTrue();
+      assertThat(CommandUtils.isReadOnly(List.of("search", "repos", "java"))).isTrue();
+      assertThat(CommandUtils.isReadOnly(List.of("api", "repos/o/r/branches"))).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should treat writes and API calls with fields as mutations")
+    void testMutations() {
+      assertThat(CommandUtils.isReadOnly(List.of("issue", "create", "--repo", "o/r"))).isFalse();
+      assertThat(CommandUtils.isReadOnly(List.of("pr", "merge", "1", "--repo", "o/r"))).isFalse();
+      assertThat(
+              CommandUtils.isReadOnly(
+                  List.of("api", "repos/o/r/git/refs", "--method", "POST", "--field", "ref=x")))
+          .isFalse();
+      assertThat(CommandUtils.isReadOnly(List.of("api", "repos/o/r/labels", "-f", "name=x")))
+          .isFalse();
+      assertThat(
+              CommandUtils.isReadOnly(
+                  List.of("api", "graphql", "-f", "query=mutation { addStar }")))
+          .isFalse();
+      assertThat(CommandUtils.isReadOnly(List.of("api", "graphql", "-f", "query={ viewer }")))
+          .isTrue();
+    }
+
+    @Test
+    @DisplayName("Should extract the target repository")
+    void testRepository() {
+      assertThat(CommandUtils.repository(List.of("issue", "list", "--repo", "o/r")))
+          .hasValue("o/r");
+      assertThat(CommandUtils.repository(List.of("api", "repos/o/r/contents/a.md?ref=x")))
+          .hasValue("o/r");
+      assertThat(CommandUtils.repository(List.of("repo", "view", "o/r", "--json", "name")))
+          .hasValue("o/r");
+      assertThat(
+              CommandUtils.repository(
+                  List.of("api", "graphql", "-f", "query=q", "-f", "owner=o", "-f", "name=r")))
+          .hasValue("o/r");
+      assertThat(
+              CommandUtils.repository(
+                  List.of("api", "graphql", "-f", "query=mutation", "-f", "nameWithOwner=o/r")))
+          .hasValue("o/r");
+      assertThat(CommandUtils.repository(List.of("api", "user"))).isEmpty();
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package com.kousenit.gh_mcp_server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Execution Plan Tests")
+class GhPlanTest {
+
+  @Nested
+  @DisplayName("Scheduling")
+  class Scheduling {
+
+    @Test
+    @DisplayName("Should run independent steps in parallel")
+    void testParallel() {
+      var bothStarted = new CountDownLatch(2);
+      var outcome =
+          new GhPlan()
+              .step("a", results -> awaitBoth(bothStarted, "A"))
+              .step("b", results -> awaitBoth(bothStarted, "B"))
+              .step("c", List.of("a", "b"), results -> results.get("a") + results.get("b"))
+              .run();
+
+      assertThat(outcome.succeeded()).isTrue();
+      assertThat(outcome.resultOr("c")).isEqualTo("AB");
+    }
+
+    @Test
+    @DisplayName("Should compute a shared dependency once")
+    void testComputedOnce() {
+      var calls = new AtomicInteger();
+      var outcome =
+          new GhPlan()
+              .step("sha", results -> "abc" + calls.incrementAndGet())
+              .step("x", List.of("sha"), results -> results.get("sha"))
+              .step("y", List.of("sha"), results -> results.get("sha"))
+              .run();
+
+      assertThat(calls.get()).isEqualTo(1);
+      assertThat(outcome.results().get("x")).isEqualTo("abc1");
+      assertThat(outcome.results().get("y")).isEqualTo("abc1");
+    }
+
+    @Test
+    @DisplayName("Should run steps under the caller's context")
+    void testCallContext() {
+      var context = new CallContext("client-a", CallPriority.BULK);
+      var outcome =
+          CallContext.callAs(
+              context,
+              () -> new GhPlan().step("who", results -> CallContext.current().clientId()).run());
+
+      assertThat(outcome.resultOr("who")).isEqualTo("client-a");
+    }
+  }
+
+  @Nested
+  @DisplayName("Failures")
+  class Failures {
+
+    @Test
+    @DisplayName("Should skip the dependents of a failed step but not the others")
+    void testFailure() {
+      var dependentRan = new AtomicInteger();
+      var outcome =
+          new GhPlan()
+              .step("sha", results -> "Error: HTTP 404")
+              .step("other", results -> "fine")
+              .step("branch", List.of("sha"), results -> "ran " + dependentRan.incrementAndGet())
+              .run();
+
+      assertThat(outcome.succeeded()).isFalse();
+      assertThat(outcome.failedStep()).isEqualTo("sha");
+      assertThat(outcome.resultOr("branch")).isEqualTo("Error: HTTP 404");
+      assertThat(outcome.results()).containsEntry("other", "fine");
+      assertThat(dependentRan.get()).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("Should turn exceptions into errors")
+    void testException() {
+      var outcome =
+          new GhPlan()
+              .step(
+                  "boom",
+                  results -> {
+                    throw new IllegalStateException("bad output");
+                  })
+              .run();
+
+      assertThat(outcome.error()).isEqualTo("Error: bad output");
+    }
+
+    @Test
+    @DisplayName("Should refuse dependencies on undeclared or duplicate steps")
+    void testDeclaration() {
+      assertThatThrownBy(() -> new GhPlan().step("a", List.of("b"), results -> ""))
+          .isInstanceOf(IllegalArgumentException.class);
+      assertThatThrownBy(() -> new GhPlan().step("a", results -> "").step("a", results -> ""))
+          .isInstanceOf(IllegalArgumentException.class);
+    }
+  }
+
+  private static String awaitBoth(CountDownLatch latch, String result) {
+    latch.countDown();
+    try {
+      return latch.await(5, TimeUnit.SECONDS) ? result : "Error: Steps ran one after another";
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return "Error: Interrupted";
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package com.kousenit.gh_mcp_server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+/**
+ * Compares the per-call overhead of the original executeCommand implementation with {@link
+ * GhProcessLauncher}. Both sides run {@code true}, so the numbers are pure spawn and capture cost.
+ * The JDK reads its launch mechanism once per JVM, so each side is measured in its own child JVM.
+ *
+ * <p>Run with {@code ./gradlew test --tests GhProcessLauncherBenchmark -Dtest.benchmark=true}.
+ */
+@EnabledOnOs(OS.LINUX)
+@EnabledIfSystemProperty(named = "test.benchmark", matches = "true")
+@DisplayName("GitHub CLI Process Launcher Benchmark")
+class GhProcessLauncherBenchmark {
+
+  private static final int WARMUP = 100;
+  private static final int ITERATIONS = 1000;
+
+  @Test
+  @DisplayName("Launcher should have lower per-call overhead than the original implementation")
+  void compareSpawnOverhead() throws Exception {
+    String original = runProbe("original");
+    String launcher = runProbe("launcher");
+
+    System.out.printf("original: %s%nlauncher: %s%n", original, launcher);
+    assertThat(median(launcher)).isLessThan(median(original));
+  }
+
+  private static String runProbe(String mode) throws Exception {
+    String java = ProcessHandle.current().info().command().orElse("java");
+    Process process =
+        new ProcessBuilder(
+                java, "-cp", System.getProperty("java.class.path"), Probe.class.getName(), mode)
+            .redirectError(ProcessBuilder.Redirect.DISCARD)
+            .start();
+    String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+    assertThat(process.waitFor()).isEqualTo(0);
+    return output.trim();
+  }
+
+  private static long median(String summary) {
+    return Long.parseLong(summary.substring(summary.indexOf("p50=") + 4, summary.indexOf("ns")));
+  }
+
+  /** Entry point of the child JVMs; prints one latency summary line. */
+  public static final class Probe {
+
+    public static void main(String[] args) throws Exception {
+      boolean tuned = args[0].equals("launcher");
+      GhProcessLauncher launcher = null;
+      if (tuned) {
+        GhProcessLauncher.preferFastLaunchMechanism();
+        launcher = new GhProcessLauncher("true", System.getenv());
+      }
+
+      long[] nanos = new long[ITERATIONS];
+      for (int i = -WARMUP; i < ITERATIONS; i++) {
+        long start = System.nanoTime();
+        if (tuned) {
+          launcher.run(List.of(), Map.of(), Duration.ofSeconds(10));
+        } else {
+          legacyRun("true");
+        }
+        if (i >= 0) {
+          nanos[i] = System.nanoTime() - start;
+        }
+      }
+
+      Arrays.sort(nanos);
+      System.out.printf(
+          "p50=%dns p90=%dns p99=%dns mechanism=%s%n",
+          nanos[ITERATIONS / 2],
+          nanos[ITERATIONS * 9 / 10],
+          nanos[ITERATIONS * 99 / 100],
+          System.getProperty(GhProcessLauncher.LAUNCH_MECHANISM_PROPERTY, "default"));
+    }
+
+    /** Copy of the executeCommand body this project started with. */
+    private static GithubCommand legacyRun(String executable) throws Exception {
+      var processBuilder = new ProcessBuilder(executable);
+      var process = processBuilder.start();
+      var output = new StringBuilder();
+      var error = new StringBuilder();
+      try (var outputReader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+          var errorReader = new BufferedReader(new InputStreamReader(process.getErrorStream()))) {
+        var outputThread =
+            Thread.ofVirtual()
+                .start(
+                    () -> outputReader.lines().forEach(line -> output.append(line).append("\n")));
+        var errorThread =
+            Thread.ofVirtual()
+                .start(() -> errorReader.lines().forEach(line -> error.append(line).append("\n")));
+        process.waitFor(30, TimeUnit.SECONDS);
+        outputThread.join(1000);
+        errorThread.join(1000);
+        return new GithubCommand(
+            output.toString().trim(), error.toString().trim(), process.exitValue());
+      }
+    }
+  }
+}
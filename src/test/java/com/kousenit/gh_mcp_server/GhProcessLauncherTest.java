@@ -0,0 +1,115 @@
+package com.kousenit.gh_mcp_server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+@EnabledOnOs({OS.LINUX, OS.MAC})
+@DisplayName("GitHub CLI Process Launcher Tests")
+class GhProcessLauncherTest {
+
+  @TempDir Path binDir;
+
+  private Map<String, String> parentEnvironment;
+
+  @BeforeEach
+  void setUp() {
+    parentEnvironment =
+        Map.of(
+            "PATH", binDir + ":" + System.getenv("PATH"),
+            "HOME", System.getProperty("user.home"),
+            "SECRET_UNRELATED_VARIABLE", "do-not-leak");
+  }
+
+  private GhProcessLauncher launcherFor(String script) throws IOException {
+    Path gh = binDir.resolve("gh");
+    Files.writeString(gh, "#!/bin/sh\n" + script + "\n");
+    Files.setPosixFilePermissions(gh, PosixFilePermissions.fromString("rwxr-xr-x"));
+    return new GhProcessLauncher("gh", parentEnvironment);
+  }
+
+  @Test
+  @DisplayName("Should resolve gh to an absolute path once")
+  void testResolvesExecutableOnPath() throws IOException {
+    GhProcessLauncher launcher = launcherFor("exit 0");
+
+    assertThat(launcher.executable()).isEqualTo(binDir.resolve("gh").toString());
+  }
+
+  @Test
+  @DisplayName("Should fall back to the configured name when gh is not on PATH")
+  void testUnresolvedExecutable() {
+    GhProcessLauncher launcher = new GhProcessLauncher("gh-does-not-exist", Map.of("PATH", "/"));
+
+    GithubCommand result = launcher.run(List.of("--version"), Map.of(), Duration.ofSeconds(5));
+
+    assertThat(launcher.executable()).isEqualTo("gh-does-not-exist");
+    assertThat(result.exitCode()).isEqualTo(-1);
+    assertThat(result.error()).startsWith("Failed to execute command");
+  }
+
+  @Test
+  @DisplayName("Should capture stdout, stderr and exit code separately")
+  void testCapturesOutput() throws IOException {
+    GhProcessLauncher launcher = launcherFor("echo \"out $1\"; echo err >&2; exit 3");
+
+    GithubCommand result = launcher.run(List.of("arg"), Map.of(), Duration.ofSeconds(5));
+
+    assertThat(result.output()).isEqualTo("out arg");
+    assertThat(result.error()).isEqualTo("err");
+    assertThat(result.exitCode()).isEqualTo(3);
+  }
+
+  @Test
+  @DisplayName("Should pass a minimized environment with gh quieting variables")
+  void testMinimizedEnvironment() throws IOException {
+    GhProcessLauncher launcher = launcherFor("env");
+
+    GithubCommand result =
+        launcher.run(List.of(), Map.of("EXTRA_VARIABLE", "yes"), Duration.ofSeconds(5));
+
+    assertThat(result.output())
+        .contains("GH_NO_UPDATE_NOTIFIER=1", "GH_PROMPT_DISABLED=1", "NO_COLOR=1")
+        .contains("EXTRA_VARIABLE=yes")
+        .doesNotContain("SECRET_UNRELATED_VARIABLE");
+  }
+
+  @Test
+  @DisplayName("Should kill the process when the timeout expires")
+  void testTimeout() throws IOException {
+    GhProcessLauncher launcher = launcherFor("sleep 10");
+
+    GithubCommand result = launcher.run(List.of(), Map.of(), Duration.ofMillis(200));
+
+    assertThat(result.exitCode()).isEqualTo(-1);
+    assertThat(result.error()).contains("timed out");
+    assertThat(launcher.metrics().timeouts()).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Should record spawn latency metrics")
+  void testMetrics() throws IOException {
+    GhProcessLauncher launcher = launcherFor("echo ok");
+
+    for (int i = 0; i < 3; i++) {
+      launcher.run(List.of(), Map.of(), Duration.ofSeconds(5));
+    }
+
+    GhProcessLauncher.Metrics metrics = launcher.metrics();
+    assertThat(metrics.spawns()).isEqualTo(3);
+    assertThat(metrics.meanSpawnMicros()).isGreaterThan(0.0);
+    assertThat(metrics.maxSpawnMicros()).isGreaterThanOrEqualTo(metrics.meanSpawnMicros());
+  }
+}
@@ -0,0 +1,100 @@
+package com.kousenit.gh_mcp_server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.modelcontextprotocol.client.McpClient;
+import io.modelcontextprotocol.client.McpSyncClient;
+import io.modelcontextprotocol.client.transport.HttpClientSseClientTransport;
+import io.modelcontextprotocol.spec.McpSchema;
+import java.time.Duration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Reads {@code gh://} resources the way a client does, with {@code resources/read} requests sent
+ * over SSE to the running server, so the SDK's routing of concrete URIs to the templates is part
+ * of what is tested.
+ */
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = "github.cache.snapshotDir=")
+@ActiveProfiles("http")
+@DisplayName("MCP Resources Protocol Tests")
+class GhResourcesProtocolTest {
+
+  @TestConfiguration
+  static class RecordedGithub {
+
+    @Bean
+    TestGithubService testGithubService() {
+      return new TestGithubService(new GitHubProperties("main", 30, 10, 30));
+    }
+
+    @Bean
+    @Primary
+    GhResources recordedResources(TestGithubService service) {
+      var settings = new GitHubProperties.Resources(0, 10, null);
+      return new GhResources(
+          settings, service, (sessionId, uri) -> {}, System::currentTimeMillis);
+    }
+  }
+
+  @LocalServerPort int port;
+
+  @Autowired TestGithubService service;
+
+  private McpSyncClient client;
+
+  @BeforeEach
+  void connect() {
+    client =
+        McpClient.sync(HttpClientSseClientTransport.builder("http://localhost:" + port).build())
+            .requestTimeout(Duration.ofSeconds(10))
+            .build();
+    client.initialize();
+  }
+
+  @AfterEach
+  void disconnect() {
+    client.closeGracefully();
+  }
+
+  private String read(String uri) {
+    var result = client.readResource(new McpSchema.ReadResourceRequest(uri));
+    return ((McpSchema.TextResourceContents) result.contents().getFirst()).text();
+  }
+
+  @Test
+  @DisplayName("Should list the resource templates")
+  void testTemplates() {
+    var templates = client.listResourceTemplates().resourceTemplates();
+
+    assertThat(templates.stream().map(McpSchema.ResourceTemplate::uriTemplate).toList())
+        .containsExactlyInAnyOrderElementsOf(
+            GhResources.TEMPLATES.stream().map(GhResources.Template::uriTemplate).toList());
+  }
+
+  @Test
+  @DisplayName("Should read concrete issue and file URIs through the templates")
+  void testReadConcreteUris() {
+    service.setNextResult("{\"number\":5,\"title\":\"Bug\"}");
+
+    assertThat(read("gh://octo/repo/issues/5")).contains("\"title\":\"Bug\"");
+    assertThat(service.getLastCommand()).startsWith("gh", "issue", "view", "5");
+
+    service.setNextResult("# Hello");
+
+    assertThat(read("gh://octo/repo/main/docs%2FREADME.md")).isEqualTo("# Hello");
+    assertThat(service.getLastCommand())
+        .containsExactly("gh", "api", "repos/octo/repo/contents/docs/README.md?ref=main");
+  }
+}
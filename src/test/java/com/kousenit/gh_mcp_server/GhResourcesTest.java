@@ -0,0 +1,296 @@
+package com.kousenit.gh_mcp_server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("MCP Resources Tests")
+class GhResourcesTest {
+
+  private static final String ISSUE = "gh://octocat/Hello-World/issues/42";
+  private static final String FILE = "gh://octocat/Hello-World/main/docs/README.md";
+
+  private final List<String> notified = new ArrayList<>();
+  private final List<CallContext> contexts = new ArrayList<>();
+  private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+
+  private final TestGithubService service =
+      new TestGithubService(new GitHubProperties("main", 30, 10, 30)) {
+        @Override
+        protected GithubCommand executeCommand(String... args) {
+          contexts.add(CallContext.current());
+          return super.executeCommand(args);
+        }
+      };
+
+  private GhResources resources(int maxWatched, int maxChecksPerPoll) {
+    return new GhResources(
+        new GitHubProperties.Resources(60, maxWatched, maxChecksPerPoll),
+        service,
+        (sessionId, uri) -> notified.add(sessionId + " " + uri),
+        now::get);
+  }
+
+  private GhResources resources(int maxWatched) {
+    return resources(maxWatched, 50);
+  }
+
+  @Nested
+  @DisplayName("URI Parsing")
+  class UriParsing {
+
+    @Test
+    @DisplayName("Should parse issues, pull requests and workflow runs")
+    void testNumbered() {
+      var issue = GhResources.Address.parse(ISSUE);
+      var pull = GhResources.Address.parse("gh://octocat/Hello-World/pulls/7");
+      var run = GhResources.Address.parse("gh://octocat/Hello-World/runs/123456");
+
+      assertThat(issue.kind()).isEqualTo(GhResources.Kind.ISSUE);
+      assertThat(issue.repository()).isEqualTo("octocat/Hello-World");
+      assertThat(issue.number()).isEqualTo(42);
+      assertThat(pull.kind()).isEqualTo(GhResources.Kind.PULL_REQUEST);
+      assertThat(run.kind()).isEqualTo(GhResources.Kind.RUN);
+      assertThat(run.number()).isEqualTo(123456);
+    }
+
+    @Test
+    @DisplayName("Should parse files with nested paths and encoded refs")
+    void testFiles() {
+      var file = GhResources.Address.parse(FILE);
+      var branch = GhResources.Address.parse("gh://octocat/Hello-World/feature%2Fx/a%20b.txt");
+      var named = GhResources.Address.parse("gh://octocat/Hello-World/issues/notes.md");
+
+      assertThat(file.kind()).isEqualTo(GhResources.Kind.FILE);
+      assertThat(file.ref()).isEqualTo("main");
+      assertThat(file.path()).isEqualTo("docs/README.md");
+      assertThat(branch.ref()).isEqualTo("feature/x");
+      assertThat(branch.path()).isEqualTo("a b.txt");
+      assertThat(named.kind()).isEqualTo(GhResources.Kind.FILE);
+      assertThat(named.ref()).isEqualTo("issues");
+    }
+
+    @Test
+    @DisplayName("Should reject URIs that address nothing")
+    void testInvalid() {
+      assertThatThrownBy(() -> GhResources.Address.parse("https://github.com/octocat/Hello-World"))
+          .isInstanceOf(IllegalArgumentException.class);
+      assertThatThrownBy(() -> GhResources.Address.parse("gh://octocat/Hello-World/main"))
+          .isInstanceOf(IllegalArgumentException.class);
+      assertThatThrownBy(() -> GhResources.Address.parse("gh://octocat//main/README.md"))
+          .isInstanceOf(IllegalArgumentException.class);
+      assertThatThrownBy(() -> GhResources.Address.parse("gh://octocat/Hello-World/main/a;b"))
+          .isInstanceOf(IllegalArgumentException.class);
+    }
+  }
+
+  @Nested
+  @DisplayName("Reading")
+  class Reading {
+
+    @Test
+    @DisplayName("Should read through the same tool calls as the tools without watching")
+    void testReads() {
+      var resources = resources(10);
+      service.setNextResult("{\"number\":42,\"title\":\"Bug\"}");
+
+      var issue = resources.read(ISSUE);
+      assertThat(issue.mimeType()).isEqualTo("application/json");
+      assertThat(issue.text()).contains("\"title\":\"Bug\"");
+      assertThat(service.getLastCommand())
+          .startsWith("gh", "issue", "view", "42", "--repo", "octocat/Hello-World");
+
+      service.setNextResult("# Hello");
+      var file = resources.read(FILE);
+      assertThat(file.mimeType()).isEqualTo("text/plain");
+      assertThat(file.text()).isEqualTo("# Hello");
+      assertThat(service.getLastCommand())
+          .containsExactly(
+              "gh", "api", "repos/octocat/Hello-World/contents/docs/README.md?ref=main");
+      assertThat(resources.watchedResources()).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("Should fail reads GitHub cannot serve")
+    void testError() {
+      var resources = resources(10);
+      service.setNextError("HTTP 404: Not Found");
+      service.setNextExitCode(1);
+
+      assertThatThrownBy(() -> resources.read(ISSUE))
+          .isInstanceOf(IllegalArgumentException.class)
+          .hasMessageContaining("404");
+    }
+
+    @Test
+    @DisplayName("Should offer one resource template per kind")
+    void testSpecifications() {
+      var specifications = resources(10).specifications();
+
+      assertThat(specifications).hasSize(GhResources.TEMPLATES.size());
+      assertThat(specifications.getFirst().resourceTemplate().uriTemplate())
+          .isEqualTo("gh://{owner}/{repo}/issues/{number}");
+    }
+  }
+
+  @Nested
+  @DisplayName("Change Notifications")
+  class ChangeNotifications {
+
+    @Test
+    @DisplayName("Should notify the subscribed sessions only, and only when the content changes")
+    void testNotifiesOnChange() {
+      var resources = resources(10);
+      service.setNextResult("v1");
+      resources.subscribe("session-1", FILE);
+      resources.subscribe("session-2", FILE);
+      resources.subscribe("session-3", ISSUE);
+      resources.read("gh://octocat/Hello-World/issues/7");
+
+      assertThat(resources.check(null)).isEmpty();
+      assertThat(notified).isEmpty();
+
+      service.setNextResult("v2");
+      resources.unsubscribe("session-3", ISSUE);
+      assertThat(resources.check(null)).containsExactly(FILE);
+      assertThat(resources.check(null)).isEmpty();
+      assertThat(notified).containsExactly("session-1 " + FILE, "session-2 " + FILE);
+    }
+
+    @Test
+    @DisplayName("Should refuse subscriptions to resources GitHub cannot serve")
+    void testSubscribeError() {
+      var resources = resources(10);
+      service.setNextError("HTTP 404: Not Found");
+      service.setNextExitCode(1);
+
+      assertThatThrownBy(() -> resources.subscribe("session-1", ISSUE))
+          .isInstanceOf(IllegalArgumentException.class)
+          .hasMessageContaining("404");
+      assertThatThrownBy(() -> resources.subscribe("session-1", "gh://octocat/Hello-World/main"))
+          .isInstanceOf(IllegalArgumentException.class);
+      assertThat(resources.watchedResources()).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("Should check at prefetch priority and bypass fresh cache entries")
+    void testCallContext() {
+      var resources = resources(10);
+      service.setNextResult("v1");
+      resources.subscribe("session-1", FILE);
+      contexts.clear();
+
+      resources.check(null);
+
+      assertThat(contexts).hasSize(2);
+      assertThat(contexts.getFirst().clientId()).isEqualTo(GhResources.WATCH_CLIENT);
+      assertThat(contexts.getFirst().priority()).isEqualTo(CallPriority.PREFETCH);
+      assertThat(contexts.getFirst().refresh()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should check an unchanged resource with one read the cache can revalidate")
+    void testProbe() {
+      var resources = resources(10);
+      service.setNextResult("{\"number\":42}");
+      resources.subscribe("session-1", ISSUE);
+      resources.check(null);
+      service.clearCommands();
+
+      assertThat(resources.check(null)).isEmpty();
+
+      assertThat(service.getAllCommands())
+          .containsExactly(List.of("gh", "api", "repos/octocat/Hello-World/issues/42"));
+      assertThat(
+              ConditionalReads.isRevalidatable(
+                  List.of("api", "repos/octocat/Hello-World/issues/42")))
+          .isTrue();
+    }
+
+    @Test
+    @DisplayName("Should check at most maxChecksPerPoll resources, those checked longest ago first")
+    void testMaxChecksPerPoll() {
+      var resources = resources(10, 2);
+      service.setNextResult("v1");
+      for (int number = 1; number <= 3; number++) {
+        resources.subscribe("session-1", "gh://octocat/Hello-World/issues/" + number);
+      }
+      now.addAndGet(1000);
+      resources.check(null);
+      now.addAndGet(1000);
+      service.clearCommands();
+
+      resources.check(null);
+
+      var probed =
+          service.getAllCommands().stream()
+              .filter(command -> command.get(1).equals("api"))
+              .map(List::getLast)
+              .toList();
+      assertThat(probed)
+          .containsExactly(
+              "repos/octocat/Hello-World/issues/3", "repos/octocat/Hello-World/issues/1");
+    }
+
+    @Test
+    @DisplayName("Should check only the repository a webhook was about")
+    void testRepositoryFilter() {
+      var resources = resources(10);
+      service.setNextResult("v1");
+      resources.subscribe("session-1", FILE);
+      resources.subscribe("session-1", "gh://octocat/Spoon-Knife/main/README.md");
+      service.clearCommands();
+
+      service.setNextResult("v2");
+      assertThat(resources.check("octocat/spoon-knife"))
+          .containsExactly("gh://octocat/Spoon-Knife/main/README.md");
+      assertThat(service.getAllCommands()).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("Should stop watching once the last subscribed session unsubscribes or closes")
+    void testUnsubscribe() {
+      var resources = resources(10);
+      service.setNextResult("v1");
+      resources.subscribe("session-1", FILE);
+      resources.subscribe("session-2", FILE);
+      resources.subscribe("session-2", ISSUE);
+
+      resources.unsubscribe("session-1", FILE);
+      assertThat(resources.watchedResources()).isEqualTo(2);
+      resources.sessionClosed("session-2");
+      assertThat(resources.watchedResources()).isEqualTo(0);
+
+      service.setNextResult("v2");
+      assertThat(resources.check(null)).isEmpty();
+      assertThat(notified).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should refuse subscriptions to more than maxWatched resources")
+    void testMaxWatched() {
+      var resources = resources(2);
+      service.setNextResult("v1");
+      resources.subscribe("session-1", "gh://octocat/Hello-World/issues/1");
+      resources.subscribe("session-1", "gh://octocat/Hello-World/issues/2");
+
+      assertThatThrownBy(
+              () -> resources.subscribe("session-1", "gh://octocat/Hello-World/issues/3"))
+          .isInstanceOf(IllegalArgumentException.class)
+          .hasMessageContaining("Already watching 2 resources");
+      resources.subscribe("session-2", "gh://octocat/Hello-World/issues/1");
+
+      service.setNextResult("v2");
+      assertThat(resources.check(null))
+          .containsExactly(
+              "gh://octocat/Hello-World/issues/1", "gh://octocat/Hello-World/issues/2");
+      assertThat(notified).hasSize(3);
+    }
+  }
+}
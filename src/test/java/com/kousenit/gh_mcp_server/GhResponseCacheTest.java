@@ -0,0 +1,152 @@
+package com.kousenit.gh_mcp_server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayName("GitHub Response Cache Tests")
+class GhResponseCacheTest {
+
+  private static final List<String> BRANCHES = List.of("api", "repos/o/r/branches");
+  private static final List<String> REPO_VIEW = List.of("repo", "view", "o/r", "--json", "name");
+
+  @TempDir Path snapshotDir;
+
+  private final AtomicLong now = new AtomicLong(1_000_000);
+
+  private GhResponseCache cache() {
+    return new GhResponseCache(
+        new GitHubProperties.Cache(60, 100, snapshotDir.toString()), now::get);
+  }
+
+  @Nested
+  @DisplayName("Snapshots")
+  class Snapshots {
+
+    @Test
+    @DisplayName("Should serve entries persisted by a previous instance")
+    void testRoundTrip() {
+      var first = cache();
+      first.put(REPO_VIEW, new GithubCommand("{\"name\":\"r\"}", "", 0));
+      first.put(BRANCHES, new GithubCommand("[]", "", 0), "\"abc\"");
+      first.persist();
+
+      var second = cache();
+
+      assertThat(second.get(REPO_VIEW).map(GithubCommand::output)).hasValue("{\"name\":\"r\"}");
+      assertThat(second.lookup(BRANCHES).map(GhResponseCache.Entry::etag)).hasValue("\"abc\"");
+    }
+
+    @Test
+    @DisplayName("Should keep expired entries with an ETag for revalidation")
+    void testExpiredEntriesKeepEtag() {
+      var first = cache();
+      first.put(REPO_VIEW, new GithubCommand("view", "", 0));
+      first.put(BRANCHES, new GithubCommand("[]", "", 0), "\"abc\"");
+      now.addAndGet(120_000);
+      first.persist();
+
+      var second = cache();
+
+      assertThat(second.get(BRANCHES)).isEmpty();
+      assertThat(second.lookup(BRANCHES)).isPresent();
+      assertThat(second.lookup(REPO_VIEW)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should carry over persisted entries that were not used")
+    void testUnusedEntriesCarriedOver() {
+      var first = cache();
+      first.put(REPO_VIEW, new GithubCommand("view", "", 0));
+      first.persist();
+      cache().persist();
+
+      assertThat(cache().get(REPO_VIEW)).isPresent();
+    }
+
+    @Test
+    @DisplayName("Should drop persisted entries of a repository that was invalidated")
+    void testInvalidationReachesSnapshot() {
+      var first = cache();
+      first.put(REPO_VIEW, new GithubCommand("view", "", 0));
+      first.persist();
+
+      var second = cache();
+      second.invalidateRepository("o/r");
+      second.persist();
+
+      assertThat(cache().get(REPO_VIEW)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should drop records whose content hash does not match")
+    void testCorruptRecordDropped() throws IOException {
+      var first = cache();
+      first.put(REPO_VIEW, new GithubCommand("original", "", 0));
+      first.persist();
+      Path file = snapshotDir.resolve(GhResponseCache.SNAPSHOT_FILE);
+      // Latin-1 maps every byte to one char, so the binary layout survives the round trip
+      String content = Files.readString(file, StandardCharsets.ISO_8859_1);
+      Files.writeString(
+          file, content.replace("original", "tampered"), StandardCharsets.ISO_8859_1);
+
+      assertThat(cache().get(REPO_VIEW)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should start empty from a missing or truncated file")
+    void testUnreadableSnapshot() throws IOException {
+      assertThat(cache().get(REPO_VIEW)).isEmpty();
+
+      Files.write(snapshotDir.resolve(GhResponseCache.SNAPSHOT_FILE), new byte[] {0x47, 0x48});
+
+      assertThat(cache().get(REPO_VIEW)).isEmpty();
+    }
+  }
+
+  @Nested
+  @DisplayName("Conditional reads")
+  class Conditional {
+
+    @Test
+    @DisplayName("Should only revalidate single-page REST reads")
+    void testRevalidatable() {
+      assertThat(ConditionalReads.isRevalidatable(BRANCHES)).isTrue();
+      assertThat(ConditionalReads.isRevalidatable(List.of("api", "repos/o/r/issues", "--paginate")))
+          .isFalse();
+      assertThat(ConditionalReads.isRevalidatable(List.of("api", "graphql", "-f", "query={x}")))
+          .isFalse();
+      assertThat(ConditionalReads.isRevalidatable(REPO_VIEW)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should split status, ETag and body from included headers")
+    void testParse() {
+      var response =
+          ConditionalReads.parse(
+              "HTTP/2.0 200 OK\r\nContent-Type: application/json\r\nEtag: W/\"abc\"\r\n\r\n[1]");
+
+      assertThat(response.status()).isEqualTo(200);
+      assertThat(response.etag()).isEqualTo("W/\"abc\"");
+      assertThat(response.body()).isEqualTo("[1]");
+    }
+
+    @Test
+    @DisplayName("Should pass through output without headers")
+    void testParseWithoutHeaders() {
+      var response = ConditionalReads.parse("[1]");
+
+      assertThat(response.status()).isEqualTo(0);
+      assertThat(response.body()).isEqualTo("[1]");
+    }
+  }
+}
@@ -0,0 +1,252 @@
+package com.kousenit.gh_mcp_server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Partitioned Search Tests")
+class GhSearchTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private static final Pattern CREATED =
+      Pattern.compile("created:(\\d{4}-\\d{2}-\\d{2})\\.\\.(\\d{4}-\\d{2}-\\d{2})");
+
+  /** 100 repositories created on each of the first 25 days of 2020. */
+  private static final LocalDate FIRST = LocalDate.of(2020, 1, 1);
+
+  private static final LocalDate LAST = LocalDate.of(2020, 1, 25);
+
+  private final AtomicLong now =
+      new AtomicLong(LocalDate.of(2020, 2, 1).toEpochDay() * 86_400_000L);
+  private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+  private final List<Long> sleeps = Collections.synchronizedList(new ArrayList<>());
+  private final Deque<GithubCommand> failures = new ArrayDeque<>();
+
+  private GhSearch search(int perMinute) {
+    return new GhSearch(
+        new GitHubProperties.Search(perMinute, 10, 4, 5000, 3),
+        this::respond,
+        now::get,
+        millis -> {
+          sleeps.add(millis);
+          now.addAndGet(millis);
+        });
+  }
+
+  /** Answers like the search API over the repositories above, at most 1,000 per query. */
+  private GithubCommand respond(List<String> args) {
+    synchronized (failures) {
+      if (!failures.isEmpty()) {
+        return failures.removeFirst();
+      }
+    }
+    String path = args.get(1);
+    requests.add(path);
+    var params = new HashMap<String, String>();
+    for (String pair : path.substring(path.indexOf('?') + 1).split("&")) {
+      int equals = pair.indexOf('=');
+      params.put(
+          pair.substring(0, equals),
+          URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+    }
+    LocalDate from = FIRST;
+    LocalDate to = LAST;
+    var created = CREATED.matcher(params.get("q"));
+    if (created.find()) {
+      from = max(from, LocalDate.parse(created.group(1)));
+      to = min(to, LocalDate.parse(created.group(2)));
+    }
+    var names = new ArrayList<String>();
+    for (var day = to; !day.isBefore(from); day = day.minusDays(1)) {
+      for (int i = 0; i < 100; i++) {
+        names.add(day + "-" + i);
+      }
+    }
+    int perPage = Integer.parseInt(params.get("per_page"));
+    int page = Integer.parseInt(params.get("page"));
+    var items = new ArrayList<Map<String, Object>>();
+    for (int i = (page - 1) * perPage; i < Math.min(page * perPage, names.size()); i++) {
+      if (i < GhSearch.MAX_RESULTS_PER_QUERY) {
+        items.add(
+            Map.of(
+                "full_name", "o/" + names.get(i),
+                "html_url", "https://github.com/o/" + names.get(i),
+                "stargazers_count", 1,
+                "owner", Map.of("login", "o")));
+      }
+    }
+    try {
+      String json =
+          MAPPER.writeValueAsString(
+              Map.of(
+                  "total_count", names.size(), "incomplete_results", false, "items", items));
+      return new GithubCommand(json, "", 0);
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static LocalDate max(LocalDate a, LocalDate b) {
+    return a.isAfter(b) ? a : b;
+  }
+
+  private static LocalDate min(LocalDate a, LocalDate b) {
+    return a.isBefore(b) ? a : b;
+  }
+
+  private static JsonNode json(String result) throws Exception {
+    return MAPPER.readTree(result);
+  }
+
+  @Nested
+  @DisplayName("Paging")
+  class Paging {
+
+    @Test
+    @DisplayName("Should page through a query within 1,000 results without splitting it")
+    void testSingleQuery() throws Exception {
+      var result = json(search(30).search(GhSearch.Kind.REPOSITORIES, "language:java", 250));
+
+      assertThat(result.get("totalCount").asLong()).isEqualTo(2500L);
+      assertThat(result.get("returned").asInt()).isEqualTo(250);
+      assertThat(result.get("partitions").asInt()).isEqualTo(1);
+      assertThat(result.get("items").get(0).get("fullName").asText()).isEqualTo("o/2020-01-25-0");
+      assertThat(requests).hasSize(3);
+      assertThat(requests.getFirst()).contains("q=language%3Ajava").contains("per_page=100");
+    }
+
+    @Test
+    @DisplayName("Should ask for only as many results as the limit on one page")
+    void testSmallLimit() throws Exception {
+      var result = json(search(30).search(GhSearch.Kind.REPOSITORIES, "java", 5));
+
+      assertThat(result.get("returned").asInt()).isEqualTo(5);
+      assertThat(requests).containsExactly("search/repositories?q=java&per_page=5&page=1");
+    }
+  }
+
+  @Nested
+  @DisplayName("Partitioning")
+  class Partitioning {
+
+    @Test
+    @DisplayName("Should split past 1,000 results into date ranges and merge them newest first")
+    void testPartitions() throws Exception {
+      var result = json(search(10_000).search(GhSearch.Kind.REPOSITORIES, "java", 1500));
+
+      var items = result.get("items");
+      var urls = new HashSet<String>();
+      items.forEach(item -> urls.add(item.get("url").asText()));
+      assertThat(result.get("returned").asInt()).isEqualTo(1500);
+      assertThat(urls).hasSize(1500);
+      assertThat(result.get("partitions").asInt()).isGreaterThan(1);
+      assertThat(result.get("incomplete").asBoolean()).isFalse();
+      assertThat(items.get(0).get("fullName").asText()).isEqualTo("o/2020-01-25-0");
+      assertThat(items.get(1499).get("fullName").asText()).isEqualTo("o/2020-01-11-99");
+      assertThat(requests.stream().filter(r -> r.contains("per_page=100&")).count())
+          .isEqualTo(16L);
+    }
+
+    @Test
+    @DisplayName("Should partition on a qualifier the query does not use yet")
+    void testPartitionQualifier() {
+      assertThat(GhSearch.partitionQualifier(GhSearch.Kind.REPOSITORIES, "java"))
+          .isEqualTo("created");
+      assertThat(GhSearch.partitionQualifier(GhSearch.Kind.REPOSITORIES, "java created:>2020"))
+          .isEqualTo("pushed");
+      assertThat(GhSearch.partitionQualifier(GhSearch.Kind.CODE, "foo")).isEqualTo("size");
+      assertThat(GhSearch.partitionQualifier(GhSearch.Kind.CODE, "foo size:<100")).isNull();
+    }
+  }
+
+  @Nested
+  @DisplayName("Rate Limits")
+  class RateLimits {
+
+    @Test
+    @DisplayName("Should spend the minute's allowance and then wait for tokens")
+    void testBucket() {
+      search(2).search(GhSearch.Kind.REPOSITORIES, "java", 300);
+
+      assertThat(requests).hasSize(3);
+      assertThat(sleeps).containsExactly(30_000L);
+    }
+
+    @Test
+    @DisplayName("Should hold back and retry a throttled request")
+    void testThrottled() throws Exception {
+      failures.add(new GithubCommand("", "HTTP 403: API rate limit exceeded (Retry-After: 20)", 1));
+
+      var result = json(search(30).search(GhSearch.Kind.REPOSITORIES, "java", 10));
+
+      assertThat(result.get("returned").asInt()).isEqualTo(10);
+      assertThat(sleeps).hasSize(1);
+      assertThat(sleeps.getFirst()).isGreaterThanOrEqualTo(20_000L);
+    }
+
+    @Test
+    @DisplayName("Should return other failures as errors")
+    void testFailure() {
+      failures.add(new GithubCommand("", "HTTP 422: Validation Failed", 1));
+
+      assertThat(search(30).search(GhSearch.Kind.CODE, "foo", 10))
+          .isEqualTo("Error: HTTP 422: Validation Failed");
+      assertThat(search(30).search(GhSearch.Kind.CODE, " ", 10)).startsWith("Error:");
+    }
+  }
+
+  @Nested
+  @DisplayName("Results")
+  class Results {
+
+    @Test
+    @DisplayName("Should read issues and pull requests with their repository")
+    void testIssues() throws Exception {
+      var search =
+          new GhSearch(
+              new GitHubProperties.Search(null, null, null, null, null),
+              args ->
+                  new GithubCommand(
+                      """
+                      {"total_count": 2, "incomplete_results": true, "items": [
+                        {"number": 7, "title": "Bug", "state": "open",
+                         "repository_url": "https://api.github.com/repos/o/r",
+                         "html_url": "https://github.com/o/r/issues/7", "user": {"login": "ann"}},
+                        {"number": 8, "title": "Fix", "state": "closed",
+                         "repository_url": "https://api.github.com/repos/o/r",
+                         "html_url": "https://github.com/o/r/pull/8", "user": {"login": "bob"},
+                         "pull_request": {"url": "x"}}]}""",
+                      "",
+                      0),
+              now::get,
+              millis -> {});
+
+      var result = json(search.search(GhSearch.Kind.ISSUES, "repo:o/r bug", 10));
+
+      var items = result.get("items");
+      assertThat(result.get("incomplete").asBoolean()).isTrue();
+      assertThat(items.get(0).get("repository").asText()).isEqualTo("o/r");
+      assertThat(items.get(0).get("author").asText()).isEqualTo("ann");
+      assertThat(items.get(0).get("pullRequest").asBoolean()).isFalse();
+      assertThat(items.get(1).get("pullRequest").asBoolean()).isTrue();
+    }
+  }
+}
@@ -0,0 +1,313 @@
+package com.kousenit.gh_mcp_server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Gh Timeouts Tests")
+class GhTimeoutsTest {
+
+  private static final List<String> RUN_VIEW = List.of("run", "view", "9", "--repo", "o/r");
+
+  private static GhTimeouts timeouts(
+      Map<String, Integer> tools, boolean adaptive, int hedges, int retries) {
+    return new GhTimeouts(
+        new GitHubProperties.Timeouts(
+            tools, adaptive, 0.99, 2.0, 1, 10, 5, 5, hedges, 0.95, retries),
+        30);
+  }
+
+  private static GhTimeouts timeouts() {
+    return timeouts(Map.of(), true, 1, 0);
+  }
+
+  private static void seed(GhTimeouts timeouts, List<String> args, long... millis) {
+    for (long sample : millis) {
+      timeouts.record(args, sample);
+    }
+  }
+
+  private static GithubCommand timedOut(Duration timeout) {
+    return new GithubCommand(
+        "", "Command timed out after %d seconds".formatted(timeout.toSeconds()), -1);
+  }
+
+  /** An attempt that answers only when it is cancelled or its time is up. */
+  private static GithubCommand hang(Duration timeout, CompletableFuture<Void> cancellation) {
+    try {
+      cancellation.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+      return new GithubCommand("", "Command cancelled", -1);
+    } catch (Exception e) {
+      return timedOut(timeout);
+    }
+  }
+
+  @Nested
+  @DisplayName("Endpoints")
+  class Endpoints {
+
+    @Test
+    @DisplayName("Should name gh commands by their subcommand")
+    void testSubcommands() {
+      assertThat(GhTimeouts.endpoint(RUN_VIEW)).isEqualTo("run view");
+      assertThat(GhTimeouts.endpoint(List.of("search", "repos", "java"))).isEqualTo("search repos");
+    }
+
+    @Test
+    @DisplayName("Should replace owners, repositories, numbers and refs in API paths")
+    void testApiPaths() {
+      assertThat(GhTimeouts.endpoint(List.of("api", "repos/o/r/actions/runs/123/logs?page=2")))
+          .isEqualTo("api repos/:owner/:repo/actions/runs/:id/logs");
+      assertThat(GhTimeouts.endpoint(List.of("api", "repos/o/r/contents/src/Main.java")))
+          .isEqualTo("api repos/:owner/:repo/contents/:ref");
+      assertThat(GhTimeouts.endpoint(List.of("api", "users/ann/repos")))
+          .isEqualTo("api users/:owner/repos");
+      assertThat(GhTimeouts.endpoint(List.of("api", "graphql", "-f", "query=...")))
+          .isEqualTo("api graphql");
+    }
+  }
+
+  @Nested
+  @DisplayName("Deadlines")
+  class Deadlines {
+
+    @Test
+    @DisplayName("Should use the global timeout until an endpoint has enough samples")
+    void testTooFewSamples() {
+      var timeouts = timeouts();
+      seed(timeouts, RUN_VIEW, 100, 200, 300, 400);
+
+      assertThat(timeouts.timeout(RUN_VIEW, null)).isEqualTo(Duration.ofSeconds(30));
+    }
+
+    @Test
+    @DisplayName("Should set the deadline from a high percentile with a margin, within bounds")
+    void testAdaptive() {
+      var timeouts = timeouts();
+      seed(timeouts, RUN_VIEW, 900, 1000, 1100, 1200, 1500);
+      var logs = List.of("api", "repos/o/r/actions/runs/1/logs");
+      seed(timeouts, logs, 100, 100, 100, 100, 100);
+      var list = List.of("run", "list", "--repo", "o/r");
+      seed(timeouts, list, 60_000, 60_000, 60_000, 60_000, 60_000);
+
+      assertThat(timeouts.timeout(RUN_VIEW, null)).isEqualTo(Duration.ofSeconds(3));
+      assertThat(timeouts.timeout(logs, null)).isEqualTo(Duration.ofSeconds(1));
+      assertThat(timeouts.timeout(list, null)).isEqualTo(Duration.ofSeconds(10));
+    }
+
+    @Test
+    @DisplayName("Should prefer a tool's configured timeout, and leave it fixed when not adaptive")
+    void testConfigured() {
+      var timeouts = timeouts(Map.of("getWorkflowRun", 45), false, 1, 0);
+      seed(timeouts, RUN_VIEW, 100, 100, 100, 100, 100);
+
+      assertThat(timeouts.timeout(RUN_VIEW, "getWorkflowRun")).isEqualTo(Duration.ofSeconds(45));
+      assertThat(timeouts.timeout(RUN_VIEW, "getMe")).isEqualTo(Duration.ofSeconds(30));
+    }
+
+    @Test
+    @DisplayName("Should raise the deadline of an endpoint whose calls time out")
+    void testTimeoutsRaiseDeadline() {
+      var timeouts = timeouts();
+      var create = List.of("issue", "create", "--repo", "o/r", "--title", "t");
+      seed(timeouts, create, 1000, 1000, 1000, 1000, 1000);
+      var given = new ArrayList<Duration>();
+
+      for (int i = 0; i < 5; i++) {
+        timeouts.run(
+            create,
+            null,
+            null,
+            (timeout, cancellation) -> {
+              given.add(timeout);
+              return timedOut(timeout);
+            },
+            () -> null);
+      }
+
+      assertThat(given.getFirst()).isEqualTo(Duration.ofSeconds(2));
+      assertThat(given.get(1)).isEqualTo(Duration.ofSeconds(4));
+      assertThat(timeouts.timeout(create, null)).isEqualTo(Duration.ofSeconds(10));
+    }
+
+    @Test
+    @DisplayName("Should retry a timed-out read once under its raised deadline, never a mutation")
+    void testRetryTimedOutRead() {
+      var timeouts = timeouts(Map.of(), true, 0, 1);
+      seed(timeouts, RUN_VIEW, 100, 100, 100, 100, 100);
+      var given = new ArrayList<Duration>();
+
+      var result =
+          timeouts.run(
+              RUN_VIEW,
+              null,
+              null,
+              (timeout, cancellation) -> {
+                given.add(timeout);
+                return given.size() == 1
+                    ? timedOut(timeout)
+                    : new GithubCommand("{\"status\":\"completed\"}", "", 0);
+              },
+              () -> null);
+
+      assertThat(result.getResult()).isEqualTo("{\"status\":\"completed\"}");
+      assertThat(given).containsExactly(Duration.ofSeconds(1), Duration.ofSeconds(2));
+      assertThat(timeouts.retriedCalls()).isEqualTo(1L);
+
+      var create = List.of("issue", "create", "--repo", "o/r", "--title", "t");
+      var attempts = new AtomicInteger();
+      timeouts.run(
+          create,
+          null,
+          null,
+          (timeout, cancellation) -> {
+            attempts.incrementAndGet();
+            return timedOut(timeout);
+          },
+          () -> null);
+
+      assertThat(attempts.get()).isEqualTo(1);
+      assertThat(timeouts.retriedCalls()).isEqualTo(1L);
+    }
+  }
+
+  @Nested
+  @DisplayName("Hedging")
+  class Hedging {
+
+    @Test
+    @DisplayName("Should start a slow read again and cancel the attempt that lost")
+    void testHedge() {
+      var timeouts = timeouts();
+      seed(timeouts, RUN_VIEW, 20, 20, 20, 20, 20);
+      var cancellations = new CopyOnWriteArrayList<CompletableFuture<Void>>();
+      var attempts = new AtomicInteger();
+
+      GhTimeouts.Attempt attempt =
+          (timeout, cancellation) -> {
+            cancellations.add(cancellation);
+            return attempts.getAndIncrement() == 0
+                ? hang(timeout, cancellation)
+                : new GithubCommand("{\"status\":\"completed\"}", "", 0);
+          };
+
+      var result = timeouts.run(RUN_VIEW, null, null, attempt, () -> attempt);
+
+      assertThat(result.getResult()).isEqualTo("{\"status\":\"completed\"}");
+      assertThat(attempts.get()).isEqualTo(2);
+      assertThat(cancellations.getFirst().isDone()).isTrue();
+      assertThat(timeouts.hedgedCalls()).isEqualTo(1L);
+      assertThat(timeouts.hedgeWins()).isEqualTo(1L);
+    }
+
+    @Test
+    @DisplayName("Should time out once no attempt answers within the deadline")
+    void testAllAttemptsHang() {
+      var timeouts = timeouts();
+      seed(timeouts, RUN_VIEW, 20, 20, 20, 20, 20);
+      var attempts = new AtomicInteger();
+
+      GhTimeouts.Attempt attempt =
+          (timeout, cancellation) -> {
+            attempts.incrementAndGet();
+            return hang(timeout, cancellation);
+          };
+
+      var result = timeouts.run(RUN_VIEW, null, null, attempt, () -> attempt);
+
+      assertThat(result.getResult()).startsWith("Error: Command timed out");
+      assertThat(attempts.get()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should not hedge a read while no scheduler slot is spare")
+    void testNoSpareSlot() {
+      var timeouts = timeouts();
+      seed(timeouts, RUN_VIEW, 20, 20, 20, 20, 20);
+      var attempts = new AtomicInteger();
+      var asked = new AtomicInteger();
+
+      var result =
+          timeouts.run(
+              RUN_VIEW,
+              null,
+              null,
+              (timeout, cancellation) -> {
+                attempts.incrementAndGet();
+                return hang(timeout, cancellation);
+              },
+              () -> {
+                asked.incrementAndGet();
+                return null;
+              });
+
+      assertThat(result.getResult()).startsWith("Error: Command timed out");
+      assertThat(attempts.get()).isEqualTo(1);
+      assertThat(asked.get()).isGreaterThan(1);
+      assertThat(timeouts.hedgedCalls()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should leave hedging off unless it is configured")
+    void testHedgingOffByDefault() {
+      var defaults =
+          new GitHubProperties.Timeouts(
+              null, null, null, null, null, null, null, null, null, null, null);
+
+      assertThat(defaults.hedges()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should never start a mutation twice")
+    void testNoHedgedMutations() {
+      var timeouts = timeouts();
+      var merge = List.of("pr", "merge", "5", "--repo", "o/r");
+      seed(timeouts, merge, 20, 20, 20, 20, 20);
+      var attempts = new AtomicInteger();
+
+      var result =
+          timeouts.run(
+              merge,
+              null,
+              null,
+              (timeout, cancellation) -> {
+                attempts.incrementAndGet();
+                try {
+                  Thread.sleep(200);
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                }
+                return new GithubCommand("merged", "", 0);
+              },
+              () -> null);
+
+      assertThat(result.getResult()).isEqualTo("merged");
+      assertThat(attempts.get()).isEqualTo(1);
+      assertThat(timeouts.hedgedCalls()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should cancel every attempt when the caller gives up")
+    void testCallerCancels() {
+      var timeouts = timeouts();
+      seed(timeouts, RUN_VIEW, 20, 20, 20, 20, 20);
+      var caller = new CompletableFuture<Void>();
+      caller.complete(null);
+
+      var result =
+          timeouts.run(RUN_VIEW, null, caller, GhTimeoutsTest::hang, () -> GhTimeoutsTest::hang);
+
+      assertThat(result.getResult()).isEqualTo("Error: Command cancelled");
+    }
+  }
+}
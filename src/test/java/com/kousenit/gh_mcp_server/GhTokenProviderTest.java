@@ -0,0 +1,162 @@
+package com.kousenit.gh_mcp_server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+@EnabledOnOs({OS.LINUX, OS.MAC})
+@DisplayName("GitHub Token Provider Tests")
+class GhTokenProviderTest {
+
+  @TempDir Path tempDir;
+
+  private Path configDir;
+  private Path callLog;
+  private Map<String, String> environment;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    configDir = Files.createDirectories(tempDir.resolve("config"));
+    Path binDir = Files.createDirectories(tempDir.resolve("bin"));
+    callLog = tempDir.resolve("calls.log");
+
+    // Fake gh that records each call and prints a keyring token for 'gh auth token'
+    Path gh = binDir.resolve("gh");
+    Files.writeString(gh, "#!/bin/sh\necho \"$@\" >> " + callLog + "\necho gho_keyring\n");
+    Files.setPosixFilePermissions(gh, PosixFilePermissions.fromString("rwxr-xr-x"));
+
+    environment = new HashMap<>();
+    environment.put("PATH", binDir + ":" + System.getenv("PATH"));
+    environment.put("GH_CONFIG_DIR", configDir.toString());
+  }
+
+  private GhTokenProvider provider() {
+    return new GhTokenProvider(new GhProcessLauncher("gh", environment), environment);
+  }
+
+  private long ghCalls() throws IOException {
+    return Files.exists(callLog) ? Files.readAllLines(callLog).size() : 0;
+  }
+
+  @Test
+  @DisplayName("Should prefer GH_TOKEN from the environment")
+  void testEnvironmentToken() throws IOException {
+    environment.put("GH_TOKEN", "ghp_environment");
+
+    GhTokenProvider provider = provider();
+
+    assertThat(provider.token()).hasValue("ghp_environment");
+    assertThat(provider.source()).isEqualTo(GhTokenProvider.Source.ENVIRONMENT);
+    assertThat(ghCalls()).isEqualTo(0);
+  }
+
+  @Test
+  @DisplayName("Should read the active account token from hosts.yml")
+  void testHostsFileToken() throws IOException {
+    Files.writeString(
+        configDir.resolve("hosts.yml"),
+        """
+        github.com:
+            users:
+                octocat:
+                    oauth_token: gho_nested_user
+            git_protocol: https
+            oauth_token: gho_active
+            user: octocat
+        """);
+
+    GhTokenProvider provider = provider();
+
+    assertThat(provider.token()).hasValue("gho_active");
+    assertThat(provider.source()).isEqualTo(GhTokenProvider.Source.CONFIG_FILE);
+    assertThat(ghCalls()).isEqualTo(0);
+  }
+
+  @Test
+  @DisplayName("Should run gh auth token only once when the token is in the keyring")
+  void testKeyringTokenResolvedOnce() throws IOException {
+    Files.writeString(configDir.resolve("hosts.yml"), "github.com:\n    user: octocat\n");
+
+    GhTokenProvider provider = provider();
+    for (int i = 0; i < 5; i++) {
+      assertThat(provider.token()).hasValue("gho_keyring");
+    }
+
+    assertThat(provider.source()).isEqualTo(GhTokenProvider.Source.GH_AUTH_TOKEN);
+    assertThat(Files.readAllLines(callLog)).containsExactly("auth token --hostname github.com");
+  }
+
+  @Test
+  @DisplayName("Should re-resolve when hosts.yml changes")
+  void testRefreshOnFileChange() throws IOException {
+    Path hosts = configDir.resolve("hosts.yml");
+    Files.writeString(hosts, "github.com:\n    oauth_token: gho_old\n");
+    GhTokenProvider provider = provider();
+    assertThat(provider.token()).hasValue("gho_old");
+
+    Files.writeString(hosts, "github.com:\n    oauth_token: gho_new\n");
+    Files.setLastModifiedTime(hosts, FileTime.from(Instant.now().plusSeconds(60)));
+
+    assertThat(provider.token()).hasValue("gho_new");
+  }
+
+  @Test
+  @DisplayName("Should pass the token to subprocesses as GH_TOKEN")
+  void testSubprocessEnvironment() {
+    environment.put("GITHUB_TOKEN", "ghp_fallback");
+
+    assertThat(provider().environment()).containsEntry("GH_TOKEN", "ghp_fallback");
+  }
+
+  @Test
+  @DisplayName("Should pass the token as GH_ENTERPRISE_TOKEN for an enterprise GH_HOST")
+  void testEnterpriseSubprocessEnvironment() {
+    environment.put("GH_HOST", "github.example.com");
+    environment.put("GITHUB_ENTERPRISE_TOKEN", "ghp_enterprise");
+    environment.put("GH_TOKEN", "ghp_public");
+
+    var subprocess = provider().environment();
+
+    assertThat(subprocess).containsEntry("GH_ENTERPRISE_TOKEN", "ghp_enterprise");
+    assertThat(subprocess).doesNotContainKey("GH_TOKEN");
+  }
+
+  @Test
+  @DisplayName("Should only retry after a 401 when a different token is available")
+  void testRefreshAfterUnauthorized() throws IOException {
+    Path hosts = configDir.resolve("hosts.yml");
+    Files.writeString(hosts, "github.com:\n    oauth_token: gho_revoked\n");
+    GhTokenProvider provider = provider();
+    assertThat(provider.token()).hasValue("gho_revoked");
+
+    assertThat(provider.refreshAfterUnauthorized("gho_revoked")).isFalse();
+
+    Files.writeString(hosts, "github.com:\n    oauth_token: gho_relogged\n");
+    assertThat(provider.refreshAfterUnauthorized("gho_revoked")).isTrue();
+    assertThat(provider.token()).hasValue("gho_relogged");
+  }
+
+  @Test
+  @DisplayName("Should recognize rejected credentials")
+  void testIsUnauthorized() {
+    assertThat(
+            GhTokenProvider.isUnauthorized(
+                new GithubCommand("", "HTTP 401: Bad credentials (https://api.github.com/user)", 1)))
+        .isTrue();
+    assertThat(GhTokenProvider.isUnauthorized(new GithubCommand("", "HTTP 404: Not Found", 1)))
+        .isFalse();
+  }
+}
@@ -0,0 +1,195 @@
+package com.kousenit.gh_mcp_server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayName("Git Mirror Tests")
+@EnabledOnOs({OS.LINUX, OS.MAC})
+class GitMirrorTest {
+
+  @TempDir Path tempDir;
+
+  private final GhProcessLauncher git = new GhProcessLauncher("git", System.getenv());
+  private final AtomicLong now = new AtomicLong(System.currentTimeMillis());
+  private Path upstream;
+  private GitMirror mirror;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    upstream = Files.createDirectories(tempDir.resolve("upstream/o/r"));
+    gitIn(upstream, "init", "--quiet", "--initial-branch=main");
+    commit("README.md", "hello\n", "Initial commit");
+    commit("src/App.java", "class App {}\n", "Add app");
+    mirror = mirror(List.of("o/r"));
+  }
+
+  private GitMirror mirror(List<String> repositories) {
+    var settings =
+        new GitHubProperties.Mirror(
+            repositories,
+            tempDir.resolve("mirrors").toString(),
+            "file://" + tempDir.resolve("upstream") + "/%s",
+            300);
+    return new GitMirror(settings, git, Optional::empty, now::get);
+  }
+
+  private String gitIn(Path directory, String... command) {
+    var args = new ArrayList<>(List.of("-C", directory.toString()));
+    args.addAll(List.of("-c", "user.name=Test", "-c", "user.email=test@example.com"));
+    args.addAll(List.of(command));
+    var result = git.run(args, Map.of(), Duration.ofSeconds(30));
+    assertThat(result.isSuccess()).as(result.error()).isTrue();
+    return result.output().strip();
+  }
+
+  private String commit(String path, String content, String message) {
+    try {
+      Path file = upstream.resolve(path);
+      Files.createDirectories(file.getParent());
+      Files.writeString(file, content);
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+    gitIn(upstream, "add", path);
+    gitIn(upstream, "commit", "--quiet", "-m", message);
+    return gitIn(upstream, "rev-parse", "HEAD");
+  }
+
+  @Nested
+  @DisplayName("Reads")
+  class Reads {
+
+    @Test
+    @DisplayName("Should answer nothing before the first clone")
+    void testEmptyBeforeRefresh() {
+      assertThat(mirror.commitHistory("o", "r", 10)).isEmpty();
+      assertThat(mirror.status().getFirst().present()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should serve commit history from the mirror")
+    void testCommitHistory() {
+      assertThat(mirror.refresh("o/r")).isTrue();
+
+      var history = mirror.commitHistory("o", "r", 10).orElseThrow();
+
+      var lines = history.lines().toList();
+      assertThat(lines).hasSize(2);
+      assertThat(lines.getFirst()).contains("\"message\":\"Add app\"");
+      assertThat(lines.getFirst()).contains("\"author\":\"Test\"");
+    }
+
+    @Test
+    @DisplayName("Should serve file contents at the default branch and at a ref")
+    void testFileContents() {
+      String first = gitIn(upstream, "rev-parse", "HEAD");
+      commit("README.md", "changed\n", "Change readme");
+      mirror.refresh("o/r");
+
+      assertThat(mirror.fileContents("o", "r", "README.md", null)).hasValue("changed");
+      assertThat(mirror.fileContents("o", "r", "README.md", first)).hasValue("hello");
+      assertThat(mirror.fileContents("o", "r", "missing.txt", null)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should list the tree below a path")
+    void testTree() {
+      mirror.refresh("o/r");
+
+      var tree = mirror.tree("o", "r", "main", "src").orElseThrow();
+
+      assertThat(tree).contains("\"path\":\"src/App.java\"");
+      assertThat(tree).contains("\"type\":\"blob\"");
+      assertThat(tree).doesNotContain("README.md");
+    }
+
+    @Test
+    @DisplayName("Should diff two refs")
+    void testDiff() {
+      gitIn(upstream, "checkout", "--quiet", "-b", "feature");
+      commit("NOTES.md", "notes\n", "Add notes");
+      gitIn(upstream, "checkout", "--quiet", "main");
+      mirror.refresh("o/r");
+
+      var diff = mirror.diff("o", "r", "main", "feature").orElseThrow();
+
+      assertThat(diff).contains("+++ b/NOTES.md");
+      assertThat(diff).contains("+notes");
+    }
+
+    @Test
+    @DisplayName("Should never read a ref as a git option")
+    void testOptionLikeRefs() {
+      mirror.refresh("o/r");
+      Path output = tempDir.resolve("written.diff");
+
+      assertThat(mirror.diff("o", "r", "--output=" + output, "main")).isEmpty();
+      assertThat(mirror.tree("o", "r", "--full-name", null)).isEmpty();
+      assertThat(mirror.fileContents("o", "r", "README.md", "--batch")).isEmpty();
+      assertThat(Files.exists(output)).isFalse();
+    }
+  }
+
+  @Nested
+  @DisplayName("Freshness")
+  class Freshness {
+
+    @Test
+    @DisplayName("Should pick up new commits with an incremental fetch")
+    void testIncrementalFetch() {
+      mirror.refresh("o/r");
+      commit("CHANGELOG.md", "1.0\n", "Add changelog");
+
+      assertThat(mirror.refresh("o/r")).isTrue();
+
+      assertThat(mirror.commitHistory("o", "r", 1).orElseThrow()).contains("Add changelog");
+    }
+
+    @Test
+    @DisplayName("Should fall back once the mirror is stale, except for full commit SHAs")
+    void testStaleMirror() {
+      String sha = gitIn(upstream, "rev-parse", "HEAD");
+      mirror.refresh("o/r");
+      now.addAndGet(Duration.ofMinutes(11).toMillis());
+
+      assertThat(mirror.commitHistory("o", "r", 10)).isEmpty();
+      assertThat(mirror.fileContents("o", "r", "README.md", "main")).isEmpty();
+      assertThat(mirror.fileContents("o", "r", "README.md", sha)).hasValue("hello");
+      assertThat(mirror.status().getFirst().fresh()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should not answer for repositories that are not configured")
+    void testUnmirroredRepository() {
+      mirror.refresh("o/r");
+
+      assertThat(mirror.isMirrored("O", "R")).isTrue();
+      assertThat(mirror.commitHistory("o", "other", 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should report a failed clone without creating the mirror")
+    void testFailedClone() {
+      var missing = mirror(List.of("o/missing"));
+
+      assertThat(missing.refresh("o/missing")).isFalse();
+      assertThat(missing.status().getFirst().present()).isFalse();
+    }
+  }
+}
@@ -2,6 +2,7 @@ package com.kousenit.gh_mcp_server;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.util.ArrayList;
 import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -31,12 +32,7 @@ class GithubServiceCommandTest {
 
       List<String> command = githubService.getLastCommand();
       assertThat(command)
-          .containsExactly(
-              "gh",
-              "api",
-              "repos/octocat/Hello-World/commits",
-              "--jq",
-              ".[:10] | .[] | {sha: .sha[0:7], message: .commit.message, author: .commit.author.name, date: .commit.author.date}");
+          .containsExactly("gh", "api", "repos/octocat/Hello-World/commits");
     }
 
     @Test
@@ -86,34 +82,45 @@ class GithubServiceCommandTest {
     }
 
     @Test
-    @DisplayName("Should use minimum limit of 10 for searchRepositories")
-    void testSearchRepositoriesMinLimit() {
+    @DisplayName("Should pass small limits through for searchRepositories")
+    void testSearchRepositoriesSmallLimit() {
       githubService.searchRepositories("test", 5);
 
       List<String> command = githubService.getLastCommand();
-      assertThat(command).contains("--limit", "10");
+      assertThat(command).contains("--limit", "5");
     }
 
     @Test
     @DisplayName("Should use default limit for getCommitHistory when limit is 0")
     void testGetCommitHistoryZeroLimit() {
-      githubService.getCommitHistory("owner", "repo", 0);
+      githubService.setNextResult(commits(15));
 
-      List<String> command = githubService.getLastCommand();
-      assertThat(command)
-          .contains(
-              ".[:10] | .[] | {sha: .sha[0:7], message: .commit.message, author: .commit.author.name, date: .commit.author.date}");
+      String result = githubService.getCommitHistory("owner", "repo", 0);
+
+      assertThat(result).contains("\"sha\":\"c009abc\"").doesNotContain("c010abc");
     }
 
     @Test
     @DisplayName("Should use default limit for getCommitHistory without limit parameter")
     void testGetCommitHistoryDefaultLimit() {
-      githubService.getCommitHistory("owner", "repo");
+      githubService.setNextResult(commits(15));
 
-      List<String> command = githubService.getLastCommand();
-      assertThat(command)
-          .contains(
-              ".[:10] | .[] | {sha: .sha[0:7], message: .commit.message, author: .commit.author.name, date: .commit.author.date}");
+      String result = githubService.getCommitHistory("owner", "repo");
+
+      assertThat(result).startsWith("[{\"sha\":\"c000abc\",\"message\":\"Commit 0\"");
+      assertThat(result).contains("c009abc").doesNotContain("c010abc");
+    }
+
+    /** A commits API response, trimmed to the fields the filter reads. */
+    private static String commits(int count) {
+      var commits = new ArrayList<String>();
+      for (int i = 0; i < count; i++) {
+        commits.add(
+            ("{\"sha\":\"c%03dabcdef\",\"commit\":{\"message\":\"Commit %d\","
+                    + "\"author\":{\"name\":\"Mona\",\"date\":\"2024-05-01T10:00:00Z\"}}}")
+                .formatted(i, i));
+      }
+      return "[" + String.join(",", commits) + "]";
     }
   }
 
@@ -205,6 +212,76 @@ class GithubServiceCommandTest {
       List<String> command = githubService.getLastCommand();
       assertThat(command).doesNotContain("--body");
     }
+
+    @Test
+    @DisplayName("Should construct correct command for filterIssues")
+    void testFilterIssues() {
+      githubService.filterIssues(
+          "octocat", "Hello-World", false, "closed", "bug", "alice", null, "2026-01-01");
+
+      List<String> command = githubService.getLastCommand();
+      assertThat(command)
+          .containsExactly(
+              "gh",
+              "issue",
+              "list",
+              "--repo",
+              "octocat/Hello-World",
+              "--state",
+              "closed",
+              "--label",
+              "bug",
+              "--author",
+              "alice",
+              "--search",
+              "updated:>=2026-01-01",
+              "--json",
+              "number,title,state,createdAt,author,body,labels,assignees,url");
+    }
+
+    @Test
+    @DisplayName("Should pass search qualifiers to gh search as separate words")
+    void testSearchRepositoryIssues() {
+      githubService.searchRepositoryIssues("octocat", "Hello-World", "crash  label:bug", 0);
+
+      List<String> command = githubService.getLastCommand();
+      assertThat(command)
+          .containsExactly(
+              "gh",
+              "search",
+              "issues",
+              "--repo",
+              "octocat/Hello-World",
+              "--include-prs",
+              "--limit",
+              "30",
+              "--json",
+              "number,isPullRequest,title,state,author,labels,updatedAt,url",
+              "--",
+              "crash",
+              "label:bug");
+    }
+
+    @Test
+    @DisplayName("Should filter pull requests with the pr command")
+    void testFilterPullRequests() {
+      githubService.filterIssues("octocat", "Hello-World", true, null, null, null, "bob", null);
+
+      List<String> command = githubService.getLastCommand();
+      assertThat(command)
+          .containsExactly(
+              "gh",
+              "pr",
+              "list",
+              "--repo",
+              "octocat/Hello-World",
+              "--state",
+              "open",
+              "--assignee",
+              "bob",
+              "--json",
+              "number,title,state,createdAt,author,headRefName,baseRefName,url");
+    }
   }
 
   @Nested
@@ -300,6 +377,35 @@ class GithubServiceCommandTest {
   @DisplayName("File and Branch Commands")
   class FileAndBranchCommands {
 
+    private static final String TREE =
+        """
+        {"sha":"r0","tree":[
+          {"path":"README.md","mode":"100644","type":"blob","sha":"b0","size":12},
+          {"path":"src","mode":"040000","type":"tree","sha":"b1"},
+          {"path":"src/Main.java","mode":"100644","type":"blob","sha":"b2","size":99},
+          {"path":"srcdocs","mode":"040000","type":"tree","sha":"b3"}],"truncated":false}
+        """;
+
+    @Test
+    @DisplayName("Should decode file contents in process")
+    void testGetFileContentsDecodes() {
+      githubService.setNextResult(
+          "{\"name\":\"README\",\"encoding\":\"base64\",\"content\":\"SGVsbG8s\\nIHdvcmxk\\n\"}");
+
+      assertThat(githubService.getFileContents("o", "r", "README", null))
+          .isEqualTo("Hello, world\n");
+    }
+
+    @Test
+    @DisplayName("Should take the source SHA from the ref response")
+    void testCreateBranchReadsSha() {
+      githubService.setNextResult("{\"ref\":\"refs/heads/main\",\"object\":{\"sha\":\"abc123\"}}");
+
+      githubService.createBranch("o", "r", "feature", null);
+
+      assertThat(githubService.getLastCommand()).contains("sha=abc123");
+    }
+
     @Test
     @DisplayName("Should construct correct command for getFileContents with branch")
     void testGetFileContentsWithBranch() {
@@ -307,12 +413,7 @@ class GithubServiceCommandTest {
 
       List<String> command = githubService.getLastCommand();
       assertThat(command)
-          .containsExactly(
-              "gh",
-              "api",
-              "repos/torvalds/linux/contents/README?ref=master",
-              "--jq",
-              ".content | @base64d");
+          .containsExactly("gh", "api", "repos/torvalds/linux/contents/README?ref=master");
     }
 
     @Test
@@ -322,8 +423,7 @@ class GithubServiceCommandTest {
 
       List<String> command = githubService.getLastCommand();
       assertThat(command)
-          .containsExactly(
-              "gh", "api", "repos/torvalds/linux/contents/README", "--jq", ".content | @base64d");
+          .containsExactly("gh", "api", "repos/torvalds/linux/contents/README");
     }
 
     @Test
@@ -331,10 +431,67 @@ class GithubServiceCommandTest {
     void testGetFileContentsEmptyBranch() {
       githubService.getFileContents("torvalds", "linux", "README", "  ");
 
+      List<String> command = githubService.getLastCommand();
+      assertThat(command)
+          .containsExactly("gh", "api", "repos/torvalds/linux/contents/README");
+    }
+
+    @Test
+    @DisplayName("Should construct correct command for listTree with a path")
+    void testListTreeWithPath() {
+      githubService.setNextResult(TREE);
+
+      String result = githubService.listTree("octocat", "Hello-World", "main", "src");
+
+      List<String> command = githubService.getLastCommand();
+      assertThat(command)
+          .containsExactly("gh", "api", "repos/octocat/Hello-World/git/trees/main?recursive=1");
+      assertThat(result)
+          .isEqualTo(
+              """
+              {"path":"src","type":"tree","sha":"b1"}
+              {"path":"src/Main.java","type":"blob","sha":"b2"}
+              """);
+    }
+
+    @Test
+    @DisplayName("Should list the default branch tree when no ref is given")
+    void testListTreeDefaults() {
+      githubService.setNextResult(TREE);
+
+      String result = githubService.listTree("octocat", "Hello-World", null, null);
+
+      List<String> command = githubService.getLastCommand();
+      assertThat(command)
+          .containsExactly("gh", "api", "repos/octocat/Hello-World/git/trees/HEAD?recursive=1");
+      assertThat(result.lines().toList()).hasSize(4);
+    }
+
+    @Test
+    @DisplayName("Should construct correct command for compareCommits")
+    void testCompareCommits() {
+      githubService.compareCommits("octocat", "Hello-World", "main", "feature");
+
       List<String> command = githubService.getLastCommand();
       assertThat(command)
           .containsExactly(
-              "gh", "api", "repos/torvalds/linux/contents/README", "--jq", ".content | @base64d");
+              "gh",
+              "api",
+              "repos/octocat/Hello-World/compare/main...feature",
+              "-H",
+              "Accept: application/vnd.github.diff");
+    }
+
+    @Test
+    @DisplayName("Should reject refs that look like options before running anything")
+    void testOptionLikeRefs() {
+      assertThat(githubService.compareCommits("o", "r", "--output=/tmp/x", "main"))
+          .isEqualTo("Error: Invalid ref --output=/tmp/x; refs cannot start with '-'");
+      assertThat(githubService.compareCommits("o", "r", "main", "-p")).startsWith("Error:");
+      assertThat(githubService.listTree("o", "r", "--full-name", null)).startsWith("Error:");
+      assertThat(githubService.getFileContents("o", "r", "README", "--batch"))
+          .startsWith("Error:");
+      assertThat(githubService.getAllCommands()).isEmpty();
     }
 
     @Test
@@ -356,8 +513,7 @@ class GithubServiceCommandTest {
       assertThat(commands).hasSize(2);
 
       assertThat(commands.get(0))
-          .containsExactly(
-              "gh", "api", "repos/myorg/myrepo/git/ref/heads/develop", "--jq", ".object.sha");
+          .containsExactly("gh", "api", "repos/myorg/myrepo/git/ref/heads/develop");
 
       assertThat(commands.get(1))
           .containsExactly(
@@ -381,6 +537,66 @@ class GithubServiceCommandTest {
       List<List<String>> commands = githubService.getAllCommands();
       assertThat(commands.getFirst()).contains("repos/myorg/myrepo/git/ref/heads/main");
     }
+
+    @Test
+    @DisplayName("Should open a pull request with a file in one read and one mutation")
+    void testCreatePullRequestWithFile() {
+      // Both calls see the same canned result, so it carries the query and the mutation data
+      githubService.setNextResult(
+          """
+          {"data":{"repository":{"id":"R_1","base":{"target":{"oid":"abc123"}},"head":null},
+          "createCommitOnBranch":{"commit":{"oid":"def456"}},
+          "createPullRequest":{"pullRequest":{"number":7,"url":"https://github.com/o/r/pull/7"}}}}
+          """);
+
+      String result =
+          githubService.createPullRequestWithFile(
+              "o", "r", "docs-fix", null, "docs/a.md", "hi", null, "Fix docs", null);
+
+      List<List<String>> commands = githubService.getAllCommands();
+      assertThat(commands).hasSize(2);
+      assertThat(commands.get(0))
+          .startsWith("gh", "api", "graphql")
+          .contains("owner=o", "name=r", "base=refs/heads/main", "head=refs/heads/docs-fix");
+      assertThat(commands.get(1))
+          .contains(
+              "repositoryId=R_1",
+              "nameWithOwner=o/r",
+              "oid=abc123",
+              "path=docs/a.md",
+              "contents=aGk=",
+              "message=Update docs/a.md",
+              "title=Fix docs");
+      var query = commands.get(0);
+      var mutation = commands.get(1);
+      assertThat(CommandUtils.isReadOnly(query.subList(1, query.size()))).isTrue();
+      assertThat(CommandUtils.isReadOnly(mutation.subList(1, mutation.size()))).isFalse();
+      // The gating read bypasses the cache, and the mutation invalidates what is cached for o/r
+      assertThat(githubService.getAllContexts().get(0).refresh()).isTrue();
+      assertThat(githubService.getAllContexts().get(1).refresh()).isFalse();
+      assertThat(CommandUtils.repository(query.subList(1, query.size()))).hasValue("o/r");
+      assertThat(CommandUtils.repository(mutation.subList(1, mutation.size()))).hasValue("o/r");
+      assertThat(result)
+          .isEqualTo(
+              "{\"number\":7,\"url\":\"https://github.com/o/r/pull/7\",\"branch\":\"docs-fix\","
+                  + "\"commit\":\"def456\"}");
+    }
+
+    @Test
+    @DisplayName("Should not mutate when the new branch already exists")
+    void testCreatePullRequestWithFileExistingBranch() {
+      githubService.setNextResult(
+          """
+          {"data":{"repository":{"id":"R_1","base":{"target":{"oid":"abc"}},"head":{"id":"X"}}}}
+          """);
+
+      String result =
+          githubService.createPullRequestWithFile(
+              "o", "r", "taken", "develop", "a.md", "hi", "msg", "Title", "Body");
+
+      assertThat(result).isEqualTo("Error: Branch taken already exists");
+      assertThat(githubService.getAllCommands()).hasSize(1);
+    }
   }
 
   @Nested
@@ -701,6 +917,35 @@ class GithubServiceCommandTest {
               "--title",
               "Just updating title");
     }
+
+    @Test
+    @DisplayName("Should construct correct command for editIssueLabels")
+    void testEditIssueLabels() {
+      githubService.editIssueLabels("rails", "rails", 222, "bug, stale ", "triage");
+
+      List<String> command = githubService.getLastCommand();
+      assertThat(command)
+          .containsExactly(
+              "gh",
+              "issue",
+              "edit",
+              "222",
+              "--repo",
+              "rails/rails",
+              "--add-label",
+              "bug, stale",
+              "--remove-label",
+              "triage");
+    }
+
+    @Test
+    @DisplayName("Should not run gh when there are no labels to change")
+    void testEditIssueLabelsNone() {
+      String result = githubService.editIssueLabels("rails", "rails", 222, " ", null);
+
+      assertThat(result).startsWith("Error:");
+      assertThat(githubService.getAllCommands()).isEmpty();
+    }
   }
 
   @Nested
@@ -141,12 +141,12 @@ class GithubServiceEdgeCaseTest {
   }
 
   @Test
-  @DisplayName("Should handle negative limit in searchRepositories")
+  @DisplayName("Should use the default search limit for a negative limit in searchRepositories")
   void testNegativeLimit() {
     githubService.searchRepositories("test", -5);
 
     List<String> command = githubService.getLastCommand();
-    assertThat(command).contains("--limit", "10");
+    assertThat(command).contains("--limit", "30");
   }
 
   @Test
@@ -0,0 +1,320 @@
+package com.kousenit.gh_mcp_server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayName("Issue Mirror Tests")
+class IssueMirrorTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  @TempDir Path storeDir;
+
+  private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+  private final List<String> requested = new ArrayList<>();
+  private final Map<String, String> pages = new HashMap<>();
+  private boolean failing;
+
+  private IssueMirror mirror() {
+    return new IssueMirror(
+        new GitHubProperties.Issues(List.of("o/r"), 60, storeDir.toString()),
+        args -> {
+          requested.add(args.get(1));
+          if (failing) {
+            return new GithubCommand("", "HTTP 502", 1);
+          }
+          // Every endpoint has a single page of results
+          String url = args.get(1);
+          boolean firstPage = url.contains("&page=1&") || url.endsWith("&page=1");
+          String path = url.substring(0, url.indexOf('?'));
+          return new GithubCommand(firstPage ? pages.getOrDefault(path, "") : "", "", 0);
+        },
+        now::get);
+  }
+
+  private static String issue(int number, String state, String updatedAt, String label) {
+    return ("{\"number\":%d,\"title\":\"Issue %1$d\",\"state\":\"%s\",\"updatedAt\":\"%s\","
+            + "\"author\":{\"login\":\"alice\"},\"labels\":[{\"name\":\"%s\"}],"
+            + "\"assignees\":[],\"isPullRequest\":false}")
+        .formatted(number, state, updatedAt, label);
+  }
+
+  private static String pull(int number, String state, String updatedAt) {
+    return ("{\"number\":%d,\"title\":\"PR %1$d\",\"state\":\"%s\",\"updatedAt\":\"%s\","
+            + "\"author\":{\"login\":\"bob\"},\"labels\":[],\"assignees\":[]}")
+        .formatted(number, state, updatedAt);
+  }
+
+  private void seed() {
+    pages.put(
+        "repos/o/r/issues",
+        String.join(
+            "\n",
+            issue(1, "OPEN", "2026-01-01T00:00:00Z", "bug"),
+            issue(2, "CLOSED", "2026-01-02T00:00:00Z", "docs"),
+            "{\"number\":3,\"state\":\"OPEN\",\"updatedAt\":\"2026-01-03T00:00:00Z\","
+                + "\"isPullRequest\":true}"));
+    pages.put(
+        "repos/o/r/pulls",
+        String.join(
+            "\n",
+            pull(3, "MERGED", "2026-01-03T00:00:00Z"),
+            pull(4, "OPEN", "2026-01-01T00:00:00Z")));
+    pages.put(
+        "repos/o/r/issues/comments",
+        "{\"id\":10,\"issue\":1,\"body\":\"Seen it too\",\"createdAt\":\"2026-01-02T00:00:00Z\","
+            + "\"updatedAt\":\"2026-01-02T00:00:00Z\"}");
+  }
+
+  private static JsonNode json(String value) throws Exception {
+    return MAPPER.readTree(value);
+  }
+
+  private static List<Integer> numbers(String answer) throws Exception {
+    var numbers = new ArrayList<Integer>();
+    json(answer).path("items").forEach(item -> numbers.add(item.path("number").asInt()));
+    return numbers;
+  }
+
+  @Nested
+  @DisplayName("Syncing")
+  class Syncing {
+
+    @Test
+    @DisplayName("Should store issues, pull requests and comments from a first full sync")
+    void testFirstSync() throws Exception {
+      seed();
+      var mirror = mirror();
+
+      assertThat(mirror.sync("o/r")).isTrue();
+
+      assertThat(numbers(mirror.issues("o", "r", IssueMirror.Filter.state("all")).orElseThrow()))
+          .containsExactly(2, 1);
+      assertThat(
+              numbers(mirror.pullRequests("o", "r", IssueMirror.Filter.state("all")).orElseThrow()))
+          .containsExactly(4, 3);
+      assertThat(requested.getFirst()).doesNotContain("since=");
+    }
+
+    @Test
+    @DisplayName("Should only ask for items updated since the last watermark")
+    void testIncrementalSync() throws Exception {
+      seed();
+      var mirror = mirror();
+      mirror.sync("o/r");
+      pages.put("repos/o/r/issues", issue(1, "CLOSED", "2026-01-05T00:00:00Z", "bug"));
+      requested.clear();
+
+      mirror.sync("o/r");
+
+      assertThat(requested.getFirst()).contains("&since=2026-01-03T00:00:00Z");
+      var closed = mirror.issues("o", "r", IssueMirror.Filter.state("closed")).orElseThrow();
+      assertThat(numbers(closed)).containsExactly(2, 1);
+    }
+
+    @Test
+    @DisplayName("Should stop paging pull requests at the first one older than the watermark")
+    void testPullPagingStops() {
+      pages.put(
+          "repos/o/r/pulls",
+          IntStream.rangeClosed(1, IssueMirror.PAGE_SIZE)
+              .mapToObj(i -> pull(i, "OPEN", "2026-01-0" + (i == 1 ? 9 : 1) + "T00:00:00Z"))
+              .collect(Collectors.joining("\n")));
+      var mirror = mirror();
+      mirror.sync("o/r");
+      requested.clear();
+
+      mirror.sync("o/r");
+
+      assertThat(requested.stream().filter(url -> url.contains("/pulls?")).count())
+          .isEqualTo(1L);
+    }
+
+    @Test
+    @DisplayName("Should keep the stored items when a sync fails")
+    void testFailedSync() throws Exception {
+      seed();
+      var mirror = mirror();
+      mirror.sync("o/r");
+      failing = true;
+
+      assertThat(mirror.sync("o/r")).isFalse();
+
+      assertThat(numbers(mirror.issues("o", "r", IssueMirror.Filter.state("all")).orElseThrow()))
+          .containsExactly(2, 1);
+    }
+
+    @Test
+    @DisplayName("Should resume from the persisted watermarks after a restart")
+    void testPersistence() throws Exception {
+      seed();
+      mirror().sync("o/r");
+      requested.clear();
+
+      var restarted = mirror();
+      assertThat(restarted.issue("o", "r", 1)).isPresent();
+      restarted.sync("o/r");
+
+      assertThat(requested.getFirst()).contains("&since=2026-01-03T00:00:00Z");
+    }
+  }
+
+  @Nested
+  @DisplayName("Queries")
+  class Queries {
+
+    @Test
+    @DisplayName("Should filter by state, label, author and update date")
+    void testFilters() throws Exception {
+      seed();
+      var mirror = mirror();
+      mirror.sync("o/r");
+
+      assertThat(numbers(mirror.issues("o", "r", IssueMirror.Filter.state(null)).orElseThrow()))
+          .containsExactly(1);
+      var docs = new IssueMirror.Filter("all", "DOCS", "alice", null, null);
+      assertThat(numbers(mirror.issues("o", "r", docs).orElseThrow())).containsExactly(2);
+      var recent = new IssueMirror.Filter("all", null, null, null, "2026-01-02");
+      assertThat(numbers(mirror.issues("o", "r", recent).orElseThrow())).containsExactly(2);
+      var merged = IssueMirror.Filter.state("merged");
+      assertThat(numbers(mirror.pullRequests("o", "r", merged).orElseThrow()))
+          .containsExactly(3);
+    }
+
+    @Test
+    @DisplayName("Should answer with items shaped like the live tools' records")
+    void testItemShape() throws Exception {
+      seed();
+      var mirror = mirror();
+      mirror.sync("o/r");
+
+      var answer = json(mirror.issues("o", "r", IssueMirror.Filter.state("all")).orElseThrow());
+      var issue = answer.path("items").get(1);
+      var pull =
+          json(mirror.pullRequests("o", "r", IssueMirror.Filter.state("all")).orElseThrow())
+              .path("items")
+              .get(0);
+
+      assertThat(answer.path("freshness").path("source").asText()).isEqualTo("local");
+      assertThat(issue.path("author").asText()).isEqualTo("alice");
+      assertThat(issue.path("labels").get(0).asText()).isEqualTo("bug");
+      assertThat(issue.has("updatedAt")).isFalse();
+      assertThat(pull.path("author").asText()).isEqualTo("bob");
+      assertThat(pull.has("labels")).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should return an issue with its comments and freshness metadata")
+    void testIssueWithComments() throws Exception {
+      seed();
+      var mirror = mirror();
+      mirror.sync("o/r");
+      now.addAndGet(5_000);
+
+      var issue = json(mirror.issue("o", "r", 1).orElseThrow());
+
+      assertThat(issue.path("comments").get(0).path("body").asText()).isEqualTo("Seen it too");
+      assertThat(issue.path("author").asText()).isEqualTo("alice");
+      assertThat(issue.path("labels").get(0).asText()).isEqualTo("bug");
+      assertThat(issue.has("isPullRequest")).isFalse();
+      assertThat(issue.path("freshness").path("source").asText()).isEqualTo("local");
+      assertThat(issue.path("freshness").path("ageSeconds").asLong()).isEqualTo(5L);
+    }
+
+    @Test
+    @DisplayName("Should not answer for stale, unsynced or unconfigured repositories")
+    void testFallsBack() {
+      seed();
+      var mirror = mirror();
+
+      assertThat(mirror.issues("o", "r", IssueMirror.Filter.state("open"))).isEmpty();
+      mirror.sync("o/r");
+      assertThat(mirror.issues("o", "other", IssueMirror.Filter.state("open"))).isEmpty();
+      now.addAndGet(121_000);
+      assertThat(mirror.issues("o", "r", IssueMirror.Filter.state("open"))).isEmpty();
+    }
+  }
+
+  @Nested
+  @DisplayName("Search")
+  class Search {
+
+    private IssueMirror searchable() {
+      pages.put(
+          "repos/o/r/issues",
+          String.join(
+              "\n",
+              "{\"number\":1,\"title\":\"Crash on startup\",\"state\":\"OPEN\","
+                  + "\"body\":\"The app exits\",\"labels\":[{\"name\":\"bug\"}],"
+                  + "\"updatedAt\":\"2026-01-01T00:00:00Z\"}",
+              "{\"number\":2,\"title\":\"Docs for startup flags\",\"state\":\"OPEN\","
+                  + "\"body\":\"Mention that a crash is logged\",\"labels\":[],"
+                  + "\"updatedAt\":\"2026-01-02T00:00:00Z\"}",
+              "{\"number\":3,\"title\":\"Unrelated\",\"state\":\"CLOSED\",\"body\":\"\","
+                  + "\"labels\":[],\"updatedAt\":\"2026-01-03T00:00:00Z\"}"));
+      pages.put(
+          "repos/o/r/pulls",
+          "{\"number\":4,\"title\":\"Fix crash on startup\",\"state\":\"OPEN\","
+              + "\"body\":\"\",\"labels\":[],\"updatedAt\":\"2026-01-03T00:00:00Z\"}");
+      var mirror = mirror();
+      mirror.sync("o/r");
+      return mirror;
+    }
+
+    @Test
+    @DisplayName("Should rank title matches above body matches")
+    void testRanking() throws Exception {
+      var mirror = searchable();
+
+      var answer = json(mirror.search("o", "r", "crash", 10).orElseThrow());
+
+      assertThat(answer.path("total").asInt()).isEqualTo(3);
+      assertThat(answer.path("items").get(2).path("number").asInt()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should apply is:, label: and in: qualifiers")
+    void testQualifiers() throws Exception {
+      var mirror = searchable();
+
+      assertThat(numbers(mirror.search("o", "r", "crash is:pr", 10).orElseThrow()))
+          .containsExactly(4);
+      assertThat(numbers(mirror.search("o", "r", "startup label:bug", 10).orElseThrow()))
+          .containsExactly(1);
+      assertThat(numbers(mirror.search("o", "r", "crash in:body", 10).orElseThrow()))
+          .containsExactly(2);
+      assertThat(numbers(mirror.search("o", "r", "is:closed", 10).orElseThrow()))
+          .containsExactly(3);
+    }
+
+    @Test
+    @DisplayName("Should find text from comments added by a later sync")
+    void testIncrementalUpdate() throws Exception {
+      var mirror = searchable();
+      assertThat(numbers(mirror.search("o", "r", "segfault", 10).orElseThrow())).isEmpty();
+      pages.put(
+          "repos/o/r/issues/comments",
+          "{\"id\":20,\"issue\":3,\"body\":\"Still a segfault here\","
+              + "\"updatedAt\":\"2026-01-04T00:00:00Z\"}");
+
+      mirror.sync("o/r");
+
+      assertThat(numbers(mirror.search("o", "r", "segfault", 10).orElseThrow()))
+          .containsExactly(3);
+    }
+  }
+}
@@ -0,0 +1,102 @@
+package com.kousenit.gh_mcp_server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Compares filtering a large recursive tree response in process with {@link JsonFilter} against
+ * handing the same filter to an external jq, which is what {@code gh --jq} amounts to: gh parses
+ * the whole response and prints the results again after downloading it. Both sides filter the
+ * same generated 20,000-entry response with the {@code listTree} filter, so the numbers leave out
+ * the network.
+ *
+ * <p>Run with {@code ./gradlew test --tests JsonFilterBenchmark -Dtest.benchmark=true}; needs
+ * {@code jq} on the PATH.
+ */
+@EnabledIfSystemProperty(named = "test.benchmark", matches = "true")
+@DisplayName("JSON Filter Benchmark")
+class JsonFilterBenchmark {
+
+  private static final int ENTRIES = 20_000;
+  private static final int WARMUP = 20;
+  private static final int ITERATIONS = 100;
+  private static final String FILTER =
+      ".tree[] | select(.path == \"src\" or (.path | startswith(\"src/\"))) | {path, type, sha}";
+
+  @Test
+  @DisplayName("In-process filtering should beat an external jq over the same response")
+  void compareFiltering(@TempDir Path dir) throws Exception {
+    assumeTrue(jqAvailable(), "jq is not on the PATH");
+    String response = tree();
+    Path file = dir.resolve("tree.json");
+    Files.writeString(file, response);
+    var filter = JsonFilter.compile(FILTER);
+
+    String inProcess = measure(() -> filter.apply(response, Map.of()).orElseThrow());
+    String external = measure(() -> jq(file));
+
+    System.out.printf("in-process: %s%nexternal jq: %s%n", inProcess, external);
+    assertThat(filter.apply(response, Map.of()).orElseThrow()).isEqualTo(jq(file));
+    assertThat(median(inProcess)).isLessThan(median(external));
+  }
+
+  private interface Run {
+    String run() throws Exception;
+  }
+
+  private static String measure(Run run) throws Exception {
+    long[] nanos = new long[ITERATIONS];
+    for (int i = -WARMUP; i < ITERATIONS; i++) {
+      long start = System.nanoTime();
+      run.run();
+      if (i >= 0) {
+        nanos[i] = System.nanoTime() - start;
+      }
+    }
+    Arrays.sort(nanos);
+    return "p50=%dns p90=%dns p99=%dns"
+        .formatted(nanos[ITERATIONS / 2], nanos[ITERATIONS * 9 / 10], nanos[ITERATIONS * 99 / 100]);
+  }
+
+  private static long median(String summary) {
+    return Long.parseLong(summary.substring(summary.indexOf("p50=") + 4, summary.indexOf("ns")));
+  }
+
+  private static String tree() {
+    var json = new StringBuilder("{\"sha\":\"root\",\"url\":\"u\",\"tree\":[");
+    for (int i = 0; i < ENTRIES; i++) {
+      String dir = i % 4 == 0 ? "src" : "docs" + i % 7;
+      json.append(i == 0 ? "" : ",")
+          .append(
+              ("{\"path\":\"%s/f%d.txt\",\"mode\":\"100644\",\"type\":\"blob\",\"sha\":\"%040x\","
+                      + "\"size\":%d,\"url\":\"https://api.github.com/repos/o/r/git/blobs/%d\"}")
+                  .formatted(dir, i, i, i * 31, i));
+    }
+    return json.append("],\"truncated\":false}").toString();
+  }
+
+  private static boolean jqAvailable() {
+    try {
+      return new ProcessBuilder("jq", "--version").start().waitFor() == 0;
+    } catch (Exception e) {
+      return false;
+    }
+  }
+
+  private static String jq(Path file) throws Exception {
+    var process = new ProcessBuilder("jq", "-r", "-c", FILTER, file.toString()).start();
+    String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+    assertThat(process.waitFor()).isEqualTo(0);
+    return output;
+  }
+}
@@ -0,0 +1,148 @@
+package com.kousenit.gh_mcp_server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("JSON Filter Tests")
+class JsonFilterTest {
+
+  private static final String REPO =
+      """
+      {"name":"Hello-World","owner":{"login":"octocat"},"topics":["a","b","c"],
+       "content":"SGVsbG8s\\nIHdvcmxk\\n","size":108,"private":false,"license":null}
+      """;
+
+  private static String apply(String filter, String json) {
+    return apply(filter, json, Map.of());
+  }
+
+  private static String apply(String filter, String json, Map<String, ?> variables) {
+    return JsonFilter.compile(filter).apply(json, variables).orElseThrow();
+  }
+
+  @Nested
+  @DisplayName("Paths")
+  class Paths {
+
+    @Test
+    @DisplayName("Should follow fields, indexes and slices, printing strings raw")
+    void testPaths() {
+      assertThat(apply(".owner.login", REPO)).isEqualTo("octocat\n");
+      assertThat(apply(".\"name\"", REPO)).isEqualTo("Hello-World\n");
+      assertThat(apply(".topics[1]", REPO)).isEqualTo("b\n");
+      assertThat(apply(".topics[-1]", REPO)).isEqualTo("c\n");
+      assertThat(apply(".topics[:2]", REPO)).isEqualTo("[\"a\",\"b\"]\n");
+      assertThat(apply(".name[0:5]", REPO)).isEqualTo("Hello\n");
+      assertThat(apply(".missing.deeper", REPO)).isEqualTo("null\n");
+    }
+
+    @Test
+    @DisplayName("Should iterate and pipe each output through the rest")
+    void testIterate() {
+      assertThat(apply(".topics[] | ascii_downcase", REPO)).isEqualTo("a\nb\nc\n");
+      assertThat(apply("[.topics[], .name] | length", REPO)).isEqualTo("4\n");
+    }
+
+    @Test
+    @DisplayName("Should decode base64 the contents API wraps at 60 columns")
+    void testBase64() {
+      assertThat(apply(".content | @base64d", REPO)).isEqualTo("Hello, world\n");
+      assertThat(apply(".name | @base64 | @base64d", REPO)).isEqualTo("Hello-World\n");
+    }
+  }
+
+  @Nested
+  @DisplayName("Construction and Selection")
+  class ConstructionAndSelection {
+
+    @Test
+    @DisplayName("Should build objects with shorthand, renamed and computed keys")
+    void testObjects() {
+      assertThat(apply("{name, owner: .owner.login, (.topics[0]): .size}", REPO))
+          .isEqualTo("{\"name\":\"Hello-World\",\"owner\":\"octocat\",\"a\":108}\n");
+    }
+
+    @Test
+    @DisplayName("Should select with comparisons, boolean operators and string tests")
+    void testSelect() {
+      var json = "[{\"n\":1,\"p\":\"src/A\"},{\"n\":2,\"p\":\"docs\"},{\"n\":3,\"p\":\"src\"}]";
+
+      assertThat(apply(".[] | select(.n >= 2 and (.p | startswith(\"src\"))) | .n", json))
+          .isEqualTo("3\n");
+      assertThat(apply(".[] | select(.n == 1 or .p == \"docs\") | .n", json)).isEqualTo("1\n2\n");
+      assertThat(apply("map(select(.p != \"docs\") | .n)", json)).isEqualTo("[1,3]\n");
+    }
+
+    @Test
+    @DisplayName("Should bind variables and fall back with //")
+    void testVariables() {
+      var json = "[{\"n\":1},{\"n\":2},{\"n\":3}]";
+
+      assertThat(apply(".[:$limit] | .[] | .n", json, Map.of("limit", 2))).isEqualTo("1\n2\n");
+      assertThat(apply(".license // \"none\"", REPO)).isEqualTo("none\n");
+      assertThat(apply(".name + \"/\" + $suffix", REPO, Map.of("suffix", "x")))
+          .isEqualTo("Hello-World/x\n");
+    }
+  }
+
+  @Nested
+  @DisplayName("Inputs and Errors")
+  class InputsAndErrors {
+
+    @Test
+    @DisplayName("Should stream the elements of a leading path without closing the input")
+    void testStream() throws Exception {
+      var json = "{\"sha\":\"x\",\"tree\":[{\"path\":\"a\"},{\"path\":\"b\"}],\"truncated\":false}";
+      var results = new ArrayList<JsonNode>();
+
+      var in = new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+
+      JsonFilter.compile(".tree[] | .path").apply(in, Map.of(), results::add);
+
+      assertThat(results).hasSize(2);
+      assertThat(results.get(1).textValue()).isEqualTo("b");
+    }
+
+    @Test
+    @DisplayName("Should filter each value of a sequence, as paginated output has")
+    void testSequence() {
+      assertThat(apply(".[] | .n", "[{\"n\":1}]\n[{\"n\":2}]")).isEqualTo("1\n2\n");
+    }
+
+    @Test
+    @DisplayName("Should report errors on the input like gh and ignore non-JSON output")
+    void testErrors() {
+      var filter = JsonFilter.compile(".tree[]");
+
+      assertThat(filter.apply("{\"sha\":\"x\"}", Map.of()))
+          .contains("Error: Cannot iterate over null");
+      assertThat(JsonFilter.compile(".name.first").apply(REPO, Map.of()))
+          .contains("Error: Cannot index string with \"first\"");
+      assertThat(filter.apply("Error: HTTP 404: Not Found", Map.of())).isEmpty();
+      assertThat(filter.apply("", Map.of())).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should reject filters outside the supported subset when compiling")
+    void testCompileErrors() {
+      assertThatThrownBy(() -> JsonFilter.compile(".a | frobnicate"))
+          .isInstanceOf(IllegalArgumentException.class)
+          .hasMessageContaining("frobnicate/0 is not a supported function");
+      assertThatThrownBy(() -> JsonFilter.compile(".. | .a"))
+          .isInstanceOf(IllegalArgumentException.class)
+          .hasMessageContaining("recursive descent");
+      assertThatThrownBy(() -> JsonFilter.compile("{a: 1"))
+          .isInstanceOf(IllegalArgumentException.class)
+          .hasMessageContaining("expected '}'");
+    }
+  }
+}
@@ -0,0 +1,211 @@
+package com.kousenit.gh_mcp_server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("JSON Projection Tests")
+class JsonProjectionTest {
+
+  private static final String ISSUES =
+      """
+      [{"assignees":[{"id":"MDQ6","login":"hubot","name":"Hubot"}],
+        "author":{"id":"MDQ6","is_bot":false,"login":"octocat","name":"The Octocat"},
+        "body":"It does not work","createdAt":"2024-05-01T10:00:00Z",
+        "labels":[{"id":"LA_1","name":"bug","description":"Something is broken","color":"d73a4a"}],
+        "number":12,"state":"OPEN","title":"Crash on start",
+        "reactionGroups":[{"content":"THUMBS_UP","users":{"totalCount":3}}],
+        "url":"https://github.com/octocat/Hello-World/issues/12"},
+       {"assignees":[],"author":{"login":"monalisa"},"body":"","createdAt":"2024-05-02T10:00:00Z",
+        "labels":[],"number":13,"state":"CLOSED","title":"Typo","url":"u"}]
+      """;
+
+  @Nested
+  @DisplayName("Reading")
+  class Reading {
+
+    @Test
+    @DisplayName("Should keep the needed fields and reduce people and labels to names")
+    void testIssues() throws Exception {
+      var issues = JsonProjection.readAll(ISSUES, Issue::read);
+
+      assertThat(issues).hasSize(2);
+      var issue = issues.getFirst();
+      assertThat(issue.number()).isEqualTo(12L);
+      assertThat(issue.author()).isEqualTo("octocat");
+      assertThat(issue.labels()).containsExactly("bug");
+      assertThat(issue.assignees()).containsExactly("hubot");
+      assertThat(issue.comments()).isNull();
+      assertThat(issues.get(1).state()).isEqualTo("CLOSED");
+    }
+
+    @Test
+    @DisplayName("Should read the sequence of values --jq prints")
+    void testJqSequence() throws Exception {
+      var output =
+          """
+          {"sha":"abc1234","message":"Fix it","author":"Mona","date":"2024-05-01T10:00:00Z"}
+          {"sha":"def5678","message":"Break it","author":"Hubot","date":"2024-04-30T10:00:00Z"}
+          """;
+
+      var commits = JsonProjection.readAll(output, Commit::read);
+
+      assertThat(commits)
+          .containsExactly(
+              new Commit("abc1234", "Fix it", "Mona", "2024-05-01T10:00:00Z"),
+              new Commit("def5678", "Break it", "Hubot", "2024-04-30T10:00:00Z"));
+    }
+
+    @Test
+    @DisplayName("Should read from a byte stream without closing it")
+    void testStream() throws Exception {
+      var closed = new AtomicBoolean();
+      var in =
+          new ByteArrayInputStream(ISSUES.getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public void close() {
+              closed.set(true);
+            }
+          };
+
+      assertThat(JsonProjection.readAll(in, Issue::read)).hasSize(2);
+      assertThat(closed.get()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should accept gh's own names for repository fields")
+    void testRepositoryAliases() throws Exception {
+      var output =
+          """
+          {"name":"Hello-World","owner":{"id":"1","login":"octocat"},
+           "defaultBranchRef":{"name":"main"},"primaryLanguage":{"name":"Java"},
+           "repositoryTopics":[{"name":"mcp"}],"stargazerCount":42,"forkCount":7,"isPrivate":false}
+          """;
+
+      var repository = JsonProjection.readAll(output, Repository::read).getFirst();
+
+      assertThat(repository.owner()).isEqualTo("octocat");
+      assertThat(repository.defaultBranch()).isEqualTo("main");
+      assertThat(repository.language()).isEqualTo("Java");
+      assertThat(repository.topics()).containsExactly("mcp");
+      assertThat(repository.stargazersCount()).isEqualTo(42L);
+      assertThat(repository.forksCount()).isEqualTo(7L);
+      assertThat(repository.isPrivate()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should read release assets and leave out an unfinished run's conclusion")
+    void testNested() throws Exception {
+      var release =
+          JsonProjection.readAll(
+                  """
+                  {"tagName":"v1.0","isDraft":false,"author":{"login":"octocat"},
+                   "assets":[{"name":"app.zip","size":1024,"downloadCount":5,"url":"u",
+                     "uploader":{"login":"octocat"}}]}
+                  """,
+                  Release::read)
+              .getFirst();
+      var run =
+          JsonProjection.readAll(
+                  "{\"databaseId\":99,\"status\":\"in_progress\",\"conclusion\":\"\"}",
+                  WorkflowRun::read)
+              .getFirst();
+
+      assertThat(release.assets()).containsExactly(new Release.Asset("app.zip", 1024L, 5L, "u"));
+      assertThat(run.databaseId()).isEqualTo(99L);
+      assertThat(run.conclusion()).isNull();
+    }
+  }
+
+  @Nested
+  @DisplayName("Encoding")
+  class Encoding {
+
+    @Test
+    @DisplayName("Should write records compactly without null components")
+    void testProject() {
+      var projected =
+          JsonProjection.project(
+              "{\"number\":1,\"title\":\"T\",\"author\":{\"login\":\"octocat\",\"id\":\"x\"}}",
+              PullRequest::read);
+
+      assertThat(projected).contains("{\"number\":1,\"title\":\"T\",\"author\":\"octocat\"}");
+    }
+
+    @Test
+    @DisplayName("Should write a list for arrays and value sequences")
+    void testProjectList() {
+      assertThat(JsonProjection.project("[]", Issue::read)).contains("[]");
+      assertThat(JsonProjection.project("{\"sha\":\"a\"}\n{\"sha\":\"b\"}", Commit::read))
+          .contains("[{\"sha\":\"a\"},{\"sha\":\"b\"}]");
+    }
+
+    @Test
+    @DisplayName("Should always write a list for list tools, also for a single record")
+    void testProjectListOfOne() {
+      assertThat(JsonProjection.projectList("{\"sha\":\"a\"}", Commit::read))
+          .contains("[{\"sha\":\"a\"}]");
+      assertThat(JsonProjection.projectList("[{\"sha\":\"a\"}]", Commit::read))
+          .contains("[{\"sha\":\"a\"}]");
+      assertThat(JsonProjection.projectList("", Commit::read)).contains("[]");
+      assertThat(JsonProjection.projectList("Error: HTTP 404", Commit::read)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should leave errors, plain text and broken JSON alone")
+    void testNotJson() {
+      assertThat(JsonProjection.project("Error: HTTP 404: Not Found", Issue::read)).isEmpty();
+      assertThat(JsonProjection.project("", Issue::read)).isEmpty();
+      assertThat(JsonProjection.project("[{\"number\":1", Issue::read)).isEmpty();
+    }
+  }
+
+  @Nested
+  @DisplayName("Tools")
+  class Tools {
+
+    private final TestGithubService service =
+        new TestGithubService(new GitHubProperties("main", 30, 10, 30));
+
+    @Test
+    @DisplayName("Should return issues as records")
+    void testListIssues() {
+      service.setNextResult(ISSUES);
+
+      var result = service.listIssues("octocat", "Hello-World", "all");
+
+      assertThat(result).startsWith("[{\"number\":12,\"title\":\"Crash on start\"");
+      assertThat(result).contains("\"author\":\"octocat\"", "\"labels\":[\"bug\"]");
+      assertThat(result).doesNotContain("reactionGroups", "d73a4a");
+    }
+
+    @Test
+    @DisplayName("Should return a one-commit history as a list")
+    void testSingleCommit() {
+      service.setNextResult(
+          "[{\"sha\":\"0123456789abcdef\",\"commit\":{\"message\":\"Initial commit\","
+              + "\"author\":{\"name\":\"Ann\",\"date\":\"2024-05-01T10:00:00Z\"}}}]");
+
+      var result = service.getCommitHistory("o", "r", 1);
+
+      assertThat(result)
+          .isEqualTo(
+              "[{\"sha\":\"0123456\",\"message\":\"Initial commit\",\"author\":\"Ann\","
+                  + "\"date\":\"2024-05-01T10:00:00Z\"}]");
+    }
+
+    @Test
+    @DisplayName("Should return gh's output as is when it is not JSON")
+    void testPassthrough() {
+      service.setNextResult("no runs found");
+
+      assertThat(service.listWorkflowRuns("o", "r", null, null)).isEqualTo("no runs found");
+      assertThat(service.getAllCommands().getFirst()).contains(WorkflowRun.LIST_FIELDS);
+    }
+  }
+}
@@ -0,0 +1,141 @@
+package com.kousenit.gh_mcp_server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Output Budget Tests")
+class OutputBudgetTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final Pattern NOTE =
+      Pattern.compile("\n\n\\[Part (\\d+) of (\\d+)\\. Call continueResult with handle \"(\\w+)\"");
+
+  private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+
+  /** A budget of 25 tokens, 100 characters, for every tool but listBranches. */
+  private OutputBudget budget(int maxStored) {
+    return new OutputBudget(
+        new GitHubProperties.Output(25, Map.of("listBranches", 0), maxStored, 60), now::get);
+  }
+
+  private static String branches(int count) {
+    var branches = new ArrayList<String>();
+    for (int i = 0; i < count; i++) {
+      branches.add("{\"name\":\"branch-%02d\"}".formatted(i));
+    }
+    return "[" + String.join(",", branches) + "]";
+  }
+
+  private static String handle(String part) {
+    var matcher = NOTE.matcher(part);
+    return matcher.find() ? matcher.group(3) : null;
+  }
+
+  private static String body(String part) {
+    var matcher = NOTE.matcher(part);
+    return matcher.find() ? part.substring(0, matcher.start()) : part;
+  }
+
+  @Nested
+  @DisplayName("Slicing")
+  class Slicing {
+
+    @Test
+    @DisplayName("Should return results within the budget untouched")
+    void testWithinBudget() {
+      String small = branches(2);
+
+      assertThat(budget(10).apply("searchIssues", small)).isSameAs(small);
+    }
+
+    @Test
+    @DisplayName("Should cut JSON arrays into valid arrays served part by part")
+    void testArrayParts() throws Exception {
+      var budget = budget(10);
+      String result = branches(20);
+
+      var parts = new ArrayList<String>();
+      parts.add(budget.apply("listTags", result));
+      String handle = handle(parts.getFirst());
+      while (handle(parts.getLast()) != null) {
+        parts.add(budget.continueResult(handle));
+      }
+
+      var names = new ArrayList<String>();
+      for (var part : parts) {
+        assertThat(body(part).length()).isLessThanOrEqualTo(100);
+        MAPPER.readTree(body(part)).forEach(branch -> names.add(branch.path("name").asText()));
+      }
+      assertThat(parts.size()).isGreaterThan(2);
+      assertThat(names).hasSize(20);
+      assertThat(names.getLast()).isEqualTo("branch-19");
+      assertThat(budget.stored()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should cut text at line breaks")
+    void testTextParts() {
+      var lines = new StringBuilder();
+      for (int i = 0; i < 10; i++) {
+        lines.append("line %02d of the workflow log output\n".formatted(i));
+      }
+
+      var slices = OutputBudget.slice(lines.toString(), 100);
+
+      assertThat(slices).hasSize(5);
+      for (var slice : slices) {
+        assertThat(slice).endsWith("\n");
+      }
+      assertThat(String.join("", slices)).isEqualTo(lines.toString());
+    }
+
+    @Test
+    @DisplayName("Should honor per-tool budgets, where 0 turns the budget off")
+    void testPerToolBudget() {
+      var budget = budget(10);
+      String result = branches(20);
+
+      assertThat(budget.apply("listBranches", result)).isSameAs(result);
+      assertThat(budget.apply(OutputBudget.CONTINUE_TOOL, result)).isSameAs(result);
+      assertThat(budget.maxTokens("getIssue")).isEqualTo(25);
+    }
+  }
+
+  @Nested
+  @DisplayName("Stored Parts")
+  class StoredParts {
+
+    @Test
+    @DisplayName("Should refuse expired and unknown handles")
+    void testExpiry() {
+      var budget = budget(10);
+      String handle = handle(budget.apply("listTags", branches(20)));
+
+      now.addAndGet(60_000);
+
+      assertThat(budget.continueResult(handle)).startsWith("Error: Unknown or expired");
+      assertThat(budget.continueResult("nope")).startsWith("Error: Unknown or expired");
+      assertThat(budget.stored()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should keep only the most recently used results")
+    void testBounded() {
+      var budget = budget(2);
+      String first = handle(budget.apply("listTags", branches(20)));
+      budget.apply("listTags", branches(21));
+      budget.apply("listTags", branches(22));
+
+      assertThat(budget.stored()).isEqualTo(2);
+      assertThat(budget.continueResult(first)).startsWith("Error: Unknown or expired");
+    }
+  }
+}
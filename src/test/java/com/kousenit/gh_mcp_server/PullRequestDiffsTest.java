@@ -0,0 +1,247 @@
+package com.kousenit.gh_mcp_server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayName("Pull Request Diffs Tests")
+class PullRequestDiffsTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private static final String BASE = "a".repeat(40);
+  private static final String HEAD = "b".repeat(40);
+
+  private static final String DIFF =
+      """
+      diff --git a/src/main/App.java b/src/main/App.java
+      index 1111111..2222222 100644
+      --- a/src/main/App.java
+      +++ b/src/main/App.java
+      @@ -1,3 +1,4 @@
+       package app;
+      +import java.util.List;
+       class App {
+       }
+      @@ -10,2 +11,2 @@ class App {
+      -  int x = 1;
+      +  int x = 2;
+      diff --git a/docs/guide.md b/docs/guide.md
+      new file mode 100644
+      index 0000000..3333333
+      --- /dev/null
+      +++ b/docs/guide.md
+      @@ -0,0 +1,2 @@
+      +# Guide
+      +Read me
+      diff --git a/old name.txt b/new name.txt
+      similarity index 100%
+      rename from old name.txt
+      rename to new name.txt
+      diff --git a/logo.png b/logo.png
+      deleted file mode 100644
+      index 4444444..0000000
+      Binary files a/logo.png and /dev/null differ
+      """;
+
+  @TempDir Path cacheDir;
+
+  private final List<String> downloads = new CopyOnWriteArrayList<>();
+  private String head = HEAD;
+  private String diff = DIFF;
+  private Runnable whileDownloading = () -> {};
+
+  private PullRequestDiffs diffs(String cacheDir, int maxChars, int maxFileChars) {
+    return new PullRequestDiffs(
+        new GitHubProperties.Diffs(cacheDir, 10, maxChars, maxFileChars, null),
+        args ->
+            new GithubCommand(
+                "{\"baseRefOid\":\"%s\",\"headRefOid\":\"%s\"}".formatted(BASE, head), "", 0),
+        (args, timeout, reader) -> {
+          downloads.add(args.get(1));
+          whileDownloading.run();
+          try {
+            var in = new ByteArrayInputStream(diff.getBytes(StandardCharsets.UTF_8));
+            return new GithubCommand(reader.read(in), "", 0);
+          } catch (IOException e) {
+            return new GithubCommand("", e.getMessage(), 1);
+          }
+        });
+  }
+
+  private PullRequestDiffs diffs() {
+    return diffs(cacheDir.toString(), 60_000, 20_000);
+  }
+
+  @Nested
+  @DisplayName("Changed Files")
+  class ChangedFiles {
+
+    @Test
+    @DisplayName("Should list every file with stats counted from the diff")
+    void testFiles() throws Exception {
+      JsonNode result = MAPPER.readTree(diffs().files("o", "r", 5, null));
+
+      assertThat(result.get("baseSha").asText()).isEqualTo(BASE);
+      assertThat(result.get("changedFiles").asInt()).isEqualTo(4);
+      assertThat(result.get("additions").asInt()).isEqualTo(4);
+      assertThat(result.get("deletions").asInt()).isEqualTo(1);
+
+      var files = result.get("files");
+      assertThat(files.get(0).get("path").asText()).isEqualTo("src/main/App.java");
+      assertThat(files.get(0).get("status").asText()).isEqualTo("modified");
+      assertThat(files.get(0).get("hunks").asInt()).isEqualTo(2);
+      assertThat(files.get(1).get("status").asText()).isEqualTo("added");
+      assertThat(files.get(2).get("path").asText()).isEqualTo("new name.txt");
+      assertThat(files.get(2).get("previousPath").asText()).isEqualTo("old name.txt");
+      assertThat(files.get(3).get("status").asText()).isEqualTo("removed");
+      assertThat(files.get(3).get("binary").asBoolean()).isTrue();
+      assertThat(downloads).containsExactly("repos/o/r/compare/" + BASE + "..." + HEAD);
+    }
+
+    @Test
+    @DisplayName("Should filter by path, directory and glob")
+    void testPathFilter() {
+      var filter = PullRequestDiffs.pathFilter("docs, **/*.java ,logo.png");
+
+      assertThat(filter.test("docs/guide.md")).isTrue();
+      assertThat(filter.test("src/main/App.java")).isTrue();
+      assertThat(filter.test("logo.png")).isTrue();
+      assertThat(filter.test("docs2/guide.md")).isFalse();
+      assertThat(filter.test("new name.txt")).isFalse();
+      assertThat(PullRequestDiffs.pathFilter(" ").test("anything")).isTrue();
+      assertThat(diffs().files("o", "r", 5, "src/{main")).startsWith("Error:");
+    }
+  }
+
+  @Nested
+  @DisplayName("Diffs")
+  class Diffs {
+
+    @Test
+    @DisplayName("Should return only the matching files after a summary")
+    void testDiff() {
+      String result = diffs().diff("o", "r", 5, "docs", 0, 0);
+
+      assertThat(result)
+          .startsWith("Pull request #5 (aaaaaaa...bbbbbbb): 1 of 4 changed files match, +4 -1");
+      assertThat(result).contains("+++ b/docs/guide.md\n@@ -0,0 +1,2 @@\n+# Guide");
+      assertThat(result).doesNotContain("App.java");
+    }
+
+    @Test
+    @DisplayName("Should pick one hunk of a file")
+    void testHunk() {
+      String result = diffs().diff("o", "r", 5, "src/main/App.java", 2, 0);
+
+      assertThat(result).contains("@@ -10,2 +11,2 @@").contains("+  int x = 2;");
+      assertThat(result).doesNotContain("import java.util.List");
+    }
+
+    @Test
+    @DisplayName("Should leave out hunks past the per-file limit and name them")
+    void testFileLimit() {
+      String result = diffs(null, 60_000, 100).diff("o", "r", 5, "**/*.java", 0, 0);
+
+      assertThat(result).contains("+import java.util.List;");
+      assertThat(result).doesNotContain("int x = 2");
+      assertThat(result).contains("[... hunks 2-2 of src/main/App.java left out for size");
+    }
+
+    @Test
+    @DisplayName("Should name the files past the call limit")
+    void testCallLimit() {
+      String result = diffs().diff("o", "r", 5, null, 0, 330);
+
+      assertThat(result).contains("left out for size");
+      assertThat(result).contains("src/main/App.java\n");
+      assertThat(result).contains("Left out for size; ask for them by path: ");
+      assertThat(result).contains("logo.png (");
+    }
+  }
+
+  @Nested
+  @DisplayName("Caching")
+  class Caching {
+
+    @Test
+    @DisplayName("Should read a diff once per base and head pair")
+    void testCachedByCommits() {
+      var diffs = diffs();
+
+      diffs.files("o", "r", 5, null);
+      String second = diffs.diff("o", "r", 5, "docs", 0, 0);
+      assertThat(second).contains("# Guide");
+      assertThat(downloads).hasSize(1);
+      assertThat(Files.exists(cacheDir.resolve("o/r/" + BASE + "-" + HEAD + ".diff"))).isTrue();
+
+      head = "c".repeat(40);
+      diff = DIFF.replace("Read me", "Read me twice");
+      assertThat(diffs.diff("o", "r", 5, "docs", 0, 0)).contains("Read me twice");
+      assertThat(downloads).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("Should let a concurrent call for the same diff read the copy being downloaded")
+    void testConcurrentDownload() throws InterruptedException, IOException {
+      var diffs = diffs();
+      var started = new CountDownLatch(1);
+      whileDownloading =
+          () -> {
+            started.countDown();
+            try {
+              Thread.sleep(200);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          };
+      var results = new CopyOnWriteArrayList<String>();
+
+      Thread first = Thread.ofVirtual().start(() -> results.add(diffs.files("o", "r", 5, null)));
+      started.await();
+      Thread second = Thread.ofVirtual().start(() -> results.add(diffs.files("o", "r", 5, null)));
+      first.join();
+      second.join();
+
+      assertThat(downloads).hasSize(1);
+      assertThat(results).hasSize(2);
+      assertThat(results.getLast()).isEqualTo(results.getFirst());
+      assertThat(Files.readString(cacheDir.resolve("o/r/" + BASE + "-" + HEAD + ".diff")))
+          .isEqualTo(DIFF);
+    }
+
+    @Test
+    @DisplayName("Should download every time without a cache directory")
+    void testNoCache() {
+      var diffs = diffs(null, 60_000, 20_000);
+
+      diffs.files("o", "r", 5, null);
+      diffs.files("o", "r", 5, null);
+
+      assertThat(downloads).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("Should fail when the pull request commits are unknown")
+    void testUnknownCommits() {
+      head = "";
+
+      assertThat(diffs().diff("o", "r", 5, null, 0, 0)).startsWith("Error:");
+      assertThat(diffs().diff("o", "r", 0, null, 0, 0)).startsWith("Error:");
+      assertThat(downloads).isEmpty();
+    }
+  }
+}
@@ -0,0 +1,245 @@
+package com.kousenit.gh_mcp_server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayName("Release Assets Tests")
+class ReleaseAssetsTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private static final Pattern RANGE = Pattern.compile("Range: bytes=(\\d+)-(\\d+)");
+
+  private static final int MEGABYTE = 1024 * 1024;
+
+  @TempDir Path dir;
+
+  private final byte[] content = new byte[3 * MEGABYTE + 12_345];
+  private final List<List<String>> streamed = Collections.synchronizedList(new ArrayList<>());
+  private String digest;
+  private String failingRange;
+  private boolean ignoreRanges;
+
+  ReleaseAssetsTest() throws Exception {
+    new Random(42).nextBytes(content);
+    digest = "sha256:" + sha256(content);
+  }
+
+  private Path uploads() {
+    return dir.resolve("uploads");
+  }
+
+  private ReleaseAssets assets() {
+    return new ReleaseAssets(
+        new GitHubProperties.Assets(dir.toString(), 3, 1, null, uploads().toString()),
+        args ->
+            new GithubCommand(
+                """
+                {"tag_name": "v1.0", "assets": [
+                  {"id": 7, "name": "app.tar.gz", "size": %d, "digest": %s,
+                   "uploader": {"login": "ann"}}]}"""
+                    .formatted(content.length, digest == null ? "null" : "\"" + digest + "\""),
+                "",
+                0),
+        (args, timeout, reader) -> {
+          streamed.add(args);
+          try {
+            if (args.getFirst().equals("release")) {
+              return new GithubCommand(reader.read(InputStream.nullInputStream()), "", 0);
+            }
+            String range = args.stream().filter(a -> a.startsWith("Range:")).findFirst().get();
+            if (range.equals(failingRange)) {
+              return new GithubCommand("", "HTTP 502: Bad Gateway", 1);
+            }
+            return new GithubCommand(reader.read(response(range)), "", 0);
+          } catch (IOException e) {
+            return new GithubCommand("", e.getMessage(), 1);
+          }
+        });
+  }
+
+  /** Answers a range request the way {@code gh api --include} prints it. */
+  private InputStream response(String range) {
+    var matcher = RANGE.matcher(range);
+    matcher.matches();
+    int from = ignoreRanges ? 0 : Integer.parseInt(matcher.group(1));
+    int to = ignoreRanges ? content.length - 1 : Integer.parseInt(matcher.group(2));
+    String headers =
+        ignoreRanges
+            ? "HTTP/2.0 200 OK\r\nContent-Type: application/octet-stream\r\n\r\n"
+            : "HTTP/2.0 206 Partial Content\r\nContent-Range: bytes %d-%d/%d\r\n\r\n"
+                .formatted(from, to, content.length);
+    return new SequenceInputStream(
+        new ByteArrayInputStream(headers.getBytes(StandardCharsets.US_ASCII)),
+        new ByteArrayInputStream(content, from, to - from + 1));
+  }
+
+  private static String sha256(byte[] bytes) throws Exception {
+    return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+  }
+
+  private Path downloaded() {
+    return dir.resolve("o/r/v1.0/app.tar.gz");
+  }
+
+  private static JsonNode json(String result) throws Exception {
+    return MAPPER.readTree(result);
+  }
+
+  @Nested
+  @DisplayName("Downloads")
+  class Downloads {
+
+    @Test
+    @DisplayName("Should download in ranges and return the path and checked digest")
+    void testDownload() throws Exception {
+      var result = json(assets().download("o", "r", "v1.0", "app.tar.gz"));
+
+      assertThat(result.get("path").asText()).isEqualTo(downloaded().toString());
+      assertThat(result.get("size").asLong()).isEqualTo(content.length);
+      assertThat(result.get("sha256").asText()).isEqualTo(sha256(content));
+      assertThat(result.get("verified").asBoolean()).isTrue();
+      assertThat(result.get("ranges").asInt()).isEqualTo(4);
+      assertThat(Files.readAllBytes(downloaded())).isEqualTo(content);
+      assertThat(streamed).hasSize(4);
+      assertThat(streamed.getFirst())
+          .contains("repos/o/r/releases/assets/7", "Accept: application/octet-stream");
+      assertThat(Files.exists(dir.resolve("o/r/v1.0/app.tar.gz.ranges"))).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should resume from the ranges an earlier attempt left on disk")
+    void testResume() throws Exception {
+      failingRange = "Range: bytes=%d-%d".formatted(2 * MEGABYTE, 3 * MEGABYTE - 1);
+      var assets = assets();
+
+      assertThat(assets.download("o", "r", "v1.0", "app.tar.gz"))
+          .startsWith("Error: 1 of 4 ranges failed")
+          .contains("HTTP 502");
+      assertThat(Files.exists(dir.resolve("o/r/v1.0/app.tar.gz.partial"))).isTrue();
+
+      failingRange = null;
+      streamed.clear();
+      var result = json(assets.download("o", "r", "v1.0", "app.tar.gz"));
+
+      assertThat(result.get("resumedRanges").asInt()).isEqualTo(3);
+      assertThat(result.get("verified").asBoolean()).isTrue();
+      assertThat(streamed).hasSize(1);
+      assertThat(Files.readAllBytes(downloaded())).isEqualTo(content);
+    }
+
+    @Test
+    @DisplayName("Should not download a file already there with GitHub's digest")
+    void testAlreadyThere() throws Exception {
+      var assets = assets();
+      assets.download("o", "r", "v1.0", "app.tar.gz");
+      streamed.clear();
+
+      var result = json(assets.download("o", "r", "v1.0", "app.tar.gz"));
+
+      assertThat(result.get("ranges").asInt()).isZero();
+      assertThat(streamed).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should drop a download whose digest does not match GitHub's")
+    void testMismatch() {
+      digest = "sha256:" + "0".repeat(64);
+
+      assertThat(assets().download("o", "r", "v1.0", "app.tar.gz"))
+          .startsWith("Error: The download's SHA-256");
+      assertThat(Files.exists(downloaded())).isFalse();
+      assertThat(Files.exists(dir.resolve("o/r/v1.0/app.tar.gz.partial"))).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should cope with a server that sends the whole file for a range")
+    void testIgnoredRanges() throws Exception {
+      ignoreRanges = true;
+      digest = null;
+
+      var result = json(assets().download("o", "r", "v1.0", "app.tar.gz"));
+
+      assertThat(result.has("verified")).isFalse();
+      assertThat(Files.readAllBytes(downloaded())).isEqualTo(content);
+    }
+
+    @Test
+    @DisplayName("Should reject unknown assets and names that are not plain file names")
+    void testErrors() {
+      assertThat(assets().download("o", "r", "v1.0", "other.zip"))
+          .isEqualTo("Error: Release v1.0 has no asset named other.zip");
+      assertThat(assets().download("o", "r", "v1.0", "../app.tar.gz")).startsWith("Error:");
+      assertThat(streamed).isEmpty();
+    }
+  }
+
+  @Nested
+  @DisplayName("Uploads")
+  class Uploads {
+
+    @Test
+    @DisplayName("Should upload a file and check its digest against GitHub's")
+    void testUpload() throws Exception {
+      Files.createDirectories(uploads());
+      Path file = Files.write(uploads().resolve("app.tar.gz"), content).toRealPath();
+
+      var result = json(assets().upload("o", "r", "v1.0", "app.tar.gz", true));
+
+      assertThat(result.get("sha256").asText()).isEqualTo(sha256(content));
+      assertThat(result.get("verified").asBoolean()).isTrue();
+      assertThat(streamed)
+          .containsExactly(
+              List.of("release", "upload", "v1.0", file.toString(), "--repo", "o/r", "--clobber"));
+    }
+
+    @Test
+    @DisplayName("Should only upload files that really lie in the upload directory")
+    void testUploadOutsideDirectory() throws Exception {
+      Files.createDirectories(uploads());
+      Path secret = Files.write(dir.resolve("hosts.yml"), "oauth_token: gho_secret".getBytes());
+      Files.createSymbolicLink(uploads().resolve("notes.txt"), secret);
+
+      assertThat(assets().upload("o", "r", "v1.0", secret.toString(), false))
+          .startsWith("Error: Only files in");
+      assertThat(assets().upload("o", "r", "v1.0", "../hosts.yml", false))
+          .startsWith("Error: Only files in");
+      assertThat(assets().upload("o", "r", "v1.0", "notes.txt", false))
+          .startsWith("Error: Only files in");
+      assertThat(streamed).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should report files that are missing or that GitHub hashed differently")
+    void testUploadErrors() throws Exception {
+      Files.createDirectories(uploads());
+      Path file = Files.write(uploads().resolve("app.tar.gz"), content);
+      digest = "sha256:" + "0".repeat(64);
+
+      assertThat(assets().upload("o", "r", "v1.0", file.toString(), false))
+          .startsWith("Error: GitHub's digest of the uploaded app.tar.gz does not match");
+      assertThat(assets().upload("o", "r", "v1.0", uploads().resolve("none").toString(), false))
+          .startsWith("Error: No file at");
+    }
+  }
+}
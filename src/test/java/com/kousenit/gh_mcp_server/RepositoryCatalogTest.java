@@ -0,0 +1,217 @@
+package com.kousenit.gh_mcp_server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Repository Catalog Tests")
+class RepositoryCatalogTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private static final RepositoryCatalog.Filter ALL =
+      new RepositoryCatalog.Filter(null, null, null, null, null);
+
+  private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+  private final List<String> requests = new ArrayList<>();
+  private final Map<String, Map<String, Object>> repositories = new LinkedHashMap<>();
+  private String ownerPath = "orgs/acme/repos";
+
+  private RepositoryCatalog catalog(int pageSize) {
+    return new RepositoryCatalog(
+        new GitHubProperties.Catalog(300, 86_400, 10, pageSize, null),
+        (args, timeout, reader) -> {
+          String path = args.get(1);
+          requests.add(path);
+          if (!path.startsWith(ownerPath)) {
+            return new GithubCommand("", "HTTP 404: Not Found", 1);
+          }
+          try {
+            var in = new ByteArrayInputStream(page(path).getBytes(StandardCharsets.UTF_8));
+            return new GithubCommand(reader.read(in), "", 0);
+          } catch (IOException e) {
+            return new GithubCommand("", e.getMessage(), 1);
+          }
+        },
+        now::get);
+  }
+
+  /** Serves the repositories sorted and paged as the query string asks. */
+  private String page(String path) throws IOException {
+    var query = new LinkedHashMap<String, String>();
+    for (String pair : path.substring(path.indexOf('?') + 1).split("&")) {
+      query.put(pair.substring(0, pair.indexOf('=')), pair.substring(pair.indexOf('=') + 1));
+    }
+    String field =
+        switch (query.get("sort")) {
+          case "updated" -> "updated_at";
+          case "pushed" -> "pushed_at";
+          default -> "name";
+        };
+    Comparator<Map<String, Object>> order = Comparator.comparing(r -> (String) r.get(field));
+    var sorted =
+        repositories.values().stream()
+            .sorted(query.get("direction").equals("desc") ? order.reversed() : order)
+            .toList();
+    int size = Integer.parseInt(query.get("per_page"));
+    int from = Math.min((Integer.parseInt(query.get("page")) - 1) * size, sorted.size());
+    return MAPPER.writeValueAsString(sorted.subList(from, Math.min(from + size, sorted.size())));
+  }
+
+  private void givenRepository(String name, String language, boolean archived, String at) {
+    var repository = new LinkedHashMap<String, Object>();
+    repository.put("name", name);
+    repository.put("full_name", "acme/" + name);
+    repository.put("language", language);
+    repository.put("topics", List.of("tools"));
+    repository.put("visibility", "public");
+    repository.put("archived", archived);
+    repository.put("stargazers_count", 3);
+    repository.put("pushed_at", at);
+    repository.put("updated_at", at);
+    repository.put("owner", Map.of("login", "acme", "avatar_url", "https://example.com/a.png"));
+    repositories.put(name, repository);
+  }
+
+  private void givenRepositories(int count) {
+    for (int i = 0; i < count; i++) {
+      givenRepository(
+          "repo-%03d".formatted(i),
+          i % 2 == 0 ? "Java" : "Go",
+          i % 10 == 0,
+          "2024-01-01T%02d:%02d:00Z".formatted(i / 60, i % 60));
+    }
+  }
+
+  private static JsonNode json(String result) throws Exception {
+    return MAPPER.readTree(result);
+  }
+
+  @Nested
+  @DisplayName("Listing")
+  class Listing {
+
+    @Test
+    @DisplayName("Should read every page of the owner and return a page of the listing")
+    void testPages() throws Exception {
+      givenRepositories(250);
+
+      var listing = json(catalog(100).list("acme", ALL, 3));
+
+      assertThat(listing.get("total").asInt()).isEqualTo(250);
+      assertThat(listing.get("pages").asInt()).isEqualTo(3);
+      assertThat(listing.get("repositories").size()).isEqualTo(50);
+      assertThat(listing.get("repositories").get(0).get("name").asText()).isEqualTo("repo-200");
+      assertThat(listing.get("repositories").get(0).has("owner")).isFalse();
+      assertThat(requests).hasSize(3);
+      assertThat(requests.getFirst())
+          .isEqualTo("orgs/acme/repos?per_page=100&page=1&sort=full_name&direction=asc");
+    }
+
+    @Test
+    @DisplayName("Should filter by language, archived, topic, visibility and last push")
+    void testFilters() throws Exception {
+      givenRepositories(20);
+      givenRepository("fresh", "Java", false, "2024-06-01T00:00:00Z");
+      var catalog = catalog(100);
+
+      var active = new RepositoryCatalog.Filter("java", null, false, null, null);
+      var recent = new RepositoryCatalog.Filter(null, "TOOLS", null, "2024-05", "public");
+      var java = json(catalog.list("acme", active, 1));
+      var pushed = json(catalog.list("acme", recent, 1));
+
+      assertThat(java.get("matched").asInt()).isEqualTo(9);
+      assertThat(pushed.get("matched").asInt()).isEqualTo(1);
+      assertThat(pushed.get("repositories").get(0).get("name").asText()).isEqualTo("fresh");
+    }
+
+    @Test
+    @DisplayName("Should fall back to the user endpoint for users")
+    void testUser() throws Exception {
+      ownerPath = "users/octocat/repos";
+      givenRepositories(3);
+      var catalog = catalog(100);
+
+      assertThat(json(catalog.list("octocat", ALL, 1)).get("total").asInt()).isEqualTo(3);
+      now.addAndGet(600_000);
+      catalog.list("octocat", ALL, 1);
+
+      assertThat(requests.stream().filter(r -> r.startsWith("orgs/")).count()).isEqualTo(1L);
+    }
+  }
+
+  @Nested
+  @DisplayName("Refreshing")
+  class Refreshing {
+
+    @Test
+    @DisplayName("Should answer from memory until the list is due for a refresh")
+    void testCached() {
+      givenRepositories(5);
+      var catalog = catalog(100);
+
+      catalog.list("acme", ALL, 1);
+      catalog.list("acme", ALL, 1);
+
+      assertThat(requests).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Should refresh with one page per timestamp and pick up changes")
+    void testIncremental() throws Exception {
+      givenRepositories(250);
+      var catalog = catalog(100);
+      catalog.list("acme", ALL, 1);
+      requests.clear();
+
+      givenRepository("repo-001", "Rust", false, "2024-07-01T00:00:00Z");
+      givenRepository("zzz-new", "Java", false, "2024-07-02T00:00:00Z");
+      now.addAndGet(600_000);
+      var rust = new RepositoryCatalog.Filter("rust", null, null, null, null);
+      var listing = json(catalog.list("acme", rust, 1));
+
+      assertThat(requests).hasSize(2);
+      assertThat(requests.get(0)).contains("sort=updated&direction=desc");
+      assertThat(requests.get(1)).contains("sort=pushed&direction=desc");
+      assertThat(listing.get("total").asInt()).isEqualTo(251);
+      assertThat(listing.get("matched").asInt()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should drop deleted repositories on a full sync")
+    void testFullSync() throws Exception {
+      givenRepositories(5);
+      var catalog = catalog(100);
+      catalog.list("acme", ALL, 1);
+
+      repositories.remove("repo-000");
+      now.addAndGet(600_000);
+      assertThat(json(catalog.list("acme", ALL, 1)).get("total").asInt()).isEqualTo(5);
+
+      now.addAndGet(86_400_000);
+      assertThat(json(catalog.list("acme", ALL, 1)).get("total").asInt()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("Should return errors other than a missing organization")
+    void testError() {
+      ownerPath = "nowhere";
+
+      assertThat(catalog(100).list("acme", ALL, 1)).isEqualTo("Error: HTTP 404: Not Found");
+      assertThat(catalog(100).list("acme", ALL, 0)).startsWith("Error:");
+    }
+  }
+}
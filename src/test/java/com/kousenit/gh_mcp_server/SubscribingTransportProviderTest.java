@@ -0,0 +1,209 @@
+package com.kousenit.gh_mcp_server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.modelcontextprotocol.json.McpJsonMapper;
+import io.modelcontextprotocol.json.TypeRef;
+import io.modelcontextprotocol.json.jackson.JacksonMcpJsonMapper;
+import io.modelcontextprotocol.spec.McpSchema;
+import io.modelcontextprotocol.spec.McpServerSession;
+import io.modelcontextprotocol.spec.McpServerTransport;
+import io.modelcontextprotocol.spec.McpServerTransportProvider;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+/**
+ * Drives sessions of the SDK through the subscribing provider the way a transport does, with
+ * in-memory transports recording what is sent to each client.
+ */
+@DisplayName("Subscribing Transport Provider Tests")
+class SubscribingTransportProviderTest {
+
+  private static final String FILE = "gh://octocat/Hello-World/main/README.md";
+  private static final String ISSUE = "gh://octocat/Hello-World/issues/42";
+
+  private static final McpJsonMapper JSON = new JacksonMcpJsonMapper(new ObjectMapper());
+
+  private final AtomicInteger sessions = new AtomicInteger();
+  private final TestGithubService service =
+      new TestGithubService(new GitHubProperties("main", 30, 10, 30));
+
+  private SubscribingTransportProvider provider;
+  private McpServerSession.Factory transportFactory;
+  private GhResources resources;
+
+  /** Records the messages sent to one client. */
+  private static final class RecordingTransport implements McpServerTransport {
+    final List<McpSchema.JSONRPCMessage> sent = new CopyOnWriteArrayList<>();
+
+    @Override
+    public Mono<Void> sendMessage(McpSchema.JSONRPCMessage message) {
+      return Mono.fromRunnable(() -> sent.add(message));
+    }
+
+    @Override
+    public <T> T unmarshalFrom(Object data, TypeRef<T> typeRef) {
+      return JSON.convertValue(data, typeRef);
+    }
+
+    @Override
+    public Mono<Void> closeGracefully() {
+      return Mono.empty();
+    }
+
+    List<McpSchema.JSONRPCNotification> notifications() {
+      return sent.stream()
+          .filter(McpSchema.JSONRPCNotification.class::isInstance)
+          .map(McpSchema.JSONRPCNotification.class::cast)
+          .toList();
+    }
+
+    McpSchema.JSONRPCResponse lastResponse() {
+      return (McpSchema.JSONRPCResponse) sent.getLast();
+    }
+  }
+
+  @BeforeEach
+  void setUp() {
+    resources =
+        new GhResources(
+            new GitHubProperties.Resources(0, 10, null),
+            service,
+            (sessionId, uri) -> provider.notifyUpdated(sessionId, uri),
+            System::currentTimeMillis);
+    provider =
+        new SubscribingTransportProvider(
+            new McpServerTransportProvider() {
+              @Override
+              public void setSessionFactory(McpServerSession.Factory sessionFactory) {
+                transportFactory = sessionFactory;
+              }
+
+              @Override
+              public Mono<Void> notifyClients(String method, Object params) {
+                return Mono.empty();
+              }
+
+              @Override
+              public Mono<Void> closeGracefully() {
+                return Mono.empty();
+              }
+            },
+            resources);
+    // What the SDK's server hands the transport: sessions that know nothing of subscriptions
+    provider.setSessionFactory(
+        transport ->
+            new McpServerSession(
+                "session-" + sessions.incrementAndGet(),
+                Duration.ofSeconds(5),
+                transport,
+                request ->
+                    Mono.just(
+                        new McpSchema.InitializeResult(
+                            McpSchema.LATEST_PROTOCOL_VERSION,
+                            McpSchema.ServerCapabilities.builder().resources(false, true).build(),
+                            new McpSchema.Implementation("github-server", "1.0.0"),
+                            null)),
+                Map.of(),
+                Map.of()));
+  }
+
+  private static McpSchema.JSONRPCResponse request(
+      McpServerSession session, RecordingTransport transport, String method, Object params) {
+    session
+        .handle(new McpSchema.JSONRPCRequest(McpSchema.JSONRPC_VERSION, method, method, params))
+        .block(Duration.ofSeconds(5));
+    return transport.lastResponse();
+  }
+
+  @Test
+  @DisplayName("Should advertise subscribe in the capabilities the server initializes with")
+  void testAdvertisesSubscribe() {
+    var transport = new RecordingTransport();
+    var session = transportFactory.create(transport);
+
+    var response =
+        request(
+            session,
+            transport,
+            McpSchema.METHOD_INITIALIZE,
+            Map.of(
+                "protocolVersion",
+                McpSchema.LATEST_PROTOCOL_VERSION,
+                "capabilities",
+                Map.of(),
+                "clientInfo",
+                Map.of("name", "agent", "version", "1")));
+
+    var capabilities = ((McpSchema.InitializeResult) response.result()).capabilities();
+    assertThat(capabilities.resources().subscribe()).isTrue();
+    assertThat(capabilities.resources().listChanged()).isTrue();
+  }
+
+  @Test
+  @DisplayName("Should notify only the sessions subscribed to the changed resource")
+  void testNotifiesSubscribers() {
+    var first = new RecordingTransport();
+    var second = new RecordingTransport();
+    var firstSession = transportFactory.create(first);
+    var secondSession = transportFactory.create(second);
+    service.setNextResult("v1");
+
+    var subscribed =
+        request(firstSession, first, McpSchema.METHOD_RESOURCES_SUBSCRIBE, Map.of("uri", FILE));
+    request(secondSession, second, McpSchema.METHOD_RESOURCES_SUBSCRIBE, Map.of("uri", ISSUE));
+    resources.check(null);
+    service.setNextResult("v2");
+    request(secondSession, second, McpSchema.METHOD_RESOURCES_UNSUBSCRIBE, Map.of("uri", ISSUE));
+
+    assertThat(subscribed.error()).isNull();
+    assertThat(resources.check(null)).containsExactly(FILE);
+    assertThat(first.notifications()).hasSize(1);
+    assertThat(first.notifications().getFirst().method())
+        .isEqualTo(McpSchema.METHOD_NOTIFICATION_RESOURCES_UPDATED);
+    assertThat(
+            ((McpSchema.ResourcesUpdatedNotification) first.notifications().getFirst().params())
+                .uri())
+        .isEqualTo(FILE);
+    assertThat(second.notifications()).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Should answer subscriptions to URIs that address nothing with an error")
+  void testInvalidUri() {
+    var transport = new RecordingTransport();
+    var session = transportFactory.create(transport);
+
+    var response =
+        request(
+            session,
+            transport,
+            McpSchema.METHOD_RESOURCES_SUBSCRIBE,
+            Map.of("uri", "https://github.com/octocat/Hello-World"));
+
+    assertThat(response.error().code()).isEqualTo(McpSchema.ErrorCodes.INVALID_PARAMS);
+    assertThat(resources.watchedResources()).isEqualTo(0);
+  }
+
+  @Test
+  @DisplayName("Should end the subscriptions of a session that closes")
+  void testCloseEndsSubscriptions() {
+    var transport = new RecordingTransport();
+    var session = transportFactory.create(transport);
+    service.setNextResult("v1");
+    request(session, transport, McpSchema.METHOD_RESOURCES_SUBSCRIBE, Map.of("uri", FILE));
+    assertThat(resources.watchedResources()).isEqualTo(1);
+
+    session.close();
+
+    assertThat(resources.watchedResources()).isEqualTo(0);
+  }
+}
@@ -7,6 +7,7 @@ import java.util.List;
 public class TestGithubService extends GithubService {
 
   private final List<List<String>> capturedCommands = new ArrayList<>();
+  private final List<CallContext> capturedContexts = new ArrayList<>();
   private String nextResult = "";
   private String nextError = "";
   private int nextExitCode = 0;
@@ -21,6 +22,7 @@ public class TestGithubService extends GithubService {
     command.add("gh");
     command.addAll(Arrays.asList(args));
     capturedCommands.add(command);
+    capturedContexts.add(CallContext.current());
     return new GithubCommand(nextResult, nextError, nextExitCode);
   }
 
@@ -47,8 +49,14 @@ public class TestGithubService extends GithubService {
     return new ArrayList<>(capturedCommands);
   }
 
+  /** The call context each command ran under, in the order of {@link #getAllCommands()}. */
+  public List<CallContext> getAllContexts() {
+    return new ArrayList<>(capturedContexts);
+  }
+
   public void clearCommands() {
     capturedCommands.clear();
+    capturedContexts.clear();
   }
 
   public void reset() {
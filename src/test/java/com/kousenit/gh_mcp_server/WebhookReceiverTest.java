@@ -0,0 +1,213 @@
+package com.kousenit.gh_mcp_server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Webhook Receiver Tests")
+class WebhookReceiverTest {
+
+  private static final String SECRET = "It's a Secret to Everybody";
+
+  private final List<WebhookReceiver.Delivery> deliveries = new ArrayList<>();
+
+  private WebhookReceiver receiver(int port, String secret) {
+    return new WebhookReceiver(
+        new GitHubProperties.Webhook(port, null, null, secret), deliveries::add);
+  }
+
+  private WebhookReceiver receiver() {
+    return receiver(0, SECRET);
+  }
+
+  /** A delivery recorded from GitHub, with the fields the receiver does not use trimmed. */
+  private static byte[] payload(String event) throws IOException {
+    try (var in = WebhookReceiverTest.class.getResourceAsStream("/webhooks/" + event + ".json")) {
+      return in.readAllBytes();
+    }
+  }
+
+  private static String sign(String secret, byte[] payload) throws Exception {
+    var mac = Mac.getInstance("HmacSHA256");
+    mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+    return "sha256=" + HexFormat.of().formatHex(mac.doFinal(payload));
+  }
+
+  @Nested
+  @DisplayName("Signatures")
+  class Signatures {
+
+    @Test
+    @DisplayName("Should verify GitHub's documented example signature")
+    void testDocumentedExample() {
+      var signature = "sha256=757107ea0eb2509fc211221cce984b8a37570b6d7586c22c46f4379c8b043e17";
+
+      assertThat(receiver().verify(signature, "Hello, World!".getBytes(StandardCharsets.UTF_8)))
+          .isTrue();
+    }
+
+    @Test
+    @DisplayName("Should reject tampered, foreign and missing signatures")
+    void testRejects() throws Exception {
+      var receiver = receiver();
+      byte[] payload = payload("push");
+      String signature = sign(SECRET, payload);
+      byte[] tampered =
+          new String(payload, StandardCharsets.UTF_8)
+              .replace("main", "evil")
+              .getBytes(StandardCharsets.UTF_8);
+
+      assertThat(receiver.receive("push", "1", signature, tampered)).isEqualTo(401);
+      assertThat(receiver.receive("push", "2", sign("other", payload), payload)).isEqualTo(401);
+      assertThat(receiver.receive("push", "3", null, payload)).isEqualTo(401);
+      assertThat(receiver.receive("push", "4", "sha256=zz", payload)).isEqualTo(401);
+      assertThat(deliveries).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should reject everything without a configured secret")
+    void testNoSecret() throws Exception {
+      byte[] payload = payload("push");
+
+      assertThat(receiver(0, null).receive("push", "1", sign("x", payload), payload))
+          .isEqualTo(401);
+    }
+  }
+
+  @Nested
+  @DisplayName("Recorded Deliveries")
+  class RecordedDeliveries {
+
+    @Test
+    @DisplayName("Should extract the event, action and repository of each recorded delivery")
+    void testRecordedPayloads() throws Exception {
+      var receiver = receiver();
+      int id = 0;
+      for (String event : List.of("issues", "pull_request", "push", "workflow_run", "release")) {
+        byte[] payload = payload(event);
+        assertThat(receiver.receive(event, String.valueOf(id++), sign(SECRET, payload), payload))
+            .isEqualTo(202);
+      }
+
+      assertThat(deliveries)
+          .containsExactly(
+              new WebhookReceiver.Delivery("issues", "opened", "octocat/Hello-World"),
+              new WebhookReceiver.Delivery("pull_request", "synchronize", "octocat/Hello-World"),
+              new WebhookReceiver.Delivery("push", null, "octocat/Hello-World"),
+              new WebhookReceiver.Delivery("workflow_run", "completed", "octocat/Hello-World"),
+              new WebhookReceiver.Delivery("release", "published", "octocat/Hello-World"));
+    }
+
+    @Test
+    @DisplayName("Should apply a redelivered event once")
+    void testRedelivery() throws Exception {
+      var receiver = receiver();
+      byte[] payload = payload("issues");
+      String signature = sign(SECRET, payload);
+
+      assertThat(receiver.receive("issues", "abc", signature, payload)).isEqualTo(202);
+      assertThat(receiver.receive("issues", "abc", signature, payload)).isEqualTo(200);
+
+      assertThat(deliveries).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Should drop cached results of the pushed repository")
+    void testInvalidatesCache() throws Exception {
+      var cache =
+          new GhResponseCache(
+              new GitHubProperties.Cache(60, 100, null), System::currentTimeMillis);
+      var cached = List.of("issue", "list", "--repo", "octocat/Hello-World");
+      var other = List.of("issue", "list", "--repo", "octocat/Spoon-Knife");
+      cache.put(cached, new GithubCommand("[]", "", 0));
+      cache.put(other, new GithubCommand("[]", "", 0));
+      var receiver =
+          new WebhookReceiver(
+              new GitHubProperties.Webhook(0, null, null, SECRET),
+              cache,
+              GitMirror.disabled(),
+              IssueMirror.disabled(),
+              new CiWatcher(
+                  Duration.ofSeconds(1), Duration.ofSeconds(1), Duration.ofSeconds(1), null),
+              new GhResources(
+                  new GitHubProperties.Resources(0, null, null),
+                  null,
+                  (sessionId, uri) -> {},
+                  () -> 0L));
+      byte[] payload = payload("push");
+
+      receiver.receive("push", "1", sign(SECRET, payload), payload);
+
+      assertThat(cache.get(cached)).isEmpty();
+      assertThat(cache.get(other)).isPresent();
+    }
+  }
+
+  @Nested
+  @DisplayName("HTTP Endpoint")
+  class HttpEndpoint {
+
+    private static int freePort() throws IOException {
+      try (var socket = new ServerSocket(0)) {
+        return socket.getLocalPort();
+      }
+    }
+
+    @Test
+    @DisplayName("Should accept signed POSTs and refuse other methods")
+    void testEndpoint() throws Exception {
+      var receiver = receiver(freePort(), SECRET);
+      receiver.start();
+      try {
+        var client = HttpClient.newHttpClient();
+        var uri = URI.create("http://127.0.0.1:" + receiver.port() + "/webhook");
+        byte[] payload = payload("ping");
+
+        var posted =
+            client.send(
+                HttpRequest.newBuilder(uri)
+                    .header("X-GitHub-Event", "ping")
+                    .header("X-GitHub-Delivery", "1")
+                    .header("X-Hub-Signature-256", sign(SECRET, payload))
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(payload))
+                    .build(),
+                HttpResponse.BodyHandlers.discarding());
+        var fetched =
+            client.send(
+                HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.discarding());
+
+        assertThat(posted.statusCode()).isEqualTo(200);
+        assertThat(fetched.statusCode()).isEqualTo(405);
+        assertThat(deliveries).hasSize(1);
+        assertThat(deliveries.getFirst().event()).isEqualTo("ping");
+      } finally {
+        receiver.stop();
+      }
+    }
+
+    @Test
+    @DisplayName("Should not listen without a secret")
+    void testNotStartedWithoutSecret() throws Exception {
+      var receiver = receiver(freePort(), null);
+
+      receiver.start();
+
+      assertThat(receiver.port()).isZero();
+    }
+  }
+}
@@ -0,0 +1,312 @@
+package com.kousenit.gh_mcp_server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayName("Workflow Artifacts Tests")
+class WorkflowArtifactsTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private static final Pattern RANGE = Pattern.compile("Range: bytes=(\\d*)-(\\d*)");
+
+  private static final String REPORT =
+      "<testsuite name=\"AppTest\" tests=\"2\" failures=\"1\">\n".repeat(200) + "</testsuite>\n";
+
+  @TempDir Path cacheDir;
+
+  private final List<String> ranges = new CopyOnWriteArrayList<>();
+  private long bytesServed;
+  private byte[] archive;
+  private String failure;
+  private Runnable whileFetching = () -> {};
+
+  WorkflowArtifactsTest() throws IOException {
+    var binary = new byte[512 * 1024];
+    new Random(7).nextBytes(binary);
+    binary[0] = 0;
+    archive =
+        zip(
+            out -> {
+              deflated(out, "reports/", new byte[0]);
+              deflated(out, "reports/TEST-AppTest.xml", REPORT.getBytes(StandardCharsets.UTF_8));
+              stored(out, "coverage.bin", binary);
+              deflated(out, "summary.txt", "2 tests, 1 failure\n".getBytes(StandardCharsets.UTF_8));
+            });
+  }
+
+  @FunctionalInterface
+  private interface ZipWriter {
+    void write(ZipOutputStream out) throws IOException;
+  }
+
+  private static byte[] zip(ZipWriter writer) throws IOException {
+    var bytes = new ByteArrayOutputStream();
+    try (var out = new ZipOutputStream(bytes)) {
+      writer.write(out);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static void deflated(ZipOutputStream out, String name, byte[] content)
+      throws IOException {
+    out.putNextEntry(new ZipEntry(name));
+    out.write(content);
+    out.closeEntry();
+  }
+
+  private static void stored(ZipOutputStream out, String name, byte[] content) throws IOException {
+    var entry = new ZipEntry(name);
+    var crc = new CRC32();
+    crc.update(content);
+    entry.setMethod(ZipEntry.STORED);
+    entry.setSize(content.length);
+    entry.setCrc(crc.getValue());
+    out.putNextEntry(entry);
+    out.write(content);
+    out.closeEntry();
+  }
+
+  private WorkflowArtifacts artifacts(String cacheDir, int maxChars, int tailKilobytes) {
+    return new WorkflowArtifacts(
+        new GitHubProperties.Artifacts(cacheDir, 5, maxChars, tailKilobytes, null),
+        args ->
+            new GithubCommand(
+                """
+                {"total_count": 1, "artifacts": [
+                  {"id": 42, "node_id": "x", "name": "test-reports", "size_in_bytes": %d,
+                   "expired": false, "created_at": "2024-05-01T10:00:00Z",
+                   "workflow_run": {"id": 9}}]}"""
+                    .formatted(archive.length),
+                "",
+                0),
+        (args, timeout, reader) -> {
+          if (failure != null) {
+            return new GithubCommand("", failure, 1);
+          }
+          String range = args.stream().filter(a -> a.startsWith("Range:")).findFirst().get();
+          ranges.add(range);
+          whileFetching.run();
+          try {
+            return new GithubCommand(reader.read(respond(range)), "", 0);
+          } catch (IOException e) {
+            return new GithubCommand("", e.getMessage(), 1);
+          }
+        });
+  }
+
+  private WorkflowArtifacts artifacts() {
+    return artifacts(cacheDir.toString(), 60_000, 64);
+  }
+
+  /** Serves byte ranges of the archive the way {@code gh api --include} prints them. */
+  private InputStream respond(String range) {
+    var matcher = RANGE.matcher(range);
+    matcher.matches();
+    int from;
+    int to;
+    if (matcher.group(1).isEmpty()) {
+      from = Math.max(0, archive.length - Integer.parseInt(matcher.group(2)));
+      to = archive.length - 1;
+    } else {
+      from = Integer.parseInt(matcher.group(1));
+      to = Math.min(archive.length - 1, Integer.parseInt(matcher.group(2)));
+    }
+    bytesServed += to - from + 1;
+    String head =
+        "HTTP/2.0 206 Partial Content\r\nContent-Range: bytes %d-%d/%d\r\n\r\n"
+            .formatted(from, to, archive.length);
+    return new SequenceInputStream(
+        new ByteArrayInputStream(head.getBytes(StandardCharsets.US_ASCII)),
+        new ByteArrayInputStream(archive, from, to - from + 1));
+  }
+
+  private static JsonNode json(String result) throws Exception {
+    return MAPPER.readTree(result);
+  }
+
+  @Nested
+  @DisplayName("Listing")
+  class Listing {
+
+    @Test
+    @DisplayName("Should list a run's artifacts")
+    void testArtifacts() throws Exception {
+      var result = json(artifacts().list("o", "r", 9));
+
+      assertThat(result.get("totalCount").asLong()).isEqualTo(1L);
+      var artifact = result.get("artifacts").get(0);
+      assertThat(artifact.get("id").asLong()).isEqualTo(42L);
+      assertThat(artifact.get("size").asLong()).isEqualTo(archive.length);
+      assertThat(artifact.has("workflow_run")).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should list files from the tail of the archive in one request")
+    void testEntries() throws Exception {
+      var result = json(artifacts().entries("o", "r", 42));
+
+      assertThat(result.get("files").asInt()).isEqualTo(3);
+      assertThat(result.get("entries").get(0).get("name").asText())
+          .isEqualTo("reports/TEST-AppTest.xml");
+      assertThat(result.get("entries").get(0).get("size").asLong()).isEqualTo(REPORT.length());
+      assertThat(ranges).containsExactly("Range: bytes=-65536");
+    }
+
+    @Test
+    @DisplayName("Should fetch a central directory bigger than the tail by its range")
+    void testBigDirectory() throws Exception {
+      archive =
+          zip(
+              out -> {
+                for (int i = 0; i < 200; i++) {
+                  deflated(out, "logs/step-%03d.txt".formatted(i), ("step " + i).getBytes());
+                }
+              });
+
+      var result = json(artifacts(cacheDir.toString(), 60_000, 1).entries("o", "r", 42));
+
+      assertThat(result.get("files").asInt()).isEqualTo(200);
+      assertThat(ranges).hasSize(2);
+      assertThat(ranges.get(1)).matches("Range: bytes=\\d+-\\d+");
+    }
+
+    @Test
+    @DisplayName("Should read the zip64 end record of an archive with very many files")
+    void testZip64() throws Exception {
+      archive =
+          zip(
+              out -> {
+                for (int i = 0; i < 65_600; i++) {
+                  stored(out, Integer.toString(i), new byte[0]);
+                }
+              });
+
+      var result = json(artifacts().entries("o", "r", 42));
+
+      assertThat(result.get("files").asInt()).isEqualTo(65_600);
+    }
+  }
+
+  @Nested
+  @DisplayName("Extracting")
+  class Extracting {
+
+    @Test
+    @DisplayName("Should fetch only one file's bytes and return its text")
+    void testExtract() throws Exception {
+      var artifacts = artifacts();
+
+      var result = json(artifacts.extract("o", "r", 42, "reports/TEST-AppTest.xml"));
+
+      assertThat(result.get("content").asText()).isEqualTo(REPORT);
+      assertThat(result.get("binary").asBoolean()).isFalse();
+      assertThat(ranges).hasSize(2);
+      assertThat(bytesServed).isLessThan(archive.length / 4);
+      assertThat(Files.readString(cacheDir.resolve("o/r/42/reports/TEST-AppTest.xml")))
+          .isEqualTo(REPORT);
+
+      ranges.clear();
+      artifacts.extract("o", "r", 42, "reports/TEST-AppTest.xml");
+      assertThat(ranges).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should let a concurrent call for the same file read the one being extracted")
+    void testConcurrentExtract() throws Exception {
+      var artifacts = artifacts();
+      artifacts.entries("o", "r", 42);
+      ranges.clear();
+      var started = new CountDownLatch(1);
+      whileFetching =
+          () -> {
+            started.countDown();
+            try {
+              Thread.sleep(200);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          };
+      var results = new CopyOnWriteArrayList<String>();
+
+      Thread first =
+          Thread.ofVirtual()
+              .start(() -> results.add(artifacts.extract("o", "r", 42, "summary.txt")));
+      started.await();
+      Thread second =
+          Thread.ofVirtual()
+              .start(() -> results.add(artifacts.extract("o", "r", 42, "summary.txt")));
+      first.join();
+      second.join();
+
+      assertThat(ranges).hasSize(1);
+      assertThat(results).hasSize(2);
+      assertThat(results.getLast()).isEqualTo(results.getFirst());
+      assertThat(Files.readString(cacheDir.resolve("o/r/42/summary.txt")))
+          .isEqualTo("2 tests, 1 failure\n");
+    }
+
+    @Test
+    @DisplayName("Should keep binary files on disk and leave their content out")
+    void testBinary() throws Exception {
+      var result = json(artifacts().extract("o", "r", 42, "coverage.bin"));
+
+      assertThat(result.get("binary").asBoolean()).isTrue();
+      assertThat(result.has("content")).isFalse();
+      assertThat(Files.size(Path.of(result.get("file").asText()))).isEqualTo(512L * 1024);
+    }
+
+    @Test
+    @DisplayName("Should cut long text at maxChars and work without a cache directory")
+    void testTruncated() throws Exception {
+      var result = json(artifacts(null, 100, 64).extract("o", "r", 42, "reports/TEST-AppTest.xml"));
+
+      assertThat(result.get("truncated").asBoolean()).isTrue();
+      assertThat(result.get("content").asText()).hasSize(100);
+      assertThat(result.has("file")).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should refuse unknown files and paths that leave the artifact")
+    void testUnknown() throws Exception {
+      archive = zip(out -> deflated(out, "../escape.txt", "x".getBytes()));
+
+      assertThat(artifacts().extract("o", "r", 42, "missing.txt"))
+          .startsWith("Error: Artifact 42 has no file missing.txt");
+      assertThat(artifacts().extract("o", "r", 42, "../escape.txt"))
+          .isEqualTo("Error: ../escape.txt points outside the artifact");
+      assertThat(Files.exists(cacheDir.resolve("o/r/escape.txt"))).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should report an expired artifact")
+    void testExpired() {
+      failure = "HTTP 410: Artifact has expired";
+
+      assertThat(artifacts().entries("o", "r", 42))
+          .isEqualTo("Error: HTTP 410: Artifact has expired");
+    }
+  }
+}
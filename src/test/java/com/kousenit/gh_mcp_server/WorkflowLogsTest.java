@@ -0,0 +1,209 @@
+package com.kousenit.gh_mcp_server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayName("Workflow Logs Tests")
+class WorkflowLogsTest {
+
+  @TempDir Path cacheDir;
+
+  private final List<String> downloads = new ArrayList<>();
+  private String status = "completed";
+  private byte[] archive;
+
+  private WorkflowLogs logs(int maxLines, int maxCachedRuns) {
+    return new WorkflowLogs(
+        new GitHubProperties.Logs(cacheDir.toString(), maxCachedRuns, maxLines, null),
+        args -> new GithubCommand(status, "", 0),
+        (args, timeout, reader) -> {
+          downloads.add(args.get(1));
+          try {
+            return new GithubCommand(reader.read(new ByteArrayInputStream(archive)), "", 0);
+          } catch (IOException e) {
+            return new GithubCommand("", e.getMessage(), 1);
+          }
+        });
+  }
+
+  private WorkflowLogs logs() {
+    return logs(500, 20);
+  }
+
+  /** A log archive as GitHub lays it out: whole job logs plus one folder of step logs per job. */
+  private static byte[] zip(Map<String, String> entries) throws IOException {
+    var bytes = new ByteArrayOutputStream();
+    try (var zip = new ZipOutputStream(bytes)) {
+      for (var entry : entries.entrySet()) {
+        zip.putNextEntry(new ZipEntry(entry.getKey()));
+        zip.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+      }
+    }
+    return bytes.toByteArray();
+  }
+
+  private void givenRun() throws IOException {
+    var entries = new LinkedHashMap<String, String>();
+    entries.put(
+        "0_build.txt",
+        "\uFEFFSet up job\ncompiling\n##[error]Compilation failed: Foo.java\ncleanup\n");
+    entries.put("build/1_Set up job.txt", "Set up job\n");
+    entries.put("build/2_Compile.txt", "compiling\n##[error]Compilation failed: Foo.java\n");
+    entries.put("1_lint.txt", "linting\nwarning: unused import\nlint ok\n");
+    entries.put("lint/1_Run linter.txt", "linting\nwarning: unused import\nlint ok\n");
+    archive = zip(entries);
+  }
+
+  private static WorkflowLogs.Filter all() {
+    return new WorkflowLogs.Filter(null, null, null, 0, false);
+  }
+
+  @Nested
+  @DisplayName("Filters")
+  class Filters {
+
+    @Test
+    @DisplayName("Should return whole job logs under job headings")
+    void testJobLogs() throws IOException {
+      givenRun();
+
+      String result = logs().logs("o", "r", 7, all());
+
+      assertThat(result).startsWith("Run 7: 7 of 7 lines matched in 2 log files");
+      assertThat(result).contains("== build ==\nSet up job\ncompiling");
+      assertThat(result).contains("== lint ==\nlinting");
+      assertThat(result).doesNotContain("\uFEFF");
+    }
+
+    @Test
+    @DisplayName("Should select step logs by partial job and step names")
+    void testStepFilter() throws IOException {
+      givenRun();
+      var filter = new WorkflowLogs.Filter("BUI", "comp", null, 0, false);
+
+      String result = logs().logs("o", "r", 7, filter);
+
+      assertThat(result).contains("== build / Compile ==");
+      assertThat(result).contains("2 of 2 lines matched in 1 log files");
+      assertThat(result).doesNotContain("lint");
+    }
+
+    @Test
+    @DisplayName("Should keep only error annotations or lines matching a pattern")
+    void testErrorsAndPattern() throws IOException {
+      givenRun();
+      var logs = logs();
+
+      String errors = logs.logs("o", "r", 7, new WorkflowLogs.Filter(null, null, null, 0, true));
+      String warnings =
+          logs.logs("o", "r", 7, new WorkflowLogs.Filter(null, null, "^warn", 0, false));
+
+      assertThat(errors).contains("1 of 7 lines matched").contains("Compilation failed");
+      assertThat(warnings).contains("1 of 7 lines matched").contains("unused import");
+    }
+
+    @Test
+    @DisplayName("Should reject an invalid pattern before downloading")
+    void testInvalidPattern() throws IOException {
+      givenRun();
+      var filter = new WorkflowLogs.Filter(null, null, "(", 0, false);
+
+      String result = logs().logs("o", "r", 7, filter);
+
+      assertThat(result).startsWith("Error: Invalid pattern");
+      assertThat(downloads).isEmpty();
+    }
+  }
+
+  @Nested
+  @DisplayName("Bounded Output")
+  class BoundedOutput {
+
+    @Test
+    @DisplayName("Should return the last N matching lines for tail")
+    void testTail() throws IOException {
+      givenRun();
+      var filter = new WorkflowLogs.Filter(null, null, null, 2, false);
+
+      String result = logs().logs("o", "r", 7, filter);
+
+      assertThat(result).contains("(showing last 2)");
+      assertThat(result).endsWith("== lint ==\nwarning: unused import\nlint ok");
+    }
+
+    @Test
+    @DisplayName("Should cap the result at maxLines and report the rest")
+    void testMaxLines() throws IOException {
+      archive = zip(Map.of("0_big.txt", "line\n".repeat(10_000)));
+
+      String result = logs(3, 20).logs("o", "r", 7, all());
+
+      assertThat(result).startsWith("Run 7: 10000 of 10000 lines matched in 1 log files");
+      assertThat(result).contains("(showing first 3)");
+      assertThat(result.lines().count()).isEqualTo(5L);
+    }
+  }
+
+  @Nested
+  @DisplayName("Caching")
+  class Caching {
+
+    @Test
+    @DisplayName("Should serve repeated queries on a completed run from the local archive")
+    void testCompletedRunCached() throws IOException {
+      givenRun();
+      var logs = logs();
+      logs.logs("o", "r", 7, all());
+
+      String errors = logs.logs("o", "r", 7, new WorkflowLogs.Filter(null, null, null, 0, true));
+
+      assertThat(errors).contains("Compilation failed");
+      assertThat(downloads).hasSize(1);
+      assertThat(Files.exists(cacheDir.resolve("o/r/7.zip"))).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should not cache the logs of a run still in progress")
+    void testInProgressNotCached() throws IOException {
+      givenRun();
+      status = "in_progress";
+      var logs = logs();
+
+      logs.logs("o", "r", 7, all());
+      logs.logs("o", "r", 7, all());
+
+      assertThat(downloads).hasSize(2);
+      assertThat(Files.exists(cacheDir.resolve("o/r"))).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should evict the least recently used archives beyond maxCachedRuns")
+    void testEviction() throws IOException {
+      givenRun();
+      var logs = logs(500, 1);
+
+      logs.logs("o", "r", 1, all());
+      logs.logs("o", "r", 2, all());
+
+      assertThat(Files.exists(cacheDir.resolve("o/r/1.zip"))).isFalse();
+      assertThat(Files.exists(cacheDir.resolve("o/r/2.zip"))).isTrue();
+    }
+  }
+}